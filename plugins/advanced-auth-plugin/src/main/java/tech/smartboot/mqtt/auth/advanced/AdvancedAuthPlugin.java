@@ -11,6 +11,7 @@
 package tech.smartboot.mqtt.auth.advanced;
 
 import tech.smartboot.feat.core.common.FeatUtils;
+import tech.smartboot.mqtt.auth.advanced.config.CacheConfig;
 import tech.smartboot.mqtt.auth.advanced.config.PluginConfig;
 import tech.smartboot.mqtt.auth.advanced.provider.HttpAuthenticator;
 import tech.smartboot.mqtt.auth.advanced.provider.RedisAuthenticator;
@@ -44,6 +45,10 @@ public class AdvancedAuthPlugin extends Plugin {
 
     private PluginConfig config;
     private List<Authenticator> chains;
+    /**
+     * 认证结果缓存，未启用时为null
+     */
+    private AuthCache authCache;
 
     @Override
     protected void initPlugin(BrokerContext brokerContext) throws Throwable {
@@ -75,6 +80,12 @@ public class AdvancedAuthPlugin extends Plugin {
             chain.initialize();
         }
 
+        CacheConfig cacheConfig = config.getCache();
+        if (cacheConfig != null && cacheConfig.isEnabled()) {
+            authCache = new AuthCache(cacheConfig);
+            log("认证结果缓存已启用, ttl: " + cacheConfig.getTtl() + "ms, negativeTtl: " + cacheConfig.getNegativeTtl() + "ms, staleTtl: " + cacheConfig.getStaleTtl() + "ms");
+        }
+
         // 订阅CONNECT事件
         subscribe(EventType.CONNECT, (eventType, object) -> {
             MqttSession session = object.getSession();
@@ -101,28 +112,7 @@ public class AdvancedAuthPlugin extends Plugin {
             }
 
 
-            // 使用 thenCompose 实现异步链式认证
-            CompletableFuture<AuthResult> chainFuture = CompletableFuture.completedFuture(AuthResult.CONTINUE);
-            for (Authenticator auth : chains) {
-                chainFuture = chainFuture.thenCompose(result -> {
-                    if (result != AuthResult.CONTINUE) {
-                        return CompletableFuture.completedFuture(result);
-                    }
-                    try {
-                        return auth.authenticate(session, message).thenApply(r -> {
-                            log("[认证器: " + auth.getName() + "] 认证结果：" + r + " clientId:" + session.getClientId() + " username:" + message.getPayload().userName());
-                            return r;
-                        }).exceptionally(e -> {
-                            log("认证器异常: " + auth.getName() + ", error=" + e.getMessage());
-                            return config.isStopOnError() ? AuthResult.FAILURE : AuthResult.CONTINUE;
-                        });
-                    } catch (Exception e) {
-                        log("认证器异常: " + auth.getName() + ", error=" + e.getMessage());
-                        return CompletableFuture.completedFuture(
-                                config.isStopOnError() ? AuthResult.FAILURE : AuthResult.CONTINUE);
-                    }
-                });
-            }
+            CompletableFuture<AuthResult> chainFuture = authCache == null ? authenticate(session, message) : authCache.get(session, message, this::authenticate);
 
             // 处理最终结果（CONTINUE 视为失败）
             chainFuture.thenAccept(result -> {
@@ -141,6 +131,35 @@ public class AdvancedAuthPlugin extends Plugin {
         log("==============================================");
     }
 
+    /**
+     * 按认证链顺序执行认证
+     */
+    private CompletableFuture<AuthResult> authenticate(MqttSession session, MqttConnectMessage message) {
+        // 使用 thenCompose 实现异步链式认证
+        CompletableFuture<AuthResult> chainFuture = CompletableFuture.completedFuture(AuthResult.CONTINUE);
+        for (Authenticator auth : chains) {
+            chainFuture = chainFuture.thenCompose(result -> {
+                if (result != AuthResult.CONTINUE) {
+                    return CompletableFuture.completedFuture(result);
+                }
+                try {
+                    return auth.authenticate(session, message).thenApply(r -> {
+                        log("[认证器: " + auth.getName() + "] 认证结果：" + r + " clientId:" + session.getClientId() + " username:" + message.getPayload().userName());
+                        return r;
+                    }).exceptionally(e -> {
+                        log("认证器异常: " + auth.getName() + ", error=" + e.getMessage());
+                        return config.isStopOnError() ? AuthResult.FAILURE : AuthResult.CONTINUE;
+                    });
+                } catch (Exception e) {
+                    log("认证器异常: " + auth.getName() + ", error=" + e.getMessage());
+                    return CompletableFuture.completedFuture(
+                            config.isStopOnError() ? AuthResult.FAILURE : AuthResult.CONTINUE);
+                }
+            });
+        }
+        return chainFuture;
+    }
+
     @Override
     protected void destroyPlugin() {
         log("正在关闭高级认证插件...");
@@ -148,6 +167,9 @@ public class AdvancedAuthPlugin extends Plugin {
         if (chains != null) {
             chains.forEach(Authenticator::destroy);
         }
+        if (authCache != null) {
+            authCache.clear();
+        }
 
         log("高级认证插件已关闭");
     }
@@ -237,6 +259,27 @@ public class AdvancedAuthPlugin extends Plugin {
         );
         schema.addItem(redisItem);
 
+        // ========== 认证结果缓存配置区域 ==========
+        Item cacheItem = Item.Object("cache", "认证结果缓存配置").col(12);
+        cacheItem.addItems(
+                Item.Switch("enabled", "启用缓存")
+                        .tip("缓存认证结果，相同凭证的并发认证合并为一次请求")
+                        .col(3),
+                Item.Int("maxSize", "最大缓存数量")
+                        .tip("超出后淘汰最久未使用的结果，默认 100000")
+                        .col(3),
+                Item.Int("ttl", "成功结果有效期 (ms)")
+                        .tip("认证成功结果的缓存时间，默认 60000ms，0 表示不缓存")
+                        .col(3),
+                Item.Int("negativeTtl", "失败结果有效期 (ms)")
+                        .tip("认证失败结果的缓存时间，默认 5000ms，0 表示不缓存")
+                        .col(3),
+                Item.Int("staleTtl", "过期结果可用时长 (ms)")
+                        .tip("成功结果过期后仍放行连接并后台重新认证的时长，默认 0 表示关闭")
+                        .col(3)
+        );
+        schema.addItem(cacheItem);
+
 
         return schema;
     }
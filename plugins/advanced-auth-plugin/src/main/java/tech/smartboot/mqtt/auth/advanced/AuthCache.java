@@ -0,0 +1,162 @@
+package tech.smartboot.mqtt.auth.advanced;
+
+import tech.smartboot.mqtt.auth.advanced.config.CacheConfig;
+import tech.smartboot.mqtt.common.message.MqttConnectMessage;
+import tech.smartboot.mqtt.plugin.spec.MqttSession;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+
+/**
+ * 认证结果缓存
+ * <p>
+ * 以 clientId、username 及密码编码后的 SHA-256 摘要为键缓存认证链的结果，缓存中不保存明文凭证：
+ * 1. 认证成功的结果在 ttl 内有效，认证器明确拒绝的结果在 negativeTtl 内有效
+ * 2. 相同凭证的并发认证合并为一次请求，网络抖动后的大量重连不会同时压向认证服务
+ * 3. 配置 staleTtl 时，认证成功的结果过期后仍可放行连接，并在后台重新认证
+ * <p>
+ * 缓存数量超出 maxSize 后淘汰最久未使用的结果。
+ *
+ * @author 三刀
+ * @version v1.0 2026/10/18
+ */
+public class AuthCache {
+    private final CacheConfig config;
+    private final Map<String, Entry> entries;
+    /**
+     * 正在认证的请求，相同凭证的认证共享同一个结果
+     */
+    private final ConcurrentMap<String, CompletableFuture<AuthResult>> pending = new ConcurrentHashMap<>();
+
+    public AuthCache(CacheConfig config) {
+        this.config = config;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > config.getMaxSize();
+            }
+        };
+    }
+
+    /**
+     * 获取认证结果，缓存未命中时调用 loader 认证
+     *
+     * @param loader 执行认证链
+     */
+    public CompletableFuture<AuthResult> get(MqttSession session, MqttConnectMessage message, BiFunction<MqttSession, MqttConnectMessage, CompletableFuture<AuthResult>> loader) {
+        String key = key(session.getClientId(), message);
+        long now = System.currentTimeMillis();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            if (now < entry.expireTime) {
+                return CompletableFuture.completedFuture(entry.result);
+            }
+            //过期的认证成功结果先放行，后台刷新
+            if (entry.result == AuthResult.SUCCESS && now < entry.expireTime + config.getStaleTtl()) {
+                load(key, session, message, loader);
+                return CompletableFuture.completedFuture(AuthResult.SUCCESS);
+            }
+        }
+        return load(key, session, message, loader);
+    }
+
+    private CompletableFuture<AuthResult> load(String key, MqttSession session, MqttConnectMessage message, BiFunction<MqttSession, MqttConnectMessage, CompletableFuture<AuthResult>> loader) {
+        CompletableFuture<AuthResult> future = pending.get(key);
+        if (future != null) {
+            return future;
+        }
+        CompletableFuture<AuthResult> created = new CompletableFuture<>();
+        future = pending.putIfAbsent(key, created);
+        if (future != null) {
+            return future;
+        }
+        loader.apply(session, message).whenComplete((result, throwable) -> {
+            if (throwable == null) {
+                put(key, result);
+            }
+            //先写入缓存再移除，避免并发的认证在两者之间重复请求
+            pending.remove(key, created);
+            if (throwable == null) {
+                created.complete(result);
+            } else {
+                created.completeExceptionally(throwable);
+            }
+        });
+        return created;
+    }
+
+    private void put(String key, AuthResult result) {
+        //所有认证器均无法处理，可能是认证服务异常，保留原有的结果
+        if (result == AuthResult.CONTINUE) {
+            return;
+        }
+        long ttl = result == AuthResult.SUCCESS ? config.getTtl() : config.getNegativeTtl();
+        synchronized (entries) {
+            if (ttl > 0) {
+                entries.put(key, new Entry(result, System.currentTimeMillis() + ttl));
+            } else {
+                entries.remove(key);
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private static String key(String clientId, MqttConnectMessage message) {
+        return key(clientId, message.getPayload().userName(), message.getPayload().passwordInBytes());
+    }
+
+    /**
+     * 各字段以长度前缀编码后计算 SHA-256 摘要，字段中包含任意字符均不会与其他凭证的键冲突，且键中不保留明文用户名及密码
+     */
+    static String key(String clientId, String userName, byte[] password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, clientId == null ? null : clientId.getBytes(StandardCharsets.UTF_8));
+            update(digest, userName == null ? null : userName.getBytes(StandardCharsets.UTF_8));
+            update(digest, password);
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 algorithm not available", e);
+        }
+    }
+
+    /**
+     * 写入长度前缀及字段内容，null 以长度 -1 区分于空值
+     */
+    private static void update(MessageDigest digest, byte[] bytes) {
+        int length = bytes == null ? -1 : bytes.length;
+        digest.update((byte) (length >>> 24));
+        digest.update((byte) (length >>> 16));
+        digest.update((byte) (length >>> 8));
+        digest.update((byte) length);
+        if (bytes != null) {
+            digest.update(bytes);
+        }
+    }
+
+    private static class Entry {
+        private final AuthResult result;
+        private final long expireTime;
+
+        Entry(AuthResult result, long expireTime) {
+            this.result = result;
+            this.expireTime = expireTime;
+        }
+    }
+}
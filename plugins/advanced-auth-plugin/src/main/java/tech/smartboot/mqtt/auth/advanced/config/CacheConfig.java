@@ -0,0 +1,78 @@
+package tech.smartboot.mqtt.auth.advanced.config;
+
+/**
+ * 认证结果缓存配置
+ *
+ * @author 三刀
+ * @version v1.0 2026/10/18
+ */
+public class CacheConfig {
+    /**
+     * 是否启用认证结果缓存
+     */
+    private boolean enabled = false;
+
+    /**
+     * 最多缓存的认证结果数量，超出后淘汰最久未使用的结果
+     */
+    private int maxSize = 100000;
+
+    /**
+     * 认证成功结果的有效期（毫秒），0 表示不缓存
+     */
+    private long ttl = 60000;
+
+    /**
+     * 认证失败结果的有效期（毫秒），0 表示不缓存
+     * <p>
+     * 仅缓存认证器明确拒绝的结果，所有认证器均无法处理（如认证服务异常）的结果不缓存
+     */
+    private long negativeTtl = 5000;
+
+    /**
+     * 认证成功结果过期后仍可使用的时长（毫秒），0 表示关闭
+     * <p>
+     * 期间先以过期的结果放行连接，同时在后台重新认证并刷新缓存，认证服务响应缓慢时避免阻塞重连
+     */
+    private long staleTtl = 0;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    public long getNegativeTtl() {
+        return negativeTtl;
+    }
+
+    public void setNegativeTtl(long negativeTtl) {
+        this.negativeTtl = negativeTtl;
+    }
+
+    public long getStaleTtl() {
+        return staleTtl;
+    }
+
+    public void setStaleTtl(long staleTtl) {
+        this.staleTtl = staleTtl;
+    }
+}
@@ -56,6 +56,11 @@ public class PluginConfig {
      */
     private HttpConfig http;
 
+    /**
+     * 认证结果缓存配置
+     */
+    private CacheConfig cache;
+
     /**
      * 认证链顺序配置
      * <p>
@@ -112,6 +117,14 @@ public class PluginConfig {
         this.http = http;
     }
 
+    public CacheConfig getCache() {
+        return cache;
+    }
+
+    public void setCache(CacheConfig cache) {
+        this.cache = cache;
+    }
+
     public List<String> getChain() {
         return chain;
     }
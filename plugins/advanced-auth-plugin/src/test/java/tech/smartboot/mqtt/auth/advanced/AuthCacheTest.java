@@ -0,0 +1,168 @@
+package tech.smartboot.mqtt.auth.advanced;
+
+import org.junit.jupiter.api.Test;
+import tech.smartboot.mqtt.auth.advanced.config.CacheConfig;
+import tech.smartboot.mqtt.common.message.MqttConnectMessage;
+import tech.smartboot.mqtt.common.message.payload.MqttConnectPayload;
+import tech.smartboot.mqtt.plugin.spec.MqttSession;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 认证结果缓存的键、有效期、过期后台刷新及并发合并
+ *
+ * @author 三刀
+ * @version v1.0 2026/10/18
+ */
+class AuthCacheTest {
+    private static final MqttSession SESSION = (MqttSession) Proxy.newProxyInstance(AuthCacheTest.class.getClassLoader(),
+            new Class<?>[]{MqttSession.class}, (proxy, method, args) -> "getClientId".equals(method.getName()) ? "client" : null);
+
+    @Test
+    void shouldNotConfuseFieldBoundaries() {
+        byte[] password = bytes("secret");
+        assertEquals(AuthCache.key("client", "user", password), AuthCache.key("client", "user", bytes("secret")));
+        assertNotEquals(AuthCache.key("a\nb", "c", password), AuthCache.key("a", "b\nc", password));
+        assertNotEquals(AuthCache.key("a", "b", bytes("c")), AuthCache.key("a", "bc", bytes("")));
+        assertNotEquals(AuthCache.key("client", null, password), AuthCache.key("client", "", password));
+        assertNotEquals(AuthCache.key("client", "user", null), AuthCache.key("client", "user", new byte[0]));
+        assertFalse(AuthCache.key("client", "user", password).contains("secret"));
+    }
+
+    @Test
+    void shouldCacheSuccessWithinTtl() throws Exception {
+        AuthCache cache = new AuthCache(config(200, 0, 0));
+        AtomicInteger loads = new AtomicInteger();
+        BiFunction<MqttSession, MqttConnectMessage, CompletableFuture<AuthResult>> loader = (session, message) -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(AuthResult.SUCCESS);
+        };
+        assertEquals(AuthResult.SUCCESS, cache.get(SESSION, connect("user", "pwd"), loader).get());
+        assertEquals(AuthResult.SUCCESS, cache.get(SESSION, connect("user", "pwd"), loader).get());
+        assertEquals(1, loads.get());
+
+        //不同的密码不命中缓存
+        assertEquals(AuthResult.SUCCESS, cache.get(SESSION, connect("user", "other"), loader).get());
+        assertEquals(2, loads.get());
+
+        Thread.sleep(300);
+        assertEquals(AuthResult.SUCCESS, cache.get(SESSION, connect("user", "pwd"), loader).get());
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void shouldCacheFailureWithinNegativeTtl() throws Exception {
+        AuthCache cache = new AuthCache(config(60000, 200, 0));
+        AtomicInteger loads = new AtomicInteger();
+        AtomicReference<AuthResult> result = new AtomicReference<>(AuthResult.FAILURE);
+        BiFunction<MqttSession, MqttConnectMessage, CompletableFuture<AuthResult>> loader = (session, message) -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(result.get());
+        };
+        assertEquals(AuthResult.FAILURE, cache.get(SESSION, connect("user", "pwd"), loader).get());
+        result.set(AuthResult.SUCCESS);
+        assertEquals(AuthResult.FAILURE, cache.get(SESSION, connect("user", "pwd"), loader).get());
+        assertEquals(1, loads.get());
+
+        Thread.sleep(300);
+        assertEquals(AuthResult.SUCCESS, cache.get(SESSION, connect("user", "pwd"), loader).get());
+        assertEquals(2, loads.get());
+
+        //所有认证器均无法处理的结果不缓存
+        result.set(AuthResult.CONTINUE);
+        assertEquals(AuthResult.CONTINUE, cache.get(SESSION, connect("user", "continue"), loader).get());
+        assertEquals(AuthResult.CONTINUE, cache.get(SESSION, connect("user", "continue"), loader).get());
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void shouldServeStaleSuccessWhileRevalidating() throws Exception {
+        AuthCache cache = new AuthCache(config(100, 60000, 60000));
+        AtomicInteger loads = new AtomicInteger();
+        AtomicReference<CompletableFuture<AuthResult>> refresh = new AtomicReference<>(CompletableFuture.completedFuture(AuthResult.SUCCESS));
+        BiFunction<MqttSession, MqttConnectMessage, CompletableFuture<AuthResult>> loader = (session, message) -> {
+            loads.incrementAndGet();
+            return refresh.get();
+        };
+        assertEquals(AuthResult.SUCCESS, cache.get(SESSION, connect("user", "pwd"), loader).get());
+        Thread.sleep(200);
+
+        //过期的成功结果立即放行，后台刷新尚未完成
+        refresh.set(new CompletableFuture<>());
+        CompletableFuture<AuthResult> stale = cache.get(SESSION, connect("user", "pwd"), loader);
+        assertTrue(stale.isDone());
+        assertEquals(AuthResult.SUCCESS, stale.get());
+        assertEquals(2, loads.get());
+        //刷新期间的请求不重复触发认证
+        assertEquals(AuthResult.SUCCESS, cache.get(SESSION, connect("user", "pwd"), loader).get());
+        assertEquals(2, loads.get());
+
+        //刷新结果写入缓存，后续请求以新结果为准
+        refresh.get().complete(AuthResult.FAILURE);
+        assertEquals(AuthResult.FAILURE, cache.get(SESSION, connect("user", "pwd"), loader).get());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldCoalesceConcurrentLoads() throws Exception {
+        AuthCache cache = new AuthCache(config(60000, 60000, 0));
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<AuthResult> pending = new CompletableFuture<>();
+        BiFunction<MqttSession, MqttConnectMessage, CompletableFuture<AuthResult>> loader = (session, message) -> {
+            loads.incrementAndGet();
+            return pending;
+        };
+        CompletableFuture<AuthResult> first = cache.get(SESSION, connect("user", "pwd"), loader);
+        CompletableFuture<AuthResult> second = cache.get(SESSION, connect("user", "pwd"), loader);
+        assertSame(first, second);
+        assertFalse(first.isDone());
+        assertEquals(1, loads.get());
+
+        pending.complete(AuthResult.SUCCESS);
+        assertEquals(AuthResult.SUCCESS, first.get());
+        assertEquals(AuthResult.SUCCESS, second.get());
+
+        //认证异常时等待方均收到异常，且不写入缓存
+        CompletableFuture<AuthResult> failed = new CompletableFuture<>();
+        BiFunction<MqttSession, MqttConnectMessage, CompletableFuture<AuthResult>> failing = (session, message) -> {
+            loads.incrementAndGet();
+            return failed;
+        };
+        CompletableFuture<AuthResult> third = cache.get(SESSION, connect("user", "error"), failing);
+        CompletableFuture<AuthResult> fourth = cache.get(SESSION, connect("user", "error"), failing);
+        failed.completeExceptionally(new IllegalStateException("auth service unavailable"));
+        assertTrue(third.isCompletedExceptionally());
+        assertTrue(fourth.isCompletedExceptionally());
+        assertEquals(2, loads.get());
+        cache.get(SESSION, connect("user", "error"), failing);
+        assertEquals(3, loads.get());
+    }
+
+    private static CacheConfig config(long ttl, long negativeTtl, long staleTtl) {
+        CacheConfig config = new CacheConfig();
+        config.setEnabled(true);
+        config.setTtl(ttl);
+        config.setNegativeTtl(negativeTtl);
+        config.setStaleTtl(staleTtl);
+        return config;
+    }
+
+    private static MqttConnectMessage connect(String userName, String password) {
+        return new MqttConnectMessage(null, new MqttConnectPayload("client", null, userName, bytes(password)));
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,235 @@
+package tech.smartboot.mqtt.plugin.cluster;
+
+import io.github.smartboot.socket.transport.AioSession;
+import io.github.smartboot.socket.transport.WriteBuffer;
+import tech.smartboot.feat.core.common.logging.Logger;
+import tech.smartboot.feat.core.common.logging.LoggerFactory;
+import tech.smartboot.mqtt.plugin.spec.Message;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 集群节点间的二进制传输连接，双向收发数据帧。
+ * <p>
+ * 待发送的消息先进入有界队列，由独立的发送线程合并为MESSAGES帧写出：
+ * 达到批量条数或字节数时立即发送，否则最多等待lingerMs以聚合更多消息。
+ * 队列已满时，由插件独占的分发线程阻塞等待，超出backpressureTimeout仍无法写入才丢弃消息，使写出速度受限于对端的处理速度；
+ * IO线程及HTTP处理线程等共享线程不可阻塞，直接按queueDiscardPolicy丢弃消息。
+ * </p>
+ *
+ * @author 三刀
+ * @version v1.0 10/18/26
+ */
+class ClusterChannel implements NodeEmitter, Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterChannel.class);
+    private final AioSession session;
+    private final PluginConfig pluginConfig;
+    private final ArrayBlockingQueue<ClusterMessage> pendingQueue;
+    /**
+     * 连接由对端发起，即当前节点为接受连接的core节点
+     */
+    private final boolean accepted;
+    /**
+     * 解码中的数据帧，数据帧超出读缓冲区时跨多次读取累积
+     */
+    ByteBuffer decodingFrame;
+    /**
+     * 对端节点的身份及类型，由对端通过HELLO帧声明
+     */
+    private String accessToken;
+    private boolean core;
+    /**
+     * 对端节点的订阅摘要，由对端通过DIGEST帧同步
+     */
+    private volatile SubscriptionDigest digest = SubscriptionDigest.MATCH_ALL;
+    /**
+     * 已同步至对端的订阅摘要版本
+     */
+    private long reportedVersion = -1;
+    private volatile boolean closed;
+    private Thread sender;
+
+    ClusterChannel(AioSession session, PluginConfig pluginConfig, int queueLength, boolean accepted) {
+        this.session = session;
+        this.pluginConfig = pluginConfig;
+        this.pendingQueue = new ArrayBlockingQueue<>(queueLength);
+        this.accepted = accepted;
+    }
+
+    void start() {
+        sender = new Thread(this, "cluster-plugin-channel");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @Override
+    public boolean send(ClusterMessage message) {
+        return send(message, false);
+    }
+
+    /**
+     * 推送消息
+     *
+     * @param blocking 队列已满时是否阻塞等待backpressureTimeout，仅调用方独占的线程可阻塞
+     * @return 消息被丢弃时返回false
+     */
+    boolean send(ClusterMessage message, boolean blocking) {
+        if (closed) {
+            return false;
+        }
+        if (blocking) {
+            try {
+                if (pendingQueue.offer(message, pluginConfig.getBackpressureTimeout(), TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return Coordinator.offer(message, pendingQueue, pluginConfig.getQueueDiscardPolicy());
+    }
+
+    @Override
+    public void run() {
+        List<ClusterMessage> batch = new ArrayList<>(pluginConfig.getBatchSize());
+        long lingerNanos = TimeUnit.MILLISECONDS.toNanos(pluginConfig.getLingerMs());
+        try {
+            while (!closed) {
+                ClusterMessage message = pendingQueue.poll(1, TimeUnit.SECONDS);
+                if (message == null) {
+                    continue;
+                }
+                //聚合消息，直至达到批量上限、队列为空且超出等待时长
+                long deadline = System.nanoTime() + lingerNanos;
+                int batchBytes = 0;
+                do {
+                    batch.add(message);
+                    batchBytes += sizeOf(message);
+                    if (batch.size() >= pluginConfig.getBatchSize() || batchBytes >= pluginConfig.getBatchBytes()) {
+                        break;
+                    }
+                    message = pendingQueue.poll();
+                    if (message == null && lingerNanos > 0) {
+                        long wait = deadline - System.nanoTime();
+                        if (wait > 0) {
+                            message = pendingQueue.poll(wait, TimeUnit.NANOSECONDS);
+                        }
+                    }
+                } while (message != null);
+                writeMessages(batch, batchBytes);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            LOGGER.debug("cluster channel sender interrupted");
+        } catch (Throwable throwable) {
+            LOGGER.error("cluster channel write error", throwable);
+            session.close();
+        }
+    }
+
+    private static int sizeOf(ClusterMessage message) {
+        return message.getTopic().encodedTopicBytes().length + ClusterFrame.MESSAGE_OVERHEAD + message.encodedProperties().length + message.getMessage().getPayload().length;
+    }
+
+    private synchronized void writeMessages(List<ClusterMessage> batch, int batchBytes) throws IOException {
+        WriteBuffer writeBuffer = session.writeBuffer();
+        writeBuffer.writeInt(1 + 4 + batchBytes);
+        writeBuffer.writeByte(ClusterFrame.TYPE_MESSAGES);
+        writeBuffer.writeInt(batch.size());
+        for (ClusterMessage clusterMessage : batch) {
+            Message message = clusterMessage.getMessage();
+            //主题已按MQTT字符串格式编码：2字节长度 + UTF-8
+            writeBuffer.write(clusterMessage.getTopic().encodedTopicBytes());
+            writeBuffer.writeByte((byte) message.getQos().value());
+            writeBuffer.writeByte(message.isRetained() ? ClusterFrame.FLAG_RETAIN : 0);
+            writeBuffer.write(clusterMessage.encodedProperties());
+            writeBuffer.writeInt(message.getPayload().length);
+            writeBuffer.write(message.getPayload());
+        }
+        writeBuffer.flush();
+    }
+
+    synchronized void writeHello(String accessToken, boolean core) throws IOException {
+        byte[] bytes = accessToken.getBytes(StandardCharsets.UTF_8);
+        WriteBuffer writeBuffer = session.writeBuffer();
+        writeBuffer.writeInt(1 + 1 + bytes.length);
+        writeBuffer.writeByte(ClusterFrame.TYPE_HELLO);
+        writeBuffer.writeByte(core ? ClusterFrame.NODE_TYPE_CORE : ClusterFrame.NODE_TYPE_WORKER);
+        writeBuffer.write(bytes);
+        writeBuffer.flush();
+    }
+
+    /**
+     * 订阅摘要发生变化时同步至对端
+     */
+    synchronized void reportDigest(Coordinator.LocalDigest localDigest) {
+        if (closed || reportedVersion == localDigest.version) {
+            return;
+        }
+        byte[] bytes = localDigest.encoded.getBytes(StandardCharsets.UTF_8);
+        WriteBuffer writeBuffer = session.writeBuffer();
+        try {
+            writeBuffer.writeInt(1 + 8 + bytes.length);
+            writeBuffer.writeByte(ClusterFrame.TYPE_DIGEST);
+            writeBuffer.writeLong(localDigest.version);
+            writeBuffer.write(bytes);
+            writeBuffer.flush();
+            reportedVersion = localDigest.version;
+        } catch (IOException e) {
+            LOGGER.error("report subscription digest error", e);
+            session.close();
+        }
+    }
+
+    void close() {
+        closed = true;
+        pendingQueue.clear();
+        if (sender != null) {
+            sender.interrupt();
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void complete() {
+        session.close();
+    }
+
+    boolean isAccepted() {
+        return accepted;
+    }
+
+    @Override
+    public String getAccessToken() {
+        return accessToken;
+    }
+
+    void setAccessToken(String accessToken) {
+        this.accessToken = accessToken;
+    }
+
+    boolean isCore() {
+        return core;
+    }
+
+    void setCore(boolean core) {
+        this.core = core;
+    }
+
+    SubscriptionDigest getDigest() {
+        return digest;
+    }
+
+    void setDigest(SubscriptionDigest digest) {
+        this.digest = digest;
+    }
+}
@@ -16,16 +16,13 @@ import tech.smartboot.feat.core.server.HttpResponse;
 import tech.smartboot.feat.core.server.impl.Upgrade;
 import tech.smartboot.mqtt.common.enums.MqttQoS;
 import tech.smartboot.mqtt.common.util.ValidateUtils;
-import tech.smartboot.mqtt.plugin.spec.BrokerContext;
 import tech.smartboot.mqtt.plugin.spec.Message;
-import tech.smartboot.mqtt.plugin.spec.MqttSession;
 import tech.smartboot.mqtt.plugin.spec.Plugin;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.charset.StandardCharsets;
 
 /**
  * @author 三刀
@@ -38,29 +35,16 @@ public class ClusterController {
     private static final Logger LOGGER = LoggerFactory.getLogger(ClusterController.class);
     public static final String HEADER_TOPIC = "topic";
     public static final String HEADER_RETAIN = "retain";
-    @Autowired
-    private MqttSession mqttSession;
-
-    @Autowired
-    private BrokerContext brokerContext;
-
+    public static final String HEADER_DIGEST_VERSION = "digest_version";
     @Autowired
     private Plugin plugin;
 
-    private final Map<String, SseEmitter> coreNodes = new ConcurrentHashMap<>();
-    private final Map<String, SseEmitter> workerNodes = new ConcurrentHashMap<>();
+    @Autowired
+    private Coordinator coordinator;
 
     @PostConstruct
     public void init() {
-        plugin.subscribe(ClusterPlugin.CLIENT_DIRECT_TO_CORE_BROKER, (eventType, message) -> {
-            if (ClusterController.this.workerNodes.isEmpty()) {
-                LOGGER.debug("no worker node online");
-                return;
-            }
-            byte[] bytes = toBytes(message.getTopic().getTopic(),message.getMessage());
-            LOGGER.debug("receive cluster message, workerNodes:{}", ClusterController.this.workerNodes.size());
-            ClusterController.this.workerNodes.forEach((nodeId, emitter) -> emitter.send(bytes));
-        });
+        plugin.subscribe(ClusterPlugin.CLIENT_DIRECT_TO_CORE_BROKER, (eventType, message) -> coordinator.forwardToWorkers(message));
     }
 
     @RequestMapping("/status")
@@ -68,6 +52,23 @@ public class ClusterController {
         return true;
     }
 
+    /**
+     * 获取二进制传输端口，未启用二进制传输时响应404
+     */
+    @RequestMapping("/transport")
+    public void transport(HttpRequest request) throws IOException {
+        int port = coordinator.getTransportPort();
+        HttpResponse response = request.getResponse();
+        if (port <= 0) {
+            response.setHttpStatus(HttpStatus.NOT_FOUND);
+            response.getOutputStream().disableChunked();
+            return;
+        }
+        byte[] bytes = String.valueOf(port).getBytes(StandardCharsets.UTF_8);
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+
     /**
      * 接受到来自worker节点的消息，
      * 推送给集群各节点和直连的worker
@@ -80,21 +81,7 @@ public class ClusterController {
         String topic = request.getHeader(HEADER_TOPIC);
         ValidateUtils.notBlank(topic, "topic is null");
         Message message = parseMessage(request);
-        byte[] bytes = toBytes(topic, message);
-        for (Map.Entry<String, SseEmitter> entry : coreNodes.entrySet()) {
-            SseEmitter value = entry.getValue();
-            value.send(bytes);
-        }
-
-        workerNodes.forEach((accessToken, emitter) -> {
-            if (token.equals(accessToken)) {
-                return;
-            }
-            LOGGER.info("分发消息至集群节点:{}", emitter.getAccessToken());
-            emitter.send(bytes);
-        });
-        //推送给自己
-        brokerContext.getMessageBus().publish(mqttSession, brokerContext.getOrCreateTopic(topic), message);
+        coordinator.onNodeMessage(token, false, topic, message);
         request.getResponse().setHttpStatus(HttpStatus.ACCEPTED);
         request.getResponse().getOutputStream().disableChunked();
     }
@@ -109,24 +96,46 @@ public class ClusterController {
         Message message = parseMessage(request);
         String topic = request.getHeader(HEADER_TOPIC);
         ValidateUtils.notBlank(topic, "topic is null");
-        byte[] bytes = toBytes(topic, message);
-//        System.out.println("receive cluster message...");
-        workerNodes.forEach((nodeId, emitter) -> emitter.send(bytes));
+        coordinator.onNodeMessage(request.getHeader("access_token"), true, topic, message);
+        request.getResponse().setHttpStatus(HttpStatus.ACCEPTED);
+        request.getResponse().getOutputStream().disableChunked();
+    }
 
-        //推送给自己
-        brokerContext.getMessageBus().publish(mqttSession, brokerContext.getOrCreateTopic(topic), message);
-//        System.out.println("receive cluster done...");
+    /**
+     * 接收通过SSE订阅当前节点的节点所上报的订阅摘要
+     */
+    @RequestMapping("/digest/:nodeType/:access_token")
+    public void putDigest(HttpRequest request, @PathParam("nodeType") String nodeType, @PathParam("access_token") String accessToken) throws IOException {
+        String encoded = new String(FeatUtils.toByteArray(request.getInputStream()), StandardCharsets.UTF_8);
+        coordinator.updateDigest(accessToken, NODE_TYPE_CORE.equals(nodeType), encoded);
         request.getResponse().setHttpStatus(HttpStatus.ACCEPTED);
         request.getResponse().getOutputStream().disableChunked();
     }
 
+    /**
+     * 获取当前节点的订阅摘要，格式为：版本号 + '\n' + 摘要内容，版本未变化时响应304
+     */
+    @RequestMapping("/digest")
+    public void getDigest(HttpRequest request) throws IOException {
+        Coordinator.LocalDigest digest = coordinator.getLocalDigest();
+        HttpResponse response = request.getResponse();
+        if (String.valueOf(digest.version).equals(request.getHeader(HEADER_DIGEST_VERSION))) {
+            response.setHttpStatus(HttpStatus.NOT_MODIFIED);
+            response.getOutputStream().disableChunked();
+            return;
+        }
+        byte[] bytes = (digest.version + "\n" + digest.encoded).getBytes(StandardCharsets.UTF_8);
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+
     private Message parseMessage(HttpRequest request) throws IOException {
         String retain = request.getHeader(HEADER_RETAIN);
         byte[] payload = FeatUtils.toByteArray(request.getInputStream());
         return new Message(MqttQoS.AT_MOST_ONCE, payload, retain != null);
     }
 
-    public byte[] toBytes(String topic, Message message) {
+    public static byte[] toBytes(String topic, Message message) {
         ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream(message.getPayload().length + 32);
         try {
             byteOutputStream.write(ClusterMessageStream.TAG_TOPIC);
@@ -170,17 +179,8 @@ public class ClusterController {
 
                 sseEmitter = new SseEmitter(this.request.getAioSession());
                 sseEmitter.setAccessToken(accessToken);
-                SseEmitter old = null;
-                if (NODE_TYPE_CORE.equals(nodeType)) {
-                    LOGGER.info("接收来自core节点的订阅:{}", accessToken);
-                    old = coreNodes.put(accessToken, sseEmitter);
-                } else if (NODE_TYPE_WORKER.equals(nodeType)) {
-                    LOGGER.info("接收来自worker节点的订阅:{}", accessToken);
-                    old = workerNodes.put(accessToken, sseEmitter);
-                }
-                if (old != null) {
-                    LOGGER.info("移除旧节点:{}", old.getAccessToken());
-                    old.complete();
+                if (NODE_TYPE_CORE.equals(nodeType) || NODE_TYPE_WORKER.equals(nodeType)) {
+                    coordinator.registerNode(accessToken, NODE_TYPE_CORE.equals(nodeType), sseEmitter);
                 }
             }
 
@@ -195,28 +195,13 @@ public class ClusterController {
             public void destroy() {
                 if (sseEmitter != null) {
                     sseEmitter.complete();
+                    coordinator.unregisterNode(accessToken, sseEmitter);
                 }
-                //避免将重连上来的节点踢下线
-                if (coreNodes.get(accessToken) == sseEmitter) {
-                    coreNodes.remove(accessToken);
-                }
-                if (workerNodes.get(accessToken) == sseEmitter) {
-                    workerNodes.remove(accessToken);
-                }
-                LOGGER.info("移除节点:{}", accessToken);
             }
         });
     }
 
-    public void setMqttSession(MqttSession mqttSession) {
-        this.mqttSession = mqttSession;
-    }
-
-    public void setBrokerContext(BrokerContext brokerContext) {
-        this.brokerContext = brokerContext;
-    }
-
-    static class SseEmitter {
+    static class SseEmitter implements NodeEmitter {
         private String accessToken;
         private final AioSession aioSession;
 
@@ -224,6 +209,12 @@ public class ClusterController {
             this.aioSession = aioSession;
         }
 
+        @Override
+        public boolean send(ClusterMessage message) {
+            send(toBytes(message.getTopic().getTopic(), message.getMessage()));
+            return true;
+        }
+
         public void send(byte[] bytes) {
             WriteBuffer buffer = aioSession.writeBuffer();
             try {
@@ -234,10 +225,12 @@ public class ClusterController {
             }
         }
 
+        @Override
         public void complete() {
             aioSession.close();
         }
 
+        @Override
         public String getAccessToken() {
             return accessToken;
         }
@@ -250,4 +243,8 @@ public class ClusterController {
     public void setPlugin(Plugin plugin) {
         this.plugin = plugin;
     }
+
+    public void setCoordinator(Coordinator coordinator) {
+        this.coordinator = coordinator;
+    }
 }
@@ -0,0 +1,223 @@
+package tech.smartboot.mqtt.plugin.cluster;
+
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
+import tech.smartboot.mqtt.common.message.variable.properties.UserProperty;
+import tech.smartboot.mqtt.plugin.spec.Message;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * 集群节点间二进制传输的数据帧。
+ * <p>
+ * 帧格式：length(4) + type(1) + body，其中length为type及body的字节数。
+ * <ul>
+ *   <li>HELLO：nodeType(1) + accessToken，连接发起方声明自身的节点类型及身份</li>
+ *   <li>MESSAGES：count(4) + message * count，批量传输的消息</li>
+ *   <li>DIGEST：version(8) + 订阅摘要，同步节点的订阅摘要</li>
+ * </ul>
+ * 单条消息格式：topic(2字节长度 + UTF-8) + qos(1) + flag(1) + propertyCount(2) + property * propertyCount + payloadLength(4) + payload，
+ * 其中property格式为：id(1) + length(4) + value，未识别的属性将被忽略。
+ * </p>
+ * <p>
+ * 已定义的属性：
+ * <ul>
+ *   <li>CREATE_TIME：消息到达Broker的时间(8)，与EXPIRY_INTERVAL一同出现，各节点需保证时钟同步</li>
+ *   <li>EXPIRY_INTERVAL：消息过期间隔(4)，仅设置了过期间隔的消息携带</li>
+ *   <li>PAYLOAD_FORMAT_INDICATOR：负载格式标识(1)</li>
+ *   <li>CONTENT_TYPE、RESPONSE_TOPIC：UTF-8字符串</li>
+ *   <li>CORRELATION_DATA：二进制数据</li>
+ *   <li>USER_PROPERTY：keyLength(2) + key + value，每个用户属性各占一个property</li>
+ * </ul>
+ * </p>
+ *
+ * @author 三刀
+ * @version v1.0 10/18/26
+ */
+class ClusterFrame {
+    static final byte TYPE_HELLO = 1;
+    static final byte TYPE_MESSAGES = 2;
+    static final byte TYPE_DIGEST = 3;
+    static final byte NODE_TYPE_CORE = 0;
+    static final byte NODE_TYPE_WORKER = 1;
+    static final byte FLAG_RETAIN = 1;
+    static final byte PROPERTY_CREATE_TIME = 1;
+    static final byte PROPERTY_EXPIRY_INTERVAL = 2;
+    static final byte PROPERTY_PAYLOAD_FORMAT_INDICATOR = 3;
+    static final byte PROPERTY_CONTENT_TYPE = 4;
+    static final byte PROPERTY_RESPONSE_TOPIC = 5;
+    static final byte PROPERTY_CORRELATION_DATA = 6;
+    static final byte PROPERTY_USER_PROPERTY = 7;
+    /**
+     * 单个属性除值以外的长度：id(1) + length(4)
+     */
+    private static final int PROPERTY_OVERHEAD = 5;
+    private static final byte[] EMPTY_PROPERTIES = new byte[2];
+    /**
+     * 帧头长度：length(4) + type(1)
+     */
+    static final int HEADER_SIZE = 5;
+    /**
+     * 单条消息除主题、属性及负载外的固定长度：qos(1) + flag(1) + payloadLength(4)
+     */
+    static final int MESSAGE_OVERHEAD = 6;
+
+    private final byte type;
+    private final ByteBuffer body;
+
+    ClusterFrame(byte type, ByteBuffer body) {
+        this.type = type;
+        this.body = body;
+    }
+
+    byte getType() {
+        return type;
+    }
+
+    boolean isCoreNode() {
+        return body.get(0) == NODE_TYPE_CORE;
+    }
+
+    String getAccessToken() {
+        return new String(body.array(), body.arrayOffset() + 1, body.limit() - 1, StandardCharsets.UTF_8);
+    }
+
+    long getDigestVersion() {
+        return body.getLong(0);
+    }
+
+    String getDigest() {
+        return new String(body.array(), body.arrayOffset() + 8, body.limit() - 8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 遍历MESSAGES帧中的消息
+     *
+     * @param consumer 参数依次为主题及消息
+     */
+    void forEachMessage(BiConsumer<String, Message> consumer) {
+        ByteBuffer buffer = body.duplicate();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            byte[] topic = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(topic);
+            MqttQoS qos = MqttQoS.valueOf(buffer.get() & 0xFF);
+            boolean retained = (buffer.get() & FLAG_RETAIN) == FLAG_RETAIN;
+            long createTime = System.currentTimeMillis();
+            int expiryInterval = 0;
+            PublishProperties properties = null;
+            int propertyCount = buffer.getShort() & 0xFFFF;
+            for (int j = 0; j < propertyCount; j++) {
+                byte id = buffer.get();
+                int length = buffer.getInt();
+                int end = buffer.position() + length;
+                switch (id) {
+                    case PROPERTY_CREATE_TIME:
+                        createTime = buffer.getLong();
+                        break;
+                    case PROPERTY_EXPIRY_INTERVAL:
+                        expiryInterval = buffer.getInt();
+                        break;
+                    case PROPERTY_PAYLOAD_FORMAT_INDICATOR:
+                        properties = properties == null ? new PublishProperties() : properties;
+                        properties.setPayloadFormatIndicator(buffer.get());
+                        break;
+                    case PROPERTY_CONTENT_TYPE:
+                        properties = properties == null ? new PublishProperties() : properties;
+                        properties.setContentType(readString(buffer, length));
+                        break;
+                    case PROPERTY_RESPONSE_TOPIC:
+                        properties = properties == null ? new PublishProperties() : properties;
+                        properties.setResponseTopic(readString(buffer, length));
+                        break;
+                    case PROPERTY_CORRELATION_DATA:
+                        properties = properties == null ? new PublishProperties() : properties;
+                        byte[] correlationData = new byte[length];
+                        buffer.get(correlationData);
+                        properties.setCorrelationData(correlationData);
+                        break;
+                    case PROPERTY_USER_PROPERTY:
+                        properties = properties == null ? new PublishProperties() : properties;
+                        int keyLength = buffer.getShort() & 0xFFFF;
+                        String key = readString(buffer, keyLength);
+                        properties.getUserProperties().add(new UserProperty(key, readString(buffer, length - 2 - keyLength)));
+                        break;
+                    default:
+                        //未识别的属性，直接跳过
+                        break;
+                }
+                buffer.position(end);
+            }
+            if (properties != null) {
+                properties.setMessageExpiryInterval(expiryInterval);
+            }
+            byte[] payload = new byte[buffer.getInt()];
+            buffer.get(payload);
+            consumer.accept(new String(topic, StandardCharsets.UTF_8), new Message(qos, payload, retained, createTime, expiryInterval, properties));
+        }
+    }
+
+    /**
+     * 编码消息需转发的属性，结果包含propertyCount(2)
+     */
+    static byte[] encodeProperties(Message message) {
+        PublishProperties properties = message.getProperties();
+        if (message.getExpiryInterval() <= 0 && properties == null) {
+            return EMPTY_PROPERTIES;
+        }
+        List<byte[]> values = new ArrayList<>();
+        List<Byte> ids = new ArrayList<>();
+        if (message.getExpiryInterval() > 0) {
+            ids.add(PROPERTY_CREATE_TIME);
+            values.add(ByteBuffer.allocate(8).putLong(message.getCreateTime()).array());
+            ids.add(PROPERTY_EXPIRY_INTERVAL);
+            values.add(ByteBuffer.allocate(4).putInt(message.getExpiryInterval()).array());
+        }
+        if (properties != null) {
+            if (properties.getPayloadFormatIndicator() != 0) {
+                ids.add(PROPERTY_PAYLOAD_FORMAT_INDICATOR);
+                values.add(new byte[]{properties.getPayloadFormatIndicator()});
+            }
+            if (properties.getContentType() != null) {
+                ids.add(PROPERTY_CONTENT_TYPE);
+                values.add(properties.getContentType().getBytes(StandardCharsets.UTF_8));
+            }
+            if (properties.getResponseTopic() != null) {
+                ids.add(PROPERTY_RESPONSE_TOPIC);
+                values.add(properties.getResponseTopic().getBytes(StandardCharsets.UTF_8));
+            }
+            if (properties.getCorrelationData() != null) {
+                ids.add(PROPERTY_CORRELATION_DATA);
+                values.add(properties.getCorrelationData());
+            }
+            for (UserProperty userProperty : properties.getUserProperties()) {
+                byte[] key = userProperty.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[] value = userProperty.getValue().getBytes(StandardCharsets.UTF_8);
+                ids.add(PROPERTY_USER_PROPERTY);
+                values.add(ByteBuffer.allocate(2 + key.length + value.length).putShort((short) key.length).put(key).put(value).array());
+            }
+        }
+        int size = 2;
+        for (byte[] value : values) {
+            size += PROPERTY_OVERHEAD + value.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putShort((short) ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            buffer.put(ids.get(i));
+            buffer.putInt(values.get(i).length);
+            buffer.put(values.get(i));
+        }
+        return buffer.array();
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -6,6 +6,10 @@ import tech.smartboot.mqtt.plugin.spec.Message;
 public class ClusterMessage {
     private final BrokerTopic topic;
     private final Message message;
+    /**
+     * 编码后的消息属性，同一消息转发至多个节点时仅编码一次
+     */
+    private byte[] encodedProperties;
 
     public ClusterMessage(BrokerTopic topic, Message message) {
         this.topic = topic;
@@ -19,4 +23,11 @@ public class ClusterMessage {
     public Message getMessage() {
         return message;
     }
+
+    byte[] encodedProperties() {
+        if (encodedProperties == null) {
+            encodedProperties = ClusterFrame.encodeProperties(message);
+        }
+        return encodedProperties;
+    }
 }
@@ -20,6 +20,12 @@ public class ClusterPlugin extends Plugin {
 
     @Override
     protected void initPlugin(BrokerContext brokerContext) throws Throwable {
+        try {
+            storage();
+        } catch (IllegalStateException e) {
+            log("未指定插件存储目录，跳过仅通过classpath加载的集群插件");
+            return;
+        }
         log("正在初始化集群插件...");
         PluginConfig pluginConfig = loadPluginConfig(PluginConfig.class);
 
@@ -32,8 +38,13 @@ public class ClusterPlugin extends Plugin {
         //启动核心节点服务监听
         if (pluginConfig.isCore()) {
             addUsagePort(pluginConfig.getPort(), "cluster coreNode port");
-            httpServer = FeatCloud.cloudServer(cloudOptions -> cloudOptions.registerBean("plugin", this).registerBean("mqttSession", coordinator.mqttSession).registerBean("brokerContext", brokerContext).host(pluginConfig.getHost()).port(pluginConfig.getPort()).headerLimiter(1000).debug(false)).listen();
+            httpServer = FeatCloud.cloudServer(cloudOptions -> cloudOptions.registerBean("plugin", this).registerBean("coordinator", coordinator).host(pluginConfig.getHost()).port(pluginConfig.getPort()).headerLimiter(1000).debug(false)).listen();
             log("集群核心节点服务已启动，监听端口: " + pluginConfig.getPort());
+            if (coordinator.getTransportPort() > 0) {
+                addUsagePort(coordinator.getTransportPort(), "cluster transport port");
+                coordinator.startTransport();
+                log("集群二进制传输服务已启动，监听端口: " + coordinator.getTransportPort());
+            }
         } else {
             log("集群边缘节点模式启动");
         }
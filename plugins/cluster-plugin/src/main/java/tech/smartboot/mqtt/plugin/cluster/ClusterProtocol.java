@@ -0,0 +1,50 @@
+package tech.smartboot.mqtt.plugin.cluster;
+
+import io.github.smartboot.socket.Protocol;
+import io.github.smartboot.socket.transport.AioSession;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 集群二进制传输协议的解码器，超出读缓冲区的数据帧跨多次读取累积解码。
+ *
+ * @author 三刀
+ * @version v1.0 10/18/26
+ */
+class ClusterProtocol implements Protocol<ClusterFrame> {
+    private final int maxFrameSize;
+
+    ClusterProtocol(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    @Override
+    public ClusterFrame decode(ByteBuffer readBuffer, AioSession session) {
+        ClusterChannel channel = session.getAttachment();
+        ByteBuffer frame = channel.decodingFrame;
+        if (frame == null) {
+            if (readBuffer.remaining() < 4) {
+                return null;
+            }
+            int length = readBuffer.getInt();
+            if (length <= 0 || length > maxFrameSize) {
+                throw new IllegalStateException("illegal cluster frame length: " + length);
+            }
+            frame = ByteBuffer.allocate(length);
+        }
+        if (readBuffer.remaining() < frame.remaining()) {
+            frame.put(readBuffer);
+            channel.decodingFrame = frame;
+            return null;
+        }
+        int limit = readBuffer.limit();
+        readBuffer.limit(readBuffer.position() + frame.remaining());
+        frame.put(readBuffer);
+        readBuffer.limit(limit);
+        channel.decodingFrame = null;
+
+        frame.flip();
+        byte type = frame.get();
+        return new ClusterFrame(type, frame.slice());
+    }
+}
@@ -0,0 +1,140 @@
+package tech.smartboot.mqtt.plugin.cluster;
+
+import io.github.smartboot.socket.AbstractMessageProcessor;
+import io.github.smartboot.socket.StateMachineEnum;
+import io.github.smartboot.socket.transport.AioQuickClient;
+import io.github.smartboot.socket.transport.AioQuickServer;
+import io.github.smartboot.socket.transport.AioSession;
+import tech.smartboot.feat.core.common.logging.Logger;
+import tech.smartboot.feat.core.common.logging.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousChannelGroup;
+
+/**
+ * 基于 smart-socket 的集群节点间二进制传输。
+ * <p>
+ * 节点之间建立长连接，连接建立后由发起方发送HELLO帧声明自身的节点类型及access_token。同一连接双向传输：
+ * <ul>
+ *   <li>发起方发送的消息等同于 /cluster/put/core 或 /cluster/put/worker 请求</li>
+ *   <li>core节点推送至发起方的消息等同于 /cluster/subscribe 的SSE消息流</li>
+ * </ul>
+ * 传输层使用独立的线程组，接收方处理缓慢时读取随之放缓，经TCP流控反压至发送方。
+ * </p>
+ *
+ * @author 三刀
+ * @version v1.0 10/18/26
+ */
+class ClusterTransport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterTransport.class);
+    private final Coordinator coordinator;
+    private final PluginConfig pluginConfig;
+    private final int queueLength;
+    private final int maxFrameSize;
+    private final AsynchronousChannelGroup group;
+    private AioQuickServer server;
+
+    ClusterTransport(Coordinator coordinator, PluginConfig pluginConfig, int queueLength, int maxPacketSize) throws IOException {
+        this.coordinator = coordinator;
+        this.pluginConfig = pluginConfig;
+        this.queueLength = queueLength;
+        //单条消息不会被拆分，数据帧最大为批量字节数与单条消息之和
+        this.maxFrameSize = pluginConfig.getBatchBytes() + maxPacketSize + ClusterFrame.HEADER_SIZE;
+        this.group = AsynchronousChannelGroup.withFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors() / 2), r -> new Thread(r, "cluster-plugin-transport"));
+    }
+
+    /**
+     * 启动core节点的传输服务
+     */
+    void start(String host, int port) throws IOException {
+        server = new AioQuickServer(host, port, new ClusterProtocol(maxFrameSize), new FrameProcessor(true));
+        server.setBannerEnabled(false).setReadBufferSize(pluginConfig.getBatchBytes() + ClusterFrame.HEADER_SIZE);
+        server.start(group);
+    }
+
+    /**
+     * 连接core节点并声明当前节点的身份
+     */
+    ClusterChannel connect(String host, int port, String accessToken, boolean core) throws IOException {
+        AioQuickClient client = new AioQuickClient(host, port, new ClusterProtocol(maxFrameSize), new FrameProcessor(false));
+        client.setReadBufferSize(pluginConfig.getBatchBytes() + ClusterFrame.HEADER_SIZE).connectTimeout(5000);
+        AioSession session = client.start(group);
+        ClusterChannel channel = session.getAttachment();
+        channel.writeHello(accessToken, core);
+        return channel;
+    }
+
+    void shutdown() {
+        if (server != null) {
+            server.shutdown();
+            server = null;
+        }
+        group.shutdown();
+    }
+
+    private class FrameProcessor extends AbstractMessageProcessor<ClusterFrame> {
+        private final boolean accepted;
+
+        FrameProcessor(boolean accepted) {
+            this.accepted = accepted;
+        }
+
+        @Override
+        public void process0(AioSession session, ClusterFrame frame) {
+            ClusterChannel channel = session.getAttachment();
+            switch (frame.getType()) {
+                case ClusterFrame.TYPE_HELLO:
+                    if (!accepted) {
+                        throw new IllegalStateException("unexpected hello frame");
+                    }
+                    channel.setAccessToken(frame.getAccessToken());
+                    channel.setCore(frame.isCoreNode());
+                    coordinator.registerNode(channel.getAccessToken(), channel.isCore(), channel);
+                    break;
+                case ClusterFrame.TYPE_MESSAGES:
+                    if (accepted) {
+                        frame.forEachMessage((topic, message) -> coordinator.onNodeMessage(channel.getAccessToken(), channel.isCore(), topic, message));
+                    } else {
+                        frame.forEachMessage(coordinator::onClusterMessage);
+                    }
+                    break;
+                case ClusterFrame.TYPE_DIGEST:
+                    if (accepted) {
+                        coordinator.updateDigest(channel.getAccessToken(), channel.isCore(), frame.getDigest());
+                    } else {
+                        channel.setDigest(coordinator.decodeDigest(frame.getDigest()));
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("unknown cluster frame type: " + frame.getType());
+            }
+        }
+
+        @Override
+        public void stateEvent0(AioSession session, StateMachineEnum stateMachineEnum, Throwable throwable) {
+            switch (stateMachineEnum) {
+                case NEW_SESSION: {
+                    ClusterChannel channel = new ClusterChannel(session, pluginConfig, queueLength, accepted);
+                    session.setAttachment(channel);
+                    channel.start();
+                    break;
+                }
+                case SESSION_CLOSED: {
+                    ClusterChannel channel = session.getAttachment();
+                    channel.close();
+                    if (accepted && channel.getAccessToken() != null) {
+                        coordinator.unregisterNode(channel.getAccessToken(), channel);
+                    }
+                    break;
+                }
+                case PROCESS_EXCEPTION:
+                case DECODE_EXCEPTION:
+                    LOGGER.error("cluster transport exception", throwable);
+                    session.close();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package tech.smartboot.mqtt.plugin.cluster;
 import tech.smartboot.feat.core.client.HttpClient;
 import tech.smartboot.feat.core.client.HttpResponse;
 import tech.smartboot.feat.core.common.FeatUtils;
+import tech.smartboot.feat.core.common.HttpStatus;
 import tech.smartboot.feat.core.common.logging.Logger;
 import tech.smartboot.feat.core.common.logging.LoggerFactory;
 import tech.smartboot.mqtt.common.AsyncTask;
@@ -14,17 +15,25 @@ import tech.smartboot.mqtt.plugin.spec.MqttSession;
 import tech.smartboot.mqtt.plugin.spec.bus.MessageBusConsumer;
 
 import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 class Coordinator extends AsyncTask {
     private static final Logger LOGGER = LoggerFactory.getLogger(Coordinator.class);
     private static final ClusterMessage SHUTDOWN_MESSAGE = new ClusterMessage(null, null);
-    private static final String ACCESS_TOKEN = UUID.randomUUID().toString();
-    private static final int QUEUE_POLICY_DISCARD_NEWEST = 0;
-    private static final int QUEUE_POLICY_DISCARD_OLDEST = 1;
+    static final int QUEUE_POLICY_DISCARD_NEWEST = 0;
+    static final int QUEUE_POLICY_DISCARD_OLDEST = 1;
+    private static final String TRANSPORT_HTTP = "http";
+    /**
+     * 当前节点的身份标识，同一JVM内启动多个节点时互不相同
+     */
+    private final String accessToken = UUID.randomUUID().toString();
     private final PluginConfig pluginConfig;
     private final BrokerContext brokerContext;
     private final List<ClusterClient> clients = new ArrayList<>();
@@ -39,7 +48,28 @@ class Coordinator extends AsyncTask {
     private boolean enabled = true;
     private final int queueLength;
 
-    public Coordinator(PluginConfig pluginConfig, BrokerContext brokerContext) {
+    /**
+     * 通过SSE订阅当前节点的其他节点所上报的订阅摘要，key为节点的access_token
+     */
+    private final Map<String, SubscriptionDigest> workerDigests = new ConcurrentHashMap<>();
+    private final Map<String, SubscriptionDigest> coreDigests = new ConcurrentHashMap<>();
+    /**
+     * 当前节点对外的订阅摘要，core节点还包含其下worker节点的订阅。
+     * 初始为匹配所有主题，未开启订阅路由时其他节点依旧转发所有消息
+     */
+    private volatile LocalDigest localDigest = new LocalDigest(0, SubscriptionDigest.MATCH_ALL.encode());
+
+    /**
+     * 连接至当前core节点的其他节点，key为节点的access_token
+     */
+    private final Map<String, NodeEmitter> coreNodes = new ConcurrentHashMap<>();
+    private final Map<String, NodeEmitter> workerNodes = new ConcurrentHashMap<>();
+    /**
+     * 二进制传输，使用HTTP传输时为null
+     */
+    private final ClusterTransport transport;
+
+    public Coordinator(PluginConfig pluginConfig, BrokerContext brokerContext) throws IOException {
         this.pluginConfig = pluginConfig;
         this.brokerContext = brokerContext;
 
@@ -53,6 +83,25 @@ class Coordinator extends AsyncTask {
         this.queueLength = length;
         distributor = new Distributor();
         receiver = new Receiver();
+        if (TRANSPORT_HTTP.equals(pluginConfig.getTransport())) {
+            transport = null;
+        } else {
+            transport = new ClusterTransport(this, pluginConfig, length, brokerContext.Options().getMaxPacketSize());
+        }
+    }
+
+    /**
+     * 二进制传输的服务端口，使用HTTP传输时返回0
+     */
+    int getTransportPort() {
+        if (transport == null) {
+            return 0;
+        }
+        return pluginConfig.getTransportPort() > 0 ? pluginConfig.getTransportPort() : pluginConfig.getPort() + 1;
+    }
+
+    void startTransport() throws IOException {
+        transport.start(pluginConfig.getHost(), getTransportPort());
     }
 
 
@@ -72,6 +121,16 @@ class Coordinator extends AsyncTask {
             } catch (InterruptedException e) {
                 throw new RuntimeException(e);
             }
+            if (pluginConfig.isSubscriptionRouting()) {
+                refreshDigest();
+                //通过二进制传输连接至当前节点的core节点，由当前节点推送订阅摘要
+                LocalDigest digest = localDigest;
+                coreNodes.values().forEach(emitter -> {
+                    if (emitter instanceof ClusterChannel) {
+                        ((ClusterChannel) emitter).reportDigest(digest);
+                    }
+                });
+            }
             clients.forEach(clusterClient -> {
                 if (clusterClient.checkPending) {
                     LOGGER.info("check pending message for {}", clusterClient.baseURL);
@@ -80,14 +139,24 @@ class Coordinator extends AsyncTask {
                 if (clusterClient.httpEnable) {
                     if (pluginConfig.isCore()) {
                         // core节点需要同集群各core节点进行数据同步
-                        receiver.receiveClusterMessage(clusterClient);
+                        subscribe(clusterClient);
                     } else if (workerClient == null) {
                         workerClient = clusterClient;
-                        receiver.receiveClusterMessage(clusterClient);
-                    } else if (!workerClient.sseEnable) { // 释放workerClient，重新分配
-                        workerClient.sseClient.close();
+                        subscribe(clusterClient);
+                    } else if (!workerClient.isSubscribed()) { // 释放workerClient，重新分配
+                        workerClient.unsubscribe();
                         workerClient = null;
                     }
+                    if (pluginConfig.isSubscriptionRouting() && clusterClient.isSubscribed()) {
+                        if (clusterClient.channel != null) {
+                            clusterClient.channel.reportDigest(localDigest);
+                        } else {
+                            reportDigest(clusterClient);
+                            if (pluginConfig.isCore()) {
+                                pullDigest(clusterClient);
+                            }
+                        }
+                    }
                     return;
                 }
                 //release old client
@@ -100,9 +169,21 @@ class Coordinator extends AsyncTask {
                 clusterClient.checkPending = true;
                 clusterClient.httpClient.get("/cluster/status").onSuccess(httpResponse -> {
                     LOGGER.info("check node status success.");
-                    clusterClient.httpEnable = true;
-                    clusterClient.checkPending = false;
-
+                    if (transport == null) {
+                        clusterClient.transportPort = -1;
+                        clusterClient.httpEnable = true;
+                        clusterClient.checkPending = false;
+                        return;
+                    }
+                    //获取二进制传输端口，不支持二进制传输的节点依旧使用HTTP传输
+                    clusterClient.httpClient.get("/cluster/transport").onSuccess(response -> {
+                        clusterClient.transportPort = response.statusCode() == HttpStatus.OK.value() ? Integer.parseInt(response.body().trim()) : -1;
+                        clusterClient.httpEnable = true;
+                        clusterClient.checkPending = false;
+                    }).onFailure(throwable -> {
+                        clusterClient.checkPending = false;
+                        LOGGER.error("check node transport error", throwable);
+                    }).submit();
                 }).onFailure(throwable -> {
                     clusterClient.httpEnable = false;
                     clusterClient.checkPending = false;
@@ -112,6 +193,9 @@ class Coordinator extends AsyncTask {
         }
         //中断集群数据监听
         clients.forEach(clusterClient -> {
+            if (clusterClient.channel != null) {
+                clusterClient.channel.complete();
+            }
             if (clusterClient.sseClient != null) {
                 clusterClient.sseEnable = false;
                 clusterClient.sseClient.close();
@@ -124,20 +208,217 @@ class Coordinator extends AsyncTask {
         LOGGER.info("coordinator stopped.");
     }
 
+    /**
+     * 订阅core节点推送的消息，支持二进制传输时建立长连接，否则通过SSE订阅
+     */
+    private void subscribe(ClusterClient clusterClient) {
+        if (clusterClient.transportPort < 0) {
+            receiver.receiveClusterMessage(clusterClient);
+            return;
+        }
+        if (clusterClient.channel != null && !clusterClient.channel.isClosed()) {
+            return;
+        }
+        try {
+            clusterClient.channel = transport.connect(URI.create(clusterClient.baseURL).getHost(), clusterClient.transportPort, accessToken, pluginConfig.isCore());
+            LOGGER.info("cluster transport connected: {}", clusterClient.baseURL);
+        } catch (IOException e) {
+            clusterClient.channel = null;
+            //重新检测节点状态及传输端口
+            clusterClient.httpEnable = false;
+            LOGGER.error("connect cluster transport error", e);
+        }
+    }
+
+    /**
+     * 重新生成当前节点的订阅摘要，内容变化时更新版本号
+     */
+    private void refreshDigest() {
+        SubscriptionDigest digest = new SubscriptionDigest(pluginConfig.getDigestDepth(), pluginConfig.getDigestMaxFilters());
+        brokerContext.forEachTopicFilter(digest::add);
+        //core节点需转发消息至其下的worker节点
+        if (pluginConfig.isCore()) {
+            workerDigests.values().forEach(digest::addAll);
+        }
+        String encoded = digest.encode();
+        LocalDigest current = localDigest;
+        if (!encoded.equals(current.encoded)) {
+            //以时间戳作为起始版本，避免节点重启后版本号与其他节点缓存的版本一致
+            localDigest = new LocalDigest(Math.max(current.version + 1, System.currentTimeMillis()), encoded);
+        }
+    }
+
+    /**
+     * 将订阅摘要上报至当前节点通过SSE订阅的节点，由其决定推送给当前节点的消息
+     */
+    private void reportDigest(ClusterClient clusterClient) {
+        LocalDigest digest = localDigest;
+        if (!clusterClient.sseEnable || clusterClient.reportedVersion == digest.version) {
+            return;
+        }
+        clusterClient.reportedVersion = digest.version;
+        byte[] bytes = digest.encoded.getBytes(StandardCharsets.UTF_8);
+        clusterClient.httpClient.post("/cluster/digest/" + (pluginConfig.isCore() ? "core/" : "worker/") + accessToken).header(header -> header.keepalive(true).set("access_token", accessToken).setContentLength(bytes.length)).body(requestBody -> requestBody.write(bytes)).onFailure(throwable -> {
+            clusterClient.reportedVersion = -1;
+            LOGGER.error("report subscription digest error", throwable);
+        }).submit();
+    }
+
+    /**
+     * 拉取其他core节点的订阅摘要，用于过滤分发至该节点的消息
+     */
+    private void pullDigest(ClusterClient clusterClient) {
+        if (clusterClient.digestPending) {
+            return;
+        }
+        clusterClient.digestPending = true;
+        clusterClient.httpClient.get("/cluster/digest").header(header -> header.keepalive(true).set(ClusterController.HEADER_DIGEST_VERSION, String.valueOf(clusterClient.digestVersion))).onSuccess(httpResponse -> {
+            clusterClient.digestPending = false;
+            //未变化时响应304，不支持订阅摘要的节点维持原状
+            if (httpResponse.statusCode() != HttpStatus.OK.value()) {
+                return;
+            }
+            String body = httpResponse.body();
+            int index = body.indexOf('\n');
+            clusterClient.digest = decodeDigest(body.substring(index + 1));
+            clusterClient.digestVersion = Long.parseLong(body.substring(0, index));
+        }).onFailure(throwable -> {
+            clusterClient.digestPending = false;
+            clusterClient.digest = SubscriptionDigest.MATCH_ALL;
+            clusterClient.digestVersion = 0;
+            LOGGER.error("pull subscription digest error", throwable);
+        }).submit();
+    }
+
+    SubscriptionDigest decodeDigest(String encoded) {
+        return SubscriptionDigest.decode(encoded, pluginConfig.getDigestDepth(), pluginConfig.getDigestMaxFilters());
+    }
+
+    LocalDigest getLocalDigest() {
+        return localDigest;
+    }
+
+    void updateDigest(String accessToken, boolean core, String encoded) {
+        (core ? coreDigests : workerDigests).put(accessToken, decodeDigest(encoded));
+    }
+
+    void removeDigest(String accessToken) {
+        coreDigests.remove(accessToken);
+        workerDigests.remove(accessToken);
+    }
+
+    /**
+     * 注册连接至当前core节点的节点，同一节点重连时关闭旧的连接
+     */
+    void registerNode(String accessToken, boolean core, NodeEmitter emitter) {
+        LOGGER.info("接收来自{}节点的连接:{}", core ? "core" : "worker", accessToken);
+        NodeEmitter old = (core ? coreNodes : workerNodes).put(accessToken, emitter);
+        if (old != null && old != emitter) {
+            LOGGER.info("移除旧节点:{}", old.getAccessToken());
+            old.complete();
+        }
+    }
+
+    void unregisterNode(String accessToken, NodeEmitter emitter) {
+        //避免将重连上来的节点踢下线
+        coreNodes.remove(accessToken, emitter);
+        workerNodes.remove(accessToken, emitter);
+        if (!coreNodes.containsKey(accessToken) && !workerNodes.containsKey(accessToken)) {
+            removeDigest(accessToken);
+        }
+        LOGGER.info("移除节点:{}", accessToken);
+    }
+
+    /**
+     * 接收到其他节点发送至当前core节点的消息。
+     * worker节点的消息需推送给集群各core节点和其他worker节点，core节点的消息只推送给worker节点
+     */
+    void onNodeMessage(String accessToken, boolean core, String topic, Message message) {
+        ClusterMessage clusterMessage = new ClusterMessage(brokerContext.getOrCreateTopic(topic), message);
+        if (!core) {
+            coreNodes.forEach((token, emitter) -> {
+                if (isRouted(token, true, topic, message)) {
+                    emitter.send(clusterMessage);
+                }
+            });
+        }
+        workerNodes.forEach((token, emitter) -> {
+            if (!token.equals(accessToken) && isRouted(token, false, topic, message)) {
+                emitter.send(clusterMessage);
+            }
+        });
+        //推送给自己
+        brokerContext.getMessageBus().publish(mqttSession, clusterMessage.getTopic(), message);
+    }
+
+    /**
+     * 推送消息至连接当前core节点的worker节点
+     */
+    void forwardToWorkers(ClusterMessage message) {
+        if (workerNodes.isEmpty()) {
+            LOGGER.debug("no worker node online");
+            return;
+        }
+        String topic = message.getTopic().getTopic();
+        workerNodes.forEach((token, emitter) -> {
+            if (isRouted(token, false, topic, message.getMessage())) {
+                emitter.send(message);
+            }
+        });
+    }
+
+    /**
+     * 接收到core节点通过二进制传输推送的消息
+     */
+    void onClusterMessage(String topic, Message message) {
+        if (!enabled) {
+            LOGGER.warn("cluster-plugin-consume-message-error");
+            return;
+        }
+        offer(new ClusterMessage(brokerContext.getOrCreateTopic(topic), message), receiver.receiverQueue);
+    }
+
+    /**
+     * 判断消息是否需要转发至连接当前core节点的指定节点，未上报订阅摘要的节点转发所有消息
+     */
+    boolean isRouted(String accessToken, boolean core, String topic, Message message) {
+        return isRouted((core ? coreDigests : workerDigests).getOrDefault(accessToken, SubscriptionDigest.MATCH_ALL), topic, message);
+    }
+
+    /**
+     * 保留消息始终转发，确保各节点的保留消息一致
+     */
+    private static boolean isRouted(SubscriptionDigest digest, String topic, Message message) {
+        return message.isRetained() || digest.match(topic);
+    }
+
+    /**
+     * 调用方为IO线程或消息总线线程，不可阻塞，队列已满时直接执行丢弃策略
+     */
     private void offer(ClusterMessage message, ArrayBlockingQueue<ClusterMessage> clusterMessageQueue) {
-        if (pluginConfig.getQueueDiscardPolicy() == QUEUE_POLICY_DISCARD_NEWEST) {
+        offer(message, clusterMessageQueue, pluginConfig.getQueueDiscardPolicy());
+    }
+
+    /**
+     * 非阻塞地将消息放入队列，队列已满时按丢弃策略丢弃最新或最早的消息
+     *
+     * @return 当前消息被丢弃时返回false
+     */
+    static boolean offer(ClusterMessage message, ArrayBlockingQueue<ClusterMessage> clusterMessageQueue, int discardPolicy) {
+        if (discardPolicy == QUEUE_POLICY_DISCARD_NEWEST) {
             boolean suc = clusterMessageQueue.offer(message);
             if (!suc) {
                 LOGGER.warn("queue is full, discard message: {}", message);
             }
-        } else {
-            while (!clusterMessageQueue.offer(message)) {
-                ClusterMessage discard = clusterMessageQueue.poll();
-                if (discard != null) {
-                    LOGGER.warn("queue is full, discard message: {}", discard);
-                }
+            return suc;
+        }
+        while (!clusterMessageQueue.offer(message)) {
+            ClusterMessage discard = clusterMessageQueue.poll();
+            if (discard != null) {
+                LOGGER.warn("queue is full, discard message: {}", discard);
             }
         }
+        return true;
     }
 
     public void destroy() {
@@ -149,6 +430,11 @@ class Coordinator extends AsyncTask {
         if (distributor != null) {
             distributor.destroy();
         }
+        coreNodes.values().forEach(NodeEmitter::complete);
+        workerNodes.values().forEach(NodeEmitter::complete);
+        if (transport != null) {
+            transport.shutdown();
+        }
     }
 
     class Receiver implements Runnable {
@@ -189,10 +475,12 @@ class Coordinator extends AsyncTask {
                 clusterClient.sseClient = null;
             }
             clusterClient.sseEnable = true;
+            //重新订阅后需再次上报订阅摘要
+            clusterClient.reportedVersion = -1;
             clusterClient.sseClient = new HttpClient(clusterClient.baseURL);
             clusterClient.sseClient.options().debug(false).group(brokerContext.Options().getChannelGroup());
             //订阅集群推送过来的消息，并投递至总线
-            clusterClient.sseClient.post(pluginConfig.isCore() ? "/cluster/subscribe/core/" + ACCESS_TOKEN : "/cluster/subscribe/worker/" + ACCESS_TOKEN).onResponseBody(new ClusterMessageStream() {
+            clusterClient.sseClient.post(pluginConfig.isCore() ? "/cluster/subscribe/core/" + accessToken : "/cluster/subscribe/worker/" + accessToken).onResponseBody(new ClusterMessageStream() {
                 @Override
                 public void stream(HttpResponse response, byte[] bytes, boolean end) throws IOException {
                     if (end) {
@@ -268,10 +556,18 @@ class Coordinator extends AsyncTask {
                         final ClusterMessage message = nextMessage;
                         if (pluginConfig.isCore()) {
                             for (ClusterClient clusterClient : clients) {
-                                if (clusterClient.httpEnable) {
+                                //目标节点不存在匹配的订阅
+                                if (!isRouted(clusterClient.digest(), message.getTopic().getTopic(), message.getMessage())) {
+                                    continue;
+                                }
+                                ClusterChannel channel = clusterClient.channel;
+                                if (channel != null && !channel.isClosed()) {
+                                    //分发线程由插件独占，允许阻塞等待以反压
+                                    channel.send(message, true);
+                                } else if (clusterClient.httpEnable && clusterClient.transportPort < 0) {
                                     LOGGER.debug("send message to cluster");
                                     //core节点分发消息至集群其他core节点
-                                    clusterClient.httpClient.post("/cluster/put/core").header(header -> header.keepalive(true).set("access_token", ACCESS_TOKEN).setContentLength(message.getMessage().getPayload().length).set(ClusterController.HEADER_TOPIC, message.getTopic().getTopic())).body(requestBody -> requestBody.write(message.getMessage().getPayload())).onFailure(throwable -> {
+                                    clusterClient.httpClient.post("/cluster/put/core").header(header -> header.keepalive(true).set("access_token", accessToken).setContentLength(message.getMessage().getPayload().length).set(ClusterController.HEADER_TOPIC, message.getTopic().getTopic())).body(requestBody -> requestBody.write(message.getMessage().getPayload())).onFailure(throwable -> {
                                         clusterClient.httpEnable = false;
                                         LOGGER.error("send message to cluster error", throwable);
                                     }).onSuccess(httpResponse -> {
@@ -283,8 +579,10 @@ class Coordinator extends AsyncTask {
                             }
                             //当客户端直接将消息发送给core节点，需要分发给相连的worker节点
                             brokerContext.getEventBus().publish(ClusterPlugin.CLIENT_DIRECT_TO_CORE_BROKER, message);
+                        } else if (workerClient != null && workerClient.channel != null) {
+                            workerClient.channel.send(message, true);
                         } else if (workerClient != null) {
-                            workerClient.httpClient.post("/cluster/put/worker").header(header -> header.keepalive(true).set("access_token", ACCESS_TOKEN).setContentLength(message.getMessage().getPayload().length).set(ClusterController.HEADER_TOPIC, message.getTopic().getTopic())).body(requestBody -> requestBody.write(message.getMessage().getPayload())).onFailure(throwable -> {
+                            workerClient.httpClient.post("/cluster/put/worker").header(header -> header.keepalive(true).set("access_token", accessToken).setContentLength(message.getMessage().getPayload().length).set(ClusterController.HEADER_TOPIC, message.getTopic().getTopic())).body(requestBody -> requestBody.write(message.getMessage().getPayload())).onFailure(throwable -> {
                                 workerClient.httpEnable = false;
                                 LOGGER.error("send message to cluster error", throwable);
                             }).submit();
@@ -307,6 +605,16 @@ class Coordinator extends AsyncTask {
         }
     }
 
+    static class LocalDigest {
+        final long version;
+        final String encoded;
+
+        LocalDigest(long version, String encoded) {
+            this.version = version;
+            this.encoded = encoded;
+        }
+    }
+
     static class ClusterClient {
         HttpClient sseClient;
 
@@ -318,8 +626,45 @@ class Coordinator extends AsyncTask {
         boolean checkPending = false;
         final String baseURL;
 
+        /**
+         * 该节点的订阅摘要，仅core节点之间拉取
+         */
+        volatile SubscriptionDigest digest = SubscriptionDigest.MATCH_ALL;
+        long digestVersion;
+        boolean digestPending;
+        /**
+         * 已上报至该节点的订阅摘要版本
+         */
+        long reportedVersion = -1;
+
+        /**
+         * 二进制传输端口，0：未知，-1：不支持二进制传输
+         */
+        int transportPort;
+        volatile ClusterChannel channel;
+
         public ClusterClient(String url) {
             this.baseURL = url;
         }
+
+        SubscriptionDigest digest() {
+            ClusterChannel c = channel;
+            return c != null ? c.getDigest() : digest;
+        }
+
+        boolean isSubscribed() {
+            ClusterChannel c = channel;
+            return c != null ? !c.isClosed() : sseEnable;
+        }
+
+        void unsubscribe() {
+            if (channel != null) {
+                channel.complete();
+                channel = null;
+            }
+            if (sseClient != null) {
+                sseClient.close();
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package tech.smartboot.mqtt.plugin.cluster;
+
+/**
+ * 推送消息至已连接节点的通道，由SSE或二进制传输实现
+ *
+ * @author 三刀
+ * @version v1.0 10/18/26
+ */
+interface NodeEmitter {
+    /**
+     * 推送消息，不阻塞调用方
+     *
+     * @return 通道拥塞导致消息被丢弃时返回false
+     */
+    boolean send(ClusterMessage message);
+
+    String getAccessToken();
+
+    void complete();
+}
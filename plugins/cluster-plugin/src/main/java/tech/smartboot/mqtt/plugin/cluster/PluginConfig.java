@@ -19,6 +19,40 @@ public class PluginConfig {
      * 批量分发配置
      */
     private int batchSize = 50;           // 每批最多消息数
+    /**
+     * 每批最大字节数，超出后立即发送
+     */
+    private int batchBytes = 64 * 1024;
+    /**
+     * 未达到批量上限时等待更多消息的时长（毫秒），0表示仅合并已积压的消息
+     */
+    private int lingerMs;
+
+    /**
+     * 节点间传输方式：binary（二进制长连接）、http
+     */
+    private String transport = "binary";
+    /**
+     * 二进制传输服务端口，仅当core为true时有效，默认为port + 1
+     */
+    private int transportPort;
+    /**
+     * 队列已满时等待的时长（毫秒），超时后执行丢弃策略
+     */
+    private int backpressureTimeout = 200;
+
+    /**
+     * 按订阅关系路由，仅将消息转发至存在匹配订阅的节点
+     */
+    private boolean subscriptionRouting = true;
+    /**
+     * 订阅摘要保留的最大主题层级，超出部分按"#"处理
+     */
+    private int digestDepth = 8;
+    /**
+     * 订阅摘要的最大主题过滤器数量，超出后退化为转发所有消息
+     */
+    private int digestMaxFilters = 10000;
 
     private List<String> clusters;
 
@@ -78,4 +112,67 @@ public class PluginConfig {
         this.batchSize = batchSize;
     }
 
+    public boolean isSubscriptionRouting() {
+        return subscriptionRouting;
+    }
+
+    public void setSubscriptionRouting(boolean subscriptionRouting) {
+        this.subscriptionRouting = subscriptionRouting;
+    }
+
+    public int getDigestDepth() {
+        return digestDepth;
+    }
+
+    public void setDigestDepth(int digestDepth) {
+        this.digestDepth = digestDepth;
+    }
+
+    public int getDigestMaxFilters() {
+        return digestMaxFilters;
+    }
+
+    public void setDigestMaxFilters(int digestMaxFilters) {
+        this.digestMaxFilters = digestMaxFilters;
+    }
+
+    public int getBatchBytes() {
+        return batchBytes;
+    }
+
+    public void setBatchBytes(int batchBytes) {
+        this.batchBytes = batchBytes;
+    }
+
+    public int getLingerMs() {
+        return lingerMs;
+    }
+
+    public void setLingerMs(int lingerMs) {
+        this.lingerMs = lingerMs;
+    }
+
+    public String getTransport() {
+        return transport;
+    }
+
+    public void setTransport(String transport) {
+        this.transport = transport;
+    }
+
+    public int getTransportPort() {
+        return transportPort;
+    }
+
+    public void setTransportPort(int transportPort) {
+        this.transportPort = transportPort;
+    }
+
+    public int getBackpressureTimeout() {
+        return backpressureTimeout;
+    }
+
+    public void setBackpressureTimeout(int backpressureTimeout) {
+        this.backpressureTimeout = backpressureTimeout;
+    }
 }
@@ -0,0 +1,175 @@
+package tech.smartboot.mqtt.plugin.cluster;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 节点订阅摘要，以前缀树的形式记录节点客户端所订阅的主题过滤器，用于判断消息是否需要转发至该节点。
+ * <p>
+ * 为控制摘要体积，超出最大层级的过滤器会被截断为"#"，过滤器数量超出上限时退化为匹配所有主题。
+ * 截断只会放宽匹配范围，不会导致存在订阅者的节点漏收消息。
+ * </p>
+ * <p>
+ * 摘要构建完成后不再修改，可在多线程间共享。
+ * </p>
+ *
+ * @author 三刀
+ * @version v1.0 10/18/26
+ */
+class SubscriptionDigest {
+    /**
+     * 匹配所有主题，用于尚未获取到摘要或不支持摘要的节点
+     */
+    static final SubscriptionDigest MATCH_ALL = new SubscriptionDigest(0, 0);
+    private static final String SHARE_PREFIX = "$share/";
+    private static final String WILDCARD_HASH = "#";
+    private static final String WILDCARD_PLUS = "+";
+    /**
+     * 编码时各主题过滤器之间的分隔符，MQTT主题中不允许出现该字符
+     */
+    private static final char SEPARATOR = '\0';
+
+    private final Node root = new Node();
+    private final int maxDepth;
+    private final int maxFilters;
+    private int size;
+
+    static {
+        MATCH_ALL.root.hash = true;
+    }
+
+    SubscriptionDigest(int maxDepth, int maxFilters) {
+        this.maxDepth = maxDepth;
+        this.maxFilters = maxFilters;
+    }
+
+    /**
+     * 添加主题过滤器，共享订阅按其实际的主题过滤器记录
+     */
+    void add(String topicFilter) {
+        if (root.hash) {
+            return;
+        }
+        if (topicFilter.startsWith(SHARE_PREFIX)) {
+            int index = topicFilter.indexOf('/', SHARE_PREFIX.length());
+            if (index < 0) {
+                return;
+            }
+            topicFilter = topicFilter.substring(index + 1);
+        }
+        Node node = root;
+        int begin = 0;
+        int depth = 0;
+        while (true) {
+            //已被上层的"#"覆盖
+            if (node.hash) {
+                return;
+            }
+            int end = topicFilter.indexOf('/', begin);
+            String level = end < 0 ? topicFilter.substring(begin) : topicFilter.substring(begin, end);
+            if (depth++ == maxDepth || WILDCARD_HASH.equals(level)) {
+                node.hash = true;
+                node.children = Collections.emptyMap();
+                break;
+            }
+            if (node.children.isEmpty()) {
+                node.children = new HashMap<>();
+            }
+            node = node.children.computeIfAbsent(level, l -> new Node());
+            if (end < 0) {
+                if (node.end) {
+                    return;
+                }
+                node.end = true;
+                break;
+            }
+            begin = end + 1;
+        }
+        if (++size > maxFilters) {
+            root.hash = true;
+            root.children = Collections.emptyMap();
+        }
+    }
+
+    /**
+     * 判断该节点是否存在可能匹配该主题的订阅
+     */
+    boolean match(String topic) {
+        return match(root, topic, 0);
+    }
+
+    private static boolean match(Node node, String topic, int begin) {
+        if (node.hash) {
+            return true;
+        }
+        if (node.children.isEmpty()) {
+            return false;
+        }
+        int end = topic.indexOf('/', begin);
+        Node child = node.children.get(end < 0 ? topic.substring(begin) : topic.substring(begin, end));
+        if (child != null && (end < 0 ? child.end || child.hash : match(child, topic, end + 1))) {
+            return true;
+        }
+        child = node.children.get(WILDCARD_PLUS);
+        return child != null && (end < 0 ? child.end || child.hash : match(child, topic, end + 1));
+    }
+
+    /**
+     * 合并其他节点的摘要
+     */
+    void addAll(SubscriptionDigest digest) {
+        digest.root.forEach(null, this::add);
+    }
+
+    String encode() {
+        StringBuilder sb = new StringBuilder();
+        root.forEach(null, topicFilter -> {
+            if (sb.length() > 0) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(topicFilter);
+        });
+        return sb.toString();
+    }
+
+    static SubscriptionDigest decode(String encoded, int maxDepth, int maxFilters) {
+        SubscriptionDigest digest = new SubscriptionDigest(maxDepth, maxFilters);
+        int begin = 0;
+        while (begin < encoded.length()) {
+            int end = encoded.indexOf(SEPARATOR, begin);
+            if (end < 0) {
+                end = encoded.length();
+            }
+            if (end > begin) {
+                digest.add(encoded.substring(begin, end));
+            }
+            begin = end + 1;
+        }
+        return digest;
+    }
+
+    private static class Node {
+        private Map<String, Node> children = Collections.emptyMap();
+        /**
+         * 存在以该层级结尾的主题过滤器
+         */
+        private boolean end;
+        /**
+         * 存在"#"通配符，该层级及其所有子层级均可匹配
+         */
+        private boolean hash;
+
+        void forEach(String prefix, Consumer<String> consumer) {
+            if (hash) {
+                consumer.accept(prefix == null ? WILDCARD_HASH : prefix + '/' + WILDCARD_HASH);
+                return;
+            }
+            if (end) {
+                consumer.accept(prefix);
+            }
+            children.forEach((level, node) -> node.forEach(prefix == null ? level : prefix + '/' + level, consumer));
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package tech.smartboot.mqtt.plugin.cluster;
+
+import io.github.smartboot.socket.transport.AioSession;
+import io.github.smartboot.socket.transport.WriteBuffer;
+import org.junit.jupiter.api.Test;
+import tech.smartboot.mqtt.common.TopicToken;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.plugin.spec.BrokerTopic;
+import tech.smartboot.mqtt.plugin.spec.Message;
+import tech.smartboot.mqtt.plugin.spec.MessageQueue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterChannelTest {
+    private static final long WAIT_MILLIS = 5000;
+
+    @Test
+    void shouldDecodeFramesSplitAcrossReads() throws Exception {
+        CaptureSession session = new CaptureSession();
+        ClusterChannel channel = new ClusterChannel(session, newConfig(Coordinator.QUEUE_POLICY_DISCARD_NEWEST), 16, false);
+        channel.writeHello("token", true);
+        channel.start();
+        try {
+            assertTrue(channel.send(newMessage("a/b", "hello", false)));
+            assertTrue(channel.send(newMessage("c", "", true)));
+
+            List<ClusterFrame> frames = new ArrayList<>();
+            long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+            //逐个字节喂给解码器，覆盖跨多次读取累积数据帧的情况
+            while (countMessages(frames) < 2 && System.currentTimeMillis() < deadline) {
+                frames = decode(session.toByteArray(), 1);
+                Thread.sleep(10);
+            }
+            assertEquals(ClusterFrame.TYPE_HELLO, frames.get(0).getType());
+            assertTrue(frames.get(0).isCoreNode());
+            assertEquals("token", frames.get(0).getAccessToken());
+
+            List<String> received = new ArrayList<>();
+            for (ClusterFrame frame : frames.subList(1, frames.size())) {
+                assertEquals(ClusterFrame.TYPE_MESSAGES, frame.getType());
+                frame.forEachMessage((topic, message) -> received.add(topic + ":" + new String(message.getPayload(), StandardCharsets.UTF_8) + ":" + message.getQos() + ":" + message.isRetained()));
+            }
+            List<String> expected = new ArrayList<>();
+            expected.add("a/b:hello:AT_LEAST_ONCE:false");
+            expected.add("c::AT_LEAST_ONCE:true");
+            assertEquals(expected, received);
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Test
+    void shouldDiscardNewestWithoutBlocking() {
+        PluginConfig config = newConfig(Coordinator.QUEUE_POLICY_DISCARD_NEWEST);
+        ClusterChannel channel = new ClusterChannel(new CaptureSession(), config, 2, false);
+        assertTrue(channel.send(newMessage("t", "1", false)));
+        assertTrue(channel.send(newMessage("t", "2", false)));
+
+        long start = System.currentTimeMillis();
+        assertFalse(channel.send(newMessage("t", "3", false)));
+        assertTrue(System.currentTimeMillis() - start < config.getBackpressureTimeout(), "non-blocking send should not wait for backpressure timeout");
+        channel.close();
+    }
+
+    @Test
+    void shouldBlockUntilBackpressureTimeout() {
+        PluginConfig config = newConfig(Coordinator.QUEUE_POLICY_DISCARD_NEWEST);
+        ClusterChannel channel = new ClusterChannel(new CaptureSession(), config, 1, false);
+        assertTrue(channel.send(newMessage("t", "1", false), true));
+
+        long start = System.currentTimeMillis();
+        assertFalse(channel.send(newMessage("t", "2", false), true));
+        assertTrue(System.currentTimeMillis() - start >= config.getBackpressureTimeout(), "blocking send should wait for backpressure timeout");
+        channel.close();
+    }
+
+    @Test
+    void shouldDiscardOldestWhenQueueIsFull() throws Exception {
+        CaptureSession session = new CaptureSession();
+        ClusterChannel channel = new ClusterChannel(session, newConfig(Coordinator.QUEUE_POLICY_DISCARD_OLDEST), 2, false);
+        assertTrue(channel.send(newMessage("t", "1", false)));
+        assertTrue(channel.send(newMessage("t", "2", false)));
+        assertTrue(channel.send(newMessage("t", "3", false)));
+        channel.start();
+        try {
+            List<String> received = new ArrayList<>();
+            long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+            while (received.size() < 2 && System.currentTimeMillis() < deadline) {
+                received.clear();
+                for (ClusterFrame frame : decode(session.toByteArray(), 64)) {
+                    frame.forEachMessage((topic, message) -> received.add(new String(message.getPayload(), StandardCharsets.UTF_8)));
+                }
+                Thread.sleep(10);
+            }
+            List<String> expected = new ArrayList<>();
+            expected.add("2");
+            expected.add("3");
+            assertEquals(expected, received);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static PluginConfig newConfig(int discardPolicy) {
+        PluginConfig config = new PluginConfig();
+        config.setQueueDiscardPolicy(discardPolicy);
+        config.setBackpressureTimeout(200);
+        return config;
+    }
+
+    private static ClusterMessage newMessage(String topic, String payload, boolean retained) {
+        return new ClusterMessage(new TestTopic(topic), new Message(MqttQoS.AT_LEAST_ONCE, payload.getBytes(StandardCharsets.UTF_8), retained));
+    }
+
+    private static int countMessages(List<ClusterFrame> frames) {
+        int[] count = new int[1];
+        frames.stream().filter(frame -> frame.getType() == ClusterFrame.TYPE_MESSAGES).forEach(frame -> frame.forEachMessage((topic, message) -> count[0]++));
+        return count[0];
+    }
+
+    /**
+     * 以chunkSize为单位分批读取数据，解码全部完整的数据帧
+     */
+    private static List<ClusterFrame> decode(byte[] data, int chunkSize) {
+        ClusterProtocol protocol = new ClusterProtocol(1024 * 1024);
+        CaptureSession session = new CaptureSession();
+        session.setAttachment(new ClusterChannel(session, new PluginConfig(), 1, true));
+        List<ClusterFrame> frames = new ArrayList<>();
+        ByteBuffer readBuffer = ByteBuffer.allocate(chunkSize + 4);
+        int position = 0;
+        while (position < data.length) {
+            int length = Math.min(chunkSize, Math.min(readBuffer.remaining(), data.length - position));
+            readBuffer.put(data, position, length);
+            position += length;
+            readBuffer.flip();
+            ClusterFrame frame;
+            while ((frame = protocol.decode(readBuffer, session)) != null) {
+                frames.add(frame);
+            }
+            readBuffer.compact();
+        }
+        return frames;
+    }
+
+    private static class TestTopic implements BrokerTopic {
+        private final String topic;
+        private final byte[] encodedTopic;
+
+        TestTopic(String topic) {
+            this.topic = topic;
+            byte[] bytes = topic.getBytes(StandardCharsets.UTF_8);
+            encodedTopic = new byte[bytes.length + 2];
+            encodedTopic[0] = (byte) (bytes.length >> 8);
+            encodedTopic[1] = (byte) bytes.length;
+            System.arraycopy(bytes, 0, encodedTopic, 2, bytes.length);
+        }
+
+        @Override
+        public byte[] encodedTopicBytes() {
+            return encodedTopic;
+        }
+
+        @Override
+        public int subscribeCount() {
+            return 0;
+        }
+
+        @Override
+        public String getTopic() {
+            return topic;
+        }
+
+        @Override
+        public TopicToken toTopicToken() {
+            return new TopicToken(topic);
+        }
+
+        @Override
+        public MessageQueue getMessageQueue() {
+            return null;
+        }
+    }
+
+    /**
+     * 将写出的数据保存在内存中的连接
+     */
+    private static class CaptureSession extends AioSession {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream outputStream = new DataOutputStream(bytes);
+        private final WriteBuffer writeBuffer = new WriteBuffer() {
+            @Override
+            public void writeByte(byte b) {
+                synchronized (bytes) {
+                    bytes.write(b);
+                }
+            }
+
+            @Override
+            public void writeShort(short data) throws IOException {
+                synchronized (bytes) {
+                    outputStream.writeShort(data);
+                }
+            }
+
+            @Override
+            public void writeInt(int data) throws IOException {
+                synchronized (bytes) {
+                    outputStream.writeInt(data);
+                }
+            }
+
+            @Override
+            public void writeLong(long v) throws IOException {
+                synchronized (bytes) {
+                    outputStream.writeLong(v);
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                synchronized (bytes) {
+                    bytes.write(b, off, len);
+                }
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int len, Consumer<WriteBuffer> consumer) {
+                write(bytes, offset, len);
+                consumer.accept(this);
+            }
+
+            @Override
+            public void transferFrom(ByteBuffer byteBuffer, Consumer<WriteBuffer> consumer) {
+                byte[] data = new byte[byteBuffer.remaining()];
+                byteBuffer.get(data);
+                write(data, 0, data.length);
+                consumer.accept(this);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        byte[] toByteArray() {
+            synchronized (bytes) {
+                return bytes.toByteArray();
+            }
+        }
+
+        @Override
+        public WriteBuffer writeBuffer() {
+            return writeBuffer;
+        }
+
+        @Override
+        public ByteBuffer readBuffer() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void awaitRead() {
+        }
+
+        @Override
+        public void signalRead() {
+        }
+
+        @Override
+        public void close(boolean immediate) {
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public boolean isInvalid() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package tech.smartboot.mqtt.plugin.cluster;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.smartboot.mqtt.broker.BrokerContextImpl;
+import tech.smartboot.mqtt.client.MqttClient;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.common.enums.MqttVersion;
+import tech.smartboot.mqtt.common.message.MqttPublishMessage;
+import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
+import tech.smartboot.mqtt.common.message.variable.properties.UserProperty;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 在同一JVM内以回环端口启动一个core节点及两个worker节点，验证消息经二进制传输在节点间转发
+ */
+class ClusterIntegrationTest {
+    private static final long WAIT_MILLIS = 30000;
+
+    @TempDir
+    Path tempDir;
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final List<MqttClient> clients = new ArrayList<>();
+
+    @AfterEach
+    void destroy() {
+        clients.forEach(MqttClient::disconnect);
+        nodes.forEach(Node::close);
+    }
+
+    @Test
+    void shouldForwardMessageAcrossNodesWithQosAndProperties() throws Throwable {
+        int corePort = freePort();
+        Node core = startNode("core", true, corePort, null);
+        Node publisherNode = startNode("worker-1", false, 0, "http://127.0.0.1:" + corePort);
+        Node subscriberNode = startNode("worker-2", false, 0, "http://127.0.0.1:" + corePort);
+
+        String topic = "cluster/test";
+        CompletableFuture<MqttPublishMessage> coreReceived = subscribe(core, topic);
+        CompletableFuture<MqttPublishMessage> workerReceived = subscribe(subscriberNode, topic);
+
+        MqttClient publisher = connect(publisherNode);
+        PublishProperties properties = new PublishProperties();
+        properties.setContentType("text/plain");
+        properties.setResponseTopic("cluster/response");
+        properties.setCorrelationData("correlation".getBytes(StandardCharsets.UTF_8));
+        properties.setMessageExpiryInterval(600);
+        properties.getUserProperties().add(new UserProperty("key", "value"));
+        //节点间的连接及订阅摘要均为异步建立，持续发布直至消息送达
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (!(coreReceived.isDone() && workerReceived.isDone()) && System.currentTimeMillis() < deadline) {
+            publisher.publish(topic, MqttQoS.AT_LEAST_ONCE, "hello".getBytes(StandardCharsets.UTF_8), false, properties, packetId -> {
+            }, true);
+            Thread.sleep(500);
+        }
+
+        assertMessage(coreReceived.get(1, TimeUnit.SECONDS));
+        assertMessage(workerReceived.get(1, TimeUnit.SECONDS));
+    }
+
+    private static void assertMessage(MqttPublishMessage message) {
+        assertEquals("hello", new String(message.getPayload().getPayload(), StandardCharsets.UTF_8));
+        assertEquals(MqttQoS.AT_LEAST_ONCE, message.getFixedHeader().getQosLevel());
+        PublishProperties properties = message.getVariableHeader().getProperties();
+        assertNotNull(properties);
+        assertEquals("text/plain", properties.getContentType());
+        assertEquals("cluster/response", properties.getResponseTopic());
+        assertArrayEquals("correlation".getBytes(StandardCharsets.UTF_8), properties.getCorrelationData());
+        assertTrue(properties.getMessageExpiryInterval() > 0 && properties.getMessageExpiryInterval() <= 600, "expiry interval should be forwarded");
+        assertEquals(1, properties.getUserProperties().size());
+        assertEquals("key", properties.getUserProperties().get(0).getKey());
+        assertEquals("value", properties.getUserProperties().get(0).getValue());
+    }
+
+    private CompletableFuture<MqttPublishMessage> subscribe(Node node, String topic) throws Exception {
+        CompletableFuture<MqttPublishMessage> received = new CompletableFuture<>();
+        CompletableFuture<Void> subscribed = new CompletableFuture<>();
+        MqttClient subscriber = connect(node);
+        subscriber.subscribe(topic, MqttQoS.AT_LEAST_ONCE, (client, message) -> received.complete(message), (client, qos) -> subscribed.complete(null));
+        subscribed.get(5, TimeUnit.SECONDS);
+        return received;
+    }
+
+    private MqttClient connect(Node node) throws Exception {
+        CompletableFuture<Void> connected = new CompletableFuture<>();
+        MqttClient client = new MqttClient("127.0.0.1", node.mqttPort, options -> options.setMqttVersion(MqttVersion.MQTT_5));
+        clients.add(client);
+        client.connect(connAck -> connected.complete(null));
+        connected.get(5, TimeUnit.SECONDS);
+        return client;
+    }
+
+    private Node startNode(String name, boolean core, int clusterPort, String coreUrl) throws Throwable {
+        int mqttPort = freePort();
+        BrokerContextImpl brokerContext = new BrokerContextImpl();
+        brokerContext.Options().setHost("127.0.0.1");
+        brokerContext.Options().setPort(mqttPort);
+        brokerContext.init();
+
+        Path storage = tempDir.resolve(name);
+        Files.createDirectories(storage);
+        StringBuilder config = new StringBuilder();
+        config.append("core: ").append(core).append('\n');
+        if (core) {
+            config.append("host: 127.0.0.1\n");
+            config.append("port: ").append(clusterPort).append('\n');
+            config.append("transport_port: ").append(freePort()).append('\n');
+        } else {
+            config.append("clusters:\n");
+            config.append("  - ").append(coreUrl).append('\n');
+        }
+        Files.write(storage.resolve("plugin.yaml"), config.toString().getBytes(StandardCharsets.UTF_8));
+
+        ClusterPlugin plugin = new ClusterPlugin();
+        plugin.setStorage(storage.toFile());
+        plugin.install(brokerContext);
+        Node node = new Node(brokerContext, plugin, mqttPort);
+        nodes.add(node);
+        return node;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static class Node {
+        private final BrokerContextImpl brokerContext;
+        private final ClusterPlugin plugin;
+        private final int mqttPort;
+
+        Node(BrokerContextImpl brokerContext, ClusterPlugin plugin, int mqttPort) {
+            this.brokerContext = brokerContext;
+            this.plugin = plugin;
+            this.mqttPort = mqttPort;
+        }
+
+        void close() {
+            plugin.uninstall();
+            brokerContext.destroy();
+        }
+    }
+}
@@ -186,6 +186,7 @@ public class EnterprisePlugin extends Plugin {
         showMetrics.addEnums(Enum.of("packets_received", "接收的报文数量"));
         showMetrics.addEnums(Enum.of("packets_sent", "发送的报文数量"));
         showMetrics.addEnums(Enum.of("topic_count", "Topic数量"));
+        showMetrics.addEnums(Enum.of("messages_overwritten", "队列溢出导致未投递即被覆盖的消息数量"));
         showMetrics.addEnums(Enum.of("messages_qos0_received", "接收来自客户端的 QoS 0 消息数量"));
         showMetrics.addEnums(Enum.of("messages_qos1_received", "接收来自客户端的 QoS 1 消息数量"));
         showMetrics.addEnums(Enum.of("messages_qos2_received", "接收来自客户端的 QoS 2 消息数量"));
@@ -35,6 +35,7 @@ import tech.smartboot.mqtt.common.message.MqttConnAckMessage;
 import tech.smartboot.mqtt.common.message.MqttConnectMessage;
 import tech.smartboot.mqtt.common.message.MqttMessage;
 import tech.smartboot.mqtt.common.message.MqttPublishMessage;
+import tech.smartboot.mqtt.common.util.TopicNameCache;
 import tech.smartboot.mqtt.plugin.PluginConfig;
 import tech.smartboot.mqtt.plugin.cluster.NodeProcessInfo;
 import tech.smartboot.mqtt.plugin.convert.NodeConvert;
@@ -49,10 +50,12 @@ import tech.smartboot.mqtt.plugin.openapi.to.BrokerNodeTO;
 import tech.smartboot.mqtt.plugin.openapi.to.MetricItemTO;
 import tech.smartboot.mqtt.plugin.spec.BrokerContext;
 import tech.smartboot.mqtt.plugin.spec.BrokerTopic;
+import tech.smartboot.mqtt.plugin.spec.ConnectAdmission;
 import tech.smartboot.mqtt.plugin.spec.Message;
 import tech.smartboot.mqtt.plugin.spec.MqttSession;
 import tech.smartboot.mqtt.plugin.spec.Options;
 import tech.smartboot.mqtt.plugin.spec.Plugin;
+import tech.smartboot.mqtt.plugin.spec.PushShard;
 import tech.smartboot.mqtt.plugin.spec.bus.AsyncEventObject;
 import tech.smartboot.mqtt.plugin.spec.bus.EventBusConsumer;
 import tech.smartboot.mqtt.plugin.spec.bus.EventObject;
@@ -97,6 +100,7 @@ public class MetricController {
     private SqlSessionFactory sessionFactory;
 
     private final Map<MqttMetricEnum, MetricItemTO> metrics = new HashMap<>();
+
     private boolean h2;
 
     /**
@@ -106,6 +110,10 @@ public class MetricController {
 
     private final Map<MqttMetricEnum, List<MetricDO>> metricMap = new HashMap<>();
     private static final long START_TIME = System.currentTimeMillis();
+    private long latestTopicCacheHits;
+    private long latestTopicCacheLookups;
+    private long latestPushBusyNanos;
+    private long latestPushNanos = System.nanoTime();
 
     @Autowired
     private PluginConfig pluginConfig;
@@ -133,6 +141,45 @@ public class MetricController {
 //                System.out.println("none push,sent: " + sent);
                     metrics.get(MqttMetricEnum.PACKETS_PUBLISH_RATE).setValue(1000);
                 }
+                //队列溢出
+                metrics.get(MqttMetricEnum.MESSAGE_OVERWRITTEN).setValue(brokerContext.getOverwrittenMessageCount());
+                //主题名称缓存
+                TopicNameCache topicNameCache = TopicNameCache.DEFAULT_INSTANCE;
+                long topicCacheHits = topicNameCache.getHitCount();
+                long topicCacheLookups = topicCacheHits + topicNameCache.getMissCount();
+                long periodLookups = topicCacheLookups - latestTopicCacheLookups;
+                if (periodLookups > 0) {
+                    metrics.get(MqttMetricEnum.TOPIC_CACHE_HIT_RATE).setValue((topicCacheHits - latestTopicCacheHits) * 1000 / periodLookups);
+                }
+                latestTopicCacheHits = topicCacheHits;
+                latestTopicCacheLookups = topicCacheLookups;
+                metrics.get(MqttMetricEnum.TOPIC_CACHE_MEMORY).setValue(topicNameCache.getMemoryUsage());
+                //推送线程
+                long pushQueueDepth = 0;
+                long pushQueueMaxDepth = 0;
+                long pushBusyNanos = 0;
+                long pushStolen = 0;
+                List<PushShard> pushShards = brokerContext.getPushShards();
+                for (PushShard pushShard : pushShards) {
+                    pushQueueDepth += pushShard.getQueueDepth();
+                    pushQueueMaxDepth = Math.max(pushQueueMaxDepth, pushShard.getQueueDepth());
+                    pushBusyNanos += pushShard.getBusyNanos();
+                    pushStolen += pushShard.getStolenCount();
+                }
+                long now = System.nanoTime();
+                if (now > latestPushNanos && !pushShards.isEmpty()) {
+                    metrics.get(MqttMetricEnum.PUSH_BUSY_RATE).setValue((pushBusyNanos - latestPushBusyNanos) * 1000 / ((now - latestPushNanos) * pushShards.size()));
+                }
+                latestPushBusyNanos = pushBusyNanos;
+                latestPushNanos = now;
+                metrics.get(MqttMetricEnum.PUSH_QUEUE_DEPTH).setValue(pushQueueDepth);
+                metrics.get(MqttMetricEnum.PUSH_QUEUE_MAX_DEPTH).setValue(pushQueueMaxDepth);
+                metrics.get(MqttMetricEnum.PUSH_STOLEN).setValue(pushStolen);
+                //连接准入
+                ConnectAdmission connectAdmission = brokerContext.getConnectAdmission();
+                metrics.get(MqttMetricEnum.CONNECTING_COUNT).setValue(connectAdmission.getConnectingCount());
+                metrics.get(MqttMetricEnum.CONNECT_QUEUE_DEPTH).setValue(connectAdmission.getQueueDepth());
+                metrics.get(MqttMetricEnum.CONNECT_REJECTED).setValue(connectAdmission.getRejectedCount());
 
 
                 LOGGER.debug("reset period metric...");
@@ -244,6 +291,8 @@ public class MetricController {
         plugin.subscribe(EventType.DISCONNECT, (eventType, object) -> metrics.get(MqttMetricEnum.CLIENT_DISCONNECT).getMetric().increment());
         plugin.subscribe(EventType.SUBSCRIBE_ACCEPT, (eventType, object) -> metrics.get(MqttMetricEnum.CLIENT_SUBSCRIBE).getMetric().increment());
         plugin.subscribe(EventType.UNSUBSCRIBE_ACCEPT, (eventType, object) -> metrics.get(MqttMetricEnum.CLIENT_UNSUBSCRIBE).getMetric().increment());
+        plugin.subscribe(EventType.SLOW_CONSUMER, (eventType, object) -> metrics.get(MqttMetricEnum.SLOW_CONSUMER).getMetric().increment());
+        plugin.subscribe(EventType.PUBLISH_RATE_LIMITED, (eventType, object) -> metrics.get(MqttMetricEnum.PUBLISH_RATE_LIMITED).getMetric().increment());
         plugin.subscribe(EventType.SUBSCRIBE_TOPIC, (eventType, object) -> metrics.get(MqttMetricEnum.SUBSCRIBE_RELATION).getMetric().increment());
         plugin.subscribe(EventType.UNSUBSCRIBE_TOPIC, (eventType, object) -> metrics.get(MqttMetricEnum.SUBSCRIBE_RELATION).getMetric().decrement());
         plugin.subscribe(EventType.RECEIVE_MESSAGE, new EventBusConsumer<EventObject<MqttMessage>>() {
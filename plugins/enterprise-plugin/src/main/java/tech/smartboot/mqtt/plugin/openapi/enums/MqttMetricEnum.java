@@ -20,6 +20,8 @@ public enum MqttMetricEnum {
     CLIENT_DISCONNECT("client_disconnected", "客户端断开连接次数"),
     CLIENT_SUBSCRIBE("client_subscribe", "订阅次数"),
     CLIENT_UNSUBSCRIBE("client_unsubscribe", "取消订阅次数"),
+    SLOW_CONSUMER("slow_consumer", "慢消费事件次数"),
+    PUBLISH_RATE_LIMITED("publish_rate_limited", "发布限流次数"),
 
     SUBSCRIBE_RELATION("subscribe_relation", "订阅关系数", false),
 
@@ -39,6 +41,16 @@ public enum MqttMetricEnum {
 
 
     TOPIC_COUNT("topic_count", "Topic数量", false),
+    MESSAGE_OVERWRITTEN("messages_overwritten", "队列溢出导致未投递即被覆盖的消息数量"),
+    TOPIC_CACHE_HIT_RATE("topic_cache_hit_rate", "主题名称缓存命中率（千分比）", false),
+    TOPIC_CACHE_MEMORY("topic_cache_memory", "主题名称缓存占用内存估算值（字节）", false),
+    PUSH_QUEUE_DEPTH("push_queue_depth", "推送线程等待执行的任务数", false),
+    PUSH_QUEUE_MAX_DEPTH("push_queue_max_depth", "积压最多的推送线程等待执行的任务数", false),
+    PUSH_BUSY_RATE("push_busy_rate", "推送线程忙碌时间占比（千分比）", false),
+    PUSH_STOLEN("push_stolen", "被其他推送线程窃取执行的任务数"),
+    CONNECTING_COUNT("connecting_count", "正在处理的 CONNECT 数量", false),
+    CONNECT_QUEUE_DEPTH("connect_queue_depth", "排队等待处理的 CONNECT 数量", false),
+    CONNECT_REJECTED("connect_rejected", "服务端繁忙被拒绝的连接数"),
 
     MESSAGE_QOS0_RECEIVED("messages_qos0_received", "接收来自客户端的 QoS 0 消息数量"),
     MESSAGE_QOS1_RECEIVED("messages_qos1_received", "接收来自客户端的 QoS 1 消息数量"),
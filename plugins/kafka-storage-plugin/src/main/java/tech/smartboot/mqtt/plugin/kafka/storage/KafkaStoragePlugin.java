@@ -127,7 +127,8 @@ public class KafkaStoragePlugin extends Plugin {
                 Item.String("cluster_id", "Cluster ID").col(4),
                 Item.String("advertised_host", "对外地址").col(4),
                 Item.Int("advertised_port", "对外端口").col(4),
-                Item.Int("request_max_bytes", "请求最大字节数").col(4)
+                Item.Int("request_max_bytes", "请求最大字节数").col(4),
+                Item.Int("fetch_max_wait_ms", "FETCH最长等待(ms)").col(4)
         );
         schema.addItem(kafka);
 
@@ -137,6 +138,8 @@ public class KafkaStoragePlugin extends Plugin {
                 Item.Switch("auto_create_topics", "自动创建 topic").col(4),
                 Item.Int("default_partition_count", "默认分区数").col(4),
                 Item.Int("segment_bytes", "分段大小").col(4),
+                Item.Int("index_interval_bytes", "索引间隔字节数").col(4),
+                Item.Int("index_max_bytes", "索引文件大小上限").col(4),
                 Item.Int("retention_bytes", "容量上限").col(4),
                 Item.Int("retention_hours", "保留小时数").col(4),
                 Item.Int("cleanup_interval_ms", "清理周期(ms)").col(4),
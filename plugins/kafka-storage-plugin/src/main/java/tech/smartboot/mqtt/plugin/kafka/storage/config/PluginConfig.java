@@ -52,6 +52,7 @@ public class PluginConfig {
         private String advertisedHost = "127.0.0.1";
         private int advertisedPort = 9092;
         private int requestMaxBytes = 10 * 1024 * 1024;
+        private int fetchMaxWaitMs = 5000;
 
         public String getHost() {
             return host;
@@ -108,6 +109,14 @@ public class PluginConfig {
         public void setRequestMaxBytes(int requestMaxBytes) {
             this.requestMaxBytes = requestMaxBytes;
         }
+
+        public int getFetchMaxWaitMs() {
+            return fetchMaxWaitMs;
+        }
+
+        public void setFetchMaxWaitMs(int fetchMaxWaitMs) {
+            this.fetchMaxWaitMs = fetchMaxWaitMs;
+        }
     }
 
     public static class StorageConfig {
@@ -115,6 +124,8 @@ public class PluginConfig {
         private boolean autoCreateTopics = true;
         private int defaultPartitionCount = 3;
         private long segmentBytes = 64L * 1024 * 1024;
+        private int indexIntervalBytes = 4096;
+        private int indexMaxBytes = 1024 * 1024;
         private long retentionBytes = 1024L * 1024 * 1024;
         private long retentionHours = 168;
         private long cleanupIntervalMs = 60_000;
@@ -154,6 +165,22 @@ public class PluginConfig {
             this.segmentBytes = segmentBytes;
         }
 
+        public int getIndexIntervalBytes() {
+            return indexIntervalBytes;
+        }
+
+        public void setIndexIntervalBytes(int indexIntervalBytes) {
+            this.indexIntervalBytes = indexIntervalBytes;
+        }
+
+        public int getIndexMaxBytes() {
+            return indexMaxBytes;
+        }
+
+        public void setIndexMaxBytes(int indexMaxBytes) {
+            this.indexMaxBytes = indexMaxBytes;
+        }
+
         public long getRetentionBytes() {
             return retentionBytes;
         }
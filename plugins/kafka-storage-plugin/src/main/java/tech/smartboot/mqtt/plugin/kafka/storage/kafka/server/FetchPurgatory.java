@@ -0,0 +1,119 @@
+package tech.smartboot.mqtt.plugin.kafka.storage.kafka.server;
+
+import io.github.smartboot.socket.timer.Timer;
+import io.github.smartboot.socket.timer.TimerTask;
+import org.apache.kafka.common.TopicPartition;
+import tech.smartboot.mqtt.common.AsyncTask;
+import tech.smartboot.mqtt.plugin.kafka.storage.store.PersistentMessageStore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 长轮询FETCH请求的等待区。
+ * <p>
+ * 可读数据不足minBytes的FETCH请求在此挂起，监听所请求的分区：
+ * 分区写入的字节数累计达到minBytes，或等待超出maxWait时完成请求，重新读取后写出响应。
+ * 超时由Broker的时间轮驱动，响应的读取及序列化在独立线程中执行，不阻塞写入方及时间轮。
+ * </p>
+ */
+class FetchPurgatory implements PersistentMessageStore.AppendListener {
+    private final Timer timer;
+    private final Map<TopicPartition, Set<DelayedFetch>> watchers = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "kafka-fetch-purgatory");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    FetchPurgatory(Timer timer) {
+        this.timer = timer;
+    }
+
+    /**
+     * 挂起请求直至数据就绪或超时
+     */
+    void watch(DelayedFetch fetch, int maxWaitMs) {
+        for (TopicPartition partition : fetch.partitions) {
+            watchers.compute(partition, (key, set) -> {
+                if (set == null) {
+                    set = ConcurrentHashMap.newKeySet();
+                }
+                set.add(fetch);
+                return set;
+            });
+        }
+        fetch.timeoutTask = timer.schedule(new AsyncTask() {
+            @Override
+            public void execute() {
+                complete(fetch);
+            }
+        }, maxWaitMs, TimeUnit.MILLISECONDS);
+        //完成可能先于超时任务的登记发生
+        if (fetch.completed.get()) {
+            fetch.timeoutTask.cancel();
+        }
+    }
+
+    @Override
+    public void onAppend(String topic, int partition, int writtenBytes) {
+        if (watchers.isEmpty()) {
+            return;
+        }
+        Set<DelayedFetch> fetches = watchers.get(new TopicPartition(topic, partition));
+        if (fetches == null) {
+            return;
+        }
+        for (DelayedFetch fetch : fetches) {
+            if (fetch.accumulatedBytes.addAndGet(writtenBytes) >= fetch.minBytes) {
+                complete(fetch);
+            }
+        }
+    }
+
+    void complete(DelayedFetch fetch) {
+        if (!fetch.completed.compareAndSet(false, true)) {
+            return;
+        }
+        if (fetch.timeoutTask != null) {
+            fetch.timeoutTask.cancel();
+        }
+        for (TopicPartition partition : fetch.partitions) {
+            watchers.computeIfPresent(partition, (key, set) -> {
+                set.remove(fetch);
+                return set.isEmpty() ? null : set;
+            });
+        }
+        executor.execute(fetch.onComplete);
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    static class DelayedFetch {
+        private final List<TopicPartition> partitions;
+        private final int minBytes;
+        private final AtomicInteger accumulatedBytes;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final Runnable onComplete;
+        private volatile TimerTask timeoutTask;
+
+        /**
+         * @param readBytes 挂起前已读取到的字节数
+         */
+        DelayedFetch(List<TopicPartition> partitions, int minBytes, int readBytes, Runnable onComplete) {
+            this.partitions = partitions;
+            this.minBytes = minBytes;
+            this.accumulatedBytes = new AtomicInteger(readBytes);
+            this.onComplete = onComplete;
+        }
+    }
+}
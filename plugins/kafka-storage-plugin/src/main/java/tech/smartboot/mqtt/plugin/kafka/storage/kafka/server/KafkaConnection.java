@@ -1,9 +1,98 @@
 package tech.smartboot.mqtt.plugin.kafka.storage.kafka.server;
 
+import io.github.smartboot.socket.transport.AioSession;
+import io.github.smartboot.socket.transport.WriteBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Kafka连接，按请求顺序写出响应。
+ * <p>
+ * 响应由若干分片组成，堆内存分片复制至输出缓冲区，直接内存分片（分段文件的内存映射切片）
+ * 经transferFrom直接写出，传输完成后再写出后续分片及响应。
+ * 延迟处理的请求（如长轮询的FETCH）预先占据响应位置，完成前其后的响应均等待写出。
+ * </p>
+ */
 class KafkaConnection {
+    private final AioSession session;
+    private final ArrayDeque<ResponseSlot> pendingResponses = new ArrayDeque<>();
+    private boolean writing;
     private long requestCount;
 
+    KafkaConnection(AioSession session) {
+        this.session = session;
+    }
+
     long nextRequestCount() {
         return ++requestCount;
     }
+
+    synchronized void write(List<ByteBuffer> response) {
+        complete(reserve(), response);
+    }
+
+    /**
+     * 按请求顺序预留响应位置，待响应就绪后通过complete写出
+     */
+    synchronized ResponseSlot reserve() {
+        ResponseSlot slot = new ResponseSlot();
+        pendingResponses.add(slot);
+        return slot;
+    }
+
+    synchronized void complete(ResponseSlot slot, List<ByteBuffer> response) {
+        slot.parts = response;
+        if (!writing) {
+            writeNext();
+        }
+    }
+
+    private void writeNext() {
+        ResponseSlot slot;
+        while ((slot = pendingResponses.peek()) != null && slot.parts != null) {
+            pendingResponses.poll();
+            writing = true;
+            if (!writeParts(slot.parts, 0)) {
+                return;
+            }
+        }
+        writing = false;
+    }
+
+    /**
+     * @return 是否已全部写出，存在异步传输中的分片时返回false
+     */
+    private boolean writeParts(List<ByteBuffer> parts, int index) {
+        WriteBuffer writeBuffer = session.writeBuffer();
+        try {
+            for (int i = index; i < parts.size(); i++) {
+                ByteBuffer part = parts.get(i);
+                if (part.isDirect()) {
+                    int next = i + 1;
+                    writeBuffer.flush();
+                    writeBuffer.transferFrom(part, buffer -> onTransferred(parts, next));
+                    return false;
+                }
+                writeBuffer.write(part.array(), part.arrayOffset() + part.position(), part.remaining());
+            }
+            writeBuffer.flush();
+        } catch (IOException e) {
+            pendingResponses.clear();
+            session.close();
+        }
+        return true;
+    }
+
+    private synchronized void onTransferred(List<ByteBuffer> parts, int index) {
+        if (writeParts(parts, index)) {
+            writeNext();
+        }
+    }
+
+    static class ResponseSlot {
+        private List<ByteBuffer> parts;
+    }
 }
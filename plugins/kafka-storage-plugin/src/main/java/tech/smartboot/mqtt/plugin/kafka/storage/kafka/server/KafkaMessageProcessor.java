@@ -25,7 +25,7 @@ public class KafkaMessageProcessor extends AbstractMessageProcessor<KafkaRequest
     public void stateEvent0(AioSession session, StateMachineEnum stateMachineEnum, Throwable throwable) {
         switch (stateMachineEnum) {
             case NEW_SESSION:
-                session.setAttachment(new KafkaConnection());
+                session.setAttachment(new KafkaConnection(session));
                 break;
             case PROCESS_EXCEPTION:
             case DECODE_EXCEPTION:
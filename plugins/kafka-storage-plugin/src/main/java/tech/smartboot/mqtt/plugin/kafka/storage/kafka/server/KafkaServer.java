@@ -17,10 +17,9 @@ import org.apache.kafka.common.protocol.ApiKeys;
 import org.apache.kafka.common.protocol.Errors;
 import org.apache.kafka.common.protocol.Message;
 import org.apache.kafka.common.protocol.MessageUtil;
-import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.protocol.ObjectSerializationCache;
 import org.apache.kafka.common.record.MemoryRecords;
 import org.apache.kafka.common.record.RecordBatch;
-import org.apache.kafka.common.record.SimpleRecord;
 import org.apache.kafka.common.requests.ApiVersionsRequest;
 import org.apache.kafka.common.requests.ApiVersionsResponse;
 import org.apache.kafka.common.requests.FetchRequest;
@@ -39,7 +38,6 @@ import org.apache.kafka.common.requests.ProduceResponse;
 import org.apache.kafka.common.utils.Utils;
 import io.github.smartboot.socket.transport.AioQuickServer;
 import io.github.smartboot.socket.transport.AioSession;
-import io.github.smartboot.socket.transport.WriteBuffer;
 import tech.smartboot.mqtt.plugin.kafka.storage.config.PluginConfig;
 import tech.smartboot.mqtt.plugin.kafka.storage.kafka.protocol.KafkaProtocol;
 import tech.smartboot.mqtt.plugin.kafka.storage.kafka.protocol.KafkaRequestFrame;
@@ -64,8 +62,6 @@ import java.util.concurrent.atomic.AtomicLong;
  * 基于 smart-socket 的 Kafka 协议接入层。
  */
 public class KafkaServer {
-    private static final int MAX_FETCH_RECORDS = 256;
-
     private final PluginConfig.KafkaConfig kafkaConfig;
     private final BrokerContext brokerContext;
     private final PersistentMessageStore store;
@@ -73,6 +69,7 @@ public class KafkaServer {
     private final Node node;
     private final Map<ApiKeys, Short> supportedVersions = new ConcurrentHashMap<>();
     private final AtomicLong producerIdSequence = new AtomicLong(1);
+    private final FetchPurgatory fetchPurgatory;
 
     private AioQuickServer server;
 
@@ -85,6 +82,8 @@ public class KafkaServer {
         this.store = store;
         this.metrics = metrics;
         this.node = new Node(kafkaConfig.getBrokerId(), kafkaConfig.getAdvertisedHost(), kafkaConfig.getAdvertisedPort());
+        this.fetchPurgatory = new FetchPurgatory(brokerContext.getTimer());
+        store.addAppendListener(fetchPurgatory);
         initSupportedVersions();
     }
 
@@ -98,6 +97,7 @@ public class KafkaServer {
         if (server != null) {
             server.shutdown();
         }
+        fetchPurgatory.shutdown();
     }
 
     public void handle(AioSession session, KafkaRequestFrame frame) {
@@ -286,37 +286,64 @@ public class KafkaServer {
 
     private void handleFetch(AioSession session, KafkaRequestFrame frame) throws IOException {
         FetchRequest request = FetchRequest.parse(frame.getBody(), frame.getApiVersion());
-        LinkedHashMap<TopicIdPartition, FetchResponseData.PartitionData> responseData = new LinkedHashMap<>();
-        for (Map.Entry<TopicIdPartition, FetchRequest.PartitionData> entry : request.fetchData(Collections.<Uuid, String>emptyMap()).entrySet()) {
+        Map<TopicIdPartition, FetchRequest.PartitionData> fetchData = request.fetchData(Collections.<Uuid, String>emptyMap());
+        FetchResult result = readFetch(request, fetchData);
+        int maxWait = Math.min(request.maxWait(), kafkaConfig.getFetchMaxWaitMs());
+        if (maxWait <= 0 || result.recordsBytes >= request.minBytes() || result.error || result.highWatermarks.isEmpty()) {
+            sendResponse(session, frame, frame.getApiVersion(), result.response(request), result.recordsBytes);
+            return;
+        }
+        //数据不足minBytes，挂起请求并预留响应位置，待分区写入或超时后重新读取
+        KafkaConnection connection = session.getAttachment();
+        KafkaConnection.ResponseSlot slot = connection.reserve();
+        FetchPurgatory.DelayedFetch delayedFetch = new FetchPurgatory.DelayedFetch(new ArrayList<>(result.highWatermarks.keySet()), request.minBytes(), result.recordsBytes, () -> {
+            try {
+                FetchResult completed = readFetch(request, fetchData);
+                connection.complete(slot, buildResponse(frame, frame.getApiVersion(), completed.response(request), completed.recordsBytes));
+            } catch (Throwable e) {
+                metrics.markError();
+                e.printStackTrace();
+                session.close();
+            }
+        });
+        fetchPurgatory.watch(delayedFetch, maxWait);
+        //登记监听之前写入的数据不会触发回调，需补充检查
+        for (Map.Entry<TopicPartition, Long> entry : result.highWatermarks.entrySet()) {
+            if (store.highWatermark(entry.getKey().topic(), entry.getKey().partition()) != entry.getValue()) {
+                fetchPurgatory.complete(delayedFetch);
+                break;
+            }
+        }
+    }
+
+    private FetchResult readFetch(FetchRequest request, Map<TopicIdPartition, FetchRequest.PartitionData> fetchData) throws IOException {
+        FetchResult result = new FetchResult();
+        int remainingBytes = request.maxBytes() <= 0 ? Integer.MAX_VALUE : request.maxBytes();
+        for (Map.Entry<TopicIdPartition, FetchRequest.PartitionData> entry : fetchData.entrySet()) {
             String topic = entry.getKey().topicPartition().topic();
             int partition = entry.getKey().topicPartition().partition();
             if (!store.containsTopic(topic) || partition < 0 || partition >= store.partitionCount(topic)) {
-                responseData.put(entry.getKey(), FetchResponse.partitionResponse(partition, Errors.UNKNOWN_TOPIC_OR_PARTITION));
+                result.responseData.put(entry.getKey(), FetchResponse.partitionResponse(partition, Errors.UNKNOWN_TOPIC_OR_PARTITION));
+                result.error = true;
                 continue;
             }
-            PartitionLog.FetchResult result = store.fetch(topic, partition, entry.getValue().fetchOffset, entry.getValue().maxBytes, MAX_FETCH_RECORDS);
-            MemoryRecords records;
-            if (result.getMessages().isEmpty()) {
-                records = MemoryRecords.EMPTY;
-            } else {
-                StoredMessage first = result.getMessages().get(0);
-                List<SimpleRecord> simpleRecords = new ArrayList<>();
-                for (StoredMessage message : result.getMessages()) {
-                    simpleRecords.add(new SimpleRecord(message.getTimestamp(), message.getKey(), message.getValue()));
-                }
-                records = MemoryRecords.withRecords(first.getOffset(), CompressionType.NONE, simpleRecords.toArray(new SimpleRecord[0]));
-            }
+            //响应总长度受限于maxBytes，但首个非空分区至少返回一个完整批次
+            PartitionLog.ReadResult readResult = store.read(topic, partition, entry.getValue().fetchOffset,
+                    Math.min(entry.getValue().maxBytes, remainingBytes), result.recordsBytes == 0);
+            MemoryRecords records = readResult.getRecords();
+            result.recordsBytes += records.sizeInBytes();
+            remainingBytes = Math.max(0, remainingBytes - records.sizeInBytes());
+            result.highWatermarks.put(entry.getKey().topicPartition(), readResult.getHighWatermark());
             FetchResponseData.PartitionData partitionData = new FetchResponseData.PartitionData()
                     .setPartitionIndex(partition)
                     .setErrorCode(Errors.NONE.code())
-                    .setHighWatermark(result.getHighWatermark())
-                    .setLastStableOffset(result.getHighWatermark())
-                    .setLogStartOffset(result.getLogStartOffset())
+                    .setHighWatermark(readResult.getHighWatermark())
+                    .setLastStableOffset(readResult.getHighWatermark())
+                    .setLogStartOffset(readResult.getLogStartOffset())
                     .setRecords(records);
-            responseData.put(entry.getKey(), partitionData);
+            result.responseData.put(entry.getKey(), partitionData);
         }
-        FetchResponse response = FetchResponse.of(Errors.NONE, 0, request.metadata().sessionId(), responseData);
-        sendResponse(session, frame, frame.getApiVersion(), response.data());
+        return result;
     }
 
     private void handleListOffsets(AioSession session, KafkaRequestFrame frame) throws IOException {
@@ -368,17 +395,24 @@ public class KafkaServer {
     private void handleOffsetCommit(AioSession session, KafkaRequestFrame frame) throws IOException {
         OffsetCommitRequest request = OffsetCommitRequest.parse(frame.getBody(), frame.getApiVersion());
         OffsetCommitResponseData response = new OffsetCommitResponseData().setThrottleTimeMs(0);
+        String groupId = request.data().groupId();
+        long commitTimestamp = System.currentTimeMillis();
+        List<ConsumerOffsetStore.OffsetInfo> offsets = new ArrayList<>();
         for (org.apache.kafka.common.message.OffsetCommitRequestData.OffsetCommitRequestTopic requestTopic : request.data().topics()) {
             OffsetCommitResponseData.OffsetCommitResponseTopic topicResponse = new OffsetCommitResponseData.OffsetCommitResponseTopic()
                     .setName(requestTopic.name());
             response.topics().add(topicResponse);
             for (org.apache.kafka.common.message.OffsetCommitRequestData.OffsetCommitRequestPartition requestPartition : requestTopic.partitions()) {
-                store.commitOffset(request.data().groupId(), requestTopic.name(), requestPartition.partitionIndex(), requestPartition.committedOffset(), requestPartition.committedMetadata());
+                String metadata = requestPartition.committedMetadata();
+                offsets.add(new ConsumerOffsetStore.OffsetInfo(groupId, requestTopic.name(), requestPartition.partitionIndex(),
+                        requestPartition.committedOffset(), metadata == null ? "" : metadata, commitTimestamp));
                 topicResponse.partitions().add(new OffsetCommitResponseData.OffsetCommitResponsePartition()
                         .setPartitionIndex(requestPartition.partitionIndex())
                         .setErrorCode(Errors.NONE.code()));
             }
         }
+        //整个请求的位点合并写入，仅刷盘一次
+        store.commitOffsets(offsets);
         sendResponse(session, frame, frame.getApiVersion(), response);
     }
 
@@ -410,24 +444,58 @@ public class KafkaServer {
         sendResponse(session, frame, frame.getApiVersion(), response.data());
     }
 
-    private void sendResponse(AioSession session, KafkaRequestFrame frame, short responseVersion, Message message) throws IOException {
+    private void sendResponse(AioSession session, KafkaRequestFrame frame, short responseVersion, Message message) {
+        sendResponse(session, frame, responseVersion, message, 0);
+    }
+
+    /**
+     * 序列化响应并交由连接按序写出，响应中的记录不复制，直接写出读取所得的缓冲区
+     *
+     * @param recordsBytes 响应中记录的总长度
+     */
+    private void sendResponse(AioSession session, KafkaRequestFrame frame, short responseVersion, Message message, int recordsBytes) {
+        KafkaConnection connection = session.getAttachment();
+        connection.write(buildResponse(frame, responseVersion, message, recordsBytes));
+    }
+
+    private List<ByteBuffer> buildResponse(KafkaRequestFrame frame, short responseVersion, Message message, int recordsBytes) {
         short responseHeaderVersion = frame.getApiKey().responseHeaderVersion(responseVersion);
         org.apache.kafka.common.message.ResponseHeaderData header = new org.apache.kafka.common.message.ResponseHeaderData()
                 .setCorrelationId(frame.getHeader().correlationId());
         ByteBuffer headerBuffer = MessageUtil.toByteBuffer(header, responseHeaderVersion);
-        ByteBuffer bodyBuffer = MessageUtil.toByteBuffer(message, responseVersion);
-        WriteBuffer writeBuffer = session.writeBuffer();
-        int length = headerBuffer.remaining() + bodyBuffer.remaining();
-        writeBuffer.writeInt(length);
-        writeBuffer.write(headerBuffer.array(), headerBuffer.position(), headerBuffer.remaining());
-        writeBuffer.write(bodyBuffer.array(), bodyBuffer.position(), bodyBuffer.remaining());
-        writeBuffer.flush();
+        ObjectSerializationCache cache = new ObjectSerializationCache();
+        int bodySize = message.size(cache, responseVersion);
+        ResponseAccessor accessor = new ResponseAccessor(bodySize - recordsBytes);
+        message.write(accessor, cache, responseVersion);
+
+        ByteBuffer prefix = ByteBuffer.allocate(4 + headerBuffer.remaining());
+        prefix.putInt(headerBuffer.remaining() + bodySize);
+        prefix.put(headerBuffer);
+        prefix.flip();
+        List<ByteBuffer> parts = new ArrayList<>();
+        parts.add(prefix);
+        parts.addAll(accessor.parts());
+        return parts;
     }
 
     private short versionOf(ApiKeys apiKey) {
         return supportedVersions.get(apiKey);
     }
 
+    private static class FetchResult {
+        private final LinkedHashMap<TopicIdPartition, FetchResponseData.PartitionData> responseData = new LinkedHashMap<>();
+        /**
+         * 读取时各分区的高水位，用于挂起后检查是否已有新数据写入
+         */
+        private final Map<TopicPartition, Long> highWatermarks = new LinkedHashMap<>();
+        private int recordsBytes;
+        private boolean error;
+
+        FetchResponseData response(FetchRequest request) {
+            return FetchResponse.of(Errors.NONE, 0, request.metadata().sessionId(), responseData).data();
+        }
+    }
+
     private boolean brokerAutoCreateEnabled() {
         return true;
     }
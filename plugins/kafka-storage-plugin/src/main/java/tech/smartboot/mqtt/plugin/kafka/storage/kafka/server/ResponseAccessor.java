@@ -0,0 +1,53 @@
+package tech.smartboot.mqtt.plugin.kafka.storage.kafka.server;
+
+import org.apache.kafka.common.protocol.ByteBufferAccessor;
+import org.apache.kafka.common.record.BaseRecords;
+import org.apache.kafka.common.record.MemoryRecords;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 序列化响应消息，其中的记录不复制至响应缓冲区，而是作为独立的分片由{@link KafkaConnection}直接写出。
+ */
+class ResponseAccessor extends ByteBufferAccessor {
+    private final List<ByteBuffer> parts = new ArrayList<>();
+    private int mark;
+
+    /**
+     * @param size 不含记录的响应长度
+     */
+    ResponseAccessor(int size) {
+        super(ByteBuffer.allocate(size));
+    }
+
+    @Override
+    public void writeRecords(BaseRecords records) {
+        if (!(records instanceof MemoryRecords)) {
+            super.writeRecords(records);
+            return;
+        }
+        ByteBuffer recordsBuffer = ((MemoryRecords) records).buffer();
+        if (recordsBuffer.hasRemaining()) {
+            cut();
+            parts.add(recordsBuffer);
+        }
+    }
+
+    private void cut() {
+        ByteBuffer buffer = buffer();
+        if (buffer.position() > mark) {
+            ByteBuffer part = buffer.duplicate();
+            part.position(mark);
+            part.limit(buffer.position());
+            parts.add(part.slice());
+            mark = buffer.position();
+        }
+    }
+
+    List<ByteBuffer> parts() {
+        cut();
+        return parts;
+    }
+}
@@ -0,0 +1,122 @@
+package tech.smartboot.mqtt.plugin.kafka.storage.store;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 分段日志的稀疏索引。
+ * <p>
+ * 索引条目定长，按key递增顺序追加至内存映射文件，查找时二分检索。
+ * 写入中的索引文件预分配至最大长度，分段不再写入或关闭时截断至实际条目数，
+ * 重新加载时即可由文件长度得出条目数。
+ * </p>
+ */
+abstract class AbstractIndex {
+    private final Path path;
+    private final int entrySize;
+    private final int maxEntries;
+    private final FileChannel channel;
+    private final boolean aligned;
+    protected MappedByteBuffer mmap;
+    protected int entries;
+
+    AbstractIndex(Path path, int entrySize, int maxIndexBytes) throws IOException {
+        this.path = path;
+        this.entrySize = entrySize;
+        this.maxEntries = Math.max(1, maxIndexBytes / entrySize);
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long length = channel.size();
+        this.aligned = length % entrySize == 0 && length <= (long) maxEntries * entrySize;
+        this.entries = aligned ? (int) (length / entrySize) : 0;
+        this.mmap = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) entries * entrySize);
+    }
+
+    /**
+     * 第index个条目的key，条目按key递增排列
+     */
+    protected abstract long keyAt(int index);
+
+    /**
+     * 索引文件长度与条目长度对齐，且条目按key递增
+     */
+    boolean sanityCheck() {
+        return aligned && (entries < 2 || keyAt(entries - 1) > keyAt(0));
+    }
+
+    int entries() {
+        return entries;
+    }
+
+    boolean isFull() {
+        return entries >= maxEntries;
+    }
+
+    /**
+     * 获取下一个条目的写入位置，必要时将映射区域扩展至最大长度
+     */
+    protected int nextEntryPosition() throws IOException {
+        if (mmap.capacity() < maxEntries * entrySize) {
+            mmap = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) maxEntries * entrySize);
+        }
+        return entries * entrySize;
+    }
+
+    /**
+     * 查找key不大于target的最后一个条目
+     *
+     * @return 条目下标，不存在时返回-1
+     */
+    protected int largestLowerBound(long target) {
+        int low = 0;
+        int high = entries - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (keyAt(mid) <= target) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    void reset() {
+        entries = 0;
+    }
+
+    /**
+     * 将索引文件截断至实际条目数
+     */
+    void trim() throws IOException {
+        int length = entries * entrySize;
+        if (mmap.capacity() == length && channel.size() == length) {
+            return;
+        }
+        mmap.force();
+        channel.truncate(length);
+        mmap = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+    }
+
+    void force() {
+        mmap.force();
+    }
+
+    void close() throws IOException {
+        trim();
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+}
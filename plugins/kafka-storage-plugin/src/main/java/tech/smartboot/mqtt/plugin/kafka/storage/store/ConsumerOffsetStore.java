@@ -2,30 +2,126 @@ package tech.smartboot.mqtt.plugin.kafka.storage.store;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.zip.CRC32;
 
+/**
+ * 消费位点存储，以追加日志的形式持久化，参照Kafka的 __consumer_offsets。
+ * <p>
+ * 内存中维护各分区的最新位点，每个分区的提交仅追加一条记录，同一请求内的多个分区合并为一次写入：
+ * 并发的提交合并为一批写入并刷盘，由最先进入的提交方代为写出，其余提交方等待该批次完成。
+ * 日志中被覆盖的记录超出有效记录数时，周期性地以最新位点重写日志文件。
+ * 启动时按序回放日志，校验失败的末尾记录视为写入中断并截断。
+ * </p>
+ * <p>
+ * 记录格式：length(4) + crc(4) + version(1) + partition(4) + offset(8) + commitTimestamp(8)
+ * + groupId + topic + metadata，其中字符串均为length(2) + UTF-8，crc覆盖version及之后的内容。
+ * </p>
+ */
 public class ConsumerOffsetStore {
+    public static final String FILE_NAME = "consumer-offsets.log";
+    static final String LEGACY_FILE_NAME = "consumer-offsets.properties";
+    private static final String COMPACTING_SUFFIX = ".compacting";
+    private static final byte RECORD_VERSION = 1;
+    private static final int RECORD_HEADER_SIZE = 4 + 4;
+    /**
+     * 被覆盖的记录数低于该值时不触发压缩
+     */
+    private static final int MIN_COMPACT_RECORDS = 1024;
+
     private final Path file;
     private final Map<String, OffsetInfo> offsets = new HashMap<>();
+    /**
+     * 串行化日志写出及压缩
+     */
+    private final Object writeLock = new Object();
+    private FileChannel channel;
+    private List<ByteBuffer> pendingRecords = new ArrayList<>();
+    private long appendedSequence;
+    private long durableSequence;
+    /**
+     * 日志文件中的记录数，含已被覆盖的记录
+     */
+    private long logRecords;
+
+    public ConsumerOffsetStore(Path directory) throws IOException {
+        this.file = directory.resolve(FILE_NAME);
+        Files.createDirectories(directory);
+        Files.deleteIfExists(file.resolveSibling(FILE_NAME + COMPACTING_SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        replay();
+        Path legacy = directory.resolve(LEGACY_FILE_NAME);
+        if (Files.exists(legacy)) {
+            if (logRecords == 0) {
+                loadLegacy(legacy);
+                compact();
+            }
+            Files.delete(legacy);
+        }
+    }
 
-    public ConsumerOffsetStore(Path file) throws IOException {
-        this.file = file;
-        Files.createDirectories(file.getParent());
-        load();
+    /**
+     * 提交位点，返回时记录已写入日志并刷盘
+     */
+    public void commit(String groupId, String topic, int partition, long offset, String metadata) throws IOException {
+        commit(Collections.singletonList(new OffsetInfo(groupId, topic, partition, offset, metadata == null ? "" : metadata, System.currentTimeMillis())));
     }
 
-    public synchronized void commit(String groupId, String topic, int partition, long offset, String metadata) throws IOException {
-        OffsetInfo info = new OffsetInfo(groupId, topic, partition, offset, metadata == null ? "" : metadata, System.currentTimeMillis());
-        offsets.put(key(groupId, topic, partition), info);
-        persist();
+    /**
+     * 批量提交位点，同一请求中的各分区位点合并写入并仅刷盘一次，返回时记录已写入日志并刷盘
+     */
+    public void commit(List<OffsetInfo> infos) throws IOException {
+        if (infos.isEmpty()) {
+            return;
+        }
+        long sequence;
+        synchronized (this) {
+            for (OffsetInfo info : infos) {
+                offsets.put(key(info.getGroupId(), info.getTopic(), info.getPartition()), info);
+                pendingRecords.add(encode(info));
+            }
+            sequence = ++appendedSequence;
+        }
+        synchronized (writeLock) {
+            if (durableSequence >= sequence) {
+                return;
+            }
+            List<ByteBuffer> batch;
+            long batchSequence;
+            synchronized (this) {
+                batch = pendingRecords;
+                batchSequence = appendedSequence;
+                pendingRecords = new ArrayList<>();
+            }
+            ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+            long position = channel.size();
+            long remaining = 0;
+            for (ByteBuffer buffer : buffers) {
+                remaining += buffer.remaining();
+            }
+            while (remaining > 0) {
+                channel.position(position);
+                long written = channel.write(buffers);
+                position += written;
+                remaining -= written;
+            }
+            channel.force(false);
+            logRecords += batch.size();
+            durableSequence = batchSequence;
+        }
     }
 
     public synchronized OffsetInfo read(String groupId, String topic, int partition) {
@@ -46,12 +142,97 @@ public class ConsumerOffsetStore {
         return (int) offsets.values().stream().map(OffsetInfo::getGroupId).distinct().count();
     }
 
-    private void load() throws IOException {
-        if (!Files.exists(file)) {
-            return;
+    /**
+     * 被覆盖的记录数超出有效记录数时压缩日志
+     *
+     * @return 是否执行了压缩
+     */
+    public boolean compactIfRequired() throws IOException {
+        synchronized (writeLock) {
+            long obsolete;
+            synchronized (this) {
+                obsolete = logRecords - offsets.size();
+            }
+            if (obsolete < MIN_COMPACT_RECORDS || obsolete < offsets.size()) {
+                return false;
+            }
+            compact();
+            return true;
         }
+    }
+
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            channel.close();
+        }
+    }
+
+    /**
+     * 以最新位点重写日志：先写入临时文件，刷盘后原子替换
+     */
+    private void compact() throws IOException {
+        synchronized (writeLock) {
+            Path compacting = file.resolveSibling(FILE_NAME + COMPACTING_SUFFIX);
+            try (FileChannel target = FileChannel.open(compacting,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                //快照之后的提交仍在待写出的批次中，替换后追加至新文件
+                List<OffsetInfo> snapshot;
+                synchronized (this) {
+                    snapshot = new ArrayList<>(offsets.values());
+                }
+                for (OffsetInfo info : snapshot) {
+                    ByteBuffer buffer = encode(info);
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer);
+                    }
+                }
+                target.force(true);
+                channel.close();
+                Files.move(compacting, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                logRecords = snapshot.size();
+            } finally {
+                if (!channel.isOpen()) {
+                    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                }
+            }
+        }
+    }
+
+    private void replay() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        while (position + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            readFully(position, header);
+            int length = header.getInt(0);
+            if (length <= 4 || position + 4 + length > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length - 4);
+            readFully(position + RECORD_HEADER_SIZE, body);
+            body.flip();
+            CRC32 crc32 = new CRC32();
+            crc32.update(body.array(), 0, body.limit());
+            if ((int) crc32.getValue() != header.getInt(4) || body.get() != RECORD_VERSION) {
+                break;
+            }
+            OffsetInfo info = decode(body);
+            offsets.put(key(info.getGroupId(), info.getTopic(), info.getPartition()), info);
+            logRecords++;
+            position += 4 + length;
+        }
+        if (position < size) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+    }
+
+    private void loadLegacy(Path legacy) throws IOException {
         Properties properties = new Properties();
-        try (InputStream inputStream = Files.newInputStream(file)) {
+        try (InputStream inputStream = Files.newInputStream(legacy)) {
             properties.load(inputStream);
         }
         for (String name : properties.stringPropertyNames()) {
@@ -59,42 +240,73 @@ public class ConsumerOffsetStore {
             if (value.length < 5) {
                 continue;
             }
-            String groupId = decode(value[0]);
-            String topic = decode(value[1]);
+            String groupId = decodeBase64(value[0]);
+            String topic = decodeBase64(value[1]);
             int partition = Integer.parseInt(value[2]);
             long offset = Long.parseLong(value[3]);
-            String metadata = decode(value[4]);
+            String metadata = decodeBase64(value[4]);
             long commitTimestamp = value.length > 5 ? Long.parseLong(value[5]) : System.currentTimeMillis();
-            offsets.put(name, new OffsetInfo(groupId, topic, partition, offset, metadata, commitTimestamp));
+            offsets.put(key(groupId, topic, partition), new OffsetInfo(groupId, topic, partition, offset, metadata, commitTimestamp));
         }
     }
 
-    private void persist() throws IOException {
-        Properties properties = new Properties();
-        for (Map.Entry<String, OffsetInfo> entry : offsets.entrySet()) {
-            OffsetInfo value = entry.getValue();
-            properties.setProperty(entry.getKey(),
-                    encode(value.getGroupId()) + "\t" +
-                            encode(value.getTopic()) + "\t" +
-                            value.getPartition() + "\t" +
-                            value.getOffset() + "\t" +
-                            encode(value.getMetadata()) + "\t" +
-                            value.getCommitTimestamp());
-        }
-        try (OutputStream outputStream = Files.newOutputStream(file)) {
-            properties.store(outputStream, "kafka-storage-plugin offsets");
+    private void readFully(long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("unexpected end of offsets log: " + file);
+            }
         }
     }
 
-    private static String key(String groupId, String topic, int partition) {
-        return encode(groupId) + ":" + encode(topic) + ":" + partition;
+    private static ByteBuffer encode(OffsetInfo info) {
+        byte[] groupId = info.getGroupId().getBytes(StandardCharsets.UTF_8);
+        byte[] topic = info.getTopic().getBytes(StandardCharsets.UTF_8);
+        byte[] metadata = info.getMetadata().getBytes(StandardCharsets.UTF_8);
+        int bodySize = 1 + 4 + 8 + 8 + 2 + groupId.length + 2 + topic.length + 2 + metadata.length;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + bodySize);
+        buffer.putInt(4 + bodySize);
+        buffer.putInt(0);
+        buffer.put(RECORD_VERSION);
+        buffer.putInt(info.getPartition());
+        buffer.putLong(info.getOffset());
+        buffer.putLong(info.getCommitTimestamp());
+        putString(buffer, groupId);
+        putString(buffer, topic);
+        putString(buffer, metadata);
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.array(), RECORD_HEADER_SIZE, bodySize);
+        buffer.putInt(4, (int) crc32.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static OffsetInfo decode(ByteBuffer body) {
+        int partition = body.getInt();
+        long offset = body.getLong();
+        long commitTimestamp = body.getLong();
+        String groupId = getString(body);
+        String topic = getString(body);
+        String metadata = getString(body);
+        return new OffsetInfo(groupId, topic, partition, offset, metadata, commitTimestamp);
     }
 
-    private static String encode(String text) {
-        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String key(String groupId, String topic, int partition) {
+        return groupId + '\u0000' + topic + '\u0000' + partition;
     }
 
-    private static String decode(String text) {
+    private static String decodeBase64(String text) {
         return new String(Base64.getUrlDecoder().decode(text), StandardCharsets.UTF_8);
     }
 
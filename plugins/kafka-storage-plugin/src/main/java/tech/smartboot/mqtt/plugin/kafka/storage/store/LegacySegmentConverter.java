@@ -0,0 +1,126 @@
+package tech.smartboot.mqtt.plugin.kafka.storage.store;
+
+import org.apache.kafka.common.record.MemoryRecords;
+import org.apache.kafka.common.record.MutableRecordBatch;
+import org.apache.kafka.common.record.RecordBatch;
+import org.apache.kafka.common.record.Records;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 将旧版本的分段文件转换为Kafka RecordBatch格式。
+ * <p>
+ * 旧格式的单条记录为：size(4) + version(1) + sourceType(1) + qos(2) + flag(1) + offset(8) + timestamp(8)
+ * + clientId + key + value，其中变长字段均为length(4) + bytes，length为-1表示null。
+ * 转换结果先写入临时文件，完成后原子替换原分段文件，转换中断时下次启动重新转换。
+ * </p>
+ */
+final class LegacySegmentConverter {
+    private static final byte RECORD_VERSION = 1;
+    private static final byte FLAG_RETAINED = 1;
+    private static final String CONVERTING_SUFFIX = ".converting";
+
+    private LegacySegmentConverter() {
+    }
+
+    /**
+     * 首个记录不是合法的RecordBatch且版本号匹配旧格式时，视为旧版本的分段文件
+     */
+    static boolean isLegacy(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < Records.HEADER_SIZE_UP_TO_MAGIC) {
+                return false;
+            }
+            ByteBuffer header = ByteBuffer.allocate(Records.HEADER_SIZE_UP_TO_MAGIC);
+            readFully(channel, 0, header);
+            int batchSize = Records.LOG_OVERHEAD + header.getInt(Records.SIZE_OFFSET);
+            if (header.get(Records.MAGIC_OFFSET) == RecordBatch.CURRENT_MAGIC_VALUE && batchSize > 0 && batchSize <= size) {
+                ByteBuffer batch = ByteBuffer.allocate(batchSize);
+                readFully(channel, 0, batch);
+                batch.flip();
+                MutableRecordBatch first = MemoryRecords.readableRecords(batch).firstBatch();
+                if (first != null && first.isValid()) {
+                    return false;
+                }
+            }
+            return header.get(4) == RECORD_VERSION;
+        }
+    }
+
+    static void convert(Path path) throws IOException {
+        Path converting = path.resolveSibling(path.getFileName() + CONVERTING_SUFFIX);
+        try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(converting,
+                     StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING,
+                     StandardOpenOption.WRITE)) {
+            long position = 0;
+            long channelSize = source.size();
+            ByteBuffer sizeBuffer = ByteBuffer.allocate(4);
+            while (position + 4 <= channelSize) {
+                sizeBuffer.clear();
+                readFully(source, position, sizeBuffer);
+                int recordSize = sizeBuffer.getInt(0);
+                if (recordSize <= 0 || position + 4L + recordSize > channelSize) {
+                    break;
+                }
+                ByteBuffer recordBuffer = ByteBuffer.allocate(recordSize);
+                readFully(source, position + 4, recordBuffer);
+                recordBuffer.flip();
+                ByteBuffer batch = LogSegment.toRecords(deserialize(recordBuffer)).buffer();
+                while (batch.hasRemaining()) {
+                    target.write(batch);
+                }
+                position += 4L + recordSize;
+            }
+            target.force(true);
+        }
+        Files.deleteIfExists(LogSegment.indexPath(path, OffsetIndex.SUFFIX));
+        Files.deleteIfExists(LogSegment.indexPath(path, TimeIndex.SUFFIX));
+        Files.move(converting, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static StoredMessage deserialize(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version != RECORD_VERSION) {
+            throw new IllegalStateException("unsupported record version: " + version);
+        }
+        byte sourceType = buffer.get();
+        short qos = buffer.getShort();
+        boolean retained = (buffer.get() & FLAG_RETAINED) == FLAG_RETAINED;
+        long offset = buffer.getLong();
+        long timestamp = buffer.getLong();
+        byte[] clientId = readBytes(buffer);
+        byte[] key = readBytes(buffer);
+        byte[] value = readBytes(buffer);
+        return new StoredMessage(null, 0, offset, timestamp, key, value, qos, retained,
+                clientId == null ? null : new String(clientId, StandardCharsets.UTF_8), sourceType);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void readFully(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("unexpected end of segment");
+            }
+        }
+    }
+}
@@ -1,63 +1,158 @@
 package tech.smartboot.mqtt.plugin.kafka.storage.store;
 
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.record.MemoryRecords;
+import org.apache.kafka.common.record.Record;
+import org.apache.kafka.common.record.RecordBatch;
+import org.apache.kafka.common.record.Records;
+import org.apache.kafka.common.record.SimpleRecord;
+import org.apache.kafka.common.utils.Utils;
+import tech.smartboot.mqtt.plugin.kafka.storage.config.PluginConfig;
+
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
+/**
+ * 分段日志，文件内容为连续的Kafka RecordBatch（magic v2），FETCH时按字节区间直接读取，无需逐条解码。
+ * MQTT消息的qos、retain等元数据以记录头的形式保存。
+ */
 final class LogSegment {
-    private static final byte RECORD_VERSION = 1;
-    private static final byte FLAG_RETAINED = 1;
+    static final String LOG_SUFFIX = ".log";
+    static final String HEADER_QOS = "mqtt.qos";
+    static final String HEADER_RETAINED = "mqtt.retained";
+    static final String HEADER_CLIENT_ID = "mqtt.client_id";
+    static final String HEADER_SOURCE = "mqtt.source";
+    private static final Header[] EMPTY_HEADERS = new Header[0];
+    /**
+     * 批次头：baseOffset(8) + batchLength(4) + partitionLeaderEpoch(4) + magic(1) + crc(4) + attributes(2)
+     * + lastOffsetDelta(4) + baseTimestamp(8) + maxTimestamp(8)，其余字段无需读取
+     */
+    private static final int BATCH_HEADER_SIZE = 43;
+    private static final int LAST_OFFSET_DELTA_POSITION = 23;
+    private static final int MAX_TIMESTAMP_POSITION = 35;
 
     private final Path path;
     private final long baseOffset;
     private final FileChannel channel;
-    private final List<Long> offsets = new ArrayList<>();
-    private final List<Long> positions = new ArrayList<>();
+    private final OffsetIndex offsetIndex;
+    private final TimeIndex timeIndex;
+    private final int indexIntervalBytes;
 
     private long sizeInBytes;
+    private long lastOffset;
+    private long maxTimestamp = -1;
+    private int bytesSinceLastIndexEntry;
     private long lastAppendTime = System.currentTimeMillis();
     private boolean dirty;
-
-    LogSegment(Path path, long baseOffset) throws IOException {
+    /**
+     * 不再写入的分段按需映射整个文件，FETCH时返回其切片
+     */
+    private MappedByteBuffer mapped;
+
+    /**
+     * @param recover 是否扫描整个分段重建索引，未正常关闭时需对最后一个分段执行恢复
+     */
+    LogSegment(Path path, long baseOffset, PluginConfig.StorageConfig config, boolean recover) throws IOException {
         this.path = path;
         this.baseOffset = baseOffset;
+        this.lastOffset = baseOffset - 1;
+        this.indexIntervalBytes = config.getIndexIntervalBytes();
+        if (!Files.exists(indexPath(path, OffsetIndex.SUFFIX)) && Files.exists(path) && LegacySegmentConverter.isLegacy(path)) {
+            LegacySegmentConverter.convert(path);
+        }
         this.channel = FileChannel.open(path,
                 StandardOpenOption.CREATE,
                 StandardOpenOption.READ,
                 StandardOpenOption.WRITE);
-        load();
+        this.offsetIndex = new OffsetIndex(indexPath(path, OffsetIndex.SUFFIX), baseOffset, config.getIndexMaxBytes());
+        this.timeIndex = new TimeIndex(indexPath(path, TimeIndex.SUFFIX), baseOffset, config.getIndexMaxBytes());
+        if (recover || !offsetIndex.sanityCheck(channel.size()) || !timeIndex.sanityCheck()) {
+            recover();
+        } else {
+            load();
+        }
+        channel.position(sizeInBytes);
+    }
+
+    static Path indexPath(Path logPath, String suffix) {
+        String fileName = logPath.getFileName().toString();
+        return logPath.resolveSibling(fileName.substring(0, fileName.length() - LOG_SUFFIX.length()) + suffix);
     }
 
+    /**
+     * 基于已有索引加载，仅扫描最后一个索引条目之后的批次
+     */
     private void load() throws IOException {
-        long position = 0;
-        ByteBuffer sizeBuffer = ByteBuffer.allocate(4);
+        long position = offsetIndex.lastPosition();
+        maxTimestamp = timeIndex.lastTimestamp();
+        scan(position, false);
+        bytesSinceLastIndexEntry = (int) (sizeInBytes - position);
+    }
+
+    /**
+     * 扫描整个分段重建索引，并截断末尾不完整的批次
+     */
+    private void recover() throws IOException {
+        offsetIndex.reset();
+        timeIndex.reset();
+        scan(0, true);
+    }
+
+    private void scan(long position, boolean rebuildIndex) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_SIZE);
         long channelSize = channel.size();
-        while (position + 4 <= channelSize) {
-            sizeBuffer.clear();
-            readFully(position, sizeBuffer);
-            sizeBuffer.flip();
-            int recordSize = sizeBuffer.getInt();
-            if (recordSize <= 0 || position + 4L + recordSize > channelSize) {
+        while (position + BATCH_HEADER_SIZE <= channelSize) {
+            readHeader(position, header);
+            int batchSize = Records.LOG_OVERHEAD + header.getInt(Records.SIZE_OFFSET);
+            if (batchSize < BATCH_HEADER_SIZE || position + batchSize > channelSize) {
                 break;
             }
-            ByteBuffer recordBuffer = ByteBuffer.allocate(recordSize);
-            readFully(position + 4, recordBuffer);
-            recordBuffer.flip();
-            StoredMessage message = deserialize(recordBuffer, null, 0);
-            offsets.add(message.getOffset());
-            positions.add(position);
-            position += 4L + recordSize;
+            byte magic = header.get(Records.MAGIC_OFFSET);
+            if (magic != RecordBatch.CURRENT_MAGIC_VALUE) {
+                throw new IllegalStateException("unsupported record batch magic: " + magic);
+            }
+            //恢复时校验CRC，截断未完整写入的批次
+            if (rebuildIndex && !isValidBatch(position, batchSize)) {
+                break;
+            }
+            long batchBaseOffset = header.getLong(Records.OFFSET_OFFSET);
+            long batchLastOffset = batchBaseOffset + header.getInt(LAST_OFFSET_DELTA_POSITION);
+            long batchMaxTimestamp = header.getLong(MAX_TIMESTAMP_POSITION);
+            if (rebuildIndex) {
+                onAppend(batchBaseOffset, batchLastOffset, batchMaxTimestamp, position, batchSize);
+            } else {
+                lastOffset = batchLastOffset;
+                maxTimestamp = Math.max(maxTimestamp, batchMaxTimestamp);
+            }
+            position += batchSize;
         }
         sizeInBytes = position;
-        channel.position(sizeInBytes);
+        if (channelSize > sizeInBytes) {
+            channel.truncate(sizeInBytes);
+        }
+    }
+
+    /**
+     * 每写入indexIntervalBytes字节追加一个索引条目，首个批次总是被索引
+     */
+    private void onAppend(long batchBaseOffset, long batchLastOffset, long batchMaxTimestamp, long position, int size) throws IOException {
+        lastOffset = batchLastOffset;
+        maxTimestamp = Math.max(maxTimestamp, batchMaxTimestamp);
+        if (offsetIndex.entries() == 0 || bytesSinceLastIndexEntry >= indexIntervalBytes) {
+            offsetIndex.append(batchBaseOffset, position);
+            timeIndex.maybeAppend(maxTimestamp, batchLastOffset);
+            bytesSinceLastIndexEntry = 0;
+        }
+        bytesSinceLastIndexEntry += size;
     }
 
     long getBaseOffset() {
@@ -72,117 +167,180 @@ final class LogSegment {
         return dirty;
     }
 
-    int recordCount() {
-        return offsets.size();
+    boolean isEmpty() {
+        return sizeInBytes == 0;
+    }
+
+    /**
+     * 索引已写满或文件位置即将超出索引可表示的范围，需要滚动至新的分段
+     */
+    boolean isFull() {
+        return offsetIndex.isFull() || timeIndex.isFull() || sizeInBytes >= Integer.MAX_VALUE;
     }
 
     long firstOffset() {
-        return offsets.isEmpty() ? baseOffset : offsets.get(0);
+        return offsetIndex.firstOffset();
     }
 
     long lastOffset() {
-        return offsets.isEmpty() ? baseOffset - 1 : offsets.get(offsets.size() - 1);
+        return lastOffset;
+    }
+
+    long maxTimestamp() {
+        return maxTimestamp;
     }
 
     synchronized AppendResult append(StoredMessage message) throws IOException {
-        ByteBuffer serialized = serialize(message);
-        int written = serialized.remaining();
+        ByteBuffer batch = toRecords(message).buffer();
+        int written = batch.remaining();
         long position = sizeInBytes;
         channel.position(position);
-        while (serialized.hasRemaining()) {
-            channel.write(serialized);
+        while (batch.hasRemaining()) {
+            channel.write(batch);
         }
-        offsets.add(message.getOffset());
-        positions.add(position);
+        onAppend(message.getOffset(), message.getOffset(), message.getTimestamp(), position, written);
         sizeInBytes += written;
         lastAppendTime = System.currentTimeMillis();
         dirty = true;
         return new AppendResult(message, written);
     }
 
-    synchronized List<StoredMessage> readFromOffset(String topic,
-                                                    int partition,
-                                                    long offset,
-                                                    int maxBytes,
-                                                    int maxRecords) throws IOException {
-        if (offsets.isEmpty()) {
-            return Collections.emptyList();
-        }
-        int startIndex = findStartIndex(offset);
-        if (startIndex < 0 || startIndex >= offsets.size()) {
-            return Collections.emptyList();
+    /**
+     * 读取包含offset的批次起的连续批次，按批次边界截断至maxBytes。
+     * <p>
+     * 不再写入的分段返回内存映射文件的切片，写入中的分段读取至堆内存。
+     * </p>
+     *
+     * @param minOneBatch 首个批次超出maxBytes时是否依然返回
+     * @param active      是否为写入中的分段
+     * @return 无可读取的批次时返回null
+     */
+    synchronized ByteBuffer read(long offset, int maxBytes, boolean minOneBatch, boolean active) throws IOException {
+        if (isEmpty() || offset > lastOffset) {
+            return null;
         }
-        List<StoredMessage> messages = new ArrayList<>();
-        int bytes = 0;
-        for (int i = startIndex; i < offsets.size(); i++) {
-            StoredMessage message = readMessageAt(topic, partition, positions.get(i));
-            int messageBytes = sizeOf(message);
-            if (!messages.isEmpty() && (bytes + messageBytes > maxBytes || messages.size() >= maxRecords)) {
+        long start = seek(offset);
+        long limit = Math.min(sizeInBytes, start + Math.max(0, maxBytes));
+        //借助索引直接定位至limit前最后一个被索引的批次，至多再扫描一个索引间隔
+        long end = Math.max(start, offsetIndex.floorPosition(limit));
+        ByteBuffer header = ByteBuffer.allocate(Records.LOG_OVERHEAD);
+        while (end < sizeInBytes) {
+            header.clear();
+            readFully(end, header);
+            long next = end + Records.LOG_OVERHEAD + header.getInt(Records.SIZE_OFFSET);
+            if (next > limit && !(minOneBatch && end == start)) {
                 break;
             }
-            messages.add(message);
-            bytes += messageBytes;
-            if (messages.size() >= maxRecords) {
-                break;
+            end = next;
+        }
+        if (end == start) {
+            return null;
+        }
+        int length = (int) (end - start);
+        if (!active && sizeInBytes <= Integer.MAX_VALUE) {
+            if (mapped == null || mapped.capacity() < sizeInBytes) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, sizeInBytes);
             }
+            ByteBuffer slice = mapped.duplicate();
+            slice.position((int) start);
+            slice.limit((int) end);
+            return slice.slice();
         }
-        return messages;
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(start, buffer);
+        buffer.flip();
+        return buffer;
     }
 
-    synchronized OffsetLookupResult findOffsetByTimestamp(String topic, int partition, long timestamp) throws IOException {
-        for (int i = 0; i < positions.size(); i++) {
-            StoredMessage message = readMessageAt(topic, partition, positions.get(i));
-            if (message.getTimestamp() >= timestamp) {
-                return new OffsetLookupResult(message.getOffset(), message.getTimestamp());
+    /**
+     * 查找首条时间戳不小于timestamp的记录，由时间索引定位起点后至多扫描一个索引间隔
+     */
+    synchronized OffsetLookupResult findOffsetByTimestamp(long timestamp) throws IOException {
+        if (isEmpty() || maxTimestamp < timestamp) {
+            return new OffsetLookupResult(lastOffset + 1, -1);
+        }
+        long position = seek(timeIndex.lookupBefore(timestamp) + 1);
+        ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_SIZE);
+        while (position < sizeInBytes) {
+            readHeader(position, header);
+            int batchSize = Records.LOG_OVERHEAD + header.getInt(Records.SIZE_OFFSET);
+            if (header.getLong(MAX_TIMESTAMP_POSITION) >= timestamp) {
+                ByteBuffer buffer = ByteBuffer.allocate(batchSize);
+                readFully(position, buffer);
+                buffer.flip();
+                for (Record record : MemoryRecords.readableRecords(buffer).firstBatch()) {
+                    if (record.timestamp() >= timestamp) {
+                        return new OffsetLookupResult(record.offset(), record.timestamp());
+                    }
+                }
             }
+            position += batchSize;
         }
-        return new OffsetLookupResult(lastOffset() + 1, -1);
+        return new OffsetLookupResult(lastOffset + 1, -1);
     }
 
     synchronized void force() throws IOException {
         channel.force(true);
+        offsetIndex.force();
+        timeIndex.force();
         dirty = false;
     }
 
+    /**
+     * 分段不再写入，落盘并截断索引文件
+     */
+    synchronized void seal() throws IOException {
+        force();
+        offsetIndex.trim();
+        timeIndex.trim();
+    }
+
     long lastAppendTime() {
         return lastAppendTime;
     }
 
     synchronized void close() throws IOException {
+        if (dirty) {
+            force();
+        }
+        offsetIndex.close();
+        timeIndex.close();
         channel.close();
     }
 
     synchronized void delete() throws IOException {
-        close();
+        channel.close();
+        offsetIndex.delete();
+        timeIndex.delete();
         Files.deleteIfExists(path);
     }
 
-    private int findStartIndex(long targetOffset) {
-        int low = 0;
-        int high = offsets.size() - 1;
-        int result = offsets.size();
-        while (low <= high) {
-            int mid = (low + high) >>> 1;
-            long value = offsets.get(mid);
-            if (value >= targetOffset) {
-                result = mid;
-                high = mid - 1;
-            } else {
-                low = mid + 1;
+    /**
+     * 定位包含targetOffset的批次，不存在时为首个offset更大的批次
+     */
+    private long seek(long targetOffset) throws IOException {
+        long position = offsetIndex.lookup(targetOffset);
+        ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_SIZE);
+        while (position < sizeInBytes) {
+            readHeader(position, header);
+            if (header.getLong(Records.OFFSET_OFFSET) + header.getInt(LAST_OFFSET_DELTA_POSITION) >= targetOffset) {
+                break;
             }
+            position += Records.LOG_OVERHEAD + header.getInt(Records.SIZE_OFFSET);
         }
-        return result;
+        return position;
     }
 
-    private StoredMessage readMessageAt(String topic, int partition, long position) throws IOException {
-        ByteBuffer sizeBuffer = ByteBuffer.allocate(4);
-        readFully(position, sizeBuffer);
-        sizeBuffer.flip();
-        int size = sizeBuffer.getInt();
-        ByteBuffer recordBuffer = ByteBuffer.allocate(size);
-        readFully(position + 4, recordBuffer);
-        recordBuffer.flip();
-        return deserialize(recordBuffer, topic, partition);
+    private boolean isValidBatch(long position, int batchSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(batchSize);
+        readFully(position, buffer);
+        buffer.flip();
+        return MemoryRecords.readableRecords(buffer).firstBatch().isValid();
+    }
+
+    private void readHeader(long position, ByteBuffer header) throws IOException {
+        header.clear();
+        readFully(position, header);
     }
 
     private void readFully(long position, ByteBuffer buffer) throws IOException {
@@ -194,77 +352,49 @@ final class LogSegment {
         }
     }
 
-    private static ByteBuffer serialize(StoredMessage message) {
-        byte[] clientIdBytes = message.getSourceClientId() == null ? null : message.getSourceClientId().getBytes(StandardCharsets.UTF_8);
-        byte[] keyBytes = message.getKey();
-        byte[] valueBytes = message.getValue();
-        int payloadSize = 1 + 1 + 2 + 1 + 8 + 8 + 4 + 4 + 4
-                + length(clientIdBytes)
-                + length(keyBytes)
-                + length(valueBytes);
-        ByteBuffer buffer = ByteBuffer.allocate(4 + payloadSize);
-        buffer.putInt(payloadSize);
-        buffer.put(RECORD_VERSION);
-        buffer.put(message.getSourceType());
-        buffer.putShort(message.getQos());
-        buffer.put((byte) (message.isRetained() ? FLAG_RETAINED : 0));
-        buffer.putLong(message.getOffset());
-        buffer.putLong(message.getTimestamp());
-        putBytes(buffer, clientIdBytes);
-        putBytes(buffer, keyBytes);
-        putBytes(buffer, valueBytes);
-        buffer.flip();
-        return buffer;
-    }
-
-    private static StoredMessage deserialize(ByteBuffer buffer, String topic, int partition) {
-        byte version = buffer.get();
-        if (version != RECORD_VERSION) {
-            throw new IllegalStateException("unsupported record version: " + version);
-        }
-        byte sourceType = buffer.get();
-        short qos = buffer.getShort();
-        boolean retained = (buffer.get() & FLAG_RETAINED) == FLAG_RETAINED;
-        long offset = buffer.getLong();
-        long timestamp = buffer.getLong();
-        String sourceClientId = toString(readBytes(buffer));
-        byte[] key = readBytes(buffer);
-        byte[] value = readBytes(buffer);
-        return new StoredMessage(topic, partition, offset, timestamp, key, value, qos, retained, sourceClientId, sourceType);
-    }
-
-    private static int length(byte[] bytes) {
-        return bytes == null ? 0 : bytes.length;
-    }
-
-    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
-        if (bytes == null) {
-            buffer.putInt(-1);
-        } else {
-            buffer.putInt(bytes.length);
-            buffer.put(bytes);
+    static MemoryRecords toRecords(StoredMessage message) {
+        Header[] headers = new Header[message.getSourceClientId() == null ? 3 : 4];
+        headers[0] = new RecordHeader(HEADER_SOURCE, new byte[]{message.getSourceType()});
+        headers[1] = new RecordHeader(HEADER_QOS, new byte[]{(byte) message.getQos()});
+        headers[2] = new RecordHeader(HEADER_RETAINED, new byte[]{(byte) (message.isRetained() ? 1 : 0)});
+        if (message.getSourceClientId() != null) {
+            headers[3] = new RecordHeader(HEADER_CLIENT_ID, message.getSourceClientId().getBytes(StandardCharsets.UTF_8));
         }
+        return MemoryRecords.withRecords(message.getOffset(), CompressionType.NONE,
+                new SimpleRecord(message.getTimestamp(), message.getKey(), message.getValue(), headers));
     }
 
-    private static byte[] readBytes(ByteBuffer buffer) {
-        int length = buffer.getInt();
-        if (length < 0) {
-            return null;
+    static StoredMessage toStoredMessage(String topic, int partition, Record record) {
+        byte sourceType = StoredMessage.SOURCE_KAFKA;
+        short qos = 1;
+        boolean retained = false;
+        String sourceClientId = null;
+        Header[] headers = record.headers() == null ? EMPTY_HEADERS : record.headers();
+        for (Header header : headers) {
+            byte[] value = header.value();
+            if (value == null || value.length == 0) {
+                continue;
+            }
+            switch (header.key()) {
+                case HEADER_SOURCE:
+                    sourceType = value[0];
+                    break;
+                case HEADER_QOS:
+                    qos = value[0];
+                    break;
+                case HEADER_RETAINED:
+                    retained = value[0] == 1;
+                    break;
+                case HEADER_CLIENT_ID:
+                    sourceClientId = new String(value, StandardCharsets.UTF_8);
+                    break;
+                default:
+                    break;
+            }
         }
-        byte[] bytes = new byte[length];
-        buffer.get(bytes);
-        return bytes;
-    }
-
-    private static String toString(byte[] bytes) {
-        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
-    }
-
-    static int sizeOf(StoredMessage message) {
-        return 4 + 1 + 1 + 2 + 1 + 8 + 8 + 4 + 4 + 4
-                + length(message.getSourceClientId() == null ? null : message.getSourceClientId().getBytes(StandardCharsets.UTF_8))
-                + length(message.getKey())
-                + length(message.getValue());
+        byte[] key = record.hasKey() ? Utils.toArray(record.key()) : null;
+        byte[] value = record.hasValue() ? Utils.toArray(record.value()) : null;
+        return new StoredMessage(topic, partition, record.offset(), record.timestamp(), key, value, qos, retained, sourceClientId, sourceType);
     }
 
     static final class AppendResult {
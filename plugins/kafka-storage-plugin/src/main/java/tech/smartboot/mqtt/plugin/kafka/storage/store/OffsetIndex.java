@@ -0,0 +1,84 @@
+package tech.smartboot.mqtt.plugin.kafka.storage.store;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * offset索引，条目格式：relativeOffset(4) + position(4)，记录批次的起始offset与其在分段文件中的位置。
+ */
+final class OffsetIndex extends AbstractIndex {
+    static final String SUFFIX = ".index";
+    private static final int ENTRY_SIZE = 8;
+
+    private final long baseOffset;
+
+    OffsetIndex(Path path, long baseOffset, int maxIndexBytes) throws IOException {
+        super(path, ENTRY_SIZE, maxIndexBytes);
+        this.baseOffset = baseOffset;
+    }
+
+    void append(long offset, long position) throws IOException {
+        if (isFull()) {
+            return;
+        }
+        int entryPosition = nextEntryPosition();
+        mmap.putInt(entryPosition, (int) (offset - baseOffset));
+        mmap.putInt(entryPosition + 4, (int) position);
+        entries++;
+    }
+
+    @Override
+    protected long keyAt(int index) {
+        return baseOffset + mmap.getInt(index * ENTRY_SIZE);
+    }
+
+    private long positionAt(int index) {
+        return mmap.getInt(index * ENTRY_SIZE + 4);
+    }
+
+    /**
+     * 查找offset不大于targetOffset的最后一个索引条目所在位置，不存在时返回0
+     */
+    long lookup(long targetOffset) {
+        int index = largestLowerBound(targetOffset);
+        return index < 0 ? 0 : positionAt(index);
+    }
+
+    /**
+     * 查找文件位置不大于maxPosition的最后一个索引条目所在位置，不存在时返回0
+     */
+    long floorPosition(long maxPosition) {
+        int low = 0;
+        int high = entries - 1;
+        long result = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long position = positionAt(mid);
+            if (position <= maxPosition) {
+                result = position;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 首条记录总是被索引，即为分段的起始offset
+     */
+    long firstOffset() {
+        return entries == 0 ? baseOffset : keyAt(0);
+    }
+
+    long lastPosition() {
+        return entries == 0 ? 0 : positionAt(entries - 1);
+    }
+
+    boolean sanityCheck(long logSize) {
+        if (!sanityCheck()) {
+            return false;
+        }
+        return entries == 0 ? logSize == 0 : lastPosition() < logSize;
+    }
+}
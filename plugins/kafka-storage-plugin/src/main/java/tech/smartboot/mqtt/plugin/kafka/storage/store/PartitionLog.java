@@ -1,9 +1,13 @@
 package tech.smartboot.mqtt.plugin.kafka.storage.store;
 
+import org.apache.kafka.common.record.MemoryRecords;
+import org.apache.kafka.common.record.Record;
+import org.apache.kafka.common.record.RecordBatch;
 import tech.smartboot.mqtt.plugin.kafka.storage.config.PluginConfig;
 import tech.smartboot.mqtt.plugin.kafka.storage.metrics.KafkaStorageMetrics;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
@@ -11,9 +15,15 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class PartitionLog {
+    /**
+     * 正常关闭的标记文件，存在时启动无需扫描分段文件重建索引
+     */
+    private static final String CLEAN_SHUTDOWN_FILE = ".clean_shutdown";
+
     private final String topic;
     private final int partition;
     private final Path dir;
@@ -38,20 +48,29 @@ public class PartitionLog {
         loadSegments();
     }
 
+    /**
+     * 加载分段文件。正常关闭时沿用已有索引，否则重建最后一个分段的索引，
+     * 此前的分段已在滚动时落盘，无需恢复。
+     */
     private void loadSegments() throws IOException {
+        boolean cleanShutdown = Files.deleteIfExists(dir.resolve(CLEAN_SHUTDOWN_FILE));
+        List<Path> paths;
         try (Stream<Path> stream = Files.list(dir)) {
-            stream
-                    .filter(path -> path.getFileName().toString().endsWith(".log"))
+            paths = stream
+                    .filter(path -> path.getFileName().toString().endsWith(LogSegment.LOG_SUFFIX))
                     .sorted()
-                    .forEach(path -> {
-                        String fileName = path.getFileName().toString();
-                        long baseOffset = Long.parseLong(fileName.substring(0, fileName.length() - 4));
-                        try {
-                            segments.put(baseOffset, new LogSegment(path, baseOffset));
-                        } catch (IOException e) {
-                            throw new IllegalStateException("load segment failed: " + path, e);
-                        }
-                    });
+                    .collect(Collectors.toList());
+        }
+        for (int i = 0; i < paths.size(); i++) {
+            Path path = paths.get(i);
+            String fileName = path.getFileName().toString();
+            long baseOffset = Long.parseLong(fileName.substring(0, fileName.length() - LogSegment.LOG_SUFFIX.length()));
+            boolean recover = !cleanShutdown && i == paths.size() - 1;
+            try {
+                segments.put(baseOffset, new LogSegment(path, baseOffset, config, recover));
+            } catch (IOException e) {
+                throw new IllegalStateException("load segment failed: " + path, e);
+            }
         }
         if (!segments.isEmpty()) {
             LogSegment last = segments.lastEntry().getValue();
@@ -70,6 +89,9 @@ public class PartitionLog {
         StoredMessage message = new StoredMessage(topic, partition, offset, timestamp, key, value, qos, retained, sourceClientId, sourceType);
         LogSegment active = activeSegment();
         if (active == null || shouldRoll(active)) {
+            if (active != null) {
+                active.seal();
+            }
             active = createSegment(offset);
         }
         LogSegment.AppendResult appendResult = active.append(message);
@@ -81,30 +103,46 @@ public class PartitionLog {
         return new AppendResult(appendResult.getMessage(), appendResult.getWrittenBytes());
     }
 
+    /**
+     * 读取offset起的连续批次，不解码记录，仅读取单个分段
+     *
+     * @param minOneBatch 首个批次超出maxBytes时是否依然返回
+     */
+    public synchronized ReadResult read(long offset, int maxBytes, boolean minOneBatch) throws IOException {
+        MemoryRecords records = MemoryRecords.EMPTY;
+        Map.Entry<Long, LogSegment> entry = segments.floorEntry(offset);
+        if (entry == null) {
+            entry = segments.ceilingEntry(offset);
+        }
+        LogSegment active = activeSegment();
+        while (entry != null) {
+            LogSegment segment = entry.getValue();
+            ByteBuffer buffer = segment.read(offset, maxBytes <= 0 ? Integer.MAX_VALUE : maxBytes, minOneBatch, segment == active);
+            if (buffer != null) {
+                records = MemoryRecords.readableRecords(buffer);
+                break;
+            }
+            entry = segments.higherEntry(entry.getKey());
+        }
+        return new ReadResult(records, nextOffset, logStartOffset());
+    }
+
     public synchronized FetchResult fetch(long offset, int maxBytes, int maxRecords) throws IOException {
         List<StoredMessage> messages = new ArrayList<>();
-        int remainingBytes = maxBytes <= 0 ? Integer.MAX_VALUE : maxBytes;
         int remainingRecords = maxRecords <= 0 ? Integer.MAX_VALUE : maxRecords;
-        Map.Entry<Long, LogSegment> start = segments.floorEntry(offset);
-        if (start == null) {
-            start = segments.ceilingEntry(offset);
-        }
-        if (start == null) {
-            return new FetchResult(messages, nextOffset, logStartOffset());
-        }
-        for (LogSegment segment : segments.tailMap(start.getKey(), true).values()) {
-            List<StoredMessage> part = segment.readFromOffset(topic, partition, offset, remainingBytes, remainingRecords);
-            for (StoredMessage message : part) {
-                messages.add(message);
-                remainingBytes -= LogSegment.sizeOf(message);
-                remainingRecords--;
+        ReadResult result = read(offset, maxBytes, true);
+        for (RecordBatch batch : result.getRecords().batches()) {
+            for (Record record : batch) {
+                if (record.offset() < offset) {
+                    continue;
+                }
+                if (messages.size() >= remainingRecords) {
+                    return new FetchResult(messages, result.getHighWatermark(), result.getLogStartOffset());
+                }
+                messages.add(LogSegment.toStoredMessage(topic, partition, record));
             }
-            if (remainingBytes <= 0 || remainingRecords <= 0) {
-                break;
-            }
-            offset = segment.lastOffset() + 1;
         }
-        return new FetchResult(messages, nextOffset, logStartOffset());
+        return new FetchResult(messages, result.getHighWatermark(), result.getLogStartOffset());
     }
 
     public synchronized OffsetLookupResult lookupOffset(long timestamp) throws IOException {
@@ -118,7 +156,10 @@ public class PartitionLog {
             return new OffsetLookupResult(nextOffset, -1);
         }
         for (LogSegment segment : segments.values()) {
-            LogSegment.OffsetLookupResult result = segment.findOffsetByTimestamp(topic, partition, timestamp);
+            if (segment.maxTimestamp() < timestamp) {
+                continue;
+            }
+            LogSegment.OffsetLookupResult result = segment.findOffsetByTimestamp(timestamp);
             if (result.getTimestamp() >= 0) {
                 return new OffsetLookupResult(result.getOffset(), result.getTimestamp());
             }
@@ -180,10 +221,11 @@ public class PartitionLog {
         for (LogSegment segment : segments.values()) {
             segment.close();
         }
+        Files.write(dir.resolve(CLEAN_SHUTDOWN_FILE), new byte[0]);
     }
 
     private boolean shouldRoll(LogSegment segment) {
-        return segment.recordCount() > 0 && segment.getSizeInBytes() >= config.getSegmentBytes();
+        return !segment.isEmpty() && (segment.getSizeInBytes() >= config.getSegmentBytes() || segment.isFull());
     }
 
     private LogSegment activeSegment() {
@@ -196,7 +238,7 @@ public class PartitionLog {
             Path backup = dir.resolve(segmentPath.getFileName().toString() + ".bak");
             Files.move(segmentPath, backup, StandardCopyOption.REPLACE_EXISTING);
         }
-        LogSegment segment = new LogSegment(segmentPath, baseOffset);
+        LogSegment segment = new LogSegment(segmentPath, baseOffset, config, false);
         segments.put(baseOffset, segment);
         return segment;
     }
@@ -219,6 +261,41 @@ public class PartitionLog {
         }
     }
 
+    public static class ReadResult {
+        private final MemoryRecords records;
+        private final long highWatermark;
+        private final long logStartOffset;
+
+        public ReadResult(MemoryRecords records, long highWatermark, long logStartOffset) {
+            this.records = records;
+            this.highWatermark = highWatermark;
+            this.logStartOffset = logStartOffset;
+        }
+
+        public MemoryRecords getRecords() {
+            return records;
+        }
+
+        public long getHighWatermark() {
+            return highWatermark;
+        }
+
+        public long getLogStartOffset() {
+            return logStartOffset;
+        }
+
+        /**
+         * 由批次头计算记录数，无需解码记录
+         */
+        public int recordCount() {
+            int count = 0;
+            for (RecordBatch batch : records.batches()) {
+                count += (int) (batch.lastOffset() - batch.baseOffset() + 1);
+            }
+            return count;
+        }
+    }
+
     public static class FetchResult {
         private final List<StoredMessage> messages;
         private final long highWatermark;
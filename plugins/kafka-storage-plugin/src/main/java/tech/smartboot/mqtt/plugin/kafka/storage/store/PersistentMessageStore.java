@@ -1,5 +1,6 @@
 package tech.smartboot.mqtt.plugin.kafka.storage.store;
 
+import org.apache.kafka.common.record.MemoryRecords;
 import tech.smartboot.mqtt.plugin.kafka.storage.config.PluginConfig;
 import tech.smartboot.mqtt.plugin.kafka.storage.metrics.KafkaStorageMetrics;
 
@@ -11,6 +12,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Stream;
 
 public class PersistentMessageStore {
@@ -20,6 +22,7 @@ public class PersistentMessageStore {
     private final KafkaStorageMetrics metrics;
     private final Map<String, Integer> configuredTopicPartitions = new ConcurrentHashMap<>();
     private final Map<String, TopicLog> topics = new ConcurrentHashMap<>();
+    private final List<AppendListener> appendListeners = new CopyOnWriteArrayList<>();
 
     private ConsumerOffsetStore offsetStore;
 
@@ -43,7 +46,7 @@ public class PersistentMessageStore {
     public synchronized void start() throws IOException {
         Files.createDirectories(rootDir);
         Files.createDirectories(topicsDir);
-        offsetStore = new ConsumerOffsetStore(rootDir.resolve("consumer-offsets.properties"));
+        offsetStore = new ConsumerOffsetStore(rootDir);
         loadExistingTopics();
         for (Map.Entry<String, Integer> entry : configuredTopicPartitions.entrySet()) {
             ensureTopic(entry.getKey());
@@ -55,6 +58,9 @@ public class PersistentMessageStore {
         for (TopicLog topicLog : topics.values()) {
             topicLog.close();
         }
+        if (offsetStore != null) {
+            offsetStore.close();
+        }
     }
 
     public StoredMessage appendMqtt(String topic,
@@ -66,6 +72,7 @@ public class PersistentMessageStore {
         PartitionLog.AppendResult result = topicLog.appendMqtt(value, qos, retained, sourceClientId);
         metrics.markMqttMessage(value == null ? 0 : value.length);
         metrics.addStoredBytes(result.getWrittenBytes());
+        notifyAppend(result);
         return result.getMessage();
     }
 
@@ -79,9 +86,33 @@ public class PersistentMessageStore {
         PartitionLog.AppendResult result = topicLog.appendKafka(partition, key, value, timestamp, sourceClientId);
         metrics.markKafkaProducedMessage(value == null ? 0 : value.length);
         metrics.addStoredBytes(result.getWrittenBytes());
+        notifyAppend(result);
         return result.getMessage();
     }
 
+    /**
+     * 注册消息写入监听，写入完成后在写入线程中回调
+     */
+    public void addAppendListener(AppendListener listener) {
+        appendListeners.add(listener);
+    }
+
+    private void notifyAppend(PartitionLog.AppendResult result) {
+        for (AppendListener listener : appendListeners) {
+            listener.onAppend(result.getMessage().getTopic(), result.getMessage().getPartition(), result.getWrittenBytes());
+        }
+    }
+
+    public PartitionLog.ReadResult read(String topic, int partition, long offset, int maxBytes, boolean minOneBatch) throws IOException {
+        TopicLog topicLog = topics.get(topic);
+        if (topicLog == null) {
+            return new PartitionLog.ReadResult(MemoryRecords.EMPTY, 0, 0);
+        }
+        PartitionLog.ReadResult result = topicLog.read(partition, offset, maxBytes, minOneBatch);
+        metrics.markFetch(result.recordCount(), result.getRecords().sizeInBytes());
+        return result;
+    }
+
     public PartitionLog.FetchResult fetch(String topic, int partition, long offset, int maxBytes, int maxRecords) throws IOException {
         TopicLog topicLog = topics.get(topic);
         if (topicLog == null) {
@@ -146,6 +177,16 @@ public class PersistentMessageStore {
         metrics.markOffsetCommit();
     }
 
+    /**
+     * 批量提交同一请求中各分区的位点，仅刷盘一次
+     */
+    public void commitOffsets(List<ConsumerOffsetStore.OffsetInfo> infos) throws IOException {
+        offsetStore.commit(infos);
+        for (int i = 0; i < infos.size(); i++) {
+            metrics.markOffsetCommit();
+        }
+    }
+
     public ConsumerOffsetStore.OffsetInfo readCommittedOffset(String groupId, String topic, int partition) {
         return offsetStore.read(groupId, topic, partition);
     }
@@ -170,6 +211,7 @@ public class PersistentMessageStore {
         if (removedSegments > 0) {
             metrics.markCleanup(removedSegments);
         }
+        offsetStore.compactIfRequired();
         return new CleanupResult(removedSegments);
     }
 
@@ -202,6 +244,10 @@ public class PersistentMessageStore {
         return total;
     }
 
+    public interface AppendListener {
+        void onAppend(String topic, int partition, int writtenBytes);
+    }
+
     public static class CleanupResult {
         private final int removedSegments;
 
@@ -0,0 +1,52 @@
+package tech.smartboot.mqtt.plugin.kafka.storage.store;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 时间索引，条目格式：timestamp(8) + relativeOffset(4)。
+ * <p>
+ * 条目(timestamp, offset)表示offset及之前的记录时间戳均不大于timestamp，
+ * 仅在最大时间戳增长时追加，消息时间戳乱序时依然可以二分检索。
+ * </p>
+ */
+final class TimeIndex extends AbstractIndex {
+    static final String SUFFIX = ".timeindex";
+    private static final int ENTRY_SIZE = 12;
+
+    private final long baseOffset;
+
+    TimeIndex(Path path, long baseOffset, int maxIndexBytes) throws IOException {
+        super(path, ENTRY_SIZE, maxIndexBytes);
+        this.baseOffset = baseOffset;
+    }
+
+    void maybeAppend(long maxTimestamp, long offset) throws IOException {
+        if (isFull() || (entries > 0 && maxTimestamp <= lastTimestamp())) {
+            return;
+        }
+        int entryPosition = nextEntryPosition();
+        mmap.putLong(entryPosition, maxTimestamp);
+        mmap.putInt(entryPosition + 8, (int) (offset - baseOffset));
+        entries++;
+    }
+
+    @Override
+    protected long keyAt(int index) {
+        return mmap.getLong(index * ENTRY_SIZE);
+    }
+
+    /**
+     * 查找时间戳小于timestamp的最后一个索引条目，该条目offset及之前的记录均早于timestamp
+     *
+     * @return 条目的offset，不存在时返回baseOffset - 1
+     */
+    long lookupBefore(long timestamp) {
+        int index = timestamp == Long.MIN_VALUE ? -1 : largestLowerBound(timestamp - 1);
+        return index < 0 ? baseOffset - 1 : baseOffset + mmap.getInt(index * ENTRY_SIZE + 8);
+    }
+
+    long lastTimestamp() {
+        return entries == 0 ? -1 : keyAt(entries - 1);
+    }
+}
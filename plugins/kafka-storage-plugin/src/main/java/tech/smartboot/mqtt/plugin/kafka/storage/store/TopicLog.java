@@ -80,6 +80,10 @@ public class TopicLog {
         return partition(partition).append(key, value, timestamp, (short) 1, false, sourceClientId, StoredMessage.SOURCE_KAFKA);
     }
 
+    public synchronized PartitionLog.ReadResult read(int partition, long offset, int maxBytes, boolean minOneBatch) throws IOException {
+        return partition(partition).read(offset, maxBytes, minOneBatch);
+    }
+
     public synchronized PartitionLog.FetchResult fetch(int partition, long offset, int maxBytes, int maxRecords) throws IOException {
         return partition(partition).fetch(offset, maxBytes, maxRecords);
     }
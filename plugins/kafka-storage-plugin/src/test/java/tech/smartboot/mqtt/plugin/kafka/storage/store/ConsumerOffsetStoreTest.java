@@ -0,0 +1,120 @@
+package tech.smartboot.mqtt.plugin.kafka.storage.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsumerOffsetStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldReplayCompactedLogAfterConcurrentCommits() throws Exception {
+        ConsumerOffsetStore store = new ConsumerOffsetStore(tempDir);
+        List<Thread> threads = new ArrayList<>();
+        for (int group = 0; group < 4; group++) {
+            String groupId = "group-" + group;
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int offset = 1; offset <= 1000; offset++) {
+                        store.commit(groupId, "topic", offset % 2, offset, "m" + offset);
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long logSize = Files.size(tempDir.resolve(ConsumerOffsetStore.FILE_NAME));
+        assertTrue(store.compactIfRequired());
+        assertTrue(Files.size(tempDir.resolve(ConsumerOffsetStore.FILE_NAME)) < logSize);
+        assertFalse(store.compactIfRequired());
+        store.commit("group-0", "topic", 0, 2000, null);
+        store.close();
+
+        //模拟异常退出：末尾残留不完整的记录
+        try (FileChannel channel = FileChannel.open(tempDir.resolve(ConsumerOffsetStore.FILE_NAME), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2}), channel.size());
+        }
+        ConsumerOffsetStore recovered = new ConsumerOffsetStore(tempDir);
+        assertEquals(4, recovered.groupCount());
+        assertEquals(2000, recovered.read("group-0", "topic", 0).getOffset());
+        assertEquals("", recovered.read("group-0", "topic", 0).getMetadata());
+        assertEquals(999, recovered.read("group-3", "topic", 1).getOffset());
+        assertEquals("m999", recovered.read("group-3", "topic", 1).getMetadata());
+        assertEquals(2, recovered.listGroupOffsets("group-1").size());
+        assertNull(recovered.read("group-4", "topic", 0));
+        recovered.close();
+    }
+
+    @Test
+    void shouldCommitBatchWithSingleAppend() throws Exception {
+        ConsumerOffsetStore store = new ConsumerOffsetStore(tempDir);
+        List<ConsumerOffsetStore.OffsetInfo> batch = new ArrayList<>();
+        for (int partition = 0; partition < 8; partition++) {
+            batch.add(new ConsumerOffsetStore.OffsetInfo("group-a", "topic", partition, partition * 10L, "m" + partition, 100));
+        }
+        store.commit(batch);
+        store.commit(new ArrayList<>());
+        assertEquals(8, store.listGroupOffsets("group-a").size());
+        long logSize = Files.size(tempDir.resolve(ConsumerOffsetStore.FILE_NAME));
+        store.commit("group-a", "topic", 0, 5, null);
+        assertTrue(Files.size(tempDir.resolve(ConsumerOffsetStore.FILE_NAME)) > logSize);
+        store.close();
+
+        ConsumerOffsetStore recovered = new ConsumerOffsetStore(tempDir);
+        assertEquals(5, recovered.read("group-a", "topic", 0).getOffset());
+        for (int partition = 1; partition < 8; partition++) {
+            ConsumerOffsetStore.OffsetInfo info = recovered.read("group-a", "topic", partition);
+            assertEquals(partition * 10L, info.getOffset());
+            assertEquals("m" + partition, info.getMetadata());
+            assertEquals(100, info.getCommitTimestamp());
+        }
+        recovered.close();
+    }
+
+    @Test
+    void shouldMigrateLegacyPropertiesFile() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("legacy", encode("group-a") + "\t" + encode("topic/a") + "\t3\t42\t" + encode("meta") + "\t100");
+        Path legacy = tempDir.resolve(ConsumerOffsetStore.LEGACY_FILE_NAME);
+        try (OutputStream outputStream = Files.newOutputStream(legacy)) {
+            properties.store(outputStream, null);
+        }
+        ConsumerOffsetStore store = new ConsumerOffsetStore(tempDir);
+        assertFalse(Files.exists(legacy));
+        store.close();
+
+        ConsumerOffsetStore recovered = new ConsumerOffsetStore(tempDir);
+        ConsumerOffsetStore.OffsetInfo info = recovered.read("group-a", "topic/a", 3);
+        assertEquals(42, info.getOffset());
+        assertEquals("meta", info.getMetadata());
+        assertEquals(100, info.getCommitTimestamp());
+        recovered.close();
+    }
+
+    private static String encode(String text) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
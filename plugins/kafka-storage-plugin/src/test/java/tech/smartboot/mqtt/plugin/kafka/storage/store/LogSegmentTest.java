@@ -0,0 +1,81 @@
+package tech.smartboot.mqtt.plugin.kafka.storage.store;
+
+import org.apache.kafka.common.record.MemoryRecords;
+import org.apache.kafka.common.record.RecordBatch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.smartboot.mqtt.plugin.kafka.storage.config.PluginConfig;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogSegmentTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldLookupBySparseIndexesAfterReopenAndRecovery() throws Exception {
+        PluginConfig.StorageConfig config = new PluginConfig.StorageConfig();
+        config.setIndexIntervalBytes(128);
+        Path path = tempDir.resolve(String.format("%020d.log", 10L));
+
+        //时间戳乱序写入
+        long[] timestamps = new long[200];
+        LogSegment segment = new LogSegment(path, 10, config, false);
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = 1000 + i * 10 + (i % 3 == 0 ? 25 : 0);
+            segment.append(new StoredMessage("t", 0, 10 + i, timestamps[i], null, new byte[i % 16], (short) 1, false, "c", StoredMessage.SOURCE_MQTT));
+        }
+        assertLookup(segment, timestamps);
+        segment.close();
+        assertTrue(Files.size(LogSegment.indexPath(path, OffsetIndex.SUFFIX)) > 0);
+
+        segment = new LogSegment(path, 10, config, false);
+        assertEquals(10 + timestamps.length - 1, segment.lastOffset());
+        assertLookup(segment, timestamps);
+        segment.force();
+
+        //模拟异常退出：末尾残留不完整的记录
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 1, 0, 1}), channel.size());
+        }
+        LogSegment recovered = new LogSegment(path, 10, config, true);
+        assertEquals(segment.getSizeInBytes(), recovered.getSizeInBytes());
+        assertLookup(recovered, timestamps);
+        recovered.close();
+        segment.close();
+    }
+
+    private void assertLookup(LogSegment segment, long[] timestamps) throws Exception {
+        assertEquals(10, segment.firstOffset());
+        for (int i = 0; i < timestamps.length; i += 7) {
+            ByteBuffer buffer = segment.read(10 + i, 1, true, i % 2 == 0);
+            RecordBatch batch = MemoryRecords.readableRecords(buffer).firstBatch();
+            assertEquals(10 + i, batch.baseOffset());
+            assertEquals(buffer.remaining(), batch.sizeInBytes());
+            assertEquals(timestamps[i], LogSegment.toStoredMessage("t", 0, batch.iterator().next()).getTimestamp());
+        }
+        for (long timestamp = 990; timestamp < 3100; timestamp += 3) {
+            long expected = -1;
+            for (int i = 0; i < timestamps.length; i++) {
+                if (timestamps[i] >= timestamp) {
+                    expected = 10 + i;
+                    break;
+                }
+            }
+            LogSegment.OffsetLookupResult result = segment.findOffsetByTimestamp(timestamp);
+            if (expected < 0) {
+                assertEquals(-1, result.getTimestamp());
+            } else {
+                assertEquals(expected, result.getOffset());
+            }
+        }
+    }
+}
@@ -25,6 +25,31 @@ public class BridgeConfig {
 
         private String encode = PayloadEncodeEnum.STRING.getCode();
 
+        /**
+         * 单批写入的最大消息数
+         */
+        private int batchSize = 500;
+
+        /**
+         * 批次未满时最长等待时间，单位毫秒
+         */
+        private int lingerMs = 5;
+
+        /**
+         * 同时等待 Redis 响应的最大批次数，超出后暂停写入，消息在队列中积压
+         */
+        private int maxInflightBatches = 4;
+
+        /**
+         * 待写入队列容量，队列已满时丢弃新消息
+         */
+        private int queueCapacity = 100000;
+
+        /**
+         * 是否开启 Redis 客户端调试日志
+         */
+        private boolean debug;
+
         public String getAddress() {
             return address;
         }
@@ -56,5 +81,45 @@ public class BridgeConfig {
         public void setEncode(String encode) {
             this.encode = encode;
         }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getLingerMs() {
+            return lingerMs;
+        }
+
+        public void setLingerMs(int lingerMs) {
+            this.lingerMs = lingerMs;
+        }
+
+        public int getMaxInflightBatches() {
+            return maxInflightBatches;
+        }
+
+        public void setMaxInflightBatches(int maxInflightBatches) {
+            this.maxInflightBatches = maxInflightBatches;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public boolean isDebug() {
+            return debug;
+        }
+
+        public void setDebug(boolean debug) {
+            this.debug = debug;
+        }
     }
 }
@@ -1,7 +1,5 @@
 package tech.smartboot.mqtt.bridge.redis;
 
-import com.alibaba.fastjson2.JSON;
-import com.alibaba.fastjson2.JSONObject;
 import tech.smartboot.mqtt.common.enums.PayloadEncodeEnum;
 import tech.smartboot.mqtt.plugin.spec.BrokerContext;
 import tech.smartboot.mqtt.plugin.spec.BrokerTopic;
@@ -10,36 +8,60 @@ import tech.smartboot.mqtt.plugin.spec.MqttSession;
 import tech.smartboot.mqtt.plugin.spec.bus.MessageBusConsumer;
 import tech.smartboot.redisun.Redisun;
 
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 消息桥接至 Redis SortedSet。
+ * <p>
+ * 消息总线线程仅将消息放入有界队列，由独立的写入线程按批次取出：凑满 batchSize 或等待超过 lingerMs 后，
+ * 连续发出整批 ZADD 命令而不逐条等待响应，同时等待响应的批次数不超过 maxInflightBatches。
+ * Redis 写入跟不上时消息在队列中积压，队列已满后丢弃新消息并计数；停止时超时未能写出的消息同样计入丢弃。
+ */
 class BridgeService {
+    private static final long SHUTDOWN_TIMEOUT = 3000;
     private final BridgeConfig.RedisConfig config;
     private Redisun redisun;
     private final BrokerContext context;
+    private final BlockingQueue<Record> queue;
+    private final Semaphore inflight;
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    /**
+     * 最近一个完成的批次中，最早的消息从进入队列到 Redis 响应的耗时
+     */
+    private volatile long lag;
+    private Thread writer;
 
-    private boolean enable = true;
+    private volatile boolean enable = true;
 
     public BridgeService(BridgeConfig.RedisConfig config, BrokerContext context) {
         this.config = config;
         this.context = context;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+        this.inflight = new Semaphore(Math.max(1, config.getMaxInflightBatches()));
     }
 
     public void start() {
-        // 创建Kafka生产者对象，指定Kafka集群地址和端口号
-        redisun = Redisun.create(opt -> opt.debug(true).setAddress(config.getAddress()).setDatabase(config.getDatabase()).setPassword(config.getPassword()));
-        PayloadEncodeEnum encodeEnum = PayloadEncodeEnum.getEnumByCode(config.getEncode());
+        redisun = Redisun.create(opt -> opt.debug(config.isDebug()).setAddress(config.getAddress()).setDatabase(config.getDatabase()).setPassword(config.getPassword()));
+        MessageEncoder encoder = new MessageEncoder(PayloadEncodeEnum.getEnumByCode(config.getEncode()));
+        writer = new Thread(() -> writeLoop(encoder), "redis-bridge-" + config.getAddress());
+        writer.setDaemon(true);
+        writer.start();
         context.getMessageBus().consumer(new MessageBusConsumer() {
             @Override
             public void consume(MqttSession session, BrokerTopic topic, Message publishMessage) {
-                long timestamp = System.currentTimeMillis();
-                JSONObject json = toJsonString(publishMessage, encodeEnum);
-                json.put("timestamp", timestamp);
-                CompletableFuture<Integer> future = redisun.asyncZadd(topic.getTopic(), timestamp, json.toString());
-                future.exceptionally(throwable -> {
-                    System.err.println("redis bridge error");
-                    return null;
-                });
+                if (!queue.offer(new Record(topic.getTopic(), publishMessage.getPayload(), System.currentTimeMillis()))) {
+                    droppedCount.incrementAndGet();
+                }
             }
 
             @Override
@@ -49,34 +71,136 @@ class BridgeService {
         });
     }
 
-    public JSONObject toJsonString(Message message, PayloadEncodeEnum payloadEncodeEnum) {
-        if (payloadEncodeEnum == null) {
-            payloadEncodeEnum = PayloadEncodeEnum.BYTES;
-        }
-        switch (payloadEncodeEnum) {
-            case STRING: {
-                JSONObject json = (JSONObject) JSON.toJSON(this);
-                json.put("payload", new String(message.getPayload()));
-                json.put("encoding", payloadEncodeEnum.getCode());
-                return json;
+    private void writeLoop(MessageEncoder encoder) {
+        int batchSize = Math.max(1, config.getBatchSize());
+        long lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getLingerMs()));
+        List<Record> batch = new ArrayList<>(batchSize);
+        try {
+            while (enable) {
+                Record first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long waitNanos = deadline - System.nanoTime();
+                    Record record = waitNanos > 0 ? queue.poll(waitNanos, TimeUnit.NANOSECONDS) : null;
+                    if (record == null) {
+                        break;
+                    }
+                    batch.add(record);
+                }
+                inflight.acquire();
+                flush(batch, encoder);
+                batch.clear();
             }
-            case BASE64: {
-                JSONObject json = (JSONObject) JSON.toJSON(this);
-                json.put("payload", new String(Base64.getEncoder().encode(message.getPayload())));
-                json.put("encoding", payloadEncodeEnum.getCode());
-                return json;
+            //停止前写出队列中剩余的消息，先取得批次名额再取出消息，超时后消息仍留在队列中
+            long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT;
+            while (!queue.isEmpty() && inflight.tryAcquire(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS)) {
+                if (queue.drainTo(batch, batchSize) == 0) {
+                    inflight.release();
+                    break;
+                }
+                flush(batch, encoder);
+                batch.clear();
             }
-            default: {
-                JSONObject json = (JSONObject) JSON.toJSON(this);
-                json.put("encoding", payloadEncodeEnum.getCode());
-                return json;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            //超时或中断时未能写出的消息计入丢弃
+            queue.drainTo(batch);
+            droppedCount.addAndGet(batch.size());
+            batch.clear();
+        }
+    }
+
+    /**
+     * 连续发出整批命令，全部响应后释放批次名额。命令发出后不再引用 batch，调用方可复用
+     */
+    private void flush(List<Record> batch, MessageEncoder encoder) {
+        CompletableFuture<?>[] futures = new CompletableFuture[batch.size()];
+        AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < futures.length; i++) {
+            Record record = batch.get(i);
+            CompletableFuture<Integer> future;
+            try {
+                future = redisun.asyncZadd(record.topic, record.timestamp, encoder.encode(record.payload, record.timestamp));
+            } catch (Throwable throwable) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(throwable);
             }
+            futures[i] = future.handle((result, throwable) -> {
+                if (throwable != null) {
+                    failures.incrementAndGet();
+                }
+                return null;
+            });
         }
+        long enqueueTime = batch.get(0).timestamp;
+        CompletableFuture.allOf(futures).whenComplete((v, throwable) -> {
+            inflight.release();
+            int failed = failures.get();
+            writtenCount.addAndGet(futures.length - failed);
+            lag = System.currentTimeMillis() - enqueueTime;
+            if (failed > 0) {
+                failedCount.addAndGet(failed);
+                System.err.println("redis bridge error, failed: " + failed + "/" + futures.length);
+            }
+        });
+    }
+
+    public String getAddress() {
+        return config.getAddress();
+    }
+
+    /**
+     * 队列中等待写入的消息数
+     */
+    public int getBacklog() {
+        return queue.size();
+    }
+
+    public long getLag() {
+        return lag;
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
     }
 
     public void destroy() {
         enable = false;
+        if (writer != null) {
+            try {
+                writer.join(SHUTDOWN_TIMEOUT + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         redisun.close();
     }
 
+    private static final class Record {
+        private final String topic;
+        private final byte[] payload;
+        private final long timestamp;
+
+        Record(String topic, byte[] payload, long timestamp) {
+            this.topic = topic;
+            this.payload = payload;
+            this.timestamp = timestamp;
+        }
+    }
 }
@@ -0,0 +1,84 @@
+package tech.smartboot.mqtt.bridge.redis;
+
+import tech.smartboot.mqtt.common.enums.PayloadEncodeEnum;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 将消息编码为 JSON 字符串，格式：{"payload":"...","encoding":"string","timestamp":1700000000000}
+ * <p>
+ * 复用同一个缓冲区拼接 JSON，避免逐条消息构建 JSONObject，非线程安全。
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+class MessageEncoder {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private final PayloadEncodeEnum encode;
+    private final StringBuilder buffer = new StringBuilder(256);
+
+    MessageEncoder(PayloadEncodeEnum encode) {
+        this.encode = encode == null ? PayloadEncodeEnum.BYTES : encode;
+    }
+
+    String encode(byte[] payload, long timestamp) {
+        StringBuilder sb = buffer;
+        sb.setLength(0);
+        sb.append('{');
+        switch (encode) {
+            case STRING:
+                sb.append("\"payload\":\"");
+                appendEscaped(sb, new String(payload, StandardCharsets.UTF_8));
+                sb.append("\",");
+                break;
+            case BASE64:
+                sb.append("\"payload\":\"");
+                //Base64字符均为ASCII，无需转义
+                for (byte b : Base64.getEncoder().encode(payload)) {
+                    sb.append((char) b);
+                }
+                sb.append("\",");
+                break;
+            default:
+                break;
+        }
+        sb.append("\"encoding\":\"").append(encode.getCode()).append("\",\"timestamp\":").append(timestamp).append('}');
+        return sb.toString();
+    }
+
+    private static void appendEscaped(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\b':
+                    sb.append("\\b");
+                    break;
+                case '\f':
+                    sb.append("\\f");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package tech.smartboot.mqtt.bridge.redis;
 
 
+import io.github.smartboot.socket.timer.TimerTask;
 import tech.smartboot.mqtt.common.util.MqttUtil;
 import tech.smartboot.mqtt.plugin.spec.BrokerContext;
 import tech.smartboot.mqtt.plugin.spec.Options;
@@ -11,13 +12,19 @@ import tech.smartboot.mqtt.plugin.spec.schema.Schema;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author 三刀（zhengjunweimail@163.com）
  * @version V1.0 , 2022/11/25
  */
 public class RedisBridgePlugin extends Plugin {
+    /**
+     * 写入状态的输出间隔，单位秒
+     */
+    private static final int STATS_INTERVAL = 60;
     private final Map<String, BridgeService> bridges = new ConcurrentHashMap<>();
+    private TimerTask statsTask;
 
     @Override
     protected void initPlugin(BrokerContext brokerContext) throws Throwable {
@@ -42,11 +49,29 @@ public class RedisBridgePlugin extends Plugin {
             log("Redis 连接成功: " + redis.getAddress());
         }
         log("Redis 桥接插件初始化完成，成功连接 " + successCount + " 个 Redis 实例");
+        statsTask = brokerContext.getTimer().scheduleWithFixedDelay(this::logStats, STATS_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 存在积压、丢弃或失败时输出写入状态
+     */
+    private void logStats() {
+        for (BridgeService service : bridges.values()) {
+            int backlog = service.getBacklog();
+            long dropped = service.getDroppedCount();
+            long failed = service.getFailedCount();
+            if (backlog > 0 || dropped > 0 || failed > 0) {
+                log("Redis: " + service.getAddress() + " 积压: " + backlog + ", 延迟: " + service.getLag() + "ms, 已写入: " + service.getWrittenCount() + ", 丢弃: " + dropped + ", 失败: " + failed);
+            }
+        }
     }
 
     @Override
     protected void destroyPlugin() {
         log("正在关闭 Redis 桥接插件...");
+        if (statsTask != null) {
+            statsTask.cancel();
+        }
         bridges.values().forEach(BridgeService::destroy);
         log("Redis 桥接插件已关闭，已断开 " + bridges.size() + " 个 Redis 连接");
     }
@@ -70,7 +95,8 @@ public class RedisBridgePlugin extends Plugin {
     public Schema schema() {
         Schema schema = new Schema();
         Item array = Item.ItemArray("redis", "redis服务配置").col(12);
-        array.addItems(Item.String("address", "redis服务地址").col(6), Item.Int("database", "redis数据库").col(6), Item.String("password", "redis密码").col(6), Item.String("encode", "redis编码").col(6).addEnums(Enum.of("bytes", "bytes"), Enum.of("string", "string"), Enum.of("base64", "base64")));
+        array.addItems(Item.String("address", "redis服务地址").col(6), Item.Int("database", "redis数据库").col(6), Item.String("password", "redis密码").col(6), Item.String("encode", "redis编码").col(6).addEnums(Enum.of("bytes", "bytes"), Enum.of("string", "string"), Enum.of("base64", "base64")),
+                Item.Int("batchSize", "单批写入消息数").col(6), Item.Int("lingerMs", "批次等待时间(ms)").col(6), Item.Int("maxInflightBatches", "最大并发批次数").col(6), Item.Int("queueCapacity", "待写入队列容量").col(6), Item.Switch("debug", "调试日志").col(6));
         schema.addItem(array);
         return schema;
     }
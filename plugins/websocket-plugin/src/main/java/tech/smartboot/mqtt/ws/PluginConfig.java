@@ -17,6 +17,11 @@ package tech.smartboot.mqtt.ws;
 public class PluginConfig {
     private int port = 1884;
 
+    /**
+     * 连接的读缓冲区大小，跨帧的半包由插件按需扩容暂存
+     */
+    private int readBufferSize = 8 * 1024;
+
     public int getPort() {
         return port;
     }
@@ -24,4 +29,12 @@ public class PluginConfig {
     public void setPort(int port) {
         this.port = port;
     }
+
+    public int getReadBufferSize() {
+        return readBufferSize;
+    }
+
+    public void setReadBufferSize(int readBufferSize) {
+        this.readBufferSize = readBufferSize;
+    }
 }
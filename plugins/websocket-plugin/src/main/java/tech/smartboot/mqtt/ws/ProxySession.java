@@ -10,9 +10,13 @@
 
 package tech.smartboot.mqtt.ws;
 
+import io.github.smartboot.socket.buffer.BufferPage;
 import io.github.smartboot.socket.transport.AioSession;
 import io.github.smartboot.socket.transport.WriteBuffer;
 import tech.smartboot.feat.core.server.WebSocketResponse;
+import tech.smartboot.mqtt.common.MqttMessageProcessor;
+import tech.smartboot.mqtt.common.MqttProtocol;
+import tech.smartboot.mqtt.common.message.MqttMessage;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
@@ -23,12 +27,69 @@ import java.nio.ByteBuffer;
  * @version V1.0 , 2022/12/2
  */
 class ProxySession extends AioSession {
+    /**
+     * 暂存未解码数据的缓冲区初始容量
+     */
+    private static final int MIN_PENDING_SIZE = 1024;
     private final AioSession session;
     private final WriteBuffer writeBuffer;
+    private final MqttProtocol protocol;
+    private final MqttMessageProcessor processor;
+    /**
+     * 跨帧的半包或暂停读取期间未处理的数据，处于写模式，无数据时为null。
+     * 仅在连接的读线程中由read处理，恢复读取后随下一帧数据一并解码
+     */
+    private ByteBuffer pending;
+    private volatile boolean readSuspended;
 
-    public ProxySession(AioSession session, WebSocketResponse response) {
+    public ProxySession(AioSession session, WebSocketResponse response, MqttProtocol protocol, MqttMessageProcessor processor, BufferPage bufferPage, int chunkSize) {
         this.session = session;
-        writeBuffer = new ProxyWriteBuffer(response);
+        this.protocol = protocol;
+        this.processor = processor;
+        writeBuffer = new ProxyWriteBuffer(session, this, response, bufferPage, chunkSize);
+    }
+
+    /**
+     * 处理收到的WebSocket帧负载。完整的报文直接从帧负载中解码，仅跨帧的半包及暂停读取期间的数据暂存至按需扩容的缓冲区，
+     * 暂存的数据先于本帧负载处理以保持报文顺序
+     */
+    synchronized void read(byte[] data) {
+        ByteBuffer buffer;
+        if (pending == null) {
+            buffer = ByteBuffer.wrap(data);
+        } else {
+            if (pending.remaining() < data.length) {
+                ByteBuffer expand = ByteBuffer.allocate(Math.max(pending.capacity() << 1, pending.position() + data.length));
+                pending.flip();
+                expand.put(pending);
+                pending = expand;
+            }
+            pending.put(data);
+            pending.flip();
+            buffer = pending;
+        }
+        process(buffer);
+    }
+
+    private void process(ByteBuffer buffer) {
+        while (!readSuspended && buffer.hasRemaining()) {
+            MqttMessage message = protocol.decode(buffer, this);
+            if (message == null) {
+                break;
+            }
+            processor.process(this, message);
+        }
+        //整帧处理完毕后统一写出响应
+        writeBuffer.flush();
+
+        if (!buffer.hasRemaining()) {
+            pending = null;
+        } else if (buffer == pending) {
+            pending.compact();
+        } else {
+            pending = ByteBuffer.allocate(Math.max(MIN_PENDING_SIZE, buffer.remaining()));
+            pending.put(buffer);
+        }
     }
 
     @Override
@@ -44,12 +105,18 @@ class ProxySession extends AioSession {
 
     @Override
     public void awaitRead() {
-        throw new UnsupportedOperationException();
+        readSuspended = true;
+        session.awaitRead();
     }
 
+    /**
+     * 仅清除暂停标志并恢复底层连接的读取，暂存的数据不在调用方线程中处理：
+     * 调用方可能是尚未发送CONNACK的连接处理流程或限流的定时器线程
+     */
     @Override
     public void signalRead() {
-        throw new UnsupportedOperationException();
+        readSuspended = false;
+        session.signalRead();
     }
 
     @Override
@@ -10,54 +10,81 @@
 
 package tech.smartboot.mqtt.ws;
 
+import io.github.smartboot.socket.buffer.BufferPage;
+import io.github.smartboot.socket.buffer.VirtualBuffer;
+import io.github.smartboot.socket.transport.AioSession;
 import io.github.smartboot.socket.transport.WriteBuffer;
 import tech.smartboot.feat.core.server.WebSocketResponse;
+import tech.smartboot.mqtt.common.AbstractSession;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.function.Consumer;
 
 /**
+ * 将MQTT报文封装为WebSocket二进制帧写出。
+ * <p>
+ * 报文直接编码至缓冲池分配的缓冲区，缓冲区头部预留帧头的空间，flush时补齐帧头后整块移交给连接写出，
+ * 写出完成后归还缓冲池，并将发送的MQTT报文字节数回报给会话，用于统计写缓冲区的积压。两次flush之间写入的报文合并为一个帧。
+ * </p>
+ *
  * @author 三刀（zhengjunweimail@163.com）
  * @version V1.0 , 2022/12/2
  */
 class ProxyWriteBuffer implements WriteBuffer {
-    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    /**
+     * WebSocket帧头的最大长度：1字节FIN及操作码，1字节长度标识，8字节扩展长度
+     */
+    private static final int MAX_HEADER_LENGTH = 10;
+    private static final byte BINARY_FRAME = (byte) 0x82;
+    private final AioSession session;
+    /**
+     * 代理连接，其附件为对应的MQTT会话
+     */
+    private final AioSession proxySession;
     private final WebSocketResponse response;
+    private final BufferPage bufferPage;
+    private final int chunkSize;
+    private VirtualBuffer virtualBuffer;
+    private ByteBuffer buffer;
 
-    public ProxyWriteBuffer(WebSocketResponse response) {
+    public ProxyWriteBuffer(AioSession session, AioSession proxySession, WebSocketResponse response, BufferPage bufferPage, int chunkSize) {
+        this.session = session;
+        this.proxySession = proxySession;
         this.response = response;
+        this.bufferPage = bufferPage;
+        this.chunkSize = chunkSize;
     }
 
 
     @Override
-    public void writeByte(byte b) {
-        outputStream.write(b);
+    public synchronized void writeByte(byte b) {
+        ensureCapacity(1);
+        buffer.put(b);
     }
 
     @Override
-    public void writeShort(short data) {
-        outputStream.write((byte) ((data >>> 8) & 0xFF));
-        outputStream.write((byte) (data & 0xFF));
+    public synchronized void writeShort(short data) {
+        ensureCapacity(2);
+        buffer.putShort(data);
     }
 
     @Override
-    public void writeInt(int data) {
-        outputStream.write((byte) ((data >>> 24) & 0xFF));
-        outputStream.write((byte) ((data >>> 16) & 0xFF));
-        outputStream.write((byte) ((data >>> 8) & 0xFF));
-        outputStream.write((byte) (data & 0xFF));
+    public synchronized void writeInt(int data) {
+        ensureCapacity(4);
+        buffer.putInt(data);
     }
 
     @Override
-    public void writeLong(long v) throws IOException {
-        throw new UnsupportedOperationException();
+    public synchronized void writeLong(long v) {
+        ensureCapacity(8);
+        buffer.putLong(v);
     }
 
     @Override
-    public void write(byte[] b, int off, int len) throws IOException {
-        outputStream.write(b, off, len);
+    public synchronized void write(byte[] b, int off, int len) {
+        ensureCapacity(len);
+        buffer.put(b, off, len);
     }
 
     @Override
@@ -70,20 +97,82 @@ class ProxyWriteBuffer implements WriteBuffer {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * 容量不足时申请更大的缓冲区，已写入的数据迁移后归还原缓冲区
+     */
+    private void ensureCapacity(int size) {
+        if (buffer == null) {
+            virtualBuffer = bufferPage.allocate(Math.max(chunkSize, MAX_HEADER_LENGTH + size));
+            buffer = virtualBuffer.buffer();
+            buffer.position(MAX_HEADER_LENGTH);
+        } else if (buffer.remaining() < size) {
+            VirtualBuffer expand = bufferPage.allocate(Math.max(buffer.capacity() << 1, buffer.position() + size));
+            buffer.flip();
+            expand.buffer().put(buffer);
+            virtualBuffer.clean();
+            virtualBuffer = expand;
+            buffer = expand.buffer();
+        }
+    }
+
     @Override
-    public void flush() {
-        if (outputStream.size() == 0) {
+    public synchronized void flush() {
+        if (buffer == null) {
             return;
         }
-        byte[] bytes = outputStream.toByteArray();
-        outputStream.reset();
-        response.sendBinaryMessage(bytes);
-        response.flush();
+        int length = buffer.position() - MAX_HEADER_LENGTH;
+        if (length == 0) {
+            return;
+        }
+        //服务端发送的帧无需掩码，帧头紧贴负载写入预留空间的尾部
+        int start;
+        if (length < 126) {
+            start = MAX_HEADER_LENGTH - 2;
+            buffer.put(start + 1, (byte) length);
+        } else if (length <= 0xFFFF) {
+            start = MAX_HEADER_LENGTH - 4;
+            buffer.put(start + 1, (byte) 126);
+            buffer.putShort(start + 2, (short) length);
+        } else {
+            start = 0;
+            buffer.put(start + 1, (byte) 127);
+            buffer.putLong(start + 2, length);
+        }
+        buffer.put(start, BINARY_FRAME);
+        buffer.limit(buffer.position());
+        buffer.position(start);
+
+        VirtualBuffer frame = virtualBuffer;
+        ByteBuffer frameBuffer = buffer;
+        virtualBuffer = null;
+        buffer = null;
+        try {
+            WriteBuffer writeBuffer = session.writeBuffer();
+            writeBuffer.transferFrom(frameBuffer, wb -> {
+                frame.clean();
+                AbstractSession mqttSession = proxySession.getAttachment();
+                if (mqttSession != null) {
+                    mqttSession.outboundWritten(length);
+                }
+            });
+            writeBuffer.flush();
+        } catch (IOException e) {
+            frame.clean();
+            throw new RuntimeException(e);
+        }
     }
 
     @Override
-    public void close() {
-        flush();
-        response.close();
+    public synchronized void close() {
+        try {
+            flush();
+        } finally {
+            if (virtualBuffer != null) {
+                virtualBuffer.clean();
+                virtualBuffer = null;
+                buffer = null;
+            }
+            response.close();
+        }
     }
 }
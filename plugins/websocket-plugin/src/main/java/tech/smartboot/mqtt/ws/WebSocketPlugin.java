@@ -20,16 +20,14 @@ import tech.smartboot.feat.core.server.HttpServer;
 import tech.smartboot.feat.core.server.WebSocketRequest;
 import tech.smartboot.feat.core.server.WebSocketResponse;
 import tech.smartboot.feat.core.server.upgrade.websocket.WebSocketUpgrade;
+import tech.smartboot.mqtt.common.MqttMessageProcessor;
 import tech.smartboot.mqtt.common.MqttProtocol;
-import tech.smartboot.mqtt.common.message.MqttMessage;
 import tech.smartboot.mqtt.plugin.spec.BrokerContext;
 import tech.smartboot.mqtt.plugin.spec.Options;
 import tech.smartboot.mqtt.plugin.spec.Plugin;
 import tech.smartboot.mqtt.plugin.spec.schema.Item;
 import tech.smartboot.mqtt.plugin.spec.schema.Schema;
 
-import java.nio.ByteBuffer;
-
 /**
  * @author 三刀
  * @version v1.0 4/15/25
@@ -44,42 +42,30 @@ public class WebSocketPlugin extends Plugin {
         PluginConfig config = loadPluginConfig(PluginConfig.class);
         addUsagePort(config.getPort(), "websocket port");
         MqttProtocol protocol = new MqttProtocol(brokerContext.Options().getMaxPacketSize());
-        httpBootstrap = Feat.httpServer(serverOptions -> serverOptions.debug(true).readBufferSize(1024 * 1024)).httpHandler(new HttpHandler() {
+        MqttMessageProcessor processor = brokerContext.Options().getProcessor();
+        httpBootstrap = Feat.httpServer(serverOptions -> serverOptions.debug(true).readBufferSize(config.getReadBufferSize())).httpHandler(new HttpHandler() {
             @Override
             public void handle(HttpRequest request) throws Throwable {
                 request.getResponse().setHeader("Sec-WebSocket-Protocol", "mqtt");
                 request.upgrade(new WebSocketUpgrade() {
                     ProxySession proxySession;
-                    ByteBuffer readBuffer;
 
                     @Override
                     public void onHandShake(WebSocketRequest request, WebSocketResponse response) {
                         super.onHandShake(request, response);
-                        proxySession = new ProxySession(this.request.getAioSession(), response);
-                        readBuffer = ByteBuffer.allocate(brokerContext.Options().getBufferSize());
-                        brokerContext.Options().getProcessor().stateEvent(proxySession, StateMachineEnum.NEW_SESSION, null);
+                        proxySession = new ProxySession(this.request.getAioSession(), response, protocol, processor, brokerContext.bufferPagePool().allocateBufferPage(), brokerContext.Options().getBufferSize());
+                        processor.stateEvent(proxySession, StateMachineEnum.NEW_SESSION, null);
                     }
 
                     @Override
                     public void handleBinaryMessage(WebSocketRequest request, WebSocketResponse response, byte[] data) {
-                        readBuffer.put(data);
-                        readBuffer.flip();
-                        while (readBuffer.hasRemaining()) {
-                            MqttMessage message = protocol.decode(readBuffer, proxySession);
-                            if (message == null) {
-                                break;
-                            }
-                            //处理消息
-                            brokerContext.Options().getProcessor().process(proxySession, message);
-                            proxySession.writeBuffer().flush();
-                        }
-                        readBuffer.compact();
+                        proxySession.read(data);
                     }
 
                     @Override
                     public void destroy() {
                         super.destroy();
-                        brokerContext.Options().getProcessor().stateEvent(proxySession, StateMachineEnum.SESSION_CLOSED, null);
+                        processor.stateEvent(proxySession, StateMachineEnum.SESSION_CLOSED, null);
                     }
                 });
             }
@@ -116,6 +102,7 @@ public class WebSocketPlugin extends Plugin {
     public Schema schema() {
         Schema schema = new Schema();
         schema.addItem(Item.Int("port", "mqtt over websocket服务的监听端口"));
+        schema.addItem(Item.Int("readBufferSize", "连接读缓冲区大小（字节）"));
         return schema;
     }
 }
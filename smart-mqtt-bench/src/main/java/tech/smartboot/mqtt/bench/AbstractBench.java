@@ -17,10 +17,13 @@ import tech.smartboot.mqtt.common.util.MqttUtil;
 import java.io.IOException;
 import java.nio.channels.AsynchronousChannelGroup;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 /**
  * @author 三刀（zhengjunweimail@163.com）
@@ -28,6 +31,18 @@ import java.util.function.Consumer;
  */
 public class AbstractBench {
     public final LongAdder countAdder = new LongAdder();
+    /**
+     * 是否以固定速率发布，开启后以计划发送时刻统计时延，修正coordinated omission
+     */
+    protected final boolean fixedRate = Boolean.getBoolean("fixedRate");
+    /**
+     * 端到端时延统计，为null时仅输出TPS
+     */
+    protected LatencyRecorder latencyRecorder;
+    /**
+     * 开环发布调度，为null时为闭环压测
+     */
+    protected OpenLoopScheduler openLoop;
 
     protected void bench(Consumer<MqttClient> consumer) throws IOException {
         //emqx启动较慢
@@ -53,9 +68,38 @@ public class AbstractBench {
             int c = countAdder.intValue();
             countAdder.add(-c);
             System.out.println("total: " + c + "\tTPS: " + (c / 5));
+            if (openLoop != null) {
+                System.out.println(openLoop.report(c));
+            }
+            if (latencyRecorder != null) {
+                System.out.println(latencyRecorder.report());
+            }
         }, 5, 5, TimeUnit.SECONDS);
     }
 
+    /**
+     * 启用端到端时延统计
+     */
+    protected void enableLatency() {
+        latencyRecorder = new LatencyRecorder();
+    }
+
+    /**
+     * 周期性执行发布任务，任务参数为本批消息的发送时刻。
+     * 固定速率发布时传入按周期推算的计划发送时刻，任务因停顿推迟执行时，推迟的时长将计入时延
+     */
+    protected void schedule(ScheduledExecutorService executorService, LongConsumer task, int period) {
+        if (fixedRate) {
+            long periodNanos = TimeUnit.MILLISECONDS.toNanos(period);
+            long firstTick = LatencyRecorder.now() + periodNanos;
+            //同一任务的周期执行不会并发，仅需保证跨线程可见
+            AtomicLong ticks = new AtomicLong();
+            executorService.scheduleAtFixedRate(() -> task.accept(firstTick + ticks.getAndIncrement() * periodNanos), period, period, TimeUnit.MILLISECONDS);
+        } else {
+            executorService.scheduleWithFixedDelay(() -> task.accept(LatencyRecorder.now()), period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
     public MqttClient newClient(AsynchronousChannelGroup channelGroup) {
         String host = System.getProperty("host");
         int port = MqttUtil.toInt(System.getProperty("port"), 1883);
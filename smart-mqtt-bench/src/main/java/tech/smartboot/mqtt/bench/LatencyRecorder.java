@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.bench;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发布至接收的端到端时延统计
+ * <p>
+ * 发布方将发送时刻写入payload前8个字节，订阅方收到消息后计算时延（微秒）并记录至HdrHistogram。
+ * 发送时刻为基于System.nanoTime推算的纳秒级墙上时间，跨进程比较时需保证各节点时钟同步。
+ * </p>
+ * <p>
+ * 固定速率压测时发布方写入的是计划发送时刻而非实际发送时刻，因broker停顿而推迟发出的消息会计入停顿时长
+ * （coordinated omission修正），避免停顿期间的时延被少量样本掩盖。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public class LatencyRecorder {
+    /**
+     * payload中时间戳占用的字节数
+     */
+    public static final int TIMESTAMP_LENGTH = 8;
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+    private static final long EPOCH_OFFSET_NANOS = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - System.nanoTime();
+
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+    private Histogram intervalHistogram;
+
+    /**
+     * 构造一个写入当前时刻的payload，长度不足时扩展至TIMESTAMP_LENGTH
+     */
+    public static byte[] newPayload(int size) {
+        return newPayload(size, now());
+    }
+
+    /**
+     * 构造一个写入指定发送时刻的payload，开环及固定速率压测时传入计划发送时刻
+     */
+    public static byte[] newPayload(int size, long timestamp) {
+        byte[] payload = new byte[Math.max(size, TIMESTAMP_LENGTH)];
+        for (int i = TIMESTAMP_LENGTH - 1; i >= 0; i--) {
+            payload[i] = (byte) timestamp;
+            timestamp >>>= 8;
+        }
+        return payload;
+    }
+
+    /**
+     * 记录payload自发送至今的时延，非压测工具发出的消息忽略
+     */
+    public void record(byte[] payload) {
+        if (payload.length < TIMESTAMP_LENGTH) {
+            return;
+        }
+        long timestamp = 0;
+        for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+            timestamp = (timestamp << 8) | (payload[i] & 0xFF);
+        }
+        recordSince(timestamp);
+    }
+
+    /**
+     * 记录自timestamp至今的时延
+     */
+    public void recordSince(long timestamp) {
+        long latency = TimeUnit.NANOSECONDS.toMicros(now() - timestamp);
+        if (latency < 0 || latency > HIGHEST_TRACKABLE_MICROS) {
+            return;
+        }
+        recorder.recordValue(latency);
+    }
+
+    /**
+     * 输出上次调用以来的时延分布，并重置统计区间
+     */
+    public synchronized String report() {
+        intervalHistogram = recorder.getIntervalHistogram(intervalHistogram);
+        if (intervalHistogram.getTotalCount() == 0) {
+            return "latency(us) no samples";
+        }
+        return "latency(us) p50: " + intervalHistogram.getValueAtPercentile(50)
+                + "\tp90: " + intervalHistogram.getValueAtPercentile(90)
+                + "\tp99: " + intervalHistogram.getValueAtPercentile(99)
+                + "\tp999: " + intervalHistogram.getValueAtPercentile(99.9)
+                + "\tmax: " + intervalHistogram.getMaxValue()
+                + "\tsamples: " + intervalHistogram.getTotalCount();
+    }
+
+    /**
+     * 纳秒精度的墙上时间
+     */
+    public static long now() {
+        return EPOCH_OFFSET_NANOS + System.nanoTime();
+    }
+}
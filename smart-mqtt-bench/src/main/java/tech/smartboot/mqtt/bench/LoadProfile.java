@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.bench;
+
+import tech.smartboot.mqtt.common.util.MqttUtil;
+
+/**
+ * 开环压测的目标发布速率曲线，单位：条/秒
+ * <p>
+ * 通过系统属性配置：
+ * <ul>
+ *   <li>-Dprofile=constant -Drate=10000：恒定速率</li>
+ *   <li>-Dprofile=ramp -Drate=1000 -DrampStep=1000 -DrampInterval=30 -DmaxRate=50000：每rampInterval秒提升rampStep，直至maxRate</li>
+ *   <li>-Dprofile=spike -Drate=10000 -DspikeRate=50000 -DspikeInterval=60 -DspikeDuration=5：每spikeInterval秒出现持续spikeDuration秒的突发</li>
+ *   <li>-Dprofile=sine -Drate=10000 -Damplitude=5000 -DsinePeriod=600：以sinePeriod秒为周期的正弦波动，模拟压缩后的昼夜流量</li>
+ * </ul>
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public abstract class LoadProfile {
+
+    /**
+     * 压测开始后第elapsedMillis毫秒的目标速率
+     */
+    public abstract double rate(long elapsedMillis);
+
+    /**
+     * 根据系统属性构建速率曲线，未指定profile时返回null，即沿用闭环压测
+     */
+    public static LoadProfile fromSystemProperties() {
+        String profile = System.getProperty("profile");
+        if (profile == null) {
+            return null;
+        }
+        int rate = MqttUtil.toInt(System.getProperty("rate"), 1000);
+        switch (profile) {
+            case "constant":
+                return constant(rate);
+            case "ramp":
+                return ramp(rate, MqttUtil.toInt(System.getProperty("rampStep"), rate), MqttUtil.toInt(System.getProperty("rampInterval"), 30), MqttUtil.toInt(System.getProperty("maxRate"), Integer.MAX_VALUE));
+            case "spike":
+                return spike(rate, MqttUtil.toInt(System.getProperty("spikeRate"), rate * 5), MqttUtil.toInt(System.getProperty("spikeInterval"), 60), MqttUtil.toInt(System.getProperty("spikeDuration"), 5));
+            case "sine":
+                return sine(rate, MqttUtil.toInt(System.getProperty("amplitude"), rate / 2), MqttUtil.toInt(System.getProperty("sinePeriod"), 600));
+            default:
+                throw new IllegalArgumentException("unknown profile: " + profile);
+        }
+    }
+
+    public static LoadProfile constant(int rate) {
+        return new LoadProfile() {
+            @Override
+            public double rate(long elapsedMillis) {
+                return rate;
+            }
+
+            @Override
+            public String toString() {
+                return "constant rate: " + rate;
+            }
+        };
+    }
+
+    public static LoadProfile ramp(int rate, int step, int intervalSeconds, int maxRate) {
+        return new LoadProfile() {
+            @Override
+            public double rate(long elapsedMillis) {
+                long steps = elapsedMillis / (intervalSeconds * 1000L);
+                return Math.min(maxRate, rate + steps * step);
+            }
+
+            @Override
+            public String toString() {
+                return "ramp rate: " + rate + " step: " + step + " interval: " + intervalSeconds + "s max: " + maxRate;
+            }
+        };
+    }
+
+    public static LoadProfile spike(int rate, int spikeRate, int intervalSeconds, int durationSeconds) {
+        return new LoadProfile() {
+            @Override
+            public double rate(long elapsedMillis) {
+                long offset = elapsedMillis % (intervalSeconds * 1000L);
+                return offset >= (intervalSeconds - durationSeconds) * 1000L ? spikeRate : rate;
+            }
+
+            @Override
+            public String toString() {
+                return "spike rate: " + rate + " spikeRate: " + spikeRate + " interval: " + intervalSeconds + "s duration: " + durationSeconds + "s";
+            }
+        };
+    }
+
+    public static LoadProfile sine(int rate, int amplitude, int periodSeconds) {
+        return new LoadProfile() {
+            @Override
+            public double rate(long elapsedMillis) {
+                return Math.max(0, rate + amplitude * Math.sin(2 * Math.PI * elapsedMillis / (periodSeconds * 1000.0)));
+            }
+
+            @Override
+            public String toString() {
+                return "sine rate: " + rate + " amplitude: " + amplitude + " period: " + periodSeconds + "s";
+            }
+        };
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 开环发布调度
+ * <p>
+ * 各发送线程按LoadProfile对目标速率积分，得出截至当前应发出的消息数，并补发所有到期的消息。
+ * 发送节奏只取决于时钟，与broker是否及时确认无关；broker变慢时消息的计划发送时刻不会随之推迟，
+ * 由此暴露排队导致的时延恶化。
+ * </p>
+ * <p>
+ * 每条消息都携带其计划发送时刻，发送线程自身被阻塞（如inflight窗口已满）时，该阻塞时长同样计入时延。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public class OpenLoopScheduler {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /**
+     * 实际发送量低于目标的比例阈值，超过则判定目标速率无法维持
+     */
+    private static final double SUSTAIN_THRESHOLD = 0.95;
+    private final LoadProfile profile;
+    private final int threads;
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    /**
+     * 各发送线程中最大的发送滞后，纳秒
+     */
+    private final AtomicLong maxLag = new AtomicLong();
+    private long startNanos;
+    private long lastReportNanos;
+
+    public OpenLoopScheduler(LoadProfile profile, int threads) {
+        this.profile = profile;
+        this.threads = threads;
+    }
+
+    public void start(Sender sender) {
+        startNanos = LatencyRecorder.now();
+        lastReportNanos = startNanos;
+        for (int i = 0; i < threads; i++) {
+            int worker = i;
+            Thread thread = new Thread(() -> run(worker, sender), "open-loop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void run(int worker, Sender sender) {
+        double due = 0;
+        long issued = 0;
+        long previousTick = startNanos;
+        while (true) {
+            LockSupport.parkNanos(TICK_NANOS);
+            long now = LatencyRecorder.now();
+            long elapsed = now - startNanos;
+            double previousDue = due;
+            due += profile.rate(TimeUnit.NANOSECONDS.toMillis(elapsed)) / threads * (now - previousTick) / TimeUnit.SECONDS.toNanos(1);
+            long target = (long) due;
+            scheduled.add(target - (long) previousDue);
+            while (issued < target) {
+                //将本轮到期的消息均匀分布于上一tick至今的时间段内，作为计划发送时刻
+                long intended = previousTick + (long) ((now - previousTick) * Math.max(0, (issued + 1 - previousDue)) / (due - previousDue));
+                try {
+                    sender.send(worker, Math.min(intended, now));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                issued++;
+                sent.increment();
+            }
+            maxLag.accumulateAndGet(LatencyRecorder.now() - now, Math::max);
+            previousTick = now;
+        }
+    }
+
+    /**
+     * 输出上次调用以来的目标速率、实际发送速率及完成速率，并在无法维持目标速率时给出提示
+     *
+     * @param completed 本周期内完成（已写出或已确认）的消息数
+     */
+    public String report(long completed) {
+        long now = LatencyRecorder.now();
+        double seconds = (now - lastReportNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        lastReportNanos = now;
+        long target = scheduled.sumThenReset();
+        long actual = sent.sumThenReset();
+        long lag = TimeUnit.NANOSECONDS.toMillis(maxLag.getAndSet(0));
+        StringBuilder sb = new StringBuilder();
+        sb.append(profile).append("\ttarget: ").append((long) (target / seconds))
+                .append("/s\tsent: ").append((long) (actual / seconds))
+                .append("/s\tcompleted: ").append((long) (completed / seconds))
+                .append("/s\tmax send lag: ").append(lag).append("ms");
+        if (actual < target * SUSTAIN_THRESHOLD || lag > TimeUnit.SECONDS.toMillis(1)) {
+            sb.append("\n[WARN] target rate not sustained by load generator, sender is blocked");
+        } else if (completed < actual * SUSTAIN_THRESHOLD) {
+            sb.append("\n[WARN] target rate not sustained by broker, completions fall behind");
+        }
+        return sb.toString();
+    }
+
+    public interface Sender {
+        /**
+         * @param worker        发送线程编号
+         * @param intendedNanos 计划发送时刻，与LatencyRecorder.now()同一时间基准
+         */
+        void send(int worker, long intendedNanos) throws Exception;
+    }
+}
@@ -50,6 +50,12 @@ public class Publish extends AbstractBench {
         List<MqttClient> clients = new CopyOnWriteArrayList<>();
         connect.bench(clients::add);
 
+        LoadProfile profile = LoadProfile.fromSystemProperties();
+        if (profile != null) {
+            connect.openLoop(profile, clients, size, topic, qos);
+            return;
+        }
+
         for (MqttClient mqttClient : clients) {
             executorService.scheduleWithFixedDelay(() -> {
                 for (int j = 0; j < publishCount; j++) {
@@ -70,4 +76,36 @@ public class Publish extends AbstractBench {
         }
     }
 
+    /**
+     * 按速率曲线开环发布，发布时延自计划发送时刻起算：QoS0为写出时刻，QoS1/2为收到确认时刻
+     */
+    private void openLoop(LoadProfile profile, List<MqttClient> clients, int size, int topic, int qos) {
+        int connectCount = MqttUtil.toInt(System.getProperty("connect"), 1000);
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+        while (clients.size() < connectCount && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        if (clients.isEmpty()) {
+            throw new IllegalStateException("no client connected");
+        }
+        System.out.println("connected: " + clients.size() + ", " + profile);
+        latencyRecorder = new LatencyRecorder();
+        openLoop = new OpenLoopScheduler(profile, MqttUtil.toInt(System.getProperty("sender"), 1));
+        AtomicInteger cursor = new AtomicInteger();
+        MqttQoS mqttQoS = MqttQoS.valueOf(qos);
+        openLoop.start((worker, intended) -> {
+            int index = cursor.getAndIncrement() & Integer.MAX_VALUE;
+            MqttClient client = clients.get(index % clients.size());
+            synchronized (client) {
+                client.publish("/topic" + (index % topic), mqttQoS, LatencyRecorder.newPayload(size, intended), false, packetId -> {
+                    countAdder.increment();
+                    latencyRecorder.recordSince(intended);
+                }, true);
+            }
+        });
+    }
 }
@@ -20,7 +20,6 @@ import java.nio.channels.AsynchronousChannelGroup;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -45,6 +44,7 @@ public class Subscribe extends AbstractBench {
         }
         long random = System.currentTimeMillis() % 10000;
         Subscribe subscribe = new Subscribe();
+        subscribe.enableLatency();
 
         CountDownLatch countDownLatch = new CountDownLatch(MqttUtil.toInt(System.getProperty("connect")) * topic);
         subscribe.bench(mqttClient -> {
@@ -52,6 +52,7 @@ public class Subscribe extends AbstractBench {
                 mqttClient.subscribe("topic_" + random + "_" + j, MqttQoS.valueOf(qos), (mqttClient1, mqttPublishMessage) -> {
 //                System.out.println("receive...");
                     subscribe.countAdder.increment();
+                    subscribe.latencyRecorder.record(mqttPublishMessage.getPayload().getPayload());
                 }, (mqttClient12, mqttQoS) -> countDownLatch.countDown());
             }
         });
@@ -61,17 +62,16 @@ public class Subscribe extends AbstractBench {
             return;
         }
         AtomicInteger index = new AtomicInteger();
-        byte[] payload = new byte[size];
         ScheduledExecutorService executorService = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
         AsynchronousChannelGroup channelGroup = new EnhanceAsynchronousChannelProvider().openAsynchronousChannelGroup(Runtime.getRuntime().availableProcessors(), r -> new Thread(r, "client" +
                 "-pool"));
         for (int i = 0; i < publisher; i++) {
             MqttClient publish = subscribe.newClient(channelGroup);
             publish.connect();
-            executorService.scheduleWithFixedDelay(() -> {
+            subscribe.schedule(executorService, sendTime -> {
                 try {
                     for (int j = 0; j < publishCount; j++) {
-                        publish.publish("topic_" + random + "_" + (index.incrementAndGet() % topic), MqttQoS.AT_MOST_ONCE, payload, false, false);
+                        publish.publish("topic_" + random + "_" + (index.incrementAndGet() % topic), MqttQoS.AT_MOST_ONCE, LatencyRecorder.newPayload(size, sendTime), false, false);
                     }
                     publish.flush();
                 } catch (Exception e) {
@@ -82,7 +82,7 @@ public class Subscribe extends AbstractBench {
                         ex.printStackTrace();
                     }
                 }
-            }, period, period, TimeUnit.MILLISECONDS);
+            }, period);
         }
     }
 
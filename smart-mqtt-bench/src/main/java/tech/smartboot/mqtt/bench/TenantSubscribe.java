@@ -20,7 +20,6 @@ import java.nio.channels.AsynchronousChannelGroup;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -46,6 +45,7 @@ public class TenantSubscribe extends AbstractBench {
         }
         long random = System.currentTimeMillis() % 10000;
         TenantSubscribe subscribe = new TenantSubscribe();
+        subscribe.enableLatency();
 
         CountDownLatch countDownLatch = new CountDownLatch(MqttUtil.toInt(System.getProperty("connect")) * topic);
         AtomicInteger group = new AtomicInteger();
@@ -55,6 +55,7 @@ public class TenantSubscribe extends AbstractBench {
                 mqttClient.subscribe("topic_" + groupId + "/" + j, MqttQoS.valueOf(qos), (mqttClient1, mqttPublishMessage) -> {
 //                System.out.println("receive...");
                     subscribe.countAdder.increment();
+                    subscribe.latencyRecorder.record(mqttPublishMessage.getPayload().getPayload());
                 }, (mqttClient12, mqttQoS) -> countDownLatch.countDown());
             }
         });
@@ -64,16 +65,15 @@ public class TenantSubscribe extends AbstractBench {
             return;
         }
         AtomicInteger index = new AtomicInteger();
-        byte[] payload = new byte[size];
         ScheduledExecutorService executorService = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
         AsynchronousChannelGroup channelGroup = new EnhanceAsynchronousChannelProvider().openAsynchronousChannelGroup(Runtime.getRuntime().availableProcessors(), r -> new Thread(r, "client" + "-pool"));
         for (int i = 0; i < publisher; i++) {
             MqttClient publish = subscribe.newClient(channelGroup);
             publish.connect();
-            executorService.scheduleWithFixedDelay(() -> {
+            subscribe.schedule(executorService, sendTime -> {
                 try {
                     for (int j = 0; j < publishCount; j++) {
-                        publish.publish("topic_" + (index.get() % count) + "/" + (index.incrementAndGet() % topic), MqttQoS.AT_MOST_ONCE, payload, false, false);
+                        publish.publish("topic_" + (index.get() % count) + "/" + (index.incrementAndGet() % topic), MqttQoS.AT_MOST_ONCE, LatencyRecorder.newPayload(size, sendTime), false, false);
                     }
                     publish.flush();
                 } catch (Exception e) {
@@ -84,7 +84,7 @@ public class TenantSubscribe extends AbstractBench {
                         ex.printStackTrace();
                     }
                 }
-            }, period, period, TimeUnit.MILLISECONDS);
+            }, period);
         }
     }
 
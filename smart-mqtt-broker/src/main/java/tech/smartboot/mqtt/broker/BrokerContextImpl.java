@@ -15,36 +15,41 @@ import io.github.smartboot.socket.enhance.EnhanceAsynchronousChannelProvider;
 import io.github.smartboot.socket.timer.HashedWheelTimer;
 import io.github.smartboot.socket.timer.Timer;
 import io.github.smartboot.socket.transport.AioQuickServer;
-import tech.smartboot.mqtt.broker.bus.event.KeepAliveMonitorSubscriber;
 import tech.smartboot.mqtt.broker.topic.BrokerTopicImpl;
+import tech.smartboot.mqtt.broker.topic.FileMessageStoreQueue;
+import tech.smartboot.mqtt.broker.topic.MemoryMessageStoreQueue;
 import tech.smartboot.mqtt.common.MqttProtocol;
-import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.common.TopicToken;
 import tech.smartboot.mqtt.common.exception.MqttException;
 import tech.smartboot.mqtt.common.util.MqttUtil;
+import tech.smartboot.mqtt.common.util.TopicNameCache;
 import tech.smartboot.mqtt.common.util.ValidateUtils;
 import tech.smartboot.mqtt.plugin.spec.BrokerContext;
 import tech.smartboot.mqtt.plugin.spec.Message;
+import tech.smartboot.mqtt.plugin.spec.MessageQueue;
 import tech.smartboot.mqtt.plugin.spec.MqttSession;
 import tech.smartboot.mqtt.plugin.spec.Options;
 import tech.smartboot.mqtt.plugin.spec.Plugin;
+import tech.smartboot.mqtt.plugin.spec.PushShard;
 import tech.smartboot.mqtt.plugin.spec.PluginRegistry;
 import tech.smartboot.mqtt.plugin.spec.bus.AsyncEventObject;
 import tech.smartboot.mqtt.plugin.spec.bus.EventBus;
 import tech.smartboot.mqtt.plugin.spec.bus.EventType;
 import tech.smartboot.mqtt.plugin.spec.bus.MessageBus;
+import tech.smartboot.mqtt.plugin.spec.provider.MessageQueueProvider;
 import tech.smartboot.mqtt.plugin.spec.provider.Providers;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.ServiceLoader;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * MQTT Broker的核心实现类，负责管理整个Broker的生命周期和功能。
@@ -106,9 +111,10 @@ public class BrokerContextImpl implements BrokerContext {
      * <p>
      * 符合MQTT协议的保留消息机制，新订阅者会立即收到该主题的最新保留消息。
      * 保留消息可以通过发布新消息更新，或通过发布空消息删除。
+     * 保留消息挂载于主题对象上，配置了retainStorePath时同时写入本地文件，Broker重启后可恢复。
      * </p>
      */
-    private final Map<String, RetainMessage> retains = new ConcurrentHashMap<>();
+    private RetainMessageStore retainMessageStore;
 
     /**
      * Broker配置选项，包含服务器端口、最大连接数等配置参数。
@@ -135,7 +141,7 @@ public class BrokerContextImpl implements BrokerContext {
      * </ul>
      * </p>
      */
-    private final SubscribeRelationMatcher subscribeTopicTree = new SubscribeRelationMatcher();
+    private final SubscribeRelationMatcher<SessionSubscribeRelation> subscribeTopicTree = new SubscribeRelationMatcher<>();
 
     /**
      * Keep-Alive定时器，用于监控客户端连接状态。
@@ -163,6 +169,20 @@ public class BrokerContextImpl implements BrokerContext {
      */
     private final Timer inflightQueueTimer = new HashedWheelTimer(r -> new Thread(r, "broker-inflight-timer"), 50, 1024);
 
+    /**
+     * 连接空闲监控，按时间桶批量检查会话的保持连接时间，并提供粗粒度时钟
+     */
+    private final KeepAliveMonitor keepAliveMonitor = new KeepAliveMonitor(this);
+
+    /**
+     * 慢消费者的处理策略
+     */
+    private SlowConsumerPolicy slowConsumerPolicy;
+    /**
+     * 单个会话写缓冲区允许积压的字节数，小于0时不限制
+     */
+    private long maxOutboundBytes;
+
     /**
      * 消息总线，处理MQTT消息的内部传递和分发。
      * <p>
@@ -205,9 +225,14 @@ public class BrokerContextImpl implements BrokerContext {
     private final Providers providers = new Providers();
 
     /**
-     * 消息推送线程池，用于异步处理消息的推送任务。
+     * 分片的消息推送线程，主题按哈希值固定由其中一个线程推送。
+     */
+    private PushExecutor pushExecutor;
+
+    /**
+     * 所有Topic内存队列中投递完成前即被覆盖的消息数
      */
-    private ExecutorService pushThreadPool;
+    private final LongAdder overwrittenMessages = new LongAdder();
 
     /**
      * MQTT Broker服务器实例。
@@ -230,6 +255,21 @@ public class BrokerContextImpl implements BrokerContext {
 
     private final PluginRegistryImpl pluginRegistry = new PluginRegistryImpl(this);
 
+    /**
+     * 持久会话的离线消息管理
+     */
+    private OfflineMessageManager offlineMessageManager;
+
+    /**
+     * 客户端发布限流
+     */
+    private PublishRateLimiter publishRateLimiter;
+
+    /**
+     * CONNECT报文的准入控制
+     */
+    private ConnectAdmissionController connectAdmission;
+
     private BufferPagePool bufferPagePool;
 
 
@@ -260,16 +300,28 @@ public class BrokerContextImpl implements BrokerContext {
         long start = System.currentTimeMillis();
         updateBrokerConfigure();
 
+        offlineMessageManager = new OfflineMessageManager(this);
+        publishRateLimiter = new PublishRateLimiter(this);
+        connectAdmission = new ConnectAdmissionController(this);
+        retainMessageStore = new RetainMessageStore(topicMap.values(), MqttUtil.isBlank(options.getRetainStorePath()) ? null : new File(options.getRetainStorePath()));
+
         subscribeEventBus();
 
         subscribeMessageBus();
 
+        keepAliveMonitor.start(timer);
+
         initPushThread();
 
+        initMessageQueueProvider();
+
         loadAndInstallPlugins();
 
         pluginRegistry.init();
 
+        //恢复保留消息，需在插件安装之后，以便主题使用插件提供的消息队列
+        retainMessageStore.load((topic, message) -> getOrCreateTopic(topic).setRetainMessage(message));
+
         try {
             processor.addPlugin(options.getPluginGroup());
             server = new AioQuickServer(options.getHost(), options.getPort(), new MqttProtocol(options.getMaxPacketSize()), processor);
@@ -297,14 +349,14 @@ public class BrokerContextImpl implements BrokerContext {
     }
 
     /**
-     * 初始化消息推送线程池。
+     * 初始化消息推送线程。
      * <p>
-     * 创建两个线程池：
+     * 创建pushThreadNum个推送分片，每个分片由单个线程及独立的任务队列组成：
      * <ul>
-     *   <li>retainPushThreadPool - 专门处理保留消息的推送</li>
-     *   <li>pushThreadPool - 处理普通消息的推送</li>
+     *   <li>主题的消息推送按主题名称的哈希值分配分片</li>
+     *   <li>保留消息的推送按会话分配分片</li>
      * </ul>
-     * 线程池大小由配置参数pushThreadNum决定。
+     * 配置参数pushWorkStealing决定空闲分片是否可窃取积压分片的任务。
      * </p>
      * <p>
      * 同时设置主题限制：
@@ -318,12 +370,40 @@ public class BrokerContextImpl implements BrokerContext {
         if (options.getTopicLimit() <= 0) {
             options.setTopicLimit(10);
         }
-        pushThreadPool = Executors.newFixedThreadPool(Options().getPushThreadNum(), new ThreadFactory() {
-            int index = 0;
+        pushExecutor = new PushExecutor(options.getPushThreadNum(), options.isPushWorkStealing());
+    }
 
+    /**
+     * 初始化持久化消息队列。
+     * <p>
+     * 配置了messageStorePath时，匹配persistentTopics的Topic将使用FileMessageStoreQueue，
+     * 其余Topic仍使用内存队列。插件可在安装阶段替换该Provider。
+     * </p>
+     */
+    private void initMessageQueueProvider() {
+        if (MqttUtil.isBlank(options.getMessageStorePath())) {
+            return;
+        }
+        File storeDir = new File(options.getMessageStorePath());
+        List<TopicToken> persistentTopics = new ArrayList<>();
+        for (String topicFilter : MqttUtil.defaultString(options.getPersistentTopics()).split(",")) {
+            if (MqttUtil.isNotBlank(topicFilter)) {
+                persistentTopics.add(new TopicToken(topicFilter.trim()));
+            }
+        }
+        if (persistentTopics.isEmpty()) {
+            return;
+        }
+        providers.setMessageQueueProvider(new MessageQueueProvider() {
             @Override
-            public Thread newThread(Runnable r) {
-                return new Thread(r, "broker-pusher-" + (index++));
+            public MessageQueue createMessageQueue(String topic, int capacity) {
+                TopicToken topicToken = new TopicToken(topic);
+                for (TopicToken persistentTopic : persistentTopics) {
+                    if (MqttUtil.match(topicToken, persistentTopic)) {
+                        return new FileMessageStoreQueue(storeDir, topic, capacity, options.getMaxMessageStoreSize());
+                    }
+                }
+                return null;
             }
         });
     }
@@ -347,6 +427,7 @@ public class BrokerContextImpl implements BrokerContext {
      *       <li>管理消息的生命周期</li>
      *     </ul>
      *   </li>
+     *   <li>离线消息 - 由OfflineMessageManager存入离线的持久会话的队列</li>
      * </ul>
      * </p>
      */
@@ -368,7 +449,7 @@ public class BrokerContextImpl implements BrokerContext {
             // 此外，同一个主题下任何现存的保留消息必须被移除，因此这个主题之后的任何订阅者都不会收到一个保留消息。
             if (message.getPayload().length == 0) {
 //                LOGGER.info("clear topic:{} retained messages, because of current retained message's payload length is 0", topic.getTopic());
-                retains.remove(topic.getTopic());
+                retainMessageStore.update((BrokerTopicImpl) topic, null);
                 return;
             }
             /*
@@ -376,12 +457,10 @@ public class BrokerContextImpl implements BrokerContext {
              * 的任何消息。它应该将这个新的 QoS 0 消息当作那个主题的新保留消息，但是任何时候都可以选择丢弃它
              * 如果这种情况发生了，那个主题将没有保留消息
              */
-            if (message.getQos() == MqttQoS.AT_MOST_ONCE) {
-//                LOGGER.info("receive Qos0 retain message,clear topic:{} retained messages", topic.getTopic());
-                retains.remove(topic.getTopic());
-            }
-            retains.put(topic.getTopic(), new RetainMessage(message.getPayload()));
+            retainMessageStore.update((BrokerTopicImpl) topic, message);
         }, Message::isRetained);
+        //缓存离线会话的消息
+        messageBus.consumer(offlineMessageManager);
     }
 
     /**
@@ -412,16 +491,14 @@ public class BrokerContextImpl implements BrokerContext {
      * </p>
      */
     private void subscribeEventBus() {
-        //保持连接状态监听,长时间没有消息通信将断开连接
-        eventBus.subscribe(EventType.CONNECT, AsyncEventObject.syncSubscriber(new KeepAliveMonitorSubscriber(this)));
-        //完成连接认证，移除监听器
-        eventBus.subscribe(EventType.CONNECT, AsyncEventObject.syncSubscriber((eventType, object) -> {
-            MqttSessionImpl session = (MqttSessionImpl) object.getSession();
-            session.idleConnectTimer.cancel();
-            session.idleConnectTimer = null;
-        }));
+        //收到CONNECT报文，改为按保持连接时间监控，长时间没有消息通信将断开连接
+        eventBus.subscribe(EventType.CONNECT, AsyncEventObject.syncSubscriber((eventType, object) -> keepAliveMonitor.connected((MqttSessionImpl) object.getSession(), object.getObject().getVariableHeader().keepAliveTimeSeconds())));
 
-        eventBus.subscribe(EventType.TOPIC_CREATE, (eventType, brokerTopic) -> subscribeTopicTree.match((BrokerTopicImpl) brokerTopic));
+        eventBus.subscribe(EventType.TOPIC_CREATE, (eventType, brokerTopic) -> {
+            //新建主题时刷新与现有订阅关系的匹配，确保新主题的消息能推送给已匹配的订阅者
+            BrokerTopicImpl topic = (BrokerTopicImpl) brokerTopic;
+            subscribeTopicTree.match(topic, relation -> relation.getMqttSession().subscribeSuccess(relation, topic));
+        });
     }
 
     /**
@@ -460,6 +537,22 @@ public class BrokerContextImpl implements BrokerContext {
             }
         }));
         options.setProcessor(processor);
+        //解码报文时使用的主题名称缓存
+        List<String> topicCacheBypass = new ArrayList<>();
+        for (String topicFilter : MqttUtil.defaultString(options.getTopicCacheBypass()).split(",")) {
+            if (MqttUtil.isNotBlank(topicFilter)) {
+                topicCacheBypass.add(topicFilter.trim());
+            }
+        }
+        TopicNameCache.DEFAULT_INSTANCE.setMaxSize(options.getTopicCacheSize());
+        TopicNameCache.DEFAULT_INSTANCE.setBypassFilters(topicCacheBypass);
+        //慢消费者的处理策略，写缓冲区积压默认不超过其容量的一半，避免推送线程阻塞
+        try {
+            slowConsumerPolicy = SlowConsumerPolicy.valueOf(options.getSlowConsumerPolicy().trim().toUpperCase());
+        } catch (RuntimeException e) {
+            throw new MqttException("Invalid slowConsumerPolicy value: " + options.getSlowConsumerPolicy(), e);
+        }
+        maxOutboundBytes = options.getMaxOutboundBytes() == 0 ? (long) options.getBufferSize() * Math.min(options.getMaxInflight(), 16) / 2 : options.getMaxOutboundBytes();
         this.bufferPagePool = new BufferPagePool(Runtime.getRuntime().availableProcessors(), true);
         eventBus.publish(EventType.BROKER_CONFIGURE_LOADED, options);
 //        System.out.println("brokerConfigure: " + brokerConfigure);
@@ -518,6 +611,16 @@ public class BrokerContextImpl implements BrokerContext {
                 }
             }
 
+            // 处理topicAliasMaximum配置
+            String topicAliasMaximumValue = getPropertyValue("topicAliasMaximum");
+            if (topicAliasMaximumValue != null) {
+                try {
+                    options.setTopicAliasMaximum(Integer.parseInt(topicAliasMaximumValue));
+                } catch (NumberFormatException e) {
+                    throw new MqttException("Invalid topicAliasMaximum value: " + topicAliasMaximumValue, e);
+                }
+            }
+
             // 处理maxPacketSize配置
             String maxPacketSizeValue = getPropertyValue("maxPacketSize");
             if (maxPacketSizeValue != null) {
@@ -538,6 +641,12 @@ public class BrokerContextImpl implements BrokerContext {
                 }
             }
 
+            // 处理pushWorkStealing配置
+            String pushWorkStealingValue = getPropertyValue("pushWorkStealing");
+            if (pushWorkStealingValue != null) {
+                options.setPushWorkStealing(Boolean.parseBoolean(pushWorkStealingValue));
+            }
+
             // 处理topicLimit配置
             String topicLimitValue = getPropertyValue("topicLimit");
             if (topicLimitValue != null) {
@@ -558,6 +667,158 @@ public class BrokerContextImpl implements BrokerContext {
                 }
             }
 
+            // 处理messageStorePath配置
+            String messageStorePathValue = getPropertyValue("messageStorePath");
+            if (messageStorePathValue != null) {
+                options.setMessageStorePath(messageStorePathValue);
+            }
+
+            // 处理persistentTopics配置
+            String persistentTopicsValue = getPropertyValue("persistentTopics");
+            if (persistentTopicsValue != null) {
+                options.setPersistentTopics(persistentTopicsValue);
+            }
+
+            // 处理maxMessageStoreSize配置
+            String maxMessageStoreSizeValue = getPropertyValue("maxMessageStoreSize");
+            if (maxMessageStoreSizeValue != null) {
+                try {
+                    options.setMaxMessageStoreSize(Long.parseLong(maxMessageStoreSizeValue));
+                } catch (NumberFormatException e) {
+                    throw new MqttException("Invalid maxMessageStoreSize value: " + maxMessageStoreSizeValue, e);
+                }
+            }
+
+            // 处理maxOfflineMessages配置
+            String maxOfflineMessagesValue = getPropertyValue("maxOfflineMessages");
+            if (maxOfflineMessagesValue != null) {
+                try {
+                    options.setMaxOfflineMessages(Integer.parseInt(maxOfflineMessagesValue));
+                } catch (NumberFormatException e) {
+                    throw new MqttException("Invalid maxOfflineMessages value: " + maxOfflineMessagesValue, e);
+                }
+            }
+
+            // 处理maxTotalOfflineMessages配置
+            String maxTotalOfflineMessagesValue = getPropertyValue("maxTotalOfflineMessages");
+            if (maxTotalOfflineMessagesValue != null) {
+                try {
+                    options.setMaxTotalOfflineMessages(Integer.parseInt(maxTotalOfflineMessagesValue));
+                } catch (NumberFormatException e) {
+                    throw new MqttException("Invalid maxTotalOfflineMessages value: " + maxTotalOfflineMessagesValue, e);
+                }
+            }
+
+            // 处理offlineMessageStorePath配置
+            String offlineMessageStorePathValue = getPropertyValue("offlineMessageStorePath");
+            if (offlineMessageStorePathValue != null) {
+                options.setOfflineMessageStorePath(offlineMessageStorePathValue);
+            }
+
+            // 处理retainStorePath配置
+            String retainStorePathValue = getPropertyValue("retainStorePath");
+            if (retainStorePathValue != null) {
+                options.setRetainStorePath(retainStorePathValue);
+            }
+
+            // 处理topicCacheSize配置
+            String topicCacheSizeValue = getPropertyValue("topicCacheSize");
+            if (topicCacheSizeValue != null) {
+                try {
+                    options.setTopicCacheSize(Integer.parseInt(topicCacheSizeValue));
+                } catch (NumberFormatException e) {
+                    throw new MqttException("Invalid topicCacheSize value: " + topicCacheSizeValue, e);
+                }
+            }
+
+            // 处理topicCacheBypass配置
+            String topicCacheBypassValue = getPropertyValue("topicCacheBypass");
+            if (topicCacheBypassValue != null) {
+                options.setTopicCacheBypass(topicCacheBypassValue);
+            }
+
+            // 处理maxOutboundBytes配置
+            String maxOutboundBytesValue = getPropertyValue("maxOutboundBytes");
+            if (maxOutboundBytesValue != null) {
+                try {
+                    options.setMaxOutboundBytes(Long.parseLong(maxOutboundBytesValue));
+                } catch (NumberFormatException e) {
+                    throw new MqttException("Invalid maxOutboundBytes value: " + maxOutboundBytesValue, e);
+                }
+            }
+
+            // 处理maxOutboundMessages配置
+            String maxOutboundMessagesValue = getPropertyValue("maxOutboundMessages");
+            if (maxOutboundMessagesValue != null) {
+                try {
+                    options.setMaxOutboundMessages(Integer.parseInt(maxOutboundMessagesValue));
+                } catch (NumberFormatException e) {
+                    throw new MqttException("Invalid maxOutboundMessages value: " + maxOutboundMessagesValue, e);
+                }
+            }
+
+            // 处理slowConsumerPolicy配置
+            String slowConsumerPolicyValue = getPropertyValue("slowConsumerPolicy");
+            if (slowConsumerPolicyValue != null) {
+                options.setSlowConsumerPolicy(slowConsumerPolicyValue);
+            }
+
+            // 处理发布限流配置
+            String clientPublishRateValue = getPropertyValue("clientPublishRate");
+            if (clientPublishRateValue != null) {
+                options.setClientPublishRate(clientPublishRateValue);
+            }
+            String usernamePublishRateValue = getPropertyValue("usernamePublishRate");
+            if (usernamePublishRateValue != null) {
+                options.setUsernamePublishRate(usernamePublishRateValue);
+            }
+            String topicPublishRateValue = getPropertyValue("topicPublishRate");
+            if (topicPublishRateValue != null) {
+                options.setTopicPublishRate(topicPublishRateValue);
+            }
+
+            // 处理连接准入配置
+            String maxConnectingValue = getPropertyValue("maxConnecting");
+            if (maxConnectingValue != null) {
+                try {
+                    options.setMaxConnecting(Integer.parseInt(maxConnectingValue));
+                } catch (NumberFormatException e) {
+                    throw new MqttException("Invalid maxConnecting value: " + maxConnectingValue, e);
+                }
+            }
+            String connectRateValue = getPropertyValue("connectRate");
+            if (connectRateValue != null) {
+                try {
+                    options.setConnectRate(Integer.parseInt(connectRateValue));
+                } catch (NumberFormatException e) {
+                    throw new MqttException("Invalid connectRate value: " + connectRateValue, e);
+                }
+            }
+            String connectQueueSizeValue = getPropertyValue("connectQueueSize");
+            if (connectQueueSizeValue != null) {
+                try {
+                    options.setConnectQueueSize(Integer.parseInt(connectQueueSizeValue));
+                } catch (NumberFormatException e) {
+                    throw new MqttException("Invalid connectQueueSize value: " + connectQueueSizeValue, e);
+                }
+            }
+            String connectQueueTimeoutValue = getPropertyValue("connectQueueTimeout");
+            if (connectQueueTimeoutValue != null) {
+                try {
+                    options.setConnectQueueTimeout(Integer.parseInt(connectQueueTimeoutValue));
+                } catch (NumberFormatException e) {
+                    throw new MqttException("Invalid connectQueueTimeout value: " + connectQueueTimeoutValue, e);
+                }
+            }
+            String busyServerKeepAliveValue = getPropertyValue("busyServerKeepAlive");
+            if (busyServerKeepAliveValue != null) {
+                try {
+                    options.setBusyServerKeepAlive(Integer.parseInt(busyServerKeepAliveValue));
+                } catch (NumberFormatException e) {
+                    throw new MqttException("Invalid busyServerKeepAlive value: " + busyServerKeepAliveValue, e);
+                }
+            }
+
             // 处理lowMemory配置
             String lowMemoryValue = getPropertyValue("lowMemory");
             if (lowMemoryValue != null) {
@@ -638,7 +899,11 @@ public class BrokerContextImpl implements BrokerContext {
                 brokerTopic = topicMap.get(topic);
                 if (brokerTopic == null) {
                     ValidateUtils.isTrue(!MqttUtil.containsTopicWildcards(topic), "invalid topicName: " + topic);
-                    brokerTopic = new BrokerTopicImpl(topic, options.getMaxMessageQueueLength(), pushThreadPool);
+                    MessageQueue messageQueue = providers.getMessageQueueProvider().createMessageQueue(topic, options.getMaxMessageQueueLength());
+                    if (messageQueue == null) {
+                        messageQueue = new MemoryMessageStoreQueue(options.getMaxMessageQueueLength(), overwrittenMessages);
+                    }
+                    brokerTopic = new BrokerTopicImpl(topic, messageQueue, pushExecutor.select(topic));
                     topicMatcher.add(brokerTopic);
                     topicMap.put(topic, brokerTopic);
                     eventBus.publish(EventType.TOPIC_CREATE, brokerTopic);
@@ -681,8 +946,31 @@ public class BrokerContextImpl implements BrokerContext {
         return timer;
     }
 
-    RetainMessage getRetain(String topic) {
-        return retains.get(topic);
+
+    PushExecutor getPushExecutor() {
+        return pushExecutor;
+    }
+
+    @Override
+    public List<PushShard> getPushShards() {
+        return pushExecutor.getShards();
+    }
+
+    @Override
+    public long getOverwrittenMessageCount() {
+        return overwrittenMessages.sum();
+    }
+
+    KeepAliveMonitor getKeepAliveMonitor() {
+        return keepAliveMonitor;
+    }
+
+    SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    long getMaxOutboundBytes() {
+        return maxOutboundBytes;
     }
 
     public Timer getInflightQueueTimer() {
@@ -698,7 +986,25 @@ public class BrokerContextImpl implements BrokerContext {
         return topicMatcher;
     }
 
-    SubscribeRelationMatcher getRelationMatcher() {
+    @Override
+    public void forEachTopicFilter(Consumer<String> consumer) {
+        subscribeTopicTree.forEachTopicFilter(consumer);
+    }
+
+    public OfflineMessageManager getOfflineMessageManager() {
+        return offlineMessageManager;
+    }
+
+    public PublishRateLimiter getPublishRateLimiter() {
+        return publishRateLimiter;
+    }
+
+    @Override
+    public ConnectAdmissionController getConnectAdmission() {
+        return connectAdmission;
+    }
+
+    SubscribeRelationMatcher<SessionSubscribeRelation> getRelationMatcher() {
         return subscribeTopicTree;
     }
 
@@ -714,14 +1020,20 @@ public class BrokerContextImpl implements BrokerContext {
 
     public void destroy() {
         eventBus.publish(EventType.BROKER_DESTROY, this);
-        topicMap.values().forEach(BrokerTopicImpl::disable);
-        retains.clear();
+        topicMap.values().forEach(BrokerTopicImpl::destroy);
+        if (retainMessageStore != null) {
+            retainMessageStore.close();
+        }
+        if (offlineMessageManager != null) {
+            offlineMessageManager.destroy();
+        }
 
-        pushThreadPool.shutdown();
+        pushExecutor.shutdown();
         if (server != null) {
             server.shutdown();
         }
         options.getChannelGroup().shutdown();
+        keepAliveMonitor.stop();
         timer.shutdown();
         inflightQueueTimer.shutdown();
 
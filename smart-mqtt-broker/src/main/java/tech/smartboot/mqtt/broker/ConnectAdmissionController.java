@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker;
+
+import tech.smartboot.mqtt.common.enums.MqttConnectReturnCode;
+import tech.smartboot.mqtt.common.enums.MqttVersion;
+import tech.smartboot.mqtt.common.message.variable.properties.ConnectAckProperties;
+import tech.smartboot.mqtt.plugin.spec.ConnectAdmission;
+import tech.smartboot.mqtt.plugin.spec.MqttSession;
+import tech.smartboot.mqtt.plugin.spec.Options;
+import tech.smartboot.mqtt.plugin.spec.bus.EventType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CONNECT报文的准入控制。
+ * <p>
+ * 限制同时处理中的连接数及每秒开始处理的连接数，超出的CONNECT报文按到达顺序排队，
+ * 待处理中的连接完成或令牌补足后依次放行。排队已满或超时的连接以服务端繁忙拒绝，
+ * MQTT 5.0连接的CONNACK中携带服务端保持连接时间，提示客户端放缓重连。
+ * </p>
+ * <p>
+ * 连接从开始处理至发送CONNACK或连接断开，期间占用一个处理名额。排队期间暂停读取该连接的数据。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public final class ConnectAdmissionController implements ConnectAdmission {
+    private final BrokerContextImpl context;
+    private final int maxConnecting;
+    private final int connectRate;
+    private final int queueSize;
+    private final long queueTimeout;
+    private final boolean enabled;
+    /**
+     * 正在处理的连接
+     */
+    private final Set<MqttSessionImpl> connecting = ConcurrentHashMap.newKeySet();
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+    private int connectingCount;
+    private double tokens;
+    private long refillTime = System.nanoTime();
+    private boolean drainScheduled;
+    private volatile int queueDepth;
+    private volatile long rejectedCount;
+
+    ConnectAdmissionController(BrokerContextImpl context) {
+        this.context = context;
+        Options options = context.Options();
+        this.maxConnecting = Math.max(0, options.getMaxConnecting());
+        this.connectRate = Math.max(0, options.getConnectRate());
+        this.queueSize = Math.max(0, options.getConnectQueueSize());
+        this.queueTimeout = options.getConnectQueueTimeout();
+        this.enabled = maxConnecting > 0 || connectRate > 0;
+        this.tokens = connectRate;
+        if (enabled) {
+            //认证失败等情况下连接直接断开，同样需要释放处理名额
+            context.getEventBus().subscribe(EventType.DISCONNECT, (eventType, session) -> release((MqttSessionImpl) session));
+        }
+    }
+
+    /**
+     * 申请处理CONNECT报文，准入后执行connect，否则排队或以服务端繁忙拒绝
+     */
+    public void admit(MqttSessionImpl session, Runnable connect) {
+        if (!enabled) {
+            connect.run();
+            return;
+        }
+        boolean admitted = false;
+        boolean rejected = false;
+        synchronized (this) {
+            if (queue.isEmpty() && tryAcquire(session)) {
+                admitted = true;
+            } else if (queue.size() < queueSize) {
+                queue.offer(new Waiter(session, connect, context.getKeepAliveMonitor().currentTimeMillis()));
+                queueDepth = queue.size();
+                scheduleDrain();
+            } else {
+                rejected = true;
+                rejectedCount++;
+            }
+        }
+        if (admitted) {
+            start(session, connect);
+        } else if (rejected) {
+            reject(session);
+        }
+    }
+
+    /**
+     * 连接处理完成，释放占用的处理名额
+     */
+    public void release(MqttSessionImpl session) {
+        if (!enabled || !connecting.remove(session)) {
+            return;
+        }
+        synchronized (this) {
+            connectingCount--;
+        }
+        drain();
+    }
+
+    /**
+     * 按到达顺序放行排队的连接，并拒绝排队超时的连接
+     */
+    private void drain() {
+        List<Waiter> admitted = null;
+        List<Waiter> rejected = null;
+        synchronized (this) {
+            long now = context.getKeepAliveMonitor().currentTimeMillis();
+            Waiter waiter;
+            while ((waiter = queue.peek()) != null) {
+                if (waiter.session.isDisconnect()) {
+                    queue.poll();
+                } else if (queueTimeout > 0 && now - waiter.enqueueTime >= queueTimeout) {
+                    queue.poll();
+                    rejectedCount++;
+                    if (rejected == null) {
+                        rejected = new ArrayList<>();
+                    }
+                    rejected.add(waiter);
+                } else if (tryAcquire(waiter.session)) {
+                    queue.poll();
+                    if (admitted == null) {
+                        admitted = new ArrayList<>();
+                    }
+                    admitted.add(waiter);
+                } else {
+                    break;
+                }
+            }
+            queueDepth = queue.size();
+            if (!queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+        if (rejected != null) {
+            rejected.forEach(w -> reject(w.session));
+        }
+        if (admitted != null) {
+            admitted.forEach(w -> start(w.session, w.connect));
+        }
+    }
+
+    private void start(MqttSessionImpl session, Runnable connect) {
+        //准入前连接已断开，其断开事件可能先于占用名额，需自行释放
+        if (session.isDisconnect()) {
+            release(session);
+        } else {
+            connect.run();
+        }
+    }
+
+    /**
+     * 排队期间若无连接完成处理，由定时任务补充令牌并检查排队超时
+     */
+    private void scheduleDrain() {
+        if (drainScheduled) {
+            return;
+        }
+        drainScheduled = true;
+        long delay;
+        if (connectRate > 0 && tokens < 1 && (maxConnecting == 0 || connectingCount < maxConnecting)) {
+            delay = (long) Math.ceil((1 - tokens) * 1000 / connectRate);
+        } else {
+            delay = queueTimeout > 0 ? Math.min(queueTimeout, 1000) : 1000;
+        }
+        context.getTimer().schedule(() -> {
+            synchronized (this) {
+                drainScheduled = false;
+            }
+            drain();
+        }, Math.max(1, delay), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 申请处理名额及令牌
+     */
+    private boolean tryAcquire(MqttSessionImpl session) {
+        if (maxConnecting > 0 && connectingCount >= maxConnecting) {
+            return false;
+        }
+        if (connectRate > 0) {
+            long now = System.nanoTime();
+            if (now > refillTime) {
+                tokens = Math.min(connectRate, tokens + (now - refillTime) * connectRate / 1e9);
+                refillTime = now;
+            }
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+        }
+        connectingCount++;
+        connecting.add(session);
+        return true;
+    }
+
+    private void reject(MqttSessionImpl session) {
+        if (session.isDisconnect()) {
+            return;
+        }
+        MqttConnectReturnCode returnCode;
+        ConnectAckProperties properties = null;
+        if (session.getMqttVersion() == MqttVersion.MQTT_5) {
+            returnCode = MqttConnectReturnCode.SERVER_BUSY;
+            properties = new ConnectAckProperties();
+            properties.setServerKeepAlive(context.Options().getBusyServerKeepAlive());
+            properties.setReasonString("server busy, retry later");
+        } else {
+            returnCode = MqttConnectReturnCode.CONNECTION_REFUSED_SERVER_UNAVAILABLE;
+        }
+        session.write(MqttSession.connAck(returnCode, false, properties));
+        session.disconnect();
+    }
+
+    @Override
+    public int getConnectingCount() {
+        return connecting.size();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    private static final class Waiter {
+        private final MqttSessionImpl session;
+        private final Runnable connect;
+        private final long enqueueTime;
+
+        Waiter(MqttSessionImpl session, Runnable connect, long enqueueTime) {
+            this.session = session;
+            this.connect = connect;
+            this.enqueueTime = enqueueTime;
+        }
+    }
+}
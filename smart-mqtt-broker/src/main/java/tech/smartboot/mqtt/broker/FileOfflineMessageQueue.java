@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker;
+
+import tech.smartboot.mqtt.broker.topic.FileMessageStoreQueue;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
+import tech.smartboot.mqtt.plugin.spec.Message;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 基于本地文件的离线消息队列，每个会话对应一个文件。
+ * <p>
+ * 消息以追加写的方式存入文件，读取时从队首依次向后推进，队列清空后截断文件，关闭时将未读取的记录移至文件头部。
+ * 文件以clientId的十六进制编码命名，Broker重启后由OfflineMessageManager扫描恢复；
+ * 离线会话的订阅及过期时间由OfflineMessageManager存入同名的会话文件，随队列一并删除。
+ * </p>
+ * <p>
+ * 记录格式：length(4) + qos(1) + createTime(8) + expiryInterval(4) + topicLength(2) + topic + propertiesLength(4)
+ * + properties + payload，其中length为其后的字节数，properties沿用FileMessageStoreQueue的属性编码，
+ * 不含需透传的属性时propertiesLength为-1。写入未调用force，进程异常退出不会丢失数据，但无法抵御掉电。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+final class FileOfflineMessageQueue implements OfflineMessageQueue {
+    static final String FILE_SUFFIX = ".offline";
+    static final String SESSION_SUFFIX = ".session";
+    private static final int LENGTH_SIZE = 4;
+    private static final int RECORD_HEADER_SIZE = 1 + 8 + 4 + 2 + 4;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File file;
+    private final File sessionFile;
+    private final FileChannel channel;
+    private long readPosition;
+    private long writePosition;
+    private int size;
+    /**
+     * 已读取的队首消息及其记录长度
+     */
+    private OfflineMessage head;
+    private int headLength;
+
+    FileOfflineMessageQueue(File file) throws IOException {
+        this.file = file;
+        this.sessionFile = new File(file.getParentFile(), file.getName().substring(0, file.getName().length() - FILE_SUFFIX.length()) + SESSION_SUFFIX);
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+    }
+
+    /**
+     * 扫描已有记录，截断末尾不完整的记录
+     */
+    private void recover() throws IOException {
+        long fileSize = channel.size();
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(LENGTH_SIZE);
+        long position = 0;
+        while (position + LENGTH_SIZE <= fileSize) {
+            lengthBuffer.clear();
+            read(lengthBuffer, position);
+            int length = lengthBuffer.getInt(0);
+            if (length < RECORD_HEADER_SIZE || position + LENGTH_SIZE + length > fileSize) {
+                break;
+            }
+            position += LENGTH_SIZE + length;
+            size++;
+        }
+        if (position < fileSize) {
+            channel.truncate(position);
+        }
+        writePosition = position;
+    }
+
+    @Override
+    public synchronized boolean offer(OfflineMessage offlineMessage) {
+        Message message = offlineMessage.getMessage();
+        byte[] topic = offlineMessage.getTopic().getBytes(StandardCharsets.UTF_8);
+        byte[] properties = FileMessageStoreQueue.encodeProperties(message.getProperties());
+        int length = RECORD_HEADER_SIZE + topic.length + (properties == null ? 0 : properties.length) + message.getPayload().length;
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH_SIZE + length);
+        buffer.putInt(length);
+        buffer.put((byte) offlineMessage.getQos().value());
+        buffer.putLong(message.getCreateTime());
+        buffer.putInt(message.getExpiryInterval());
+        buffer.putShort((short) topic.length);
+        buffer.put(topic);
+        if (properties == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(properties.length);
+            buffer.put(properties);
+        }
+        buffer.put(message.getPayload());
+        buffer.flip();
+        long position = writePosition;
+        try {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        } catch (IOException e) {
+            System.err.println("write offline message to " + file + " fail: " + e.getMessage());
+            return false;
+        }
+        writePosition = position;
+        size++;
+        return true;
+    }
+
+    @Override
+    public synchronized OfflineMessage peek() throws IOException {
+        if (head != null || size == 0) {
+            return head;
+        }
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(LENGTH_SIZE);
+        read(lengthBuffer, readPosition);
+        int length = lengthBuffer.getInt(0);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        read(buffer, readPosition + LENGTH_SIZE);
+        buffer.flip();
+        MqttQoS qos = MqttQoS.valueOf(buffer.get() & 0xFF);
+        long createTime = buffer.getLong();
+        int expiryInterval = buffer.getInt();
+        byte[] topic = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(topic);
+        PublishProperties properties = null;
+        int propertiesLength = buffer.getInt();
+        if (propertiesLength >= 0) {
+            byte[] data = new byte[propertiesLength];
+            buffer.get(data);
+            properties = FileMessageStoreQueue.decodeProperties(data);
+        }
+        byte[] payload = new byte[buffer.remaining()];
+        buffer.get(payload);
+        head = new OfflineMessage(new String(topic, StandardCharsets.UTF_8), qos, new Message(qos, payload, false, createTime, expiryInterval, properties));
+        headLength = LENGTH_SIZE + length;
+        return head;
+    }
+
+    /**
+     * 移除由peek读取的队首消息
+     */
+    @Override
+    public synchronized void poll() {
+        if (head == null) {
+            return;
+        }
+        readPosition += headLength;
+        head = null;
+        if (--size == 0) {
+            //队列已清空，截断文件以回收磁盘空间
+            readPosition = writePosition = 0;
+            try {
+                channel.truncate(0);
+            } catch (IOException e) {
+                System.err.println("truncate offline message file " + file + " fail: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        close();
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+        if (sessionFile.exists() && !sessionFile.delete()) {
+            sessionFile.deleteOnExit();
+        }
+    }
+
+    /**
+     * 离线会话的订阅及过期时间的存储文件
+     */
+    File getSessionFile() {
+        return sessionFile;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            compact();
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("close offline message file " + file + " fail: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 将未读取的记录移至文件头部，避免重启后重复投递已推送的消息
+     */
+    private void compact() throws IOException {
+        if (readPosition == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = 0;
+        while (readPosition + position < writePosition) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), writePosition - readPosition - position));
+            read(buffer, readPosition + position);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+        channel.truncate(position);
+        readPosition = 0;
+        writePosition = position;
+    }
+
+    private void read(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of file");
+            }
+        }
+    }
+
+    static String fileName(String clientId) {
+        byte[] bytes = clientId.getBytes(StandardCharsets.UTF_8);
+        char[] chars = new char[bytes.length << 1];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i << 1] = HEX[(bytes[i] >> 4) & 0x0F];
+            chars[(i << 1) + 1] = HEX[bytes[i] & 0x0F];
+        }
+        return new String(chars) + FILE_SUFFIX;
+    }
+
+    /**
+     * 由文件名还原clientId，文件名不合法时返回null
+     */
+    static String clientId(String fileName) {
+        if (!fileName.endsWith(FILE_SUFFIX)) {
+            return null;
+        }
+        int length = fileName.length() - FILE_SUFFIX.length();
+        if ((length & 1) != 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length >> 1];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(fileName.charAt(i << 1), 16);
+            int low = Character.digit(fileName.charAt((i << 1) + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
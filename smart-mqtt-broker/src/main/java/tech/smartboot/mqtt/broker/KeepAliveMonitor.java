@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker;
+
+import io.github.smartboot.socket.timer.Timer;
+import io.github.smartboot.socket.timer.TimerTask;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接空闲监控，检测未发送CONNECT报文及超出保持连接时间的客户端并断开连接。
+ * <p>
+ * 会话按到期时间放入以秒为单位的时间桶，定时任务每秒批量检查一个时间桶，不再为每个会话创建定时任务：
+ * <ul>
+ *   <li>到期时会话仍有通信，则按最近一次收到报文的时间放入新的时间桶</li>
+ *   <li>到期时会话已断开，则直接丢弃，断开连接时无需从时间桶中移除</li>
+ * </ul>
+ * 时间桶构成环形数组，到期时间超出一圈的会话放入最远的时间桶，到期时重新计算。
+ * </p>
+ * <p>
+ * 同时维护一个粗粒度时钟，供收到报文时记录时间，避免每个报文调用System.currentTimeMillis()。
+ * 时钟与检查使用同一时间源，断开连接的时间误差不超过一个时间桶的跨度。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+final class KeepAliveMonitor {
+    /**
+     * 时钟刷新间隔（毫秒）
+     */
+    private static final int CLOCK_INTERVAL = 100;
+    /**
+     * 单个时间桶的跨度（毫秒）
+     */
+    private static final int BUCKET_INTERVAL = 1000;
+    /**
+     * 时间桶数量，需为2的幂
+     */
+    private static final int BUCKET_COUNT = 1024;
+    /**
+     * 批量检查时，每检查该数量的会话刷新一次时钟
+     */
+    private static final int CLOCK_REFRESH_BATCH = 1024;
+
+    private final BrokerContextImpl context;
+    private final Bucket[] buckets = new Bucket[BUCKET_COUNT];
+    private volatile long clock = System.currentTimeMillis();
+    /**
+     * 最近一个已检查的时间桶序号
+     */
+    private volatile long sweptTick = tick(clock) - 1;
+    private TimerTask task;
+
+    KeepAliveMonitor(BrokerContextImpl context) {
+        this.context = context;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    void start(Timer timer) {
+        task = timer.scheduleWithFixedDelay(this::sweep, CLOCK_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * 粗粒度的当前时间，精度为CLOCK_INTERVAL
+     */
+    long currentTimeMillis() {
+        return clock;
+    }
+
+    /**
+     * 新建连接，未在noConnectIdleTimeout内收到CONNECT报文将断开连接
+     */
+    void watch(MqttSessionImpl session) {
+        long now = clock;
+        session.setLatestReceiveMessageTime(now);
+        schedule(session, tick(now + context.Options().getNoConnectIdleTimeout()));
+    }
+
+    /**
+     * 收到CONNECT报文，改为按保持连接时间监控
+     *
+     * @param keepAliveSeconds CONNECT报文中的保持连接时间
+     */
+    void connected(MqttSessionImpl session, int keepAliveSeconds) {
+        //如果保持连接的值非零，并且服务端在一点五倍的保持连接时间内没有收到客户端的控制报文，
+        // 它必须断开客户端的网络连接，认为网络连接已断开.
+        long timeout = keepAliveSeconds * 1000L;
+        timeout += timeout >> 1;
+        long maxKeepAliveTime = context.Options().getMaxKeepAliveTime();
+        if (timeout == 0 || timeout > maxKeepAliveTime) {
+            timeout = maxKeepAliveTime;
+        }
+        session.keepAliveTimeout = timeout;
+        schedule(session, tick(session.getLatestReceiveMessageTime() + timeout));
+    }
+
+    private void schedule(MqttSessionImpl session, long tick) {
+        while (true) {
+            long swept = sweptTick;
+            if (tick <= swept) {
+                tick = swept + 1;
+            } else if (tick > swept + BUCKET_COUNT) {
+                tick = swept + BUCKET_COUNT;
+            }
+            Bucket bucket = buckets[(int) (tick & (BUCKET_COUNT - 1))];
+            synchronized (bucket) {
+                //期间时间桶已被检查，则放入下一个时间桶
+                if (tick <= sweptTick) {
+                    continue;
+                }
+                if (session.keepAliveTick != tick) {
+                    session.keepAliveTick = tick;
+                    bucket.sessions.add(session);
+                }
+                return;
+            }
+        }
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        clock = now;
+        long nowTick = tick(now);
+        for (long tick = sweptTick + 1; tick <= nowTick; tick++) {
+            Bucket bucket = buckets[(int) (tick & (BUCKET_COUNT - 1))];
+            ArrayList<MqttSessionImpl> sessions;
+            synchronized (bucket) {
+                sessions = bucket.sessions;
+                bucket.sessions = new ArrayList<>();
+                sweptTick = tick;
+            }
+            for (int i = 0; i < sessions.size(); i++) {
+                if ((i & (CLOCK_REFRESH_BATCH - 1)) == CLOCK_REFRESH_BATCH - 1) {
+                    clock = System.currentTimeMillis();
+                }
+                MqttSessionImpl session = sessions.get(i);
+                //会话已放入其他时间桶
+                if (session.keepAliveTick > tick) {
+                    continue;
+                }
+                try {
+                    check(session);
+                } catch (Throwable throwable) {
+                    System.err.println("check keepalive of session:" + session.getClientId() + " exception");
+                    throwable.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void check(MqttSessionImpl session) {
+        if (session.isDisconnect()) {
+            return;
+        }
+        long now = clock;
+        long timeout = session.keepAliveTimeout;
+        boolean connected = timeout > 0;
+        if (!connected) {
+            timeout = context.Options().getNoConnectIdleTimeout();
+        }
+        long deadline = session.getLatestReceiveMessageTime() + timeout;
+        if (deadline > now) {
+            schedule(session, tick(deadline));
+        } else if (connected) {
+            //由于存在 ping 消息，正常情况下不会进入该分支，可能客户端有问题或网络拥塞
+            System.err.println("session:" + session.getClientId() + " keepalive timeout,current:" + now + " latestReceiveTime:" + session.getLatestReceiveMessageTime() + " timeout:" + timeout);
+            session.disconnect();
+        } else {
+            System.out.println("长时间未收到客户端：" + session.getClientId() + " 的Connect消息，连接断开！");
+            session.disconnect();
+        }
+    }
+
+    /**
+     * 到期时间所在的时间桶序号，该时间桶检查时到期时间已过
+     */
+    private static long tick(long time) {
+        return (time + BUCKET_INTERVAL - 1) / BUCKET_INTERVAL;
+    }
+
+    private static final class Bucket {
+        private ArrayList<MqttSessionImpl> sessions = new ArrayList<>();
+    }
+}
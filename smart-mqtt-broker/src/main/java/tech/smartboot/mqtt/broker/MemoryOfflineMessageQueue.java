@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker;
+
+import java.util.ArrayDeque;
+
+/**
+ * 基于内存的离线消息队列
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+final class MemoryOfflineMessageQueue implements OfflineMessageQueue {
+    private final ArrayDeque<OfflineMessage> queue = new ArrayDeque<>();
+
+    @Override
+    public synchronized boolean offer(OfflineMessage message) {
+        return queue.offer(message);
+    }
+
+    @Override
+    public synchronized OfflineMessage peek() {
+        return queue.peek();
+    }
+
+    @Override
+    public synchronized void poll() {
+        queue.poll();
+    }
+
+    @Override
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    @Override
+    public synchronized void destroy() {
+        queue.clear();
+    }
+
+    @Override
+    public void close() {
+        destroy();
+    }
+}
@@ -10,6 +10,7 @@
 
 package tech.smartboot.mqtt.broker;
 
+import io.github.smartboot.socket.Plugin;
 import io.github.smartboot.socket.StateMachineEnum;
 import io.github.smartboot.socket.transport.AioSession;
 import tech.smartboot.mqtt.broker.processor.ConnectProcessor;
@@ -85,6 +86,16 @@ final class MqttBrokerMessageProcessor extends MqttMessageProcessor {
 
     public MqttBrokerMessageProcessor(BrokerContextImpl mqttContext) {
         this.mqttContext = mqttContext;
+        //统计已发送的字节数，用于判断会话写缓冲区的积压
+        this.addPlugin(new Plugin<MqttMessage>() {
+            @Override
+            public void afterWrite(AioSession session, int writeSize) {
+                MqttSessionImpl mqttSession = session.getAttachment();
+                if (mqttSession != null && writeSize > 0) {
+                    mqttSession.outboundWritten(writeSize);
+                }
+            }
+        });
     }
 
     @Override
@@ -95,7 +106,7 @@ final class MqttBrokerMessageProcessor extends MqttMessageProcessor {
         if (!EventBusImpl.RECEIVE_MESSAGE_SUBSCRIBER_LIST.isEmpty()) {
             mqttContext.getEventBus().publish(EventType.RECEIVE_MESSAGE, EventObject.newEventObject(mqttSession, msg), EventBusImpl.RECEIVE_MESSAGE_SUBSCRIBER_LIST);
         }
-        mqttSession.setLatestReceiveMessageTime(System.currentTimeMillis());
+        mqttSession.setLatestReceiveMessageTime(mqttContext.getKeepAliveMonitor().currentTimeMillis());
         processor.process(mqttContext, mqttSession, msg);
     }
 
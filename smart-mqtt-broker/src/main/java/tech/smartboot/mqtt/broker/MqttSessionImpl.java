@@ -10,13 +10,12 @@
 
 package tech.smartboot.mqtt.broker;
 
-import io.github.smartboot.socket.timer.TimerTask;
 import io.github.smartboot.socket.transport.AioSession;
 import tech.smartboot.mqtt.broker.topic.BaseMessageDeliver;
 import tech.smartboot.mqtt.broker.topic.BrokerTopicImpl;
 import tech.smartboot.mqtt.broker.topic.DeliverGroup;
 import tech.smartboot.mqtt.common.AbstractSession;
-import tech.smartboot.mqtt.common.AsyncTask;
+import tech.smartboot.mqtt.common.DefaultMqttWriter;
 import tech.smartboot.mqtt.common.MqttWriter;
 import tech.smartboot.mqtt.common.TopicToken;
 import tech.smartboot.mqtt.common.enums.MqttQoS;
@@ -26,7 +25,6 @@ import tech.smartboot.mqtt.common.message.MqttPacketIdentifierMessage;
 import tech.smartboot.mqtt.common.message.MqttPublishMessage;
 import tech.smartboot.mqtt.common.message.variable.MqttPacketIdVariableHeader;
 import tech.smartboot.mqtt.common.message.variable.properties.ConnectProperties;
-import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
 import tech.smartboot.mqtt.common.util.ValidateUtils;
 import tech.smartboot.mqtt.plugin.spec.BrokerTopic;
 import tech.smartboot.mqtt.plugin.spec.Message;
@@ -41,7 +39,11 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 会话，客户端和服务端之间的状态交互。
@@ -70,35 +72,78 @@ public class MqttSessionImpl extends AbstractSession implements MqttSession {
 
     private ConnectProperties properties;
 
-    TimerTask idleConnectTimer;
     /**
      * 最近一次收到客户端消息的时间
      */
     private long latestReceiveMessageTime;
+    /**
+     * 保持连接的超时时间，收到CONNECT报文前为0
+     */
+    volatile long keepAliveTimeout;
+    /**
+     * 所在的空闲检查时间桶序号，由KeepAliveMonitor维护
+     */
+    volatile long keepAliveTick;
 
-    private TimerTask keepAliveTimer;
+    /**
+     * 重连后尚未推送完的离线消息
+     */
+    volatile OfflineMessageQueue offlineMessageQueue;
+    /**
+     * 断开连接时离线队列已交由OfflineMessageManager处理，不再接受转存的消息
+     */
+    boolean offlineMessageStored;
+    /**
+     * 离线队列的推送请求计数，保证同一时刻仅有一个线程推送离线消息
+     */
+    final AtomicInteger offlineDrainRequests = new AtomicInteger();
+
+    /**
+     * 用于统计写入写缓冲区的字节数，非DefaultMqttWriter时不限制写缓冲区的积压
+     */
+    private final DefaultMqttWriter outboundWriter;
+    /**
+     * 已发送至网络的字节数，由传输层的发送完成回调累加
+     */
+    private final AtomicLong sentBytes = new AtomicLong();
+    /**
+     * 推送因写缓冲区积压而暂停，待积压降低后恢复
+     */
+    private volatile boolean waitWritable;
+    /**
+     * 最近一次发布慢消费者事件的时间
+     */
+    private long latestSlowConsumerTime;
+
+    /**
+     * 客户端及用户名维度的发布限流令牌桶，连接成功时由PublishRateLimiter绑定
+     */
+    volatile PublishRateLimiter.TokenBucket[] publishBuckets = PublishRateLimiter.EMPTY_BUCKETS;
+    /**
+     * 因发布限流暂停读取
+     */
+    private volatile boolean readPaused;
+
+    /**
+     * 单批次推送的保留消息数量
+     */
+    private static final int RETAIN_BATCH_SIZE = 64;
+    /**
+     * 等待推送保留消息的订阅，保留消息推送完成后才加入主题的推送队列
+     */
+    private final ConcurrentLinkedQueue<BaseMessageDeliver> retainDelivers = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean retainPushing = new AtomicBoolean(false);
 
 
     public MqttSessionImpl(BrokerContextImpl mqttContext, AioSession session, MqttWriter mqttWriter) {
         this.mqttContext = mqttContext;
         this.session = session;
         this.mqttWriter = mqttWriter;
-        idleConnectTimer = mqttContext.getTimer().schedule(new AsyncTask() {
-            @Override
-            public void execute() {
-                if (!isAuthorized()) {
-                    System.out.println("长时间未收到客户端：" + getClientId() + " 的Connect消息，连接断开！");
-                    disconnect();
-                }
-            }
-        }, mqttContext.Options().getNoConnectIdleTimeout(), TimeUnit.MILLISECONDS);
+        this.outboundWriter = mqttWriter instanceof DefaultMqttWriter ? (DefaultMqttWriter) mqttWriter : null;
+        mqttContext.getKeepAliveMonitor().watch(this);
         mqttContext.getEventBus().publish(EventType.SESSION_CREATE, this);
     }
 
-    public void setKeepAliveTimer(TimerTask keepAliveTimer) {
-        this.keepAliveTimer = keepAliveTimer;
-    }
-
     public ConnectProperties getProperties() {
         return properties;
     }
@@ -126,6 +171,113 @@ public class MqttSessionImpl extends AbstractSession implements MqttSession {
         return writeLock.hasQueuedThreads();
     }
 
+    /**
+     * 写缓冲区中尚未发送至网络的字节数
+     */
+    public long getOutboundBytes() {
+        return outboundWriter == null ? 0 : outboundWriter.getWrittenBytes() - sentBytes.get();
+    }
+
+    /**
+     * 写缓冲区的积压是否超出maxOutboundBytes，超出时积压降至限制的一半后恢复暂停的推送
+     */
+    public boolean isOutboundOverflow() {
+        long maxOutboundBytes = mqttContext.getMaxOutboundBytes();
+        if (maxOutboundBytes < 0 || getOutboundBytes() <= maxOutboundBytes) {
+            return false;
+        }
+        waitWritable = true;
+        //再次检查，避免登记前积压已发送完毕而错过恢复
+        return getOutboundBytes() > maxOutboundBytes;
+    }
+
+    @Override
+    public void outboundWritten(int size) {
+        if (outboundWriter == null) {
+            return;
+        }
+        sentBytes.addAndGet(size);
+        if (waitWritable && getOutboundBytes() <= mqttContext.getMaxOutboundBytes() / 2) {
+            waitWritable = false;
+            mqttContext.getPushExecutor().select(this).execute(this::resumePush);
+        }
+    }
+
+    /**
+     * 写缓冲区恢复可写，继续推送离线消息、保留消息及订阅的主题
+     */
+    private void resumePush() {
+        if (isDisconnect()) {
+            return;
+        }
+        mqttContext.getOfflineMessageManager().drain(this);
+        if (!retainDelivers.isEmpty()) {
+            schedulePushRetain();
+        }
+        //主题正在推送时，由版本号触发再次推送
+        subscribers.values().forEach(relation -> relation.forEach((topic, deliver) -> {
+            topic.addVersion();
+            topic.push();
+        }));
+    }
+
+    /**
+     * 订阅者消费过慢，每秒至多发布一次SLOW_CONSUMER事件
+     */
+    public void slowConsumer(BrokerTopic topic) {
+        long now = mqttContext.getKeepAliveMonitor().currentTimeMillis();
+        if (now - latestSlowConsumerTime < 1000) {
+            return;
+        }
+        latestSlowConsumerTime = now;
+        mqttContext.getEventBus().publish(EventType.SLOW_CONSUMER, EventObject.newEventObject(this, topic));
+    }
+
+    /**
+     * 将消费过慢的消息转存至离线队列，按序推送
+     *
+     * @return 离线队列已满时返回false，消息被丢弃
+     */
+    public boolean spill(BrokerTopic topic, MqttQoS qos, Message message) {
+        return mqttContext.getOfflineMessageManager().spill(this, topic, qos, message);
+    }
+
+    /**
+     * 离线队列中是否存在待推送的消息
+     */
+    public boolean isSpilling() {
+        return offlineMessageQueue != null;
+    }
+
+    /**
+     * 暂停读取连接的数据，delayMillis后恢复
+     *
+     * @return 已处于暂停状态或连接已断开时返回false
+     */
+    boolean pauseRead(long delayMillis) {
+        AioSession aioSession = session;
+        if (readPaused || aioSession == null) {
+            return false;
+        }
+        readPaused = true;
+        aioSession.awaitRead();
+        mqttContext.getTimer().schedule(() -> {
+            readPaused = false;
+            if (!isDisconnect()) {
+                aioSession.signalRead();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return mqttContext.getSlowConsumerPolicy();
+    }
+
+    public int getMaxOutboundMessages() {
+        return mqttContext.Options().getMaxOutboundMessages();
+    }
+
     @Override
     public void write(MqttMessage mqttMessage, boolean autoFlush) {
         super.write(mqttMessage, autoFlush);
@@ -148,6 +300,7 @@ public class MqttSessionImpl extends AbstractSession implements MqttSession {
                 subscribers.values().forEach(topicSubscription -> sessionState.getSubscribers().put(topicSubscription.getTopicFilterToken().getTopicFilter(), topicSubscription.getMqttQoS()));
                 mqttContext.getProviders().getSessionStateProvider().store(clientId, sessionState);
             }
+            mqttContext.getOfflineMessageManager().store(this, subscribers.values());
         }
 
         if (willMessage != null) {
@@ -163,10 +316,6 @@ public class MqttSessionImpl extends AbstractSession implements MqttSession {
             System.err.println("remove old session success:" + removeSession);
             removeSession.disconnect();
         }
-        if (keepAliveTimer != null) {
-            keepAliveTimer.cancel();
-            keepAliveTimer = null;
-        }
         disconnect = true;
         setInflightQueue(null);
         mqttWriter = null;
@@ -262,29 +411,100 @@ public class MqttSessionImpl extends AbstractSession implements MqttSession {
 
     //一个新的订阅建立时，对每个匹配的主题名，如果存在最近保留的消息，它必须被发送给这个订阅者
     private void addSubscriber(BrokerTopicImpl topic, BaseMessageDeliver deliver) {
-        RetainMessage retainMessage = mqttContext.getRetain(topic.getTopic());
-        if (retainMessage == null || retainMessage.getCreateTime() > deliver.getLatestSubscribeTime()) {
+        if (!hasRetainMessage(topic, deliver)) {
             topic.registerMessageDeliver(deliver);
             return;
         }
+        //通配符订阅可能匹配大量保留消息，交由推送线程分批推送
+        retainDelivers.offer(deliver);
+        schedulePushRetain();
+    }
+
+    private boolean hasRetainMessage(BrokerTopicImpl topic, BaseMessageDeliver deliver) {
+        Message retainMessage = topic.getRetainMessage();
+        //保留消息过期后不再发送给新的订阅者
+        return retainMessage != null && retainMessage.getCreateTime() <= deliver.getLatestSubscribeTime() && !retainMessage.isExpired(System.currentTimeMillis());
+    }
 
-        PublishBuilder publishBuilder = PublishBuilder.builder().payload(retainMessage.getPayload()).qos(deliver.getMqttQoS()).topic(topic).retained(true);
-        if (getMqttVersion() == MqttVersion.MQTT_5) {
-            publishBuilder.publishProperties(new PublishProperties());
+    private void schedulePushRetain() {
+        if (retainPushing.compareAndSet(false, true)) {
+            mqttContext.getPushExecutor().select(this).execute(this::pushRetain);
         }
-        // Qos0不走飞行窗口
-        if (deliver.getMqttQoS() == MqttQoS.AT_MOST_ONCE) {
-            write(publishBuilder.build());
-            topic.registerMessageDeliver(deliver);
-            return;
+    }
+
+    /**
+     * 推送保留消息，每批最多推送RETAIN_BATCH_SIZE条后让出推送线程，QoS1/2消息受飞行窗口限制
+     */
+    private void pushRetain() {
+        int batch = RETAIN_BATCH_SIZE;
+        BaseMessageDeliver deliver;
+        while ((deliver = retainDelivers.peek()) != null) {
+            if (isDisconnect()) {
+                retainDelivers.clear();
+                break;
+            }
+            if (batch-- == 0) {
+                flush();
+                mqttContext.getPushExecutor().select(this).execute(this::pushRetain);
+                return;
+            }
+            BrokerTopicImpl topic = deliver.getTopic();
+            Message retainMessage = topic.getRetainMessage();
+            if (!hasRetainMessage(topic, deliver)) {
+                retainDelivers.poll();
+                registerMessageDeliver(topic, deliver);
+                continue;
+            }
+            //保留消息以订阅与发布时较小的QoS推送
+            MqttQoS qos = retainMessage.getQos().value() < deliver.getMqttQoS().value() ? retainMessage.getQos() : deliver.getMqttQoS();
+            PublishBuilder publishBuilder = PublishBuilder.builder().payload(retainMessage.getPayload()).qos(qos).topic(topic).retained(true);
+            if (getMqttVersion() == MqttVersion.MQTT_5) {
+                publishBuilder.publishProperties(BaseMessageDeliver.newPublishProperties(retainMessage, System.currentTimeMillis()));
+            }
+            // Qos0不走飞行窗口，写缓冲区积压时待恢复可写后继续推送
+            if (qos == MqttQoS.AT_MOST_ONCE) {
+                if (isOutboundOverflow()) {
+                    flush();
+                    retainPushing.set(false);
+                    //恢复可能发生在retainPushing复位之前
+                    if (!isOutboundOverflow()) {
+                        schedulePushRetain();
+                    }
+                    return;
+                }
+                write(publishBuilder.build(), false);
+                retainDelivers.poll();
+                registerMessageDeliver(topic, deliver);
+                continue;
+            }
+            CompletableFuture<MqttPacketIdentifierMessage<? extends MqttPacketIdVariableHeader>> future = inflightQueue.offer(publishBuilder, this::schedulePushRetain);
+            //飞行窗口已满，待窗口释放后继续推送
+            if (future == null) {
+                flush();
+                retainPushing.set(false);
+                if (inflightQueue.available() > 0) {
+                    schedulePushRetain();
+                }
+                return;
+            }
+            retainDelivers.poll();
+            BaseMessageDeliver retainDeliver = deliver;
+            future.whenComplete((mqttPacketIdentifierMessage, throwable) -> registerMessageDeliver(topic, retainDeliver));
         }
-        // retain消息逐个推送
-        CompletableFuture<MqttPacketIdentifierMessage<? extends MqttPacketIdVariableHeader>> future = inflightQueue.offer(publishBuilder);
-        future.whenComplete((mqttPacketIdentifierMessage, throwable) -> {
-//            LOGGER.info("publish retain to client:{} success  ", getClientId());
-            topic.registerMessageDeliver(deliver);
-        });
         flush();
+        retainPushing.set(false);
+        if (!retainDelivers.isEmpty()) {
+            schedulePushRetain();
+        }
+    }
+
+    /**
+     * 保留消息推送完毕，开始推送订阅之后到达的消息
+     */
+    private void registerMessageDeliver(BrokerTopicImpl topic, BaseMessageDeliver deliver) {
+        topic.registerMessageDeliver(deliver);
+        topic.addVersion();
+        topic.push();
     }
 
     public void resubscribe() {
@@ -306,6 +526,10 @@ public class MqttSessionImpl extends AbstractSession implements MqttSession {
         filterSubscriber.forEach((brokerTopic, subscriber) -> {
             DeliverGroup subscriberGroup = brokerTopic.getSubscriberGroup(filterSubscriber.getTopicFilterToken());
             BaseMessageDeliver consumerRecord = subscriberGroup.removeMessageDeliver(this);
+            //共享订阅的消息由共享订阅组统一提交，订阅组解散时释放
+            if (consumerRecord != null && !filterSubscriber.getTopicFilterToken().isShared()) {
+                consumerRecord.release();
+            }
             //移除后，如果BrokerTopic没有订阅者，则清除消息队列
             if (brokerTopic.subscribeCount() == 0) {
 //                LOGGER.debug("clear topic: {} message queue", brokerTopic.getTopicFilter());
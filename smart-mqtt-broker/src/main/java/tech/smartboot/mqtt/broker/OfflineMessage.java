@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker;
+
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.plugin.spec.Message;
+
+/**
+ * 离线队列中的消息，记录所属主题及推送时采用的QoS
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+final class OfflineMessage {
+    private final String topic;
+    /**
+     * 消息QoS与订阅QoS中的较小值
+     */
+    private final MqttQoS qos;
+    private final Message message;
+
+    OfflineMessage(String topic, MqttQoS qos, Message message) {
+        this.topic = topic;
+        this.qos = qos;
+        this.message = message;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public MqttQoS getQos() {
+        return qos;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,521 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker;
+
+import io.github.smartboot.socket.timer.TimerTask;
+import tech.smartboot.mqtt.broker.topic.BaseMessageDeliver;
+import tech.smartboot.mqtt.broker.topic.BrokerTopicImpl;
+import tech.smartboot.mqtt.common.AsyncTask;
+import tech.smartboot.mqtt.common.TopicToken;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.common.enums.MqttVersion;
+import tech.smartboot.mqtt.common.exception.MqttException;
+import tech.smartboot.mqtt.common.message.variable.properties.ConnectProperties;
+import tech.smartboot.mqtt.common.util.MqttUtil;
+import tech.smartboot.mqtt.plugin.spec.BrokerTopic;
+import tech.smartboot.mqtt.plugin.spec.Message;
+import tech.smartboot.mqtt.plugin.spec.MqttSession;
+import tech.smartboot.mqtt.plugin.spec.Options;
+import tech.smartboot.mqtt.plugin.spec.PublishBuilder;
+import tech.smartboot.mqtt.plugin.spec.bus.MessageBusConsumer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 持久会话的离线消息管理。
+ * <p>
+ * CleanSession为0（MQTT 5.0还需会话过期间隔大于0）的客户端断开连接时，将其QoS 1/2订阅登记至离线订阅树，
+ * 此后匹配的QoS 1/2消息存入该会话的离线队列；客户端以相同clientId且CleanSession为0重连时，
+ * 离线队列随新会话恢复，并在CONNACK之后经由飞行窗口按序推送。
+ * </p>
+ * <p>
+ * 队列长度受maxOfflineMessages（单个会话）及maxTotalOfflineMessages（全部会话）限制，超出后丢弃新到达的消息；
+ * 配置offlineMessageStorePath时离线消息存储于本地文件，否则保存在内存中；
+ * 存储于本地文件时，离线会话的订阅及过期时间一并存入会话文件，Broker重启后据此恢复离线订阅及过期计时。
+ * </p>
+ * <p>
+ * 慢消费策略为SPILL时，在线会话来不及推送的消息同样转存至该会话的离线队列，由drain按序推送。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public final class OfflineMessageManager implements MessageBusConsumer {
+    /**
+     * MQTT 5.0中会话过期间隔为0xFFFFFFFF表示会话永不过期
+     */
+    private static final int NEVER_EXPIRE = 0xFFFFFFFF;
+    private final BrokerContextImpl context;
+    private final int maxOfflineMessages;
+    private final int maxTotalOfflineMessages;
+    /**
+     * 离线消息的存储目录，为null时使用内存队列
+     */
+    private final File storeDir;
+    /**
+     * 离线会话的订阅树，仅包含非共享的QoS 1/2订阅
+     */
+    private final SubscribeRelationMatcher<OfflineRelation> relationMatcher = new SubscribeRelationMatcher<>();
+    private final ConcurrentMap<String, OfflineSession> sessions = new ConcurrentHashMap<>();
+    /**
+     * 全部离线队列中的消息总数
+     */
+    private final AtomicInteger total = new AtomicInteger();
+
+    OfflineMessageManager(BrokerContextImpl context) {
+        this.context = context;
+        Options options = context.Options();
+        this.maxOfflineMessages = options.getMaxOfflineMessages();
+        this.maxTotalOfflineMessages = options.getMaxTotalOfflineMessages();
+        if (MqttUtil.isBlank(options.getOfflineMessageStorePath())) {
+            storeDir = null;
+        } else {
+            storeDir = new File(options.getOfflineMessageStorePath());
+            try {
+                recover();
+            } catch (IOException e) {
+                throw new MqttException("load offline message store fail: " + storeDir.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    /**
+     * 恢复Broker重启前的离线队列、离线订阅及过期计时，待对应的客户端重连时推送。
+     * 缺少会话文件的队列（如在线会话转存时Broker异常退出）仅恢复已存储的消息
+     */
+    private void recover() throws IOException {
+        if (!storeDir.isDirectory() && !storeDir.mkdirs()) {
+            throw new IOException("create dir fail");
+        }
+        File[] files = storeDir.listFiles((dir, name) -> name.endsWith(FileOfflineMessageQueue.FILE_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String clientId = FileOfflineMessageQueue.clientId(file.getName());
+            if (clientId == null) {
+                continue;
+            }
+            FileOfflineMessageQueue queue = new FileOfflineMessageQueue(file);
+            OfflineSession offlineSession = new OfflineSession(queue);
+            long expireTime = -1;
+            File sessionFile = queue.getSessionFile();
+            if (sessionFile.isFile()) {
+                try (DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(sessionFile.toPath())))) {
+                    expireTime = inputStream.readLong();
+                    int count = inputStream.readUnsignedShort();
+                    for (int i = 0; i < count; i++) {
+                        MqttQoS qos = MqttQoS.valueOf(inputStream.readUnsignedByte());
+                        offlineSession.relations.add(new OfflineRelation(new TopicToken(inputStream.readUTF()), qos, offlineSession));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("load offline session " + sessionFile + " fail: " + e.getMessage());
+                    offlineSession.relations.clear();
+                    expireTime = -1;
+                }
+            }
+            if (offlineSession.relations.isEmpty() && queue.size() == 0) {
+                queue.destroy();
+                continue;
+            }
+            total.addAndGet(queue.size());
+            register(clientId, offlineSession, expireTime);
+        }
+    }
+
+    /**
+     * 匹配离线会话的订阅，将QoS 1/2消息存入离线队列
+     */
+    @Override
+    public void consume(MqttSession session, BrokerTopic topic, Message message) {
+        if (sessions.isEmpty() || message.getQos() == MqttQoS.AT_MOST_ONCE) {
+            return;
+        }
+        //同一会话的多个订阅匹配同一主题时仅存储一份，取最大的QoS
+        Map<OfflineSession, MqttQoS> matched = new HashMap<>();
+        relationMatcher.match((BrokerTopicImpl) topic, relation -> {
+            MqttQoS qos = relation.getMqttQoS().value() < message.getQos().value() ? relation.getMqttQoS() : message.getQos();
+            matched.merge(relation.offlineSession, qos, (a, b) -> a.value() >= b.value() ? a : b);
+        });
+        matched.forEach((offlineSession, qos) -> offer(offlineSession, new OfflineMessage(topic.getTopic(), qos, message)));
+    }
+
+    private void offer(OfflineSession offlineSession, OfflineMessage offlineMessage) {
+        synchronized (offlineSession) {
+            if (offlineSession.closed || offlineSession.queue.size() >= maxOfflineMessages) {
+                return;
+            }
+            if (total.incrementAndGet() > maxTotalOfflineMessages || !offlineSession.queue.offer(offlineMessage)) {
+                total.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 会话断开连接时调用：持久会话登记离线订阅，尚未推送完的离线消息保留在队列头部；
+     * 非持久会话则释放残留的离线队列
+     */
+    void store(MqttSessionImpl session, Collection<SessionSubscribeRelation> relations) {
+        OfflineMessageQueue pending;
+        synchronized (session) {
+            pending = session.offlineMessageQueue;
+            session.offlineMessageQueue = null;
+            session.offlineMessageStored = true;
+        }
+        OfflineSession previous = sessions.remove(session.getClientId());
+        if (previous != null) {
+            close(previous);
+            if (pending == null) {
+                pending = previous.queue;
+            } else {
+                release(previous.queue);
+            }
+        }
+        long expiryInterval = sessionExpiryInterval(session);
+        if (session.isCleanSession() || expiryInterval == 0 || maxOfflineMessages <= 0) {
+            if (pending != null) {
+                release(pending);
+            }
+            return;
+        }
+        List<OfflineRelation> offlineRelations = new ArrayList<>();
+        OfflineMessageQueue queue = pending;
+        if (queue == null) {
+            try {
+                queue = newQueue(session.getClientId());
+            } catch (IOException e) {
+                System.err.println("create offline message queue for client:" + session.getClientId() + " fail: " + e.getMessage());
+                return;
+            }
+            total.addAndGet(queue.size());
+        }
+        OfflineSession offlineSession = new OfflineSession(queue);
+        for (SessionSubscribeRelation relation : relations) {
+            TopicToken topicFilterToken = relation.getTopicFilterToken();
+            //共享订阅由组内在线的成员消费，QoS0消息不缓存
+            if (!topicFilterToken.isShared() && relation.getMqttQoS() != MqttQoS.AT_MOST_ONCE) {
+                offlineRelations.add(new OfflineRelation(topicFilterToken, relation.getMqttQoS(), offlineSession));
+            }
+        }
+        if (offlineRelations.isEmpty() && queue.size() == 0) {
+            release(queue);
+            return;
+        }
+        offlineSession.relations = offlineRelations;
+        long expireTime = expiryInterval > 0 ? System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(expiryInterval) : -1;
+        if (queue instanceof FileOfflineMessageQueue) {
+            saveSession(((FileOfflineMessageQueue) queue).getSessionFile(), offlineRelations, expireTime);
+        }
+        register(session.getClientId(), offlineSession, expireTime);
+    }
+
+    /**
+     * 登记离线会话及其订阅，会话设置了过期时间时启动过期计时
+     *
+     * @param expireTime 会话的过期时刻（毫秒），-1表示不过期
+     */
+    private void register(String clientId, OfflineSession offlineSession, long expireTime) {
+        sessions.put(clientId, offlineSession);
+        offlineSession.relations.forEach(relationMatcher::add);
+        if (expireTime >= 0) {
+            offlineSession.expiryTimer = context.getTimer().schedule(new AsyncTask() {
+                @Override
+                public void execute() {
+                    //会话过期，丢弃会话状态及离线消息
+                    if (sessions.remove(clientId, offlineSession)) {
+                        close(offlineSession);
+                        release(offlineSession.queue);
+                        context.getProviders().getSessionStateProvider().remove(clientId);
+                    }
+                }
+            }, Math.max(0, expireTime - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 存储离线会话的订阅及过期时间，格式为expireTime(8) + count(2) + [qos(1) + topicFilter]。
+     * 先写入临时文件再替换，避免异常退出时留下不完整的会话文件
+     */
+    private static void saveSession(File sessionFile, List<OfflineRelation> relations, long expireTime) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream outputStream = new DataOutputStream(bytes);
+            outputStream.writeLong(expireTime);
+            outputStream.writeShort(relations.size());
+            for (OfflineRelation relation : relations) {
+                outputStream.writeByte(relation.mqttQoS.value());
+                outputStream.writeUTF(relation.topicFilterToken.getTopicFilter());
+            }
+            File tmp = new File(sessionFile.getParentFile(), sessionFile.getName() + ".tmp");
+            Files.write(tmp.toPath(), bytes.toByteArray());
+            Files.move(tmp.toPath(), sessionFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("save offline session " + sessionFile + " fail: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 在线会话消费过慢时，将消息转存至会话的离线队列，由drain按序推送。
+     * 队列长度同样受maxOfflineMessages及maxTotalOfflineMessages限制
+     *
+     * @return 离线队列已满或会话已断开时返回false，消息被丢弃
+     */
+    public boolean spill(MqttSessionImpl session, BrokerTopic topic, MqttQoS qos, Message message) {
+        if (maxOfflineMessages <= 0) {
+            return false;
+        }
+        while (true) {
+            boolean created = false;
+            OfflineMessageQueue queue = session.offlineMessageQueue;
+            if (queue == null) {
+                synchronized (session) {
+                    if (session.offlineMessageStored) {
+                        return false;
+                    }
+                    queue = session.offlineMessageQueue;
+                    if (queue == null) {
+                        try {
+                            queue = newQueue(session.getClientId());
+                        } catch (IOException e) {
+                            System.err.println("create offline message queue for client:" + session.getClientId() + " fail: " + e.getMessage());
+                            return false;
+                        }
+                        total.addAndGet(queue.size());
+                        session.offlineMessageQueue = queue;
+                        created = true;
+                    }
+                }
+            }
+            boolean accepted;
+            synchronized (queue) {
+                //离线队列已推送完毕并释放
+                if (session.offlineMessageQueue != queue) {
+                    continue;
+                }
+                if (queue.size() >= maxOfflineMessages) {
+                    accepted = false;
+                } else if (total.incrementAndGet() > maxTotalOfflineMessages || !queue.offer(new OfflineMessage(topic.getTopic(), qos, message))) {
+                    total.decrementAndGet();
+                    accepted = false;
+                } else {
+                    accepted = true;
+                }
+            }
+            if (created) {
+                scheduleDrain(session);
+            }
+            return accepted;
+        }
+    }
+
+    /**
+     * 客户端以CleanSession为0重连时恢复离线队列，待CONNACK发送后调用drain推送
+     *
+     * @return 存在离线队列时返回true
+     */
+    public boolean restore(MqttSessionImpl session) {
+        OfflineSession offlineSession = sessions.remove(session.getClientId());
+        if (offlineSession == null) {
+            return false;
+        }
+        close(offlineSession);
+        //会话恢复在线，订阅可能变更，断开时重新存储
+        if (offlineSession.queue instanceof FileOfflineMessageQueue) {
+            File sessionFile = ((FileOfflineMessageQueue) offlineSession.queue).getSessionFile();
+            if (sessionFile.exists() && !sessionFile.delete()) {
+                System.err.println("delete offline session " + sessionFile + " fail");
+            }
+        }
+        session.offlineMessageQueue = offlineSession.queue;
+        return true;
+    }
+
+    /**
+     * 客户端以CleanSession为1连接时丢弃此前的离线消息
+     */
+    public void discard(String clientId) {
+        OfflineSession offlineSession = sessions.remove(clientId);
+        if (offlineSession != null) {
+            close(offlineSession);
+            release(offlineSession.queue);
+        }
+    }
+
+    /**
+     * 按序推送离线消息，飞行窗口已满或写缓冲区积压时暂停，待窗口释放或恢复可写后继续。
+     * <p>
+     * 并发的调用仅由当前推送线程多执行一轮；队列锁只保护出入队，写出报文及进入飞行窗口时不持有该锁，
+     * 避免与飞行窗口的锁形成相反的加锁顺序。
+     * </p>
+     */
+    public void drain(MqttSessionImpl session) {
+        if (session.offlineDrainRequests.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            drain0(session);
+            missed = session.offlineDrainRequests.addAndGet(-missed);
+        } while (missed != 0);
+        session.flush();
+    }
+
+    private void drain0(MqttSessionImpl session) {
+        OfflineMessageQueue queue = session.offlineMessageQueue;
+        if (queue == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        while (!session.isDisconnect()) {
+            OfflineMessage offlineMessage;
+            synchronized (queue) {
+                try {
+                    offlineMessage = queue.peek();
+                } catch (IOException e) {
+                    //读取失败时保留队列，待下次drain重试，不可当作空队列删除
+                    System.err.println("read offline message of client:" + session.getClientId() + " fail: " + e.getMessage());
+                    return;
+                }
+                if (offlineMessage == null) {
+                    if (session.offlineMessageQueue == queue && queue.size() == 0) {
+                        session.offlineMessageQueue = null;
+                        queue.destroy();
+                    }
+                    return;
+                }
+            }
+            if (session.isOutboundOverflow()) {
+                return;
+            }
+            Message message = offlineMessage.getMessage();
+            //跳过已过期的消息
+            if (!message.isExpired(now)) {
+                PublishBuilder publishBuilder = PublishBuilder.builder().payload(message.getPayload()).qos(offlineMessage.getQos()).topic(context.getOrCreateTopic(offlineMessage.getTopic()));
+                if (session.getMqttVersion() == MqttVersion.MQTT_5) {
+                    publishBuilder.publishProperties(BaseMessageDeliver.newPublishProperties(message, now));
+                }
+                //转存的QoS0消息不走飞行窗口
+                if (offlineMessage.getQos() == MqttQoS.AT_MOST_ONCE) {
+                    session.write(publishBuilder.build(), false);
+                } else if (session.getInflightQueue().offer(publishBuilder, () -> scheduleDrain(session)) == null) {
+                    return;
+                }
+            }
+            synchronized (queue) {
+                queue.poll();
+            }
+            total.decrementAndGet();
+        }
+    }
+
+    /**
+     * 在会话所属的推送线程中继续推送离线消息。飞行窗口的回调在其锁内执行，不可直接重入drain
+     */
+    private void scheduleDrain(MqttSessionImpl session) {
+        context.getPushExecutor().select(session).execute(() -> drain(session));
+    }
+
+    /**
+     * Broker停止时关闭全部离线队列，磁盘队列保留存储文件
+     */
+    void destroy() {
+        sessions.values().forEach(offlineSession -> {
+            close(offlineSession);
+            offlineSession.queue.close();
+        });
+        sessions.clear();
+    }
+
+    /**
+     * 停止向离线会话写入消息，并移除其离线订阅
+     */
+    private void close(OfflineSession offlineSession) {
+        synchronized (offlineSession) {
+            offlineSession.closed = true;
+        }
+        offlineSession.relations.forEach(relationMatcher::remove);
+        if (offlineSession.expiryTimer != null) {
+            offlineSession.expiryTimer.cancel();
+        }
+    }
+
+    private OfflineMessageQueue newQueue(String clientId) throws IOException {
+        return storeDir == null ? new MemoryOfflineMessageQueue() : new FileOfflineMessageQueue(new File(storeDir, FileOfflineMessageQueue.fileName(clientId)));
+    }
+
+    private void release(OfflineMessageQueue queue) {
+        total.addAndGet(-queue.size());
+        queue.destroy();
+    }
+
+    /**
+     * 会话过期间隔（秒），MQTT 3.1.1不过期，返回-1
+     */
+    private static long sessionExpiryInterval(MqttSessionImpl session) {
+        ConnectProperties properties = session.getProperties();
+        if (session.getMqttVersion() != MqttVersion.MQTT_5 || properties == null || properties.getSessionExpiryInterval() == NEVER_EXPIRE) {
+            return -1;
+        }
+        return Integer.toUnsignedLong(properties.getSessionExpiryInterval());
+    }
+
+    private static final class OfflineSession {
+        private final OfflineMessageQueue queue;
+        private List<OfflineRelation> relations = new ArrayList<>();
+        private TimerTask expiryTimer;
+        private boolean closed;
+
+        OfflineSession(OfflineMessageQueue queue) {
+            this.queue = queue;
+        }
+    }
+
+    /**
+     * 离线会话的订阅关系，不绑定具体的主题，也不持有已断开的会话
+     */
+    private static final class OfflineRelation implements TopicFilterRelation {
+        private final TopicToken topicFilterToken;
+        private final MqttQoS mqttQoS;
+        private final OfflineSession offlineSession;
+
+        OfflineRelation(TopicToken topicFilterToken, MqttQoS mqttQoS, OfflineSession offlineSession) {
+            this.topicFilterToken = topicFilterToken;
+            this.mqttQoS = mqttQoS;
+            this.offlineSession = offlineSession;
+        }
+
+        @Override
+        public TopicToken getTopicFilterToken() {
+            return topicFilterToken;
+        }
+
+        @Override
+        public MqttQoS getMqttQoS() {
+            return mqttQoS;
+        }
+    }
+}
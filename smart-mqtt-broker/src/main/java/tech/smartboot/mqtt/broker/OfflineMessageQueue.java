@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker;
+
+import java.io.IOException;
+
+/**
+ * 持久会话的离线消息队列，按到达顺序存取。
+ * <p>
+ * 队列长度的限制由OfflineMessageManager负责，实现类只需保证存取的线程安全。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+interface OfflineMessageQueue {
+    /**
+     * 追加消息至队尾
+     *
+     * @return 存储失败时返回false
+     */
+    boolean offer(OfflineMessage message);
+
+    /**
+     * 获取队首消息但不移除，队列为空时返回null
+     *
+     * @throws IOException 读取存储文件失败，此时队列中仍有消息，不可视为空队列
+     */
+    OfflineMessage peek() throws IOException;
+
+    /**
+     * 移除队首消息
+     */
+    void poll();
+
+    int size();
+
+    /**
+     * 释放队列占用的资源，磁盘队列将一并删除存储文件
+     */
+    void destroy();
+
+    /**
+     * Broker停止时关闭队列，磁盘队列保留存储文件以便重启后恢复
+     */
+    void close();
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker;
+
+import tech.smartboot.mqtt.common.TopicToken;
+import tech.smartboot.mqtt.common.exception.MqttException;
+import tech.smartboot.mqtt.common.util.MqttUtil;
+import tech.smartboot.mqtt.plugin.spec.Options;
+import tech.smartboot.mqtt.plugin.spec.bus.EventObject;
+import tech.smartboot.mqtt.plugin.spec.bus.EventType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 客户端发布限流。
+ * <p>
+ * 按客户端、用户名及主题三个维度配置令牌桶，分别限制每秒的消息数及字节数：
+ * <ul>
+ *   <li>客户端 - 每个连接独立的令牌桶，连接成功时绑定</li>
+ *   <li>用户名 - 同一用户名的全部连接共享令牌桶</li>
+ *   <li>主题 - 匹配同一条规则的全部主题共享令牌桶</li>
+ * </ul>
+ * 令牌桶的容量为一秒的配额，允许短时突发。
+ * </p>
+ * <p>
+ * 发布报文在创建Topic及投递消息总线之前扣除令牌。令牌不足时当前报文照常处理，令牌记为负值，
+ * 同时暂停读取该连接的数据，待令牌补足后恢复；消息不会被丢弃，积压留在客户端的发送缓冲区。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public final class PublishRateLimiter {
+    static final TokenBucket[] EMPTY_BUCKETS = new TokenBucket[0];
+    /**
+     * 作用于未单独配置的客户端或用户名
+     */
+    private static final String DEFAULT_PATTERN = "*";
+    /**
+     * 缓存匹配结果的主题数量上限，超出后逐次匹配
+     */
+    private static final int MAX_CACHED_TOPICS = 10000;
+    /**
+     * 单次暂停读取的最长时间（毫秒），期间仍需读取心跳报文，未偿还的配额由后续的暂停继续偿还
+     */
+    private static final long MAX_PAUSE_MILLIS = 1000;
+
+    private final BrokerContextImpl context;
+    private final Map<String, Rate> clientRates;
+    private final Map<String, Rate> usernameRates;
+    private final ConcurrentMap<String, TokenBucket> usernameBuckets = new ConcurrentHashMap<>();
+    private final TopicToken[] topicFilters;
+    private final TokenBucket[] topicFilterBuckets;
+    private final ConcurrentMap<String, TokenBucket[]> topicBuckets = new ConcurrentHashMap<>();
+
+    PublishRateLimiter(BrokerContextImpl context) {
+        this.context = context;
+        Options options = context.Options();
+        clientRates = parse("clientPublishRate", options.getClientPublishRate());
+        usernameRates = parse("usernamePublishRate", options.getUsernamePublishRate());
+        List<TopicToken> filters = new ArrayList<>();
+        List<TokenBucket> buckets = new ArrayList<>();
+        parse("topicPublishRate", options.getTopicPublishRate()).forEach((topicFilter, rate) -> {
+            if (!rate.isUnlimited()) {
+                filters.add(new TopicToken(topicFilter));
+                buckets.add(new TokenBucket(rate));
+            }
+        });
+        topicFilters = filters.toArray(new TopicToken[0]);
+        topicFilterBuckets = buckets.toArray(EMPTY_BUCKETS);
+    }
+
+    /**
+     * 客户端连接成功后，绑定其客户端及用户名维度的令牌桶
+     */
+    public void bind(MqttSessionImpl session, String username) {
+        List<TokenBucket> buckets = new ArrayList<>(2);
+        Rate clientRate = lookup(clientRates, session.getClientId());
+        if (clientRate != null) {
+            buckets.add(new TokenBucket(clientRate));
+        }
+        Rate usernameRate = username == null ? null : lookup(usernameRates, username);
+        if (usernameRate != null) {
+            buckets.add(usernameBuckets.computeIfAbsent(username, key -> new TokenBucket(usernameRate)));
+        }
+        session.publishBuckets = buckets.isEmpty() ? EMPTY_BUCKETS : buckets.toArray(EMPTY_BUCKETS);
+    }
+
+    /**
+     * 扣除一次发布所需的令牌，令牌不足时暂停读取该连接，超出的配额由暂停时长偿还
+     *
+     * @param bytes 消息负载的字节数
+     */
+    public void acquire(MqttSessionImpl session, String topic, int bytes) {
+        TokenBucket[] sessionBuckets = session.publishBuckets;
+        TokenBucket[] buckets = topicFilters.length == 0 ? EMPTY_BUCKETS : topicBuckets(topic);
+        if (sessionBuckets.length == 0 && buckets.length == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long waitNanos = 0;
+        for (TokenBucket bucket : sessionBuckets) {
+            waitNanos = Math.max(waitNanos, bucket.acquire(bytes, now));
+        }
+        for (TokenBucket bucket : buckets) {
+            waitNanos = Math.max(waitNanos, bucket.acquire(bytes, now));
+        }
+        if (waitNanos > 0 && session.pauseRead(Math.min(MAX_PAUSE_MILLIS, Math.max(1, waitNanos / 1000000)))) {
+            context.getEventBus().publish(EventType.PUBLISH_RATE_LIMITED, EventObject.newEventObject(session, topic));
+        }
+    }
+
+    private TokenBucket[] topicBuckets(String topic) {
+        TokenBucket[] buckets = topicBuckets.get(topic);
+        if (buckets != null) {
+            return buckets;
+        }
+        TopicToken topicToken = new TopicToken(topic);
+        List<TokenBucket> matched = new ArrayList<>(1);
+        for (int i = 0; i < topicFilters.length; i++) {
+            if (MqttUtil.match(topicToken, topicFilters[i])) {
+                matched.add(topicFilterBuckets[i]);
+            }
+        }
+        buckets = matched.isEmpty() ? EMPTY_BUCKETS : matched.toArray(EMPTY_BUCKETS);
+        if (topicBuckets.size() < MAX_CACHED_TOPICS) {
+            topicBuckets.put(topic, buckets);
+        }
+        return buckets;
+    }
+
+    /**
+     * 优先取单独配置的速率，其次取*对应的速率
+     */
+    private static Rate lookup(Map<String, Rate> rates, String key) {
+        Rate rate = rates.get(key);
+        if (rate == null) {
+            rate = rates.get(DEFAULT_PATTERN);
+        }
+        return rate == null || rate.isUnlimited() ? null : rate;
+    }
+
+    /**
+     * 解析限流规则，格式：key=每秒消息数[:每秒字节数]，多条规则以逗号分隔
+     */
+    private static Map<String, Rate> parse(String name, String value) {
+        Map<String, Rate> rates = new HashMap<>();
+        for (String rule : MqttUtil.defaultString(value).split(",")) {
+            if (MqttUtil.isBlank(rule)) {
+                continue;
+            }
+            int index = rule.lastIndexOf('=');
+            try {
+                String[] limits = rule.substring(index + 1).split(":");
+                if (index <= 0 || limits.length > 2) {
+                    throw new NumberFormatException("expect key=messages[:bytes]");
+                }
+                long messages = Long.parseLong(limits[0].trim());
+                long bytes = limits.length == 2 ? Long.parseLong(limits[1].trim()) : 0;
+                if (messages < 0 || bytes < 0) {
+                    throw new NumberFormatException("negative rate");
+                }
+                rates.put(rule.substring(0, index).trim(), new Rate(messages, bytes));
+            } catch (NumberFormatException e) {
+                throw new MqttException("Invalid " + name + " value: " + rule, e);
+            }
+        }
+        return rates;
+    }
+
+    private static final class Rate {
+        /**
+         * 每秒消息数，0表示不限制
+         */
+        private final long messages;
+        /**
+         * 每秒字节数，0表示不限制
+         */
+        private final long bytes;
+
+        Rate(long messages, long bytes) {
+            this.messages = messages;
+            this.bytes = bytes;
+        }
+
+        boolean isUnlimited() {
+            return messages == 0 && bytes == 0;
+        }
+    }
+
+    static final class TokenBucket {
+        private final Rate rate;
+        private double messageTokens;
+        private double byteTokens;
+        private long refillTime = System.nanoTime();
+
+        TokenBucket(Rate rate) {
+            this.rate = rate;
+            this.messageTokens = rate.messages;
+            this.byteTokens = rate.bytes;
+        }
+
+        /**
+         * 按流逝的时间补充令牌后扣除，令牌允许为负值
+         *
+         * @return 令牌补足所需的时长（纳秒），0表示无需等待
+         */
+        synchronized long acquire(int bytes, long now) {
+            double seconds = 0;
+            if (now > refillTime) {
+                seconds = (now - refillTime) / 1e9;
+                refillTime = now;
+            }
+            long waitNanos = 0;
+            if (rate.messages > 0) {
+                messageTokens = Math.min(rate.messages, messageTokens + seconds * rate.messages) - 1;
+                if (messageTokens < 0) {
+                    waitNanos = (long) (-messageTokens * 1e9 / rate.messages);
+                }
+            }
+            if (rate.bytes > 0) {
+                byteTokens = Math.min(rate.bytes, byteTokens + seconds * rate.bytes) - bytes;
+                if (byteTokens < 0) {
+                    waitNanos = Math.max(waitNanos, (long) (-byteTokens * 1e9 / rate.bytes));
+                }
+            }
+            return waitNanos;
+        }
+    }
+}
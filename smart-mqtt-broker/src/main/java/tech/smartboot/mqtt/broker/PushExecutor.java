@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker;
+
+import tech.smartboot.mqtt.plugin.spec.PushShard;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 分片的消息推送线程。
+ * <p>
+ * 每个分片由单个线程及独立的无锁队列组成，主题按哈希值固定分配至其中一个分片，
+ * 同一主题的推送始终在同一线程中执行，避免多线程争用同一个任务队列，并保持缓存的局部性。
+ * </p>
+ * <p>
+ * 开启任务窃取时，分片积压的任务超出阈值后唤醒空闲的分片，由其从积压最多的分片中取出任务执行。
+ * 主题的推送任务自身保证同一时刻只在一个线程中执行，被窃取不影响推送的正确性。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+final class PushExecutor {
+    /**
+     * 分片积压的任务数超出该值时，允许空闲分片窃取
+     */
+    private static final int STEAL_THRESHOLD = 8;
+    private final Shard[] shards;
+    private final List<PushShard> shardList;
+    private final boolean workStealing;
+
+    PushExecutor(int threadNum, boolean workStealing) {
+        this.workStealing = workStealing;
+        shards = new Shard[Math.max(1, threadNum)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(this, "broker-pusher-" + i);
+        }
+        shardList = Collections.unmodifiableList(Arrays.asList(shards));
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    /**
+     * 按哈希值选取分片，相同的key总是得到同一个分片
+     */
+    ExecutorService select(Object key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return shards[(hash & Integer.MAX_VALUE) % shards.length];
+    }
+
+    List<PushShard> getShards() {
+        return shardList;
+    }
+
+    void shutdown() {
+        for (Shard shard : shards) {
+            shard.shutdown();
+        }
+    }
+
+    /**
+     * 唤醒一个空闲的分片窃取任务
+     */
+    private void wakeThief(Shard victim) {
+        for (Shard shard : shards) {
+            if (shard != victim && shard.waiting) {
+                shard.wakeup();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 从积压最多的分片中窃取一个任务
+     */
+    private Runnable steal(Shard thief) {
+        Shard victim = null;
+        int maxDepth = STEAL_THRESHOLD;
+        for (Shard shard : shards) {
+            int depth = shard.depth.get();
+            if (shard != thief && depth > maxDepth) {
+                victim = shard;
+                maxDepth = depth;
+            }
+        }
+        if (victim == null) {
+            return null;
+        }
+        Runnable task = victim.poll();
+        if (task != null) {
+            victim.stolenCount.increment();
+        }
+        return task;
+    }
+
+    private static final class Shard extends AbstractExecutorService implements PushShard, Runnable {
+        private final PushExecutor executor;
+        private final Thread thread;
+        private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger depth = new AtomicInteger();
+        private volatile boolean waiting;
+        private volatile boolean shutdown;
+        private volatile boolean terminated;
+        /**
+         * 仅由分片线程更新
+         */
+        private volatile long busyNanos;
+        /**
+         * 被其他分片线程窃取的任务数，可能由多个线程并发更新
+         */
+        private final LongAdder stolenCount = new LongAdder();
+
+        Shard(PushExecutor executor, String name) {
+            this.executor = executor;
+            this.thread = new Thread(this, name);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown) {
+                throw new RejectedExecutionException("push executor has been shutdown");
+            }
+            queue.offer(command);
+            int count = depth.incrementAndGet();
+            if (waiting) {
+                wakeup();
+            } else if (count > STEAL_THRESHOLD && executor.workStealing) {
+                executor.wakeThief(this);
+            }
+        }
+
+        private Runnable poll() {
+            Runnable task = queue.poll();
+            if (task != null) {
+                depth.decrementAndGet();
+            }
+            return task;
+        }
+
+        private void wakeup() {
+            waiting = false;
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task = poll();
+                if (task == null && executor.workStealing) {
+                    task = executor.steal(this);
+                }
+                if (task != null) {
+                    long start = System.nanoTime();
+                    try {
+                        task.run();
+                    } catch (Throwable throwable) {
+                        System.err.println("execute push task exception");
+                        throwable.printStackTrace();
+                    }
+                    busyNanos += System.nanoTime() - start;
+                    continue;
+                }
+                if (shutdown) {
+                    break;
+                }
+                waiting = true;
+                //再次检查，避免入队与等待并发时丢失唤醒
+                if (queue.isEmpty() && !shutdown) {
+                    LockSupport.park(this);
+                }
+                waiting = false;
+            }
+            terminated = true;
+        }
+
+        @Override
+        public int getQueueDepth() {
+            return depth.get();
+        }
+
+        @Override
+        public long getBusyNanos() {
+            return busyNanos;
+        }
+
+        @Override
+        public long getStolenCount() {
+            return stolenCount.sum();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown();
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return terminated;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            thread.join(unit.toMillis(timeout));
+            return terminated;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker;
+
+import tech.smartboot.mqtt.broker.topic.BrokerTopicImpl;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
+import tech.smartboot.mqtt.common.message.variable.properties.UserProperty;
+import tech.smartboot.mqtt.plugin.spec.Message;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * 保留消息的存储。
+ * <p>
+ * 保留消息挂载于主题树中的BrokerTopicImpl上，新增的通配符订阅沿主题树匹配主题时即可取得保留消息。
+ * 配置了存储文件时，每次变更以追加写的方式记入日志，Broker启动时回放日志恢复保留消息；
+ * 日志中失效的记录累积到一定规模后，由后台线程以当前的保留消息重写日志。
+ * </p>
+ * <p>
+ * 记录格式：length(4) + type(1) + topic，字符串及字节数组均以length(4)为前缀，type为PUT时其后为
+ * qos(1) + createTime(8) + expiryInterval(4) + payloadFormatIndicator(1) + contentType + responseTopic
+ * + correlationData + userPropertyCount(2) + userProperties + payload。
+ * 写入未调用force，进程异常退出不会丢失数据，但无法抵御掉电。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+final class RetainMessageStore {
+    static final String FILE_NAME = "retain.log";
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_REMOVE = 2;
+    /**
+     * 日志文件小于该值时不做重写
+     */
+    private static final long MIN_COMPACT_SIZE = 64 * 1024 * 1024;
+
+    private final Collection<BrokerTopicImpl> topics;
+    private final File file;
+    private FileChannel channel;
+    private long writePosition;
+    /**
+     * 日志超出该大小时触发重写
+     */
+    private long compactThreshold = MIN_COMPACT_SIZE;
+    /**
+     * 是否正在后台重写日志
+     */
+    private boolean compacting;
+
+    /**
+     * @param topics 全部主题，重写日志时以其当前的保留消息为准
+     * @param dir    存储目录，为null时保留消息仅保存在内存中
+     */
+    RetainMessageStore(Collection<BrokerTopicImpl> topics, File dir) throws IOException {
+        this.topics = topics;
+        if (dir == null) {
+            this.file = null;
+            return;
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("create retain store directory " + dir + " fail");
+        }
+        this.file = new File(dir, FILE_NAME);
+    }
+
+    /**
+     * 回放日志，恢复未过期的保留消息
+     *
+     * @param consumer 接收恢复的主题及保留消息
+     */
+    void load(BiConsumer<String, Message> consumer) throws IOException {
+        if (file == null) {
+            return;
+        }
+        long position = 0;
+        if (file.exists()) {
+            Map<String, Message> retains = new HashMap<>();
+            try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                byte[] record;
+                while ((record = readRecord(inputStream)) != null) {
+                    DataInputStream recordStream = new DataInputStream(new ByteArrayInputStream(record));
+                    byte type = recordStream.readByte();
+                    String topic = readString(recordStream);
+                    if (type == TYPE_PUT) {
+                        retains.put(topic, readMessage(recordStream));
+                    } else {
+                        retains.remove(topic);
+                    }
+                    position += 4 + record.length;
+                }
+            }
+            long now = System.currentTimeMillis();
+            retains.forEach((topic, message) -> {
+                if (!message.isExpired(now)) {
+                    consumer.accept(topic, message);
+                }
+            });
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        //截断末尾不完整的记录
+        if (channel.size() > position) {
+            channel.truncate(position);
+        }
+        writePosition = position;
+        compact();
+    }
+
+    /**
+     * 更新主题的保留消息
+     *
+     * @param message 新的保留消息，为null时移除主题的保留消息
+     */
+    void update(BrokerTopicImpl topic, Message message) {
+        if (file == null) {
+            topic.setRetainMessage(message);
+            return;
+        }
+        synchronized (this) {
+            //与日志写入保持相同的顺序，避免并发更新时内存与日志不一致
+            topic.setRetainMessage(message);
+            if (channel == null) {
+                return;
+            }
+            try {
+                append(encode(topic.getTopic(), message));
+            } catch (IOException e) {
+                System.err.println("write retain message of topic:" + topic.getTopic() + " fail: " + e.getMessage());
+                return;
+            }
+            if (writePosition <= compactThreshold || compacting) {
+                return;
+            }
+            compacting = true;
+        }
+        //重写日志需遍历全部保留消息，在后台线程中执行，避免阻塞IO线程
+        Thread thread = new Thread(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                System.err.println("compact retain store " + file + " fail: " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    compacting = false;
+                }
+            }
+        }, "retain-store-compact");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 以当前的保留消息重写日志。
+     * <p>
+     * 快照写入临时文件期间不阻塞更新，此后追加的记录在替换前复制至临时文件的末尾，回放时覆盖快照中的旧值；
+     * 临时文件刷盘后原子替换日志，替换失败时重新打开原日志。
+     * </p>
+     */
+    void compact() throws IOException {
+        File tmpFile = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        long snapshotPosition;
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            snapshotPosition = writePosition;
+        }
+        long now = System.currentTimeMillis();
+        long position = 0;
+        try (FileChannel tmpChannel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (BrokerTopicImpl topic : topics) {
+                Message message = topic.getRetainMessage();
+                if (message == null || message.isExpired(now)) {
+                    continue;
+                }
+                ByteBuffer buffer = encode(topic.getTopic(), message);
+                while (buffer.hasRemaining()) {
+                    position += tmpChannel.write(buffer, position);
+                }
+            }
+            synchronized (this) {
+                if (channel == null) {
+                    return;
+                }
+                //复制快照之后追加的记录
+                long tailPosition = snapshotPosition;
+                while (tailPosition < writePosition) {
+                    long transferred = channel.transferTo(tailPosition, writePosition - tailPosition, tmpChannel.position(position));
+                    tailPosition += transferred;
+                    position += transferred;
+                }
+                tmpChannel.force(true);
+                try {
+                    channel.close();
+                    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    writePosition = position;
+                    compactThreshold = Math.max(MIN_COMPACT_SIZE, position * 2);
+                } finally {
+                    if (!channel.isOpen()) {
+                        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+    }
+
+    synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("close retain store " + file + " fail: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    private void append(ByteBuffer buffer) throws IOException {
+        long position = writePosition;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        writePosition = position;
+    }
+
+    private static ByteBuffer encode(String topic, Message message) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream outputStream = new DataOutputStream(bytes);
+        outputStream.writeInt(0);
+        outputStream.writeByte(message == null ? TYPE_REMOVE : TYPE_PUT);
+        writeString(outputStream, topic);
+        if (message != null) {
+            outputStream.writeByte(message.getQos().value());
+            outputStream.writeLong(message.getCreateTime());
+            outputStream.writeInt(message.getExpiryInterval());
+            PublishProperties properties = message.getProperties();
+            if (properties == null) {
+                properties = new PublishProperties();
+            }
+            outputStream.writeByte(properties.getPayloadFormatIndicator());
+            writeString(outputStream, properties.getContentType());
+            writeString(outputStream, properties.getResponseTopic());
+            writeBytes(outputStream, properties.getCorrelationData());
+            outputStream.writeShort(properties.getUserProperties().size());
+            for (UserProperty userProperty : properties.getUserProperties()) {
+                outputStream.writeUTF(userProperty.getKey());
+                outputStream.writeUTF(userProperty.getValue());
+            }
+            outputStream.write(message.getPayload());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        buffer.putInt(0, buffer.capacity() - 4);
+        return buffer;
+    }
+
+    private static Message readMessage(DataInputStream inputStream) throws IOException {
+        MqttQoS qos = MqttQoS.valueOf(inputStream.readByte());
+        long createTime = inputStream.readLong();
+        int expiryInterval = inputStream.readInt();
+        PublishProperties properties = new PublishProperties();
+        properties.setPayloadFormatIndicator(inputStream.readByte());
+        properties.setContentType(readString(inputStream));
+        properties.setResponseTopic(readString(inputStream));
+        properties.setCorrelationData(readBytes(inputStream));
+        int userPropertyCount = inputStream.readUnsignedShort();
+        for (int i = 0; i < userPropertyCount; i++) {
+            properties.getUserProperties().add(new UserProperty(inputStream.readUTF(), inputStream.readUTF()));
+        }
+        byte[] payload = new byte[inputStream.available()];
+        inputStream.readFully(payload);
+        return new Message(qos, payload, true, createTime, expiryInterval, properties);
+    }
+
+    /**
+     * 读取一条完整的记录，文件末尾不完整的记录视为不存在
+     */
+    private static byte[] readRecord(DataInputStream inputStream) throws IOException {
+        try {
+            int length = inputStream.readInt();
+            if (length <= 0) {
+                return null;
+            }
+            byte[] record = new byte[length];
+            inputStream.readFully(record);
+            return record;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream outputStream, String value) throws IOException {
+        writeBytes(outputStream, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInputStream inputStream) throws IOException {
+        byte[] bytes = readBytes(inputStream);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream outputStream, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            outputStream.writeInt(-1);
+        } else {
+            outputStream.writeInt(bytes.length);
+            outputStream.write(bytes);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream inputStream) throws IOException {
+        int length = inputStream.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        inputStream.readFully(bytes);
+        return bytes;
+    }
+}
@@ -42,7 +42,7 @@ import java.util.function.BiConsumer;
  * @author 三刀（zhengjunweimail@163.com）
  * @version V1.0 , 2022/7/13
  */
-public abstract class SessionSubscribeRelation {
+public abstract class SessionSubscribeRelation implements TopicFilterRelation {
     /**
      * 主题过滤器的Token解析结果。
      * <p>
@@ -84,6 +84,7 @@ public abstract class SessionSubscribeRelation {
      *
      * @return 主题过滤器的Token对象，包含主题层级和通配符信息
      */
+    @Override
     public TopicToken getTopicFilterToken() {
         return topicFilterToken;
     }
@@ -93,6 +94,7 @@ public abstract class SessionSubscribeRelation {
      *
      * @return 当前订阅的QoS级别
      */
+    @Override
     public MqttQoS getMqttQoS() {
         return mqttQoS;
     }
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker;
+
+/**
+ * 慢消费者的处理策略，会话的写缓冲区或订阅的消息积压超出限制时生效
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * 丢弃最早积压的消息，订阅仅保留最新的maxOutboundMessages条；写缓冲区超限时暂停推送
+     */
+    DROP_OLDEST,
+    /**
+     * 保留最早积压的maxOutboundMessages条消息，丢弃超出上限后到达的消息；写缓冲区超限时暂停推送。
+     * 未设置maxOutboundMessages时丢弃全部尚未写出的积压消息，恢复后从最新的消息继续推送
+     */
+    DROP_NEWEST,
+    /**
+     * 断开连接
+     */
+    DISCONNECT,
+    /**
+     * 积压的消息转存至会话的离线队列，恢复可写后按序推送
+     */
+    SPILL
+}
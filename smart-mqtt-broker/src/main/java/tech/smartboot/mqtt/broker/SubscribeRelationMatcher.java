@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * MQTT主题订阅树，用于管理客户端的主题订阅关系。
@@ -43,12 +44,17 @@ import java.util.function.Consumer;
  * 该实现还支持MQTT 5.0中的共享订阅功能，通过特殊的"$share"前缀来识别和处理共享订阅。
  * </p>
  *
+ * @param <T> 订阅关系的类型，在线会话为SessionSubscribeRelation
+ *
  * @author 三刀（zhengjunweimail@163.com）
  * @version V1.0 , 5/28/23
  */
-class SubscribeRelationMatcher {
-    private static final Set<SessionSubscribeRelation> EMPTY_SUBSCRIBERS = Collections.emptySet();
-    private static final Map<TopicNode, SubscribeRelationMatcher> EMPTY_MAP = Collections.emptyMap();
+class SubscribeRelationMatcher<T extends TopicFilterRelation> {
+    /**
+     * Collections.emptySet()及Collections.emptyMap()返回单例，以此识别尚未初始化的节点
+     */
+    private static final Set<?> EMPTY_SUBSCRIBERS = Collections.emptySet();
+    private static final Map<?, ?> EMPTY_MAP = Collections.emptyMap();
     /**
      * 存储当前节点的订阅关系映射。
      * <p>
@@ -56,7 +62,7 @@ class SubscribeRelationMatcher {
      * 使用ConcurrentHashMap保证在多线程环境下的线程安全性。
      * </p>
      */
-    private Set<SessionSubscribeRelation> subscribers = EMPTY_SUBSCRIBERS;
+    private Set<T> subscribers = Collections.emptySet();
 
     /**
      * 存储子节点的订阅树映射。
@@ -71,7 +77,7 @@ class SubscribeRelationMatcher {
      * </ul>
      * </p>
      */
-    private volatile Map<TopicNode, SubscribeRelationMatcher> subNode = EMPTY_MAP;
+    private volatile Map<TopicNode, SubscribeRelationMatcher<T>> subNode = Collections.emptyMap();
 
 
     /**
@@ -83,8 +89,8 @@ class SubscribeRelationMatcher {
      *
      * @param subscriber 包含主题过滤器和QoS等订阅信息的对象
      */
-    public void add(SessionSubscribeRelation subscriber) {
-        SubscribeRelationMatcher treeNode = this;
+    public void add(T subscriber) {
+        SubscribeRelationMatcher<T> treeNode = this;
         TopicToken token = subscriber.getTopicFilterToken();
         do {
             if (treeNode.subNode == EMPTY_MAP) {
@@ -94,12 +100,12 @@ class SubscribeRelationMatcher {
                     }
                 }
             }
-            treeNode = treeNode.subNode.computeIfAbsent(token.getNode(), n -> new SubscribeRelationMatcher());
+            treeNode = treeNode.subNode.computeIfAbsent(token.getNode(), n -> new SubscribeRelationMatcher<>());
         } while ((token = token.getNextNode()) != null);
         treeNode.add0(subscriber);
     }
 
-    private synchronized void add0(SessionSubscribeRelation subscriber) {
+    private synchronized void add0(T subscriber) {
         if (subscribers == EMPTY_SUBSCRIBERS) {
             subscribers = ConcurrentHashMap.newKeySet();
         }
@@ -115,8 +121,8 @@ class SubscribeRelationMatcher {
      *
      * @param subscriber 包含要取消订阅的主题过滤器信息的对象
      */
-    public void remove(SessionSubscribeRelation subscriber) {
-        SubscribeRelationMatcher subscribeTree = this;
+    public void remove(T subscriber) {
+        SubscribeRelationMatcher<T> subscribeTree = this;
         TopicToken topicToken = subscriber.getTopicFilterToken();
         while (true) {
             subscribeTree = subscribeTree.subNode.get(topicToken.getNode());
@@ -128,31 +134,27 @@ class SubscribeRelationMatcher {
         subscribeTree.remove0(subscriber);
     }
 
-    private synchronized void remove0(SessionSubscribeRelation subscriber) {
+    private synchronized void remove0(T subscriber) {
         subscribers.remove(subscriber);
         if (subscribers.isEmpty()) {
-            subscribers = EMPTY_SUBSCRIBERS;
+            subscribers = Collections.emptySet();
         }
     }
 
     /**
-     * 当新的主题被创建时，刷新该主题与现有订阅关系的匹配。
-     * <p>
-     * 该方法会遍历订阅树，找到所有匹配新主题的订阅关系（包括精确匹配、通配符匹配和共享订阅），
-     * 并触发相应的订阅成功回调。这个过程确保了新主题的消息能够正确地推送给所有匹配的订阅者。
-     * </p>
+     * 遍历与主题匹配的全部订阅关系，包括共享订阅
      *
-     * @param brokerTopic 新创建的主题对象
+     * @param topicToken 主题
+     * @param consumer   对匹配到的订阅关系执行的操作
      */
-    public void match(BrokerTopicImpl brokerTopic) {
-        Consumer<SessionSubscribeRelation> consumer = (topicSubscription) -> topicSubscription.getMqttSession().subscribeSuccess(topicSubscription, brokerTopic);
+    void match(TopicToken topicToken, Consumer<? super T> consumer) {
         //遍历共享订阅
-        SubscribeRelationMatcher shareTree = subNode.get(TopicNode.SHARE_NODE);
+        SubscribeRelationMatcher<T> shareTree = subNode.get(TopicNode.SHARE_NODE);
         if (shareTree != null) {
-            shareTree.subNode.values().forEach(tree -> tree.match0(brokerTopic, consumer));
+            shareTree.subNode.values().forEach(tree -> tree.match0(topicToken, consumer));
         }
         //遍历普通订阅
-        match0(brokerTopic, consumer);
+        match0(topicToken, consumer);
     }
 
     /**
@@ -169,9 +171,9 @@ class SubscribeRelationMatcher {
      * @param topicToken 要匹配的主题标记
      * @param consumer   对匹配的订阅者执行的操作
      */
-    private void match0(TopicToken topicToken, Consumer<SessionSubscribeRelation> consumer) {
+    private void match0(TopicToken topicToken, Consumer<? super T> consumer) {
         //精确匹配
-        SubscribeRelationMatcher subscribeTree = subNode.get(topicToken.getNode());
+        SubscribeRelationMatcher<T> subscribeTree = subNode.get(topicToken.getNode());
         if (subscribeTree != null) {
             if (topicToken.getNextNode() == null) {
                 subscribeTree.subscribers.forEach(consumer);
@@ -195,6 +197,28 @@ class SubscribeRelationMatcher {
         }
     }
 
+    /**
+     * 遍历订阅树中存在订阅者的主题过滤器。
+     * <p>
+     * 共享订阅以"$share/{group}/{filter}"的形式返回。
+     * </p>
+     *
+     * @param consumer 主题过滤器的处理器
+     */
+    public void forEachTopicFilter(Consumer<String> consumer) {
+        forEachTopicFilter0(null, consumer);
+    }
+
+    private void forEachTopicFilter0(String prefix, Consumer<String> consumer) {
+        subNode.forEach((node, tree) -> {
+            String topicFilter = prefix == null ? node.toString() : prefix + '/' + node;
+            if (!tree.subscribers.isEmpty()) {
+                consumer.accept(topicFilter);
+            }
+            tree.forEachTopicFilter0(topicFilter, consumer);
+        });
+    }
+
     /**
      * 打印订阅树的结构，用于调试和监控。
      * <p>
@@ -202,16 +226,18 @@ class SubscribeRelationMatcher {
      * <ul>
      *   <li>每个节点的主题层级</li>
      *   <li>订阅者数量</li>
-     *   <li>订阅者的客户端标识</li>
+     *   <li>订阅者的描述，如在线会话的客户端标识</li>
      * </ul>
      * </p>
+     *
+     * @param describer 订阅者的描述方式
      */
-    public void dump() {
+    public void dump(Function<? super T, String> describer) {
         System.out.println("订阅拓扑:");
-        dump0(0);
+        dump0(0, describer);
     }
 
-    private void dump0(int level) {
+    private void dump0(int level, Function<? super T, String> describer) {
         if (!subscribers.isEmpty()) {
             for (int i = 0; i < level; i++) {
                 System.out.print("  ");
@@ -224,14 +250,14 @@ class SubscribeRelationMatcher {
             for (int i = 0; i < level; i++) {
                 System.out.print("  ");
             }
-            System.out.println("|- " + relation.getMqttSession().getClientId());
+            System.out.println("|- " + describer.apply(relation));
         });
         subNode.forEach((node, tree) -> {
             for (int i = 0; i < level; i++) {
                 System.out.print("  ");
             }
             System.out.println(node + (tree.subNode.isEmpty() && tree.subscribers.isEmpty() ? "" : "/"));
-            tree.dump0(level + 1);
+            tree.dump0(level + 1, describer);
         });
     }
 }
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker;
+
+import tech.smartboot.mqtt.common.TopicToken;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+
+/**
+ * 订阅树中的订阅关系，仅包含匹配主题所需的主题过滤器及QoS。
+ * <p>
+ * 在线会话的订阅关系为SessionSubscribeRelation，离线会话的订阅关系由OfflineMessageManager自行定义。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+interface TopicFilterRelation {
+    /**
+     * 主题过滤器的Token解析结果
+     */
+    TopicToken getTopicFilterToken();
+
+    /**
+     * 订阅的QoS级别
+     */
+    MqttQoS getMqttQoS();
+}
@@ -13,6 +13,8 @@ package tech.smartboot.mqtt.broker.processor;
 import tech.smartboot.mqtt.broker.BrokerContextImpl;
 import tech.smartboot.mqtt.broker.MqttSessionImpl;
 import tech.smartboot.mqtt.common.InflightQueue;
+import tech.smartboot.mqtt.common.TopicAliasAllocator;
+import tech.smartboot.mqtt.common.TopicAliasResolver;
 import tech.smartboot.mqtt.common.enums.MqttConnectReturnCode;
 import tech.smartboot.mqtt.common.enums.MqttProtocolEnum;
 import tech.smartboot.mqtt.common.enums.MqttQoS;
@@ -67,16 +69,22 @@ public class ConnectProcessor implements MqttProcessor<BrokerContextImpl, MqttCo
         //服务端必须按照 3.1 节的要求验证 CONNECT 报文，如果报文不符合规范，服务端不发送CONNACK 报文直接关闭网络连接
         checkMessage(session, mqttConnectMessage);
 
-        AsyncEventObject<MqttConnectMessage> obj = EventObject.newAsyncEventObject(session, mqttConnectMessage);
+        //排队及认证期间暂停读取
         session.getSession().awaitRead();
+        context.getConnectAdmission().admit(session, () -> connect(context, session, mqttConnectMessage));
+    }
+
+    private void connect(BrokerContextImpl context, MqttSessionImpl session, MqttConnectMessage mqttConnectMessage) {
+        AsyncEventObject<MqttConnectMessage> obj = EventObject.newAsyncEventObject(session, mqttConnectMessage);
         obj.getFuture().thenAccept(msg -> {
             session.getSession().signalRead();
             if (session.isDisconnect()) {
                 return;
             }
             session.setAuthorized(true);
+            context.getPublishRateLimiter().bind(session, mqttConnectMessage.getPayload().userName());
             //清理会话
-            refreshSession(context, session, mqttConnectMessage);
+            boolean sessionPresent = refreshSession(context, session, mqttConnectMessage);
 
             //存储遗嘱消息
             storeWillMessage(context, session, mqttConnectMessage);
@@ -101,14 +109,33 @@ public class ConnectProcessor implements MqttProcessor<BrokerContextImpl, MqttCo
             if (session.getMqttVersion() == MqttVersion.MQTT_5) {
                 properties = new ConnectAckProperties();
                 properties.setReceiveMaximum(receiveMaximum);
+                initTopicAlias(context, session, mqttConnectMessage, properties);
             }
-            MqttConnAckMessage mqttConnAckMessage = MqttSession.connAck(MqttConnectReturnCode.CONNECTION_ACCEPTED, !mqttConnectMessage.getVariableHeader().isCleanSession(), properties);
+            MqttConnAckMessage mqttConnAckMessage = MqttSession.connAck(MqttConnectReturnCode.CONNECTION_ACCEPTED, sessionPresent, properties);
 
             session.write(mqttConnAckMessage, true);
+            //推送离线期间缓存的消息
+            context.getOfflineMessageManager().drain(session);
+            context.getConnectAdmission().release(session);
         });
         context.getEventBus().publish(EventType.CONNECT, obj);
     }
 
+    /**
+     * 协商主题别名：服务端声明可接受的别名最大值，推送时使用的别名不超过客户端声明的最大值
+     */
+    private void initTopicAlias(BrokerContextImpl context, MqttSessionImpl session, MqttConnectMessage mqttConnectMessage, ConnectAckProperties properties) {
+        int topicAliasMaximum = context.Options().getTopicAliasMaximum();
+        if (topicAliasMaximum <= 0) {
+            return;
+        }
+        properties.setTopicAliasMaximum(topicAliasMaximum);
+        session.setTopicAliasResolver(new TopicAliasResolver(topicAliasMaximum));
+        int clientTopicAliasMaximum = Math.min(mqttConnectMessage.getVariableHeader().getProperties().getTopicAliasMaximum(), topicAliasMaximum);
+        if (clientTopicAliasMaximum > 0) {
+            session.setTopicAliasAllocator(new TopicAliasAllocator(clientTopicAliasMaximum));
+        }
+    }
 
     private void checkMessage(MqttSession session, MqttConnectMessage mqttConnectMessage) {
         MqttConnectVariableHeader connectVariableHeader = mqttConnectMessage.getVariableHeader();
@@ -151,31 +178,44 @@ public class ConnectProcessor implements MqttProcessor<BrokerContextImpl, MqttCo
         });
     }
 
-    private void refreshSession(BrokerContextImpl context, MqttSessionImpl session, MqttConnectMessage mqttConnectMessage) {
+    /**
+     * @return CONNACK报文中的当前会话（Session Present）标志
+     */
+    private boolean refreshSession(BrokerContextImpl context, MqttSessionImpl session, MqttConnectMessage mqttConnectMessage) {
         session.setCleanSession(mqttConnectMessage.getVariableHeader().isCleanSession());
         MqttSessionImpl mqttSession = context.getSession(session.getClientId());
         if (mqttSession != null) {
             if (session.isCleanSession()) {
                 //如果清理会话（CleanSession）标志被设置为 1，客户端和服务端必须丢弃之前的任何会话并开始一个新的会话。
                 mqttSession.setCleanSession(true);
-                mqttSession.disconnect();
-            } else {
-                //如果mqttSession#cleanSession为false，将还原会话状态
-                mqttSession.disconnect();
-                //如果清理会话（CleanSession）标志被设置为 0，服务端必须基于当前会话（使用客户端标识符识别）的状态恢复与客户端的通信。
-                SessionStateProvider sessionStateProvider = context.getProviders().getSessionStateProvider();
-                SessionState sessionState = sessionStateProvider.get(session.getClientId());
-                if (sessionState != null) {
-                    sessionState.getSubscribers().forEach(session::subscribe);
-                    //客户端设置清理会话（CleanSession）标志为 0 重连时，客户端和服务端必须使用原始的报文标识符重发
-                    //任何未确认的 PUBLISH 报文（如果 QoS>0）和 PUBREL 报文 [MQTT-4.4.0-1]。这是唯一要求客户端或
-                    //服务端重发消息的情况。
-
-                }
+            }
+            //如果mqttSession#cleanSession为false，断开时将保存会话状态
+            mqttSession.disconnect();
+        }
+        SessionStateProvider sessionStateProvider = context.getProviders().getSessionStateProvider();
+        boolean sessionPresent = false;
+        if (session.isCleanSession()) {
+            //丢弃此前已断开的会话
+            sessionStateProvider.remove(session.getClientId());
+            context.getOfflineMessageManager().discard(session.getClientId());
+        } else {
+            //如果清理会话（CleanSession）标志被设置为 0，服务端必须基于当前会话（使用客户端标识符识别）的状态恢复与客户端的通信。
+            SessionState sessionState = sessionStateProvider.get(session.getClientId());
+            if (sessionState != null) {
+                sessionState.getSubscribers().forEach(session::subscribe);
+                //客户端设置清理会话（CleanSession）标志为 0 重连时，客户端和服务端必须使用原始的报文标识符重发
+                //任何未确认的 PUBLISH 报文（如果 QoS>0）和 PUBREL 报文 [MQTT-4.4.0-1]。这是唯一要求客户端或
+                //服务端重发消息的情况。
+                sessionPresent = true;
+            }
+            //恢复离线期间缓存的消息，订阅恢复之后再停止缓存，避免遗漏
+            if (context.getOfflineMessageManager().restore(session)) {
+                sessionPresent = true;
             }
         }
 
         context.addSession(session);
+        return sessionPresent;
     }
 
     private void storeWillMessage(BrokerContext context, MqttSessionImpl session, MqttConnectMessage msg) {
@@ -20,6 +20,7 @@ import tech.smartboot.mqtt.common.message.MqttPubRecMessage;
 import tech.smartboot.mqtt.common.message.MqttPublishMessage;
 import tech.smartboot.mqtt.common.message.variable.MqttPubQosVariableHeader;
 import tech.smartboot.mqtt.common.message.variable.properties.ReasonProperties;
+import tech.smartboot.mqtt.common.util.ValidateUtils;
 import tech.smartboot.mqtt.plugin.spec.BrokerContext;
 
 /**
@@ -33,6 +34,11 @@ public class PublishProcessor extends AuthorizedMqttProcessor<MqttPublishMessage
     @Override
     public void process0(BrokerContextImpl context, MqttSessionImpl session, MqttPublishMessage mqttPublishMessage) {
 //        LOGGER.info("receive publish message:{}", mqttPublishMessage);
+        //还原主题别名，别名超出范围或尚未建立映射属于协议错误
+        mqttPublishMessage = session.resolveTopicAlias(mqttPublishMessage);
+        ValidateUtils.notNull(mqttPublishMessage, "invalid topic alias", session::disconnect);
+        //超出发布速率时暂停读取该连接，消息照常处理
+        context.getPublishRateLimiter().acquire(session, mqttPublishMessage.getVariableHeader().getTopicName(), mqttPublishMessage.getPayload().getPayload().length);
 
         MqttQoS mqttQoS = mqttPublishMessage.getFixedHeader().getQosLevel();
         switch (mqttQoS) {
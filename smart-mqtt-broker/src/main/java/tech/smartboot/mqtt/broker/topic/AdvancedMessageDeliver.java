@@ -15,7 +15,6 @@ import tech.smartboot.mqtt.common.enums.MqttQoS;
 import tech.smartboot.mqtt.common.enums.MqttVersion;
 import tech.smartboot.mqtt.common.message.MqttPacketIdentifierMessage;
 import tech.smartboot.mqtt.common.message.variable.MqttPacketIdVariableHeader;
-import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
 import tech.smartboot.mqtt.common.util.ValidateUtils;
 import tech.smartboot.mqtt.plugin.spec.Message;
 import tech.smartboot.mqtt.plugin.spec.PublishBuilder;
@@ -43,7 +42,15 @@ class AdvancedMessageDeliver extends BaseMessageDeliver {
      * 推送消息到客户端
      */
     public void run() {
-        if (getMqttSession().isDisconnect() || !enable) {
+        if (!enable) {
+            //与推送互斥地提交解除订阅时尚未推送的消息
+            if (semaphore.compareAndSet(false, true)) {
+                releaseBacklog();
+                semaphore.set(false);
+            }
+            return;
+        }
+        if (getMqttSession().isDisconnect()) {
             return;
         }
         if (semaphore.compareAndSet(false, true)) {
@@ -52,8 +59,38 @@ class AdvancedMessageDeliver extends BaseMessageDeliver {
         }
     }
 
+    /**
+     * 飞行窗口释放后继续推送，此时仍持有推送信号量
+     */
+    private void resume() {
+        if (getMqttSession().isDisconnect() || !enable) {
+            return;
+        }
+        push0();
+        getMqttSession().flush();
+    }
+
     private void push0() {
+        //写缓冲区积压，待恢复可写后继续推送
+        if (isSlowConsumer()) {
+            if (semaphore.compareAndSet(true, false)) {
+                topic.registerMessageDeliver(this);
+                //确认报文触发的推送不在主题的推送线程中，需避免错过恢复
+                if (!getMqttSession().isOutboundOverflow()) {
+                    topic.addVersion();
+                    topic.push();
+                }
+            }
+            return;
+        }
         Message message = topic.getMessageQueue().get(nextConsumerOffset);
+        long now = System.currentTimeMillis();
+        //跳过已过期的消息
+        while (message != null && message.isExpired(now)) {
+            topic.getMessageQueue().commit(message.getOffset());
+            nextConsumerOffset = message.getOffset() + 1;
+            message = topic.getMessageQueue().get(nextConsumerOffset);
+        }
         //消息队列已消费至最新点位
         if (message == null) {
             if (semaphore.compareAndSet(true, false)) {
@@ -78,15 +115,17 @@ class AdvancedMessageDeliver extends BaseMessageDeliver {
 
         PublishBuilder publishBuilder = PublishBuilder.builder().payload(message.getPayload()).qos(getMqttQoS()).topic(topic);
         if (getMqttSession().getMqttVersion() == MqttVersion.MQTT_5) {
-            publishBuilder.publishProperties(new PublishProperties());
+            publishBuilder.publishProperties(newPublishProperties(message, now));
         }
         CompletableFuture<MqttPacketIdentifierMessage<? extends MqttPacketIdVariableHeader>> future = getMqttSession().getInflightQueue().offer(publishBuilder);
         if (future != null) {
             topic.getMessageQueue().commit(message.getOffset());
             nextConsumerOffset = message.getOffset() + 1;
             //如果存在共享订阅，则有可能出现available为1，但future为null的情况
+            //确认回调在飞行窗口的锁内执行，转至推送线程继续，避免慢消费转存离线队列时反向加锁。
+            //消息过期时future以MessageExpiredException异常完成，同样释放了飞行窗口，继续推送
             if (available == 1) {
-                future.whenComplete((mqttPacketIdentifierMessage, throwable) -> push0());
+                future.whenComplete((mqttPacketIdentifierMessage, throwable) -> topic.execute(this::resume));
             }
         }
         push0();
@@ -13,6 +13,7 @@ package tech.smartboot.mqtt.broker.topic;
 
 import tech.smartboot.mqtt.broker.MqttSessionImpl;
 import tech.smartboot.mqtt.broker.SessionSubscribeRelation;
+import tech.smartboot.mqtt.broker.SlowConsumerPolicy;
 import tech.smartboot.mqtt.common.TopicToken;
 import tech.smartboot.mqtt.common.enums.MqttQoS;
 import tech.smartboot.mqtt.common.enums.MqttVersion;
@@ -20,6 +21,9 @@ import tech.smartboot.mqtt.common.message.variable.MqttPublishVariableHeader;
 import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
 import tech.smartboot.mqtt.plugin.spec.Message;
 import tech.smartboot.mqtt.plugin.spec.MessageDeliver;
+import tech.smartboot.mqtt.plugin.spec.MessageQueue;
+
+import java.util.ArrayDeque;
 
 /**
  * MQTT消息消费的抽象基类，负责管理消息的消费状态和推送机制。
@@ -93,6 +97,21 @@ public class BaseMessageDeliver implements MessageDeliver, Runnable {
      */
     protected boolean enable = true;
 
+    /**
+     * DROP_NEWEST策略下丢弃的消息区间[start, end]，按offset升序排列，推送至区间起点时整体跳过。
+     * 仅在产生丢弃时创建
+     */
+    private ArrayDeque<long[]> droppedRanges;
+    /**
+     * droppedRanges中的消息总数，不计入待推送的消息数
+     */
+    private long droppedCount;
+    /**
+     * 订阅已解除，待推送线程提交releaseOffset及之前尚未推送的消息
+     */
+    private volatile boolean released;
+    private long releaseOffset;
+
 
     public BaseMessageDeliver(BrokerTopicImpl topic, SessionSubscribeRelation subscribeRelation, long nextConsumerOffset) {
         this.topic = topic;
@@ -139,13 +158,41 @@ public class BaseMessageDeliver implements MessageDeliver, Runnable {
         return enable;
     }
 
+    /**
+     * 解除订阅，尚未推送的消息不再由该订阅者消费。
+     * <p>
+     * 推送线程随后提交这些消息，消息的推送次数不再等待该订阅者，其余订阅者推送完毕即可释放槽位，
+     * 避免槽位被覆盖时误计为溢出。解除前已入队的消息计入了该订阅者，此后入队的消息则不再计入，因此仅提交至当前的最新点位。
+     * </p>
+     */
+    public final void release() {
+        disable();
+        releaseOffset = topic.getMessageQueue().getLatestOffset();
+        released = true;
+        topic.registerMessageDeliver(this);
+        topic.addVersion();
+        topic.push();
+    }
+
+    /**
+     * 在推送线程中提交解除订阅时尚未推送的消息，仅执行一次
+     */
+    protected final void releaseBacklog() {
+        if (!released) {
+            return;
+        }
+        released = false;
+        droppedRanges = null;
+        droppedCount = 0;
+        skip(releaseOffset + 1);
+    }
+
     public static BaseMessageDeliver newMessageDeliver(BrokerTopicImpl topic, SessionSubscribeRelation sessionSubscribeRelation, long nextConsumerOffset) {
         if (sessionSubscribeRelation.getMqttQoS() == MqttQoS.AT_MOST_ONCE) {
             return sessionSubscribeRelation.getMqttSession().getMqttVersion() == MqttVersion.MQTT_5 ? new SimpleMessageDeliver(topic, sessionSubscribeRelation, nextConsumerOffset) {
                 @Override
                 public MqttPublishVariableHeader createVariableHeader(Message message) {
-                    PublishProperties properties = new PublishProperties();
-                    return new MqttPublishVariableHeader(-1, topic.encodedTopicBytes(), properties);
+                    return new MqttPublishVariableHeader(-1, topic.encodedTopicBytes(), newPublishProperties(message, System.currentTimeMillis()));
                 }
             } : new SimpleMessageDeliver(topic, sessionSubscribeRelation, nextConsumerOffset) {
                 final MqttPublishVariableHeader variableHeader = new MqttPublishVariableHeader(-1, topic.encodedTopicBytes(), null);
@@ -160,6 +207,25 @@ public class BaseMessageDeliver implements MessageDeliver, Runnable {
         }
     }
 
+    /**
+     * 构建推送给MQTT 5.0订阅者的属性，透传发布者设置的应用属性，消息过期间隔改写为剩余的有效时间
+     */
+    public static PublishProperties newPublishProperties(Message message, long now) {
+        PublishProperties properties = new PublishProperties();
+        if (message.getExpiryInterval() > 0) {
+            properties.setMessageExpiryInterval(message.getRemainingExpiryInterval(now));
+        }
+        PublishProperties source = message.getProperties();
+        if (source != null) {
+            properties.setPayloadFormatIndicator(source.getPayloadFormatIndicator());
+            properties.setContentType(source.getContentType());
+            properties.setResponseTopic(source.getResponseTopic());
+            properties.setCorrelationData(source.getCorrelationData());
+            properties.getUserProperties().addAll(source.getUserProperties());
+        }
+        return properties;
+    }
+
     protected boolean hasPendingWrite() {
         if (subscribeRelation.getMqttSession().hasQueuedThreads()) {
             topic.registerMessageDeliver(this);
@@ -168,4 +234,120 @@ public class BaseMessageDeliver implements MessageDeliver, Runnable {
         }
         return false;
     }
+
+    /**
+     * 检查订阅者是否消费过慢，并按slowConsumerPolicy处理。
+     * <p>
+     * 写缓冲区的积压超出maxOutboundBytes，或待推送的消息数超出maxOutboundMessages时视为慢消费：
+     * <ul>
+     *   <li>DROP_OLDEST - 跳过超出maxOutboundMessages的较早消息，写缓冲区积压时暂停推送，期间较早的消息由队列覆盖</li>
+     *   <li>DROP_NEWEST - 保留最早的maxOutboundMessages条待推送消息，丢弃超出部分中较新的消息，写缓冲区积压时暂停推送；
+     *   未限制maxOutboundMessages时丢弃全部尚未推送的消息，已写入写缓冲区的消息不受影响</li>
+     *   <li>DISCONNECT - 断开连接</li>
+     *   <li>SPILL - 将尚未推送的消息转存至会话的离线队列，离线队列推送完毕前新到达的消息同样转存，以保持顺序</li>
+     * </ul>
+     * </p>
+     *
+     * @return true:暂停推送，待写缓冲区恢复可写后继续，期间不得调用topic.addVersion()，避免推送线程空转
+     */
+    protected final boolean isSlowConsumer() {
+        MqttSessionImpl session = getMqttSession();
+        SlowConsumerPolicy policy = session.getSlowConsumerPolicy();
+        int maxOutboundMessages = session.getMaxOutboundMessages();
+        long latestOffset = topic.getMessageQueue().getLatestOffset();
+        skipDroppedRanges();
+        long pending = latestOffset - nextConsumerOffset + 1 - droppedCount;
+        boolean backlog = maxOutboundMessages > 0 && pending > maxOutboundMessages;
+        boolean overflow = session.isOutboundOverflow();
+        if (backlog || overflow) {
+            session.slowConsumer(topic);
+        } else if (policy != SlowConsumerPolicy.SPILL || !session.isSpilling()) {
+            return false;
+        }
+        switch (policy) {
+            case DISCONNECT:
+                session.disconnect();
+                return true;
+            case DROP_NEWEST:
+                if (maxOutboundMessages <= 0) {
+                    skip(latestOffset + 1);
+                    return false;
+                }
+                if (backlog) {
+                    dropNewest(latestOffset, pending - maxOutboundMessages);
+                }
+                return overflow;
+            case SPILL:
+                spill(latestOffset);
+                return false;
+            default:
+                if (backlog) {
+                    skip(latestOffset - maxOutboundMessages + 1);
+                }
+                return overflow;
+        }
+    }
+
+    /**
+     * 跳过offset之前的消息，跳过的消息视为已消费
+     */
+    private void skip(long offset) {
+        MessageQueue messageQueue = topic.getMessageQueue();
+        //超出队列容量的消息已被覆盖，无需提交
+        for (long i = Math.max(nextConsumerOffset, offset - messageQueue.capacity()); i < offset; i++) {
+            messageQueue.commit(i);
+        }
+        if (offset > nextConsumerOffset) {
+            nextConsumerOffset = offset;
+        }
+    }
+
+    /**
+     * 丢弃截至latestOffset最新到达的count条消息。此前的丢弃区间均早于这些消息，新区间追加至末尾
+     */
+    private void dropNewest(long latestOffset, long count) {
+        if (droppedRanges == null) {
+            droppedRanges = new ArrayDeque<>();
+        }
+        long start = latestOffset - count + 1;
+        long[] last = droppedRanges.peekLast();
+        if (last != null && last[1] + 1 == start) {
+            last[1] = latestOffset;
+        } else {
+            droppedRanges.addLast(new long[]{start, latestOffset});
+        }
+        droppedCount += count;
+    }
+
+    /**
+     * 推送至丢弃区间时跳过其中的消息
+     */
+    private void skipDroppedRanges() {
+        if (droppedRanges == null) {
+            return;
+        }
+        long[] range;
+        while ((range = droppedRanges.peekFirst()) != null && range[0] <= nextConsumerOffset) {
+            droppedRanges.pollFirst();
+            droppedCount -= range[1] - range[0] + 1;
+            skip(range[1] + 1);
+        }
+    }
+
+    /**
+     * 将latestOffset及之前尚未推送的消息转存至会话的离线队列，以消息与订阅中较小的QoS推送
+     */
+    private void spill(long latestOffset) {
+        MqttSessionImpl session = getMqttSession();
+        MessageQueue messageQueue = topic.getMessageQueue();
+        long now = System.currentTimeMillis();
+        Message message;
+        while (nextConsumerOffset <= latestOffset && (message = messageQueue.get(nextConsumerOffset)) != null) {
+            if (!message.isExpired(now)) {
+                session.spill(topic, message.getQos().value() < getMqttQoS().value() ? message.getQos() : getMqttQoS(), message);
+            }
+            messageQueue.commit(message.getOffset());
+            nextConsumerOffset = message.getOffset() + 1;
+        }
+    }
 }
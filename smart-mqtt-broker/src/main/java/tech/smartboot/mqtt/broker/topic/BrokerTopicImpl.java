@@ -14,6 +14,8 @@ import tech.smartboot.mqtt.common.TopicToken;
 import tech.smartboot.mqtt.common.exception.MqttException;
 import tech.smartboot.mqtt.common.message.MqttCodecUtil;
 import tech.smartboot.mqtt.plugin.spec.BrokerTopic;
+import tech.smartboot.mqtt.plugin.spec.Message;
+import tech.smartboot.mqtt.plugin.spec.MessageQueue;
 
 import java.util.Collections;
 import java.util.Map;
@@ -77,11 +79,11 @@ public class BrokerTopicImpl extends TopicToken implements BrokerTopic, Runnable
     /**
      * 消息队列，用于存储待处理的消息。
      * <p>
-     * 支持内存队列（MemoryMessageStoreQueue）或其他自定义的队列实现，
+     * 支持内存队列（MemoryMessageStoreQueue）、文件队列（FileMessageStoreQueue）或其他自定义的队列实现，
      * 用于临时存储待推送的消息，确保消息的可靠传递。
      * </p>
      */
-    private final MemoryMessageStoreQueue messageQueue;
+    private final MessageQueue messageQueue;
     /**
      * 当前主题的活跃订阅者队列。
      * <p>
@@ -91,6 +93,14 @@ public class BrokerTopicImpl extends TopicToken implements BrokerTopic, Runnable
      */
     private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
 
+    /**
+     * 当前主题的保留消息。
+     * <p>
+     * 保留消息随主题挂载在主题树上，通配符订阅沿主题树匹配到的主题即可直接取得保留消息，无需额外的索引。
+     * </p>
+     */
+    private volatile Message retainMessage;
+
     private static final Runnable BREAK = () -> {
     };
 
@@ -99,9 +109,13 @@ public class BrokerTopicImpl extends TopicToken implements BrokerTopic, Runnable
     }
 
     public BrokerTopicImpl(String topic, int queueLength, ExecutorService executorService) {
+        this(topic, new MemoryMessageStoreQueue(queueLength), executorService);
+    }
+
+    public BrokerTopicImpl(String topic, MessageQueue messageQueue, ExecutorService executorService) {
         super(topic);
         this.executorService = executorService;
-        this.messageQueue = new MemoryMessageStoreQueue(queueLength);
+        this.messageQueue = messageQueue;
         this.encodedTopic = MqttCodecUtil.encodeUTF8(topic);
         setFlag(FLAG_ENABLED);
     }
@@ -167,10 +181,18 @@ public class BrokerTopicImpl extends TopicToken implements BrokerTopic, Runnable
         return encodedTopic;
     }
 
-    public MemoryMessageStoreQueue getMessageQueue() {
+    public MessageQueue getMessageQueue() {
         return messageQueue;
     }
 
+    public Message getRetainMessage() {
+        return retainMessage;
+    }
+
+    public void setRetainMessage(Message retainMessage) {
+        this.retainMessage = retainMessage;
+    }
+
     @Override
     public String toString() {
         return getTopic();
@@ -201,6 +223,13 @@ public class BrokerTopicImpl extends TopicToken implements BrokerTopic, Runnable
         }
     }
 
+    /**
+     * 在主题所属的推送线程中执行任务
+     */
+    void execute(Runnable task) {
+        executorService.execute(task);
+    }
+
     public void addVersion() {
         if (hasFlag(FLAG_UPDATE)) {
             return;
@@ -212,6 +241,11 @@ public class BrokerTopicImpl extends TopicToken implements BrokerTopic, Runnable
         unsetFlag(FLAG_ENABLED);
     }
 
+    public void destroy() {
+        disable();
+        messageQueue.destroy();
+    }
+
     public synchronized void setFlag(int v) {
         this.flag = this.flag | v;
     }
@@ -0,0 +1,570 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker.topic;
+
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.common.exception.MqttException;
+import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
+import tech.smartboot.mqtt.common.message.variable.properties.UserProperty;
+import tech.smartboot.mqtt.plugin.spec.Message;
+import tech.smartboot.mqtt.plugin.spec.MessageQueue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于分段文件的持久化消息队列。
+ * <p>
+ * 消息以追加写的方式存入固定大小的分段文件（segment），分段文件通过mmap映射读写，
+ * 同时保留一个与内存队列等长的尾部缓存，订阅者消费最新消息时无需访问磁盘。
+ * </p>
+ * <p>
+ * 与内存环形队列相比：
+ * <ul>
+ *   <li>慢速订阅者的积压消息保存在磁盘中，消费点位落后于缓存时从分段文件读取，不会因队列回绕而丢失</li>
+ *   <li>Broker重启后从分段文件恢复消息及offset</li>
+ *   <li>磁盘占用超出上限时删除最早的分段文件，落后的订阅者跳至最早可用的消息</li>
+ * </ul>
+ * </p>
+ * <p>
+ * 记录格式：length(4) + offset(8) + qos(1) + flag(1) + [createTime(8) + expiryInterval(4)] + [propertiesLength(4) + properties] + payload，
+ * 其中length为offset之后的字节数，仅设置了过期间隔的消息包含createTime及expiryInterval，由flag中的FLAG_EXPIRY标识；
+ * 携带需透传给订阅者的MQTT 5.0属性时包含properties，由flag中的FLAG_PROPERTIES标识，格式为payloadFormatIndicator(1) + contentType
+ * + responseTopic + correlationData + userPropertyCount(2) + userProperties，字符串及字节数组均以length(4)为前缀。
+ * 分段文件以baseOffset命名，文件剩余空间保持为0，读取到length为0即表示分段结束。
+ * </p>
+ * <p>
+ * 每个Topic的存储目录名由转义后的Topic前缀及Topic的SHA-256摘要组成，长度有上限且不会出现"."、".."等特殊名称，
+ * 目录中的topic文件记录完整的Topic名称，加载时校验以防摘要冲突。
+ * </p>
+ * <p>
+ * 写入由对象锁串行化；读取分段文件时持有读锁，仅与分段的淘汰及关闭互斥，不会阻塞追加写入。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2025/6/2
+ */
+public class FileMessageStoreQueue implements MessageQueue {
+    private static final String SEGMENT_SUFFIX = ".log";
+    /**
+     * 存储目录中记录Topic名称的文件
+     */
+    private static final String TOPIC_FILE = "topic";
+    /**
+     * 存储目录名中Topic前缀的最大长度
+     */
+    private static final int MAX_DIR_PREFIX_LENGTH = 64;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int MIN_SEGMENT_SIZE = 1024 * 1024;
+    /**
+     * 稀疏索引间隔，每隔INDEX_INTERVAL条记录保存一个文件位置
+     */
+    private static final int INDEX_INTERVAL = 64;
+    private static final int LENGTH_SIZE = 4;
+    private static final int RECORD_HEADER_SIZE = 8 + 1 + 1;
+    private static final byte FLAG_RETAINED = 1;
+    private static final byte FLAG_EXPIRY = 2;
+    private static final byte FLAG_PROPERTIES = 4;
+    private static final int EXPIRY_SIZE = 8 + 4;
+
+    private final File dir;
+    private final String topic;
+    private final int segmentSize;
+    private final long maxStoreSize;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    /**
+     * 尾部缓存，保存最近写入的消息，命中时无需访问磁盘
+     */
+    private final Message[] cache;
+    private final int mask;
+    /**
+     * 读取分段文件时持有读锁，淘汰及关闭分段时持有写锁，避免访问已释放的内存映射
+     */
+    private final ReadWriteLock segmentLock = new ReentrantReadWriteLock();
+
+    private Segment activeSegment;
+    private long storeSize;
+    private volatile long latestOffset = -1;
+
+    public FileMessageStoreQueue(File baseDir, String topic, int cacheLength, long maxStoreSize) {
+        this.dir = new File(baseDir, dirName(topic));
+        this.topic = topic;
+        this.maxStoreSize = maxStoreSize;
+        this.segmentSize = (int) Math.max(MIN_SEGMENT_SIZE, Math.min(MAX_SEGMENT_SIZE, maxStoreSize / 8));
+        this.cache = new Message[Integer.highestOneBit(cacheLength)];
+        this.mask = cache.length - 1;
+        try {
+            load();
+        } catch (IOException e) {
+            throw new MqttException("load message store fail: " + dir.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * 加载已存在的分段文件，恢复各分段的稀疏索引及最新offset。
+     * 存储目录及分段文件在首次写入消息时才创建，未产生消息的Topic不占用磁盘
+     */
+    private void load() throws IOException {
+        if (!dir.isDirectory()) {
+            return;
+        }
+        File topicFile = new File(dir, TOPIC_FILE);
+        if (topicFile.isFile()) {
+            String storedTopic = new String(Files.readAllBytes(topicFile.toPath()), StandardCharsets.UTF_8);
+            if (!storedTopic.equals(topic)) {
+                throw new IOException("store dir is owned by topic: " + storedTopic);
+            }
+        }
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files == null || files.length == 0) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            long baseOffset = Long.parseLong(file.getName().substring(0, file.getName().length() - SEGMENT_SUFFIX.length()));
+            Segment segment = new Segment(file, baseOffset, (int) file.length());
+            segment.recover();
+            segments.put(baseOffset, segment);
+            storeSize += segment.capacity;
+            activeSegment = segment;
+        }
+        latestOffset = activeSegment.nextOffset - 1;
+    }
+
+    @Override
+    public synchronized void put(Message message) {
+        byte[] payload = message.getPayload();
+        byte[] properties = encodeProperties(message.getProperties());
+        int recordSize = LENGTH_SIZE + RECORD_HEADER_SIZE + payload.length;
+        if (message.getExpiryInterval() > 0) {
+            recordSize += EXPIRY_SIZE;
+        }
+        if (properties != null) {
+            recordSize += 4 + properties.length;
+        }
+        long offset = latestOffset + 1;
+        try {
+            if (activeSegment == null || activeSegment.remaining() < recordSize) {
+                rollSegment(offset, recordSize);
+            }
+        } catch (IOException e) {
+            throw new MqttException("create message store segment fail", e);
+        }
+        message.setOffset(offset);
+        activeSegment.append(message, properties, recordSize);
+        cache[(int) (offset & mask)] = message;
+        latestOffset = offset;
+    }
+
+    private void rollSegment(long baseOffset, int recordSize) throws IOException {
+        if (activeSegment != null) {
+            activeSegment.buffer.force();
+        } else if (!dir.isDirectory()) {
+            if (!dir.mkdirs()) {
+                throw new IOException("create dir fail: " + dir.getAbsolutePath());
+            }
+            Files.write(new File(dir, TOPIC_FILE).toPath(), topic.getBytes(StandardCharsets.UTF_8));
+        }
+        File file = new File(dir, String.format("%020d", baseOffset) + SEGMENT_SUFFIX);
+        activeSegment = new Segment(file, baseOffset, Math.max(segmentSize, recordSize));
+        segments.put(baseOffset, activeSegment);
+        storeSize += activeSegment.capacity;
+        //超出磁盘占用上限，淘汰最早的分段
+        if (storeSize > maxStoreSize && segments.size() > 1) {
+            segmentLock.writeLock().lock();
+            try {
+                while (storeSize > maxStoreSize && segments.size() > 1) {
+                    Map.Entry<Long, Segment> entry = segments.pollFirstEntry();
+                    storeSize -= entry.getValue().capacity;
+                    entry.getValue().delete();
+                }
+            } finally {
+                segmentLock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public Message get(long offset) {
+        if (offset > latestOffset) {
+            return null;
+        }
+        Message message = cache[(int) (offset & mask)];
+        if (message != null && message.getOffset() == offset) {
+            return message;
+        }
+        return read(offset);
+    }
+
+    /**
+     * 从分段文件读取消息。写入的消息在更新latestOffset之前已完整落入内存映射，读取无需与写入互斥
+     */
+    private Message read(long offset) {
+        segmentLock.readLock().lock();
+        try {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(offset);
+            //消息已被淘汰，跳至最早可用的消息
+            if (entry == null) {
+                entry = segments.firstEntry();
+                if (entry == null) {
+                    return null;
+                }
+                offset = entry.getKey();
+            }
+            return entry.getValue().read(offset);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Message getAndCommit(long offset) {
+        Message message = get(offset);
+        if (message != null && message.getOffset() == offset) {
+            commit(offset);
+        }
+        return message;
+    }
+
+    /**
+     * 仅尾部缓存中的消息需要维护推送次数，推送完毕即从缓存中移除，磁盘中的消息由容量上限统一淘汰
+     */
+    @Override
+    public void commit(long offset) {
+        int index = (int) (offset & mask);
+        Message message = cache[index];
+        if (message != null && message.getOffset() == offset && message.decrementAndGet() == 0) {
+            cache[index] = null;
+        }
+    }
+
+    @Override
+    public long getLatestOffset() {
+        return latestOffset;
+    }
+
+    @Override
+    public int capacity() {
+        return cache.length;
+    }
+
+    /**
+     * 仅释放尾部缓存，磁盘中的消息依旧保留，由容量上限统一淘汰
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(cache, null);
+    }
+
+    @Override
+    public synchronized void destroy() {
+        segmentLock.writeLock().lock();
+        try {
+            if (activeSegment != null) {
+                activeSegment.buffer.force();
+            }
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+            activeSegment = null;
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+        clear();
+    }
+
+    /**
+     * 存储目录名：Topic中的字母、数字、'-'及'_'原样保留，其余字符替换为'_'，截取前MAX_DIR_PREFIX_LENGTH个字符，
+     * 再拼接Topic的SHA-256摘要以区分转义后相同的Topic
+     */
+    static String dirName(String topic) {
+        StringBuilder sb = new StringBuilder(MAX_DIR_PREFIX_LENGTH + 1 + 64);
+        for (int i = 0; i < topic.length() && sb.length() < MAX_DIR_PREFIX_LENGTH; i++) {
+            char c = topic.charAt(i);
+            sb.append((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_' ? c : '_');
+        }
+        sb.append('-');
+        try {
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(topic.getBytes(StandardCharsets.UTF_8))) {
+                sb.append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new MqttException("SHA-256 is not supported", e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 编码需透传给订阅者的属性，不含任何此类属性时返回null。离线消息队列的存储文件复用此格式
+     */
+    public static byte[] encodeProperties(PublishProperties properties) {
+        if (properties == null || (properties.getPayloadFormatIndicator() == 0 && properties.getContentType() == null && properties.getResponseTopic() == null
+                && properties.getCorrelationData() == null && properties.getUserProperties().isEmpty())) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream outputStream = new DataOutputStream(bytes);
+            outputStream.writeByte(properties.getPayloadFormatIndicator());
+            writeString(outputStream, properties.getContentType());
+            writeString(outputStream, properties.getResponseTopic());
+            writeBytes(outputStream, properties.getCorrelationData());
+            outputStream.writeShort(properties.getUserProperties().size());
+            for (UserProperty userProperty : properties.getUserProperties()) {
+                writeString(outputStream, userProperty.getKey());
+                writeString(outputStream, userProperty.getValue());
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new MqttException("encode message properties fail", e);
+        }
+    }
+
+    /**
+     * 解码由encodeProperties编码的属性
+     */
+    public static PublishProperties decodeProperties(byte[] data) {
+        try {
+            DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(data));
+            PublishProperties properties = new PublishProperties();
+            properties.setPayloadFormatIndicator(inputStream.readByte());
+            properties.setContentType(readString(inputStream));
+            properties.setResponseTopic(readString(inputStream));
+            properties.setCorrelationData(readBytes(inputStream));
+            int userPropertyCount = inputStream.readUnsignedShort();
+            for (int i = 0; i < userPropertyCount; i++) {
+                properties.getUserProperties().add(new UserProperty(readString(inputStream), readString(inputStream)));
+            }
+            return properties;
+        } catch (IOException e) {
+            throw new MqttException("decode message properties fail", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream outputStream, String value) throws IOException {
+        writeBytes(outputStream, value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInputStream inputStream) throws IOException {
+        byte[] bytes = readBytes(inputStream);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream outputStream, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            outputStream.writeInt(-1);
+        } else {
+            outputStream.writeInt(bytes.length);
+            outputStream.write(bytes);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream inputStream) throws IOException {
+        int length = inputStream.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        inputStream.readFully(bytes);
+        return bytes;
+    }
+
+    private static final class Segment {
+        private final File file;
+        private final long baseOffset;
+        private final int capacity;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        /**
+         * 稀疏索引，indexes[i]为offset：baseOffset + i * INDEX_INTERVAL的记录所在位置
+         */
+        private volatile int[] indexes = new int[16];
+        private int indexSize;
+        private int writePosition;
+        private long nextOffset;
+
+        Segment(File file, long baseOffset, int capacity) throws IOException {
+            this.file = file;
+            this.baseOffset = baseOffset;
+            this.capacity = capacity;
+            this.nextOffset = baseOffset;
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+            try {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * 扫描分段文件，重建稀疏索引并定位写入点
+         */
+        void recover() {
+            int position = 0;
+            while (position + LENGTH_SIZE <= capacity) {
+                int length = buffer.getInt(position);
+                if (length < RECORD_HEADER_SIZE || position + LENGTH_SIZE + length > capacity || buffer.getLong(position + LENGTH_SIZE) != nextOffset) {
+                    break;
+                }
+                addIndex(position);
+                nextOffset++;
+                position += LENGTH_SIZE + length;
+            }
+            writePosition = position;
+        }
+
+        int remaining() {
+            return capacity - writePosition;
+        }
+
+        void append(Message message, byte[] properties, int recordSize) {
+            ByteBuffer writeBuffer = buffer.duplicate();
+            writeBuffer.position(writePosition);
+            writeBuffer.putInt(recordSize - LENGTH_SIZE);
+            writeBuffer.putLong(message.getOffset());
+            writeBuffer.put((byte) message.getQos().value());
+            byte flag = message.isRetained() ? FLAG_RETAINED : 0;
+            if (message.getExpiryInterval() > 0) {
+                flag |= FLAG_EXPIRY;
+            }
+            if (properties != null) {
+                flag |= FLAG_PROPERTIES;
+            }
+            writeBuffer.put(flag);
+            if (message.getExpiryInterval() > 0) {
+                writeBuffer.putLong(message.getCreateTime());
+                writeBuffer.putInt(message.getExpiryInterval());
+            }
+            if (properties != null) {
+                writeBuffer.putInt(properties.length);
+                writeBuffer.put(properties);
+            }
+            writeBuffer.put(message.getPayload());
+            addIndex(writePosition);
+            writePosition += recordSize;
+            nextOffset++;
+        }
+
+        private void addIndex(int position) {
+            if ((nextOffset - baseOffset) % INDEX_INTERVAL != 0) {
+                return;
+            }
+            int[] array = indexes;
+            if (indexSize == array.length) {
+                array = Arrays.copyOf(array, array.length << 1);
+            }
+            array[indexSize++] = position;
+            indexes = array;
+        }
+
+        Message read(long offset) {
+            int[] array = indexes;
+            int relative = (int) (offset - baseOffset);
+            int position = array[relative / INDEX_INTERVAL];
+            for (int i = relative % INDEX_INTERVAL; i > 0; i--) {
+                position += LENGTH_SIZE + buffer.getInt(position);
+            }
+            int length = buffer.getInt(position);
+            ByteBuffer readBuffer = buffer.duplicate();
+            readBuffer.position(position + LENGTH_SIZE);
+            long storedOffset = readBuffer.getLong();
+            MqttQoS qos = MqttQoS.valueOf(readBuffer.get() & 0xFF);
+            byte flag = readBuffer.get();
+            boolean retained = (flag & FLAG_RETAINED) == FLAG_RETAINED;
+            long createTime = System.currentTimeMillis();
+            int expiryInterval = 0;
+            int remaining = length - RECORD_HEADER_SIZE;
+            if ((flag & FLAG_EXPIRY) == FLAG_EXPIRY) {
+                createTime = readBuffer.getLong();
+                expiryInterval = readBuffer.getInt();
+                remaining -= EXPIRY_SIZE;
+            }
+            PublishProperties properties = null;
+            if ((flag & FLAG_PROPERTIES) == FLAG_PROPERTIES) {
+                byte[] data = new byte[readBuffer.getInt()];
+                readBuffer.get(data);
+                properties = decodeProperties(data);
+                remaining -= 4 + data.length;
+            }
+            byte[] payload = new byte[remaining];
+            readBuffer.get(payload);
+            Message message = new Message(qos, payload, retained, createTime, expiryInterval, properties);
+            message.setOffset(storedOffset);
+            return message;
+        }
+
+        /**
+         * 关闭文件通道并释放内存映射，释放后不可再访问该分段
+         */
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            unmap(buffer);
+        }
+
+        void delete() {
+            close();
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * 主动释放内存映射，否则映射需等待GC回收后才释放，期间已删除的分段文件仍占用磁盘空间。
+     * JDK 9+通过Unsafe.invokeCleaner释放，JDK 8通过DirectBuffer.cleaner释放
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+        } catch (NoSuchMethodException e) {
+            try {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (Exception ignored) {
+                //无法主动释放时交由GC回收
+            }
+        } catch (Exception ignored) {
+            //无法主动释放时交由GC回收
+        }
+    }
+}
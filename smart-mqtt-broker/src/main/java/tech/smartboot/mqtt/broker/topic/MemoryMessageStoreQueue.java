@@ -13,67 +13,123 @@ package tech.smartboot.mqtt.broker.topic;
 import tech.smartboot.mqtt.plugin.spec.Message;
 import tech.smartboot.mqtt.plugin.spec.MessageQueue;
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * 基于环形数组的内存消息队列，支持多生产者并发写入。
+ * <p>
+ * 写入分为申领和发布两个阶段：
+ * <ul>
+ *   <li>生产者通过claimSequence申领序号，并将消息写入对应槽位，槽位中消息的offset即为序号戳</li>
+ *   <li>生产者按申领顺序推进publishSequence，消费者只能读取已发布的消息，不会读到写入中的槽位</li>
+ * </ul>
+ * 两个序号均填充至独占缓存行，避免生产者与消费者之间的伪共享。
+ * </p>
+ * <p>
+ * 槽位中的消息在所有订阅者推送完毕后被置空，解除订阅的订阅者在解除时提交其尚未推送的消息。
+ * 若写入时槽位仍被占用，说明该消息在仍在订阅的订阅者投递完成前已被覆盖，
+ * 此类溢出计入构造时传入的计数器，由Broker汇总所有队列的溢出数量。
+ * </p>
+ *
  * @author 三刀
  * @version V1.0 , 2018/5/3
  */
 public class MemoryMessageStoreQueue implements MessageQueue {
-    private static final Message[] EMPTY_MESSAGE_ARRAY = new Message[0];
+    private static final AtomicReferenceArray<Message> EMPTY_STORE = new AtomicReferenceArray<>(0);
     private final int capacity;
-    private volatile Message[] store = EMPTY_MESSAGE_ARRAY;
+    private volatile AtomicReferenceArray<Message> store = EMPTY_STORE;
     private final int mask;
 
-    private final AtomicLong putOffset = new AtomicLong(-1);
+    /**
+     * 生产者已申领的序号
+     */
+    private final Sequence claimSequence = new Sequence(-1);
+    /**
+     * 已发布的序号，消费者可见该序号及之前的消息
+     */
+    private final Sequence publishSequence = new Sequence(-1);
+
+    /**
+     * 投递完成前即被覆盖的消息数
+     */
+    private final LongAdder overwrittenCount;
 
     public MemoryMessageStoreQueue(int maxMessageQueueLength) {
+        this(maxMessageQueueLength, new LongAdder());
+    }
+
+    public MemoryMessageStoreQueue(int maxMessageQueueLength, LongAdder overwrittenCount) {
+        this.overwrittenCount = overwrittenCount;
         this.capacity = Integer.highestOneBit(maxMessageQueueLength);
         mask = capacity - 1;
     }
 
+    @Override
     public void put(Message message) {
-        if (store == EMPTY_MESSAGE_ARRAY) {
+        AtomicReferenceArray<Message> store = this.store;
+        if (store == EMPTY_STORE) {
             synchronized (this) {
-                if (store == EMPTY_MESSAGE_ARRAY) {
-                    store = new Message[capacity];
+                if (this.store == EMPTY_STORE) {
+                    this.store = new AtomicReferenceArray<>(capacity);
                 }
+                store = this.store;
             }
         }
-        message.setOffset(putOffset.incrementAndGet());
-//        LOGGER.info("store message, offset:{}", message.getOffset());
-        store[(int) (message.getOffset() & mask)] = message;
+        long sequence = claimSequence.incrementAndGet();
+        message.setOffset(sequence);
+        if (store.getAndSet((int) (sequence & mask), message) != null) {
+            overwrittenCount.increment();
+        }
+        //按申领顺序发布，等待前序生产者完成写入
+        while (publishSequence.get() != sequence - 1) {
+            Thread.yield();
+        }
+        publishSequence.set(sequence);
     }
 
+    @Override
     public Message get(long offset) {
-        if (store == EMPTY_MESSAGE_ARRAY) {
+        AtomicReferenceArray<Message> store = this.store;
+        long latestOffset = publishSequence.get();
+        if (store == EMPTY_STORE || offset > latestOffset) {
             return null;
         }
-//        System.out.println("offset:" + offset);
-        Message storedMessage = store[(int) (offset & mask)];
+        Message storedMessage = store.get((int) (offset & mask));
         if (storedMessage != null && storedMessage.getOffset() == offset) {
             return storedMessage;
         }
-        if (offset < putOffset.get()) {
-//            System.out.println("skip...");
-            return store[(int) (putOffset.get() & mask)];
+        if (offset < latestOffset) {
+            //目标消息已被覆盖，跳至最新消息
+            return store.get((int) (latestOffset & mask));
         } else {
             return null;
         }
     }
 
+    @Override
     public Message getAndCommit(long offset) {
         Message message = get(offset);
-        if (message != null && message.getOffset() == offset && message.decrementAndGet() == 0) {
-            store[(int) (message.getOffset() & mask)] = null;
+        if (message != null && message.getOffset() == offset) {
+            release(message);
         }
         return message;
     }
 
+    @Override
     public void commit(long offset) {
         Message message = get(offset);
-        if (message != null && message.getOffset() == offset && message.decrementAndGet() == 0) {
-            store[(int) (message.getOffset() & mask)] = null;
+        if (message != null && message.getOffset() == offset) {
+            release(message);
+        }
+    }
+
+    /**
+     * 推送次数归零后释放槽位，仅当槽位仍为该消息时才置空，避免误清除新写入的消息
+     */
+    private void release(Message message) {
+        if (message.decrementAndGet() == 0) {
+            store.compareAndSet((int) (message.getOffset() & mask), message, null);
         }
     }
 
@@ -82,12 +138,14 @@ public class MemoryMessageStoreQueue implements MessageQueue {
      *
      * @return
      */
+    @Override
     public long getLatestOffset() {
-        return putOffset.get();
+        return publishSequence.get();
     }
 
-    void clear() {
-        store = EMPTY_MESSAGE_ARRAY;
+    @Override
+    public void clear() {
+        store = EMPTY_STORE;
     }
 
     @Override
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker.topic;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+abstract class SequenceLeftPadding {
+    protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+abstract class SequenceValue extends SequenceLeftPadding {
+    protected volatile long value;
+}
+
+/**
+ * 前后填充至独占缓存行的序号，避免生产者与消费者频繁访问的序号之间产生伪共享。
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2025/6/3
+ */
+final class Sequence extends SequenceValue {
+    private static final AtomicLongFieldUpdater<SequenceValue> UPDATER = AtomicLongFieldUpdater.newUpdater(SequenceValue.class, "value");
+    protected long p9, p10, p11, p12, p13, p14, p15;
+
+    Sequence(long initialValue) {
+        this.value = initialValue;
+    }
+
+    long get() {
+        return value;
+    }
+
+    void set(long value) {
+        this.value = value;
+    }
+
+    long incrementAndGet() {
+        return UPDATER.incrementAndGet(this);
+    }
+}
@@ -35,7 +35,7 @@ class SharedDeliverGroup extends DeliverGroup {
     public BaseMessageDeliver removeMessageDeliver(MqttSession session) {
         BaseMessageDeliver messageDeliver = super.removeMessageDeliver(session);
         if (subscribers.isEmpty()) {
-            record.disable();
+            record.release();
             record.getTopic().removeShareGroup(messageDeliver.getSubscribeRelation().getTopicFilter());
         }
         return messageDeliver;
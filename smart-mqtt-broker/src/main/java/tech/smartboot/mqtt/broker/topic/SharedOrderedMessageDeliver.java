@@ -15,7 +15,6 @@ import tech.smartboot.mqtt.common.enums.MqttQoS;
 import tech.smartboot.mqtt.common.enums.MqttVersion;
 import tech.smartboot.mqtt.common.message.MqttPacketIdentifierMessage;
 import tech.smartboot.mqtt.common.message.variable.MqttPacketIdVariableHeader;
-import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
 import tech.smartboot.mqtt.plugin.spec.Message;
 import tech.smartboot.mqtt.plugin.spec.PublishBuilder;
 
@@ -51,6 +50,17 @@ class SharedOrderedMessageDeliver extends BaseMessageDeliver implements Runnable
 
     @Override
     public void run() {
+        //共享订阅组已解散，提交尚未分配的消息后不再加入推送列表
+        if (!enable) {
+            if (semaphore.tryAcquire()) {
+                try {
+                    releaseBacklog();
+                } finally {
+                    semaphore.release();
+                }
+            }
+            return;
+        }
         if (semaphore.tryAcquire()) {
             try {
                 push0();
@@ -67,11 +77,17 @@ class SharedOrderedMessageDeliver extends BaseMessageDeliver implements Runnable
 
     private void push0() {
         int i = 10000;
+        long now = System.currentTimeMillis();
         while (i-- > 0) {
             Message message = topic.getMessageQueue().get(nextConsumerOffset);
             if (message == null) {
                 return;
             }
+            //过期消息不再分配给共享订阅者
+            if (message.isExpired(now)) {
+                topic.getMessageQueue().commit(nextConsumerOffset++);
+                continue;
+            }
             BaseMessageDeliver record = queue.poll();
             //共享订阅列表无可用通道
             if (record == null) {
@@ -83,7 +99,7 @@ class SharedOrderedMessageDeliver extends BaseMessageDeliver implements Runnable
             }
             PublishBuilder publishBuilder = PublishBuilder.builder().payload(message.getPayload()).qos(record.getMqttQoS()).topic(topic);
             if (record.getMqttSession().getMqttVersion() == MqttVersion.MQTT_5) {
-                publishBuilder.publishProperties(new PublishProperties());
+                publishBuilder.publishProperties(newPublishProperties(message, now));
             }
 
             //Qos0直接发送
@@ -11,6 +11,7 @@
 package tech.smartboot.mqtt.broker.topic;
 
 import tech.smartboot.mqtt.broker.SessionSubscribeRelation;
+import tech.smartboot.mqtt.common.enums.MqttVersion;
 import tech.smartboot.mqtt.common.message.MqttFixedHeader;
 import tech.smartboot.mqtt.common.message.MqttPublishMessage;
 import tech.smartboot.mqtt.common.message.variable.MqttPublishVariableHeader;
@@ -65,7 +66,11 @@ abstract class SimpleMessageDeliver extends BaseMessageDeliver {
      * </p>
      */
     public void run() {
-        if (getMqttSession().isDisconnect() || !enable) {
+        if (!enable) {
+            releaseBacklog();
+            return;
+        }
+        if (getMqttSession().isDisconnect()) {
             return;
         }
         int i = 0;
@@ -98,18 +103,46 @@ abstract class SimpleMessageDeliver extends BaseMessageDeliver {
 //            System.out.println("push0...");
             return false;
         }
+        //写缓冲区积压，待恢复可写后继续推送
+        if (isSlowConsumer()) {
+            topic.registerMessageDeliver(this);
+            return false;
+        }
         Message message = topic.getMessageQueue().getAndCommit(nextConsumerOffset);
         if (message == null) {
             topic.registerMessageDeliver(this);
             return false;
         }
-  
-        MqttPublishMessage publishMessage = new MqttPublishMessage(MqttFixedHeader.PUB_QOS0_HEADER, createVariableHeader(message), message.getPayload());
-
         nextConsumerOffset = message.getOffset() + 1;
+        //过期消息不再推送
+        if (message.isExpired(System.currentTimeMillis())) {
+            return true;
+        }
+
+        MqttPublishMessage publishMessage;
+        if (getMqttSession().getTopicAliasAllocator() != null || message.getExpiryInterval() > 0 && getMqttSession().getMqttVersion() == MqttVersion.MQTT_5) {
+            //主题别名及剩余过期间隔因会话而异，报文不可共享
+            publishMessage = new MqttPublishMessage(MqttFixedHeader.PUB_QOS0_HEADER, createVariableHeader(message), message.getPayload());
+        } else {
+            //同一条消息的QoS0报文仅编码一次，由相同报文形态的订阅者共享
+            int shape = encodedShape();
+            publishMessage = message.getEncodedMessage(shape);
+            if (publishMessage == null) {
+                publishMessage = new MqttPublishMessage(MqttFixedHeader.PUB_QOS0_HEADER, createVariableHeader(message), message.getPayload()).encode();
+                message.setEncodedMessage(shape, publishMessage);
+            }
+        }
+
         getMqttSession().write(publishMessage, false);
         return true;
     }
 
     public abstract MqttPublishVariableHeader createVariableHeader(Message message);
+
+    /**
+     * 报文形态，形态相同的订阅者可共享同一份预编码报文
+     */
+    protected int encodedShape() {
+        return getMqttSession().getMqttVersion() == MqttVersion.MQTT_5 ? 1 : 0;
+    }
 }
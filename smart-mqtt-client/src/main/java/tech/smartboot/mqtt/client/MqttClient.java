@@ -20,11 +20,14 @@ import tech.smartboot.mqtt.common.AsyncTask;
 import tech.smartboot.mqtt.common.DefaultMqttWriter;
 import tech.smartboot.mqtt.common.InflightQueue;
 import tech.smartboot.mqtt.common.MqttProtocol;
+import tech.smartboot.mqtt.common.TopicAliasAllocator;
+import tech.smartboot.mqtt.common.TopicAliasResolver;
 import tech.smartboot.mqtt.common.TopicToken;
 import tech.smartboot.mqtt.common.enums.MqttConnectReturnCode;
 import tech.smartboot.mqtt.common.enums.MqttDisConnectReturnCode;
 import tech.smartboot.mqtt.common.enums.MqttQoS;
 import tech.smartboot.mqtt.common.enums.MqttVersion;
+import tech.smartboot.mqtt.common.exception.MessageExpiredException;
 import tech.smartboot.mqtt.common.message.MqttConnAckMessage;
 import tech.smartboot.mqtt.common.message.MqttConnectMessage;
 import tech.smartboot.mqtt.common.message.MqttDisconnectMessage;
@@ -42,6 +45,7 @@ import tech.smartboot.mqtt.common.message.variable.MqttConnectVariableHeader;
 import tech.smartboot.mqtt.common.message.variable.MqttDisconnectVariableHeader;
 import tech.smartboot.mqtt.common.message.variable.MqttPacketIdVariableHeader;
 import tech.smartboot.mqtt.common.message.variable.MqttPublishVariableHeader;
+import tech.smartboot.mqtt.common.message.variable.properties.ConnectAckProperties;
 import tech.smartboot.mqtt.common.message.variable.properties.ConnectProperties;
 import tech.smartboot.mqtt.common.message.variable.properties.DisConnectProperties;
 import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
@@ -171,8 +175,15 @@ public class MqttClient extends AbstractSession {
 
             //todo
             ConnectProperties properties = null;
+            //主题别名仅在当前网络连接内有效
+            setTopicAliasResolver(null);
+            setTopicAliasAllocator(null);
             if (getMqttVersion() == MqttVersion.MQTT_5) {
                 properties = new ConnectProperties();
+                if (options.getTopicAliasMaximum() > 0) {
+                    properties.setTopicAliasMaximum(options.getTopicAliasMaximum());
+                    setTopicAliasResolver(new TopicAliasResolver(options.getTopicAliasMaximum()));
+                }
             }
             MqttConnectVariableHeader variableHeader = new MqttConnectVariableHeader(getMqttVersion(), MqttUtil.isNotBlank(options.getUserName()), options.getPassword() != null, options.getWillMessage(), options.isCleanSession(), options.getKeepAliveInterval(), properties);
             MqttConnectPayload payload = new MqttConnectPayload(clientId, options.getWillMessage(), options.getUserName(), options.getPassword());
@@ -372,6 +383,10 @@ public class MqttClient extends AbstractSession {
         //连接成功,注册订阅消息
         if (connAckMessage.getVariableHeader().connectReturnCode() == MqttConnectReturnCode.CONNECTION_ACCEPTED) {
             setInflightQueue(new InflightQueue(this, options.getMaxInflight(), TIMER));
+            ConnectAckProperties properties = connAckMessage.getVariableHeader().getProperties();
+            if (properties != null && properties.getTopicAliasMaximum() > 0) {
+                setTopicAliasAllocator(new TopicAliasAllocator(properties.getTopicAliasMaximum()));
+            }
             //重连情况下重新触发订阅逻辑
             subscribes.forEach((k, v) -> {
                 subscribe(k, v.getQoS(), v.getConsumer());
@@ -410,26 +425,55 @@ public class MqttClient extends AbstractSession {
     }
 
     public void publish(String topic, MqttQoS qos, byte[] payload, boolean retain, Consumer<Integer> consumer, boolean autoFlush) {
+        publish(topic, qos, payload, retain, new PublishProperties(), consumer, autoFlush);
+    }
+
+    /**
+     * 发布携带属性的消息，仅MQTT 5.0连接会发送属性。发布失败时回调Options中设置的publishFailureConsumer
+     */
+    public void publish(String topic, MqttQoS qos, byte[] payload, boolean retain, PublishProperties properties, Consumer<Integer> consumer, boolean autoFlush) {
+        publish(topic, qos, payload, retain, properties, (packetId, throwable) -> {
+            if (throwable == null) {
+                consumer.accept(packetId);
+            } else {
+                options.publishFailureConsumer().accept(this, throwable);
+            }
+        }, autoFlush);
+    }
+
+    /**
+     * 发布携带属性的消息，仅MQTT 5.0连接会发送属性
+     *
+     * @param callback 服务端确认后回调报文标识符；QoS1/2消息在收到确认前已过期时，
+     *                 回调MessageExpiredException，消息未送达服务端
+     */
+    public void publish(String topic, MqttQoS qos, byte[] payload, boolean retain, PublishProperties properties, BiConsumer<Integer, Throwable> callback, boolean autoFlush) {
         PublishBuilder publishBuilder = PublishBuilder.builder().topicName(topic).qos(qos).payload(payload).retained(retain);
-        //todo
         if (getMqttVersion() == MqttVersion.MQTT_5) {
-            publishBuilder.publishProperties(new PublishProperties());
+            publishBuilder.publishProperties(properties);
         }
         if (connected) {
-            publish(publishBuilder, consumer, autoFlush);
+            publish(publishBuilder, callback, autoFlush);
         } else {
-            registeredTasks.offer(() -> publish(publishBuilder, consumer, autoFlush));
+            registeredTasks.offer(() -> publish(publishBuilder, callback, autoFlush));
         }
     }
 
-    private void publish(PublishBuilder publishBuilder, Consumer<Integer> consumer, boolean autoFlush) {
+    private void publish(PublishBuilder publishBuilder, BiConsumer<Integer, Throwable> callback, boolean autoFlush) {
         if (publishBuilder.qos() == MqttQoS.AT_MOST_ONCE) {
             write(publishBuilder.build(), autoFlush);
-            consumer.accept(0);
+            callback.accept(0, null);
             return;
         }
         CompletableFuture<MqttPacketIdentifierMessage<? extends MqttPacketIdVariableHeader>> future = inflightQueue.put(publishBuilder);
-        future.whenComplete((message, throwable) -> consumer.accept(message.getVariableHeader().getPacketId()));
+        future.whenComplete((message, throwable) -> {
+            //消息在收到确认前已过期，未送达服务端
+            if (throwable != null) {
+                callback.accept(throwable instanceof MessageExpiredException ? ((MessageExpiredException) throwable).getPacketId() : 0, throwable);
+                return;
+            }
+            callback.accept(message.getVariableHeader().getPacketId(), null);
+        });
         if (autoFlush) {
             flush();
         }
@@ -22,6 +22,7 @@ import javax.net.SocketFactory;
 import javax.net.ssl.HostnameVerifier;
 import java.nio.channels.AsynchronousChannelGroup;
 import java.util.Properties;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 public class Options {
@@ -60,6 +61,12 @@ public class Options {
      */
     private int maxPacketSize = 1048576;
 
+    /**
+     * MQTT 5.0 可接收的主题别名最大值，为0时服务端推送的消息不使用主题别名。
+     * 发布消息时使用的别名由服务端在CONNACK中声明的最大值决定
+     */
+    private int topicAliasMaximum = 0;
+
 
     private int connectAckTimeout = 5;
 
@@ -82,6 +89,12 @@ public class Options {
      */
     private Consumer<MqttConnAckMessage> reconnectConsumer;
 
+    /**
+     * 发布失败的回调，如QoS1/2消息在收到确认前已过期（MessageExpiredException）。
+     * 仅用于未指定失败回调的publish方法，默认输出至标准错误
+     */
+    private BiConsumer<MqttClient, Throwable> publishFailureConsumer = (client, throwable) -> System.err.println(throwable.getMessage());
+
     private TopicListener topicListener = new TopicListener() {
         @Override
         public void subscribe(String topicFilter, MqttQoS mqttQoS) {
@@ -574,6 +587,15 @@ public class Options {
         return this;
     }
 
+    public int getTopicAliasMaximum() {
+        return topicAliasMaximum;
+    }
+
+    public Options setTopicAliasMaximum(int topicAliasMaximum) {
+        this.topicAliasMaximum = topicAliasMaximum;
+        return this;
+    }
+
     public int getMaxPacketSize() {
         return maxPacketSize;
     }
@@ -601,6 +623,15 @@ public class Options {
         return this;
     }
 
+    BiConsumer<MqttClient, Throwable> publishFailureConsumer() {
+        return publishFailureConsumer;
+    }
+
+    public Options setPublishFailureConsumer(BiConsumer<MqttClient, Throwable> publishFailureConsumer) {
+        this.publishFailureConsumer = publishFailureConsumer;
+        return this;
+    }
+
     String getClientId() {
         return clientId == null ? MqttUtil.createClientId() : clientId;
     }
@@ -29,6 +29,12 @@ public class PublishProcessor implements MqttProcessor<MqttPublishMessage> {
 
     @Override
     public void process(MqttClient session, MqttPublishMessage mqttPublishMessage) {
+        mqttPublishMessage = session.resolveTopicAlias(mqttPublishMessage);
+        if (mqttPublishMessage == null) {
+            System.err.println("invalid topic alias, close session");
+            session.disconnect();
+            return;
+        }
         MqttQoS mqttQoS = mqttPublishMessage.getFixedHeader().getQosLevel();
         switch (mqttQoS) {
             case AT_MOST_ONCE:
@@ -42,6 +42,14 @@ public abstract class AbstractSession {
     protected MqttVersion mqttVersion;
 
     protected InflightQueue inflightQueue;
+    /**
+     * 接收方向的主题别名映射，为null时不接受主题别名
+     */
+    protected TopicAliasResolver topicAliasResolver;
+    /**
+     * 发送方向的主题别名分配，为null时不使用主题别名
+     */
+    protected TopicAliasAllocator topicAliasAllocator;
     private final Hashtable<Integer, MqttPublishMessage> ackMessageCacheMap = new Hashtable<>();
 
     //消息超时重发任务
@@ -78,6 +86,9 @@ public abstract class AbstractSession {
             if (disconnect) {
                 ValidateUtils.throwException("session is disconnect");
             }
+            if (topicAliasAllocator != null && mqttMessage instanceof MqttPublishMessage) {
+                mqttMessage = topicAliasAllocator.apply((MqttPublishMessage) mqttMessage);
+            }
             mqttMessage.write(mqttWriter);
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -89,6 +100,30 @@ public abstract class AbstractSession {
         }
     }
 
+    /**
+     * 将携带主题别名的报文还原为完整主题名
+     *
+     * @return 还原后的报文，别名无效时返回null
+     */
+    public final MqttPublishMessage resolveTopicAlias(MqttPublishMessage mqttMessage) {
+        if (topicAliasResolver == null) {
+            return mqttMessage.getVariableHeader().getProperties() == null || mqttMessage.getVariableHeader().getProperties().getTopicAlias() == 0 ? mqttMessage : null;
+        }
+        return topicAliasResolver.resolve(mqttMessage);
+    }
+
+    public final void setTopicAliasResolver(TopicAliasResolver topicAliasResolver) {
+        this.topicAliasResolver = topicAliasResolver;
+    }
+
+    public final void setTopicAliasAllocator(TopicAliasAllocator topicAliasAllocator) {
+        this.topicAliasAllocator = topicAliasAllocator;
+    }
+
+    public final TopicAliasAllocator getTopicAliasAllocator() {
+        return topicAliasAllocator;
+    }
+
     public final void write(MqttMessage mqttMessage) {
         write(mqttMessage, true);
     }
@@ -99,6 +134,15 @@ public abstract class AbstractSession {
         }
     }
 
+    /**
+     * 数据发送至网络后由传输层回调，用于统计写缓冲区的积压。
+     * 经由代理连接（如WebSocket）传输时，由代理的写缓冲区在数据发送完毕后调用
+     *
+     * @param size 本次发送的字节数，不含代理协议自身的帧头
+     */
+    public void outboundWritten(int size) {
+    }
+
     public final String getClientId() {
         return clientId;
     }
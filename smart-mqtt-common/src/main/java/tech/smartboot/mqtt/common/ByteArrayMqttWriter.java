@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.common;
+
+import java.util.Arrays;
+
+/**
+ * 将报文编码至字节数组，用于预编码可复用的报文
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2025/6/5
+ */
+public class ByteArrayMqttWriter implements MqttWriter {
+    private byte[] buffer;
+    /**
+     * 已写入的字节数
+     */
+    private int count;
+    /**
+     * 当前报文的编码长度，用于编码校验
+     */
+    private int size;
+
+    public ByteArrayMqttWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    @Override
+    public void reset() {
+        size = 0;
+    }
+
+    @Override
+    public void writeByte(byte b) {
+        ensureCapacity(1);
+        buffer[count++] = b;
+        size++;
+    }
+
+    @Override
+    public void writeShort(short data) {
+        ensureCapacity(2);
+        buffer[count++] = (byte) (data >>> 8);
+        buffer[count++] = (byte) data;
+        size += 2;
+    }
+
+    @Override
+    public void writeInt(int data) {
+        ensureCapacity(4);
+        buffer[count++] = (byte) (data >>> 24);
+        buffer[count++] = (byte) (data >>> 16);
+        buffer[count++] = (byte) (data >>> 8);
+        buffer[count++] = (byte) data;
+        size += 4;
+    }
+
+    @Override
+    public void write(byte[] data) {
+        write(data, 0, data.length);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(data, offset, buffer, count, length);
+        count += length;
+        size += length;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public int writeSize() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return count == buffer.length ? buffer : Arrays.copyOf(buffer, count);
+    }
+
+    private void ensureCapacity(int length) {
+        if (count + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, count + length));
+        }
+    }
+}
@@ -22,6 +22,10 @@ import java.io.IOException;
 public class DefaultMqttWriter implements MqttWriter {
     private final WriteBuffer writeBuffer;
     private int size;
+    /**
+     * 累计写入的字节数
+     */
+    private volatile long writtenBytes;
 
     public DefaultMqttWriter(WriteBuffer writeBuffer) {
         this.writeBuffer = writeBuffer;
@@ -29,6 +33,7 @@ public class DefaultMqttWriter implements MqttWriter {
 
     @Override
     public void reset() {
+        writtenBytes += size;
         size = 0;
     }
 
@@ -59,6 +64,13 @@ public class DefaultMqttWriter implements MqttWriter {
         writeBuffer.write(data);
     }
 
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        ValidateUtils.isTrue(size != 0, "error: writeShort can't write data, because writer is empty");
+        size += length;
+        writeBuffer.write(data, offset, length);
+    }
+
     @Override
     public void flush() {
         writeBuffer.flush();
@@ -68,4 +80,11 @@ public class DefaultMqttWriter implements MqttWriter {
     public int writeSize() {
         return size;
     }
+
+    /**
+     * 累计写入缓冲区的字节数，不含正在编码的报文
+     */
+    public long getWrittenBytes() {
+        return writtenBytes;
+    }
 }
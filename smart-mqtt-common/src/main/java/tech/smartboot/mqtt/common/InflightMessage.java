@@ -17,8 +17,10 @@ import tech.smartboot.mqtt.common.message.MqttPublishMessage;
 import tech.smartboot.mqtt.common.message.MqttSubscribeMessage;
 import tech.smartboot.mqtt.common.message.MqttUnsubscribeMessage;
 import tech.smartboot.mqtt.common.message.variable.MqttPacketIdVariableHeader;
+import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author 三刀（zhengjunweimail@163.com）
@@ -45,6 +47,11 @@ public class InflightMessage {
 
     private long latestTime;
 
+    /**
+     * 消息的过期时间点，由PUBLISH报文的消息过期间隔推算，0表示永不过期
+     */
+    private long expireTime;
+
     public InflightMessage(int packetId, MqttPacketIdentifierMessage<? extends MqttPacketIdVariableHeader> originalMessage) {
         this.assignedPacketId = packetId;
         this.originalMessage = originalMessage;
@@ -63,6 +70,12 @@ public class InflightMessage {
         }
 
         this.latestTime = System.currentTimeMillis();
+        if (originalMessage instanceof MqttPublishMessage) {
+            PublishProperties properties = ((MqttPublishMessage) originalMessage).getVariableHeader().getProperties();
+            if (properties != null && properties.getMessageExpiryInterval() > 0) {
+                this.expireTime = latestTime + TimeUnit.SECONDS.toMillis(properties.getMessageExpiryInterval());
+            }
+        }
     }
 
     public MqttPacketIdentifierMessage<? extends MqttPacketIdVariableHeader> getOriginalMessage() {
@@ -102,6 +115,13 @@ public class InflightMessage {
         this.latestTime = latestTime;
     }
 
+    /**
+     * 消息是否已过期，过期的PUBLISH报文不再重发
+     */
+    public boolean isExpired(long now) {
+        return expireTime > 0 && now >= expireTime;
+    }
+
     public int getAssignedPacketId() {
         return assignedPacketId;
     }
@@ -13,6 +13,7 @@ package tech.smartboot.mqtt.common;
 import io.github.smartboot.socket.timer.Timer;
 import tech.smartboot.mqtt.common.enums.MqttMessageType;
 import tech.smartboot.mqtt.common.enums.MqttVersion;
+import tech.smartboot.mqtt.common.exception.MessageExpiredException;
 import tech.smartboot.mqtt.common.exception.MqttException;
 import tech.smartboot.mqtt.common.message.MessageBuilder;
 import tech.smartboot.mqtt.common.message.MqttFixedHeader;
@@ -90,7 +91,8 @@ public class InflightQueue {
                 if (i < 0) {
                     i = queue.length - 1;
                 }
-                queue[i].getFuture().thenRun(runnable);
+                //过期的消息以异常完成，同样需要触发回调
+                queue[i].getFuture().whenComplete((message, throwable) -> runnable.run());
             } else {
                 inflightMessage = enqueue(publishBuilder);
             }
@@ -155,6 +157,11 @@ public class InflightQueue {
                 switch (inflightMessage.getExpectMessageType()) {
                     case PUBACK:
                     case PUBREC:
+                        //消息已过期，放弃重发并释放飞行窗口
+                        if (inflightMessage.isExpired(inflightMessage.getLatestTime())) {
+                            expire(inflightMessage);
+                            return;
+                        }
                         MqttPublishMessage mqttMessage = (MqttPublishMessage) inflightMessage.getOriginalMessage();
                         MqttFixedHeader mqttFixedHeader = MqttFixedHeader.getInstance(mqttMessage.getFixedHeader().getMessageType(), true, mqttMessage.getFixedHeader().getQosLevel().value(), mqttMessage.getFixedHeader().isRetain());
                         MqttPublishMessage dupMessage = new MqttPublishMessage(mqttFixedHeader, mqttMessage.getVariableHeader(), mqttMessage.getPayload().getPayload());
@@ -185,6 +192,18 @@ public class InflightQueue {
         }, TimeUnit.SECONDS.toMillis(TIMEOUT) - (System.currentTimeMillis() - inflightMessage.getLatestTime()), TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * 丢弃已过期的消息，并对新的队首消息启动超时重发监测。过期消息的future以MessageExpiredException异常完成
+     */
+    private void expire(InflightMessage inflightMessage) {
+        commit(inflightMessage);
+        Runnable runnable = session.retryRunnable;
+        if (runnable != null) {
+            session.retryRunnable = null;
+            runnable.run();
+        }
+    }
+
     /**
      * 理论上该方法只会被读回调线程触发
      */
@@ -251,7 +270,7 @@ public class InflightQueue {
         if (takeIndex == queue.length) {
             takeIndex = 0;
         }
-        inflightMessage.getFuture().complete(inflightMessage.getResponseMessage());
+        complete(inflightMessage);
         while (count > 0 && queue[takeIndex].isCommit()) {
             inflightMessage = queue[takeIndex];
             queue[takeIndex++] = null;
@@ -259,7 +278,7 @@ public class InflightQueue {
                 takeIndex = 0;
             }
             count--;
-            inflightMessage.getFuture().complete(inflightMessage.getResponseMessage());
+            complete(inflightMessage);
         }
         if (count > 0) {
             //注册超时监听任务
@@ -267,4 +286,16 @@ public class InflightQueue {
             session.retryRunnable = () -> session.getInflightQueue().retry(monitorMessage);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 以收到的响应完成消息，过期的消息未收到响应，以MessageExpiredException异常完成
+     */
+    private static void complete(InflightMessage inflightMessage) {
+        MqttPacketIdentifierMessage<? extends MqttPacketIdVariableHeader> responseMessage = inflightMessage.getResponseMessage();
+        if (responseMessage == null) {
+            inflightMessage.getFuture().completeExceptionally(new MessageExpiredException(inflightMessage.getAssignedPacketId()));
+        } else {
+            inflightMessage.getFuture().complete(responseMessage);
+        }
+    }
+}
@@ -11,6 +11,7 @@
 package tech.smartboot.mqtt.common;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * @author 三刀（zhengjunweimail@163.com）
@@ -27,6 +28,13 @@ public interface MqttWriter {
 
     void write(byte[] data) throws IOException;
 
+    /**
+     * 写入字节数组的指定区间，实现类应覆盖此方法以避免数组拷贝
+     */
+    default void write(byte[] data, int offset, int length) throws IOException {
+        write(Arrays.copyOfRange(data, offset, offset + length));
+    }
+
     void flush();
 
     int writeSize();
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.common;
+
+import tech.smartboot.mqtt.common.message.MqttPublishMessage;
+import tech.smartboot.mqtt.common.message.variable.MqttPublishVariableHeader;
+import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * MQTT 5.0 发送方向的主题别名分配
+ * <p>
+ * 主题首次发送时分配别名，报文同时携带主题名与别名以建立映射；再次发送时仅携带别名，主题名留空。
+ * 别名数量达到对端声明的最大值后，按LRU淘汰最久未使用的主题并复用其别名。
+ * </p>
+ * <p>
+ * 非线程安全，须在会话的写锁内调用，保证别名的分配顺序与报文写出顺序一致。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public final class TopicAliasAllocator {
+    /**
+     * 长度为0的主题名编码
+     */
+    private static final byte[] EMPTY_TOPIC = new byte[2];
+    private final int maximum;
+    /**
+     * 编码后的主题名 -> 别名，按访问顺序排列
+     */
+    private final LinkedHashMap<ByteBuffer, Integer> aliases;
+
+    public TopicAliasAllocator(int maximum) {
+        this.maximum = maximum;
+        this.aliases = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * 为待发送的报文设置主题别名
+     * <p>
+     * 已预编码的报文可能被多个会话共享，保持原样发送。
+     * </p>
+     *
+     * @return 实际写出的报文
+     */
+    public MqttPublishMessage apply(MqttPublishMessage message) {
+        if (message.isEncoded()) {
+            return message;
+        }
+        MqttPublishVariableHeader header = message.getVariableHeader();
+        PublishProperties properties = header.getProperties();
+        byte[] encodedTopic = header.getEncodedTopic();
+        if (properties == null || encodedTopic == null) {
+            return message;
+        }
+        ByteBuffer key = ByteBuffer.wrap(encodedTopic);
+        Integer alias = aliases.get(key);
+        if (alias != null) {
+            properties.setTopicAlias(alias);
+            MqttPublishVariableHeader variableHeader = new MqttPublishVariableHeader(header.getPacketId(), EMPTY_TOPIC, properties);
+            return new MqttPublishMessage(message.getFixedHeader(), variableHeader, message.getPayload().getPayload());
+        }
+        if (aliases.size() < maximum) {
+            alias = aliases.size() + 1;
+        } else {
+            Map.Entry<ByteBuffer, Integer> eldest = aliases.entrySet().iterator().next();
+            alias = eldest.getValue();
+            aliases.remove(eldest.getKey());
+        }
+        aliases.put(key, alias);
+        properties.setTopicAlias(alias);
+        return message;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.common;
+
+import tech.smartboot.mqtt.common.message.MqttPublishMessage;
+import tech.smartboot.mqtt.common.message.variable.MqttPublishVariableHeader;
+import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
+import tech.smartboot.mqtt.common.util.MqttUtil;
+
+/**
+ * MQTT 5.0 接收方向的主题别名映射
+ * <p>
+ * 发送方在PUBLISH报文中同时携带主题名与主题别名时建立映射，此后可仅携带别名、主题名留空。
+ * 映射仅在当前网络连接内有效，别名取值范围为 1 ~ 接收方在CONNECT/CONNACK中声明的主题别名最大值。
+ * </p>
+ * <p>
+ * 同一连接的PUBLISH报文由读线程依次处理，无需加锁。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public final class TopicAliasResolver {
+    private final String[] topics;
+
+    public TopicAliasResolver(int maximum) {
+        this.topics = new String[maximum + 1];
+    }
+
+    public int getMaximum() {
+        return topics.length - 1;
+    }
+
+    /**
+     * 解析报文中的主题别名，返回携带完整主题名的报文
+     *
+     * @return 未使用别名或已携带主题名时返回原报文；别名无效时返回null
+     */
+    public MqttPublishMessage resolve(MqttPublishMessage message) {
+        MqttPublishVariableHeader header = message.getVariableHeader();
+        PublishProperties properties = header.getProperties();
+        int alias = properties == null ? 0 : properties.getTopicAlias();
+        if (alias == 0) {
+            return message;
+        }
+        if (alias >= topics.length) {
+            return null;
+        }
+        String topicName = header.getTopicName();
+        if (MqttUtil.isNotBlank(topicName)) {
+            topics[alias] = topicName;
+            return message;
+        }
+        topicName = topics[alias];
+        if (topicName == null) {
+            return null;
+        }
+        MqttPublishVariableHeader variableHeader = new MqttPublishVariableHeader(header.getPacketId(), topicName, properties);
+        return new MqttPublishMessage(message.getFixedHeader(), variableHeader, message.getPayload().getPayload());
+    }
+}
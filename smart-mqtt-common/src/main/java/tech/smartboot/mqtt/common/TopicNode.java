@@ -63,4 +63,9 @@ public class TopicNode {
         }
         return false;
     }
+
+    @Override
+    public String toString() {
+        return node.substring(begin, end);
+    }
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.common.exception;
+
+/**
+ * 飞行窗口中的消息在收到确认前已过期，放弃重发
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public class MessageExpiredException extends MqttException {
+    private static final long serialVersionUID = -3916387462093816547L;
+    private final int packetId;
+
+    public MessageExpiredException(int packetId) {
+        super("message expired before acknowledged, packetId: " + packetId, (Throwable) null);
+        this.packetId = packetId;
+    }
+
+    public int getPacketId() {
+        return packetId;
+    }
+}
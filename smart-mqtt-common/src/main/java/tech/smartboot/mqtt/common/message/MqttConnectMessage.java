@@ -17,7 +17,7 @@ import tech.smartboot.mqtt.common.message.payload.WillMessage;
 import tech.smartboot.mqtt.common.message.variable.MqttConnectVariableHeader;
 import tech.smartboot.mqtt.common.message.variable.properties.ConnectProperties;
 import tech.smartboot.mqtt.common.message.variable.properties.WillProperties;
-import tech.smartboot.mqtt.common.util.TopicByteTree;
+import tech.smartboot.mqtt.common.util.TopicNameCache;
 
 import java.nio.ByteBuffer;
 
@@ -96,7 +96,7 @@ public class MqttConnectMessage extends MqttVariableMessage<MqttConnectVariableH
                 willProperties.decode(buffer);
                 willMessage.setProperties(willProperties);
             }
-            willMessage.setTopic(TopicByteTree.DEFAULT_INSTANCE.search(buffer));
+            willMessage.setTopic(TopicNameCache.DEFAULT_INSTANCE.intern(buffer));
             willMessage.setPayload(MqttCodecUtil.decodeByteArray(buffer));
         }
         String decodedUserName = null;
@@ -66,6 +66,13 @@ public abstract class MqttMessage {
     public final void write(MqttWriter mqttWriter) throws IOException {
         ValidateUtils.isTrue(mqttWriter.writeSize() == 0, "invalid write size");
         try {
+            byte[] encodedBytes = getEncodedBytes();
+            //已预编码的报文直接输出
+            if (encodedBytes != null) {
+                mqttWriter.writeByte(encodedBytes[0]);
+                mqttWriter.write(encodedBytes, 1, encodedBytes.length - 1);
+                return;
+            }
             MqttVariableHeader variableHeader = getVariableHeader();
             MqttPayload mqttPayload = getPayload();
             //剩余长度等于可变报头的长度（10 字节）加上有效载荷的长度。
@@ -88,6 +95,13 @@ public abstract class MqttMessage {
 
     public abstract MqttVariableHeader getVariableHeader();
 
+    /**
+     * 预编码的完整报文，为null时按报文结构实时编码
+     */
+    protected byte[] getEncodedBytes() {
+        return null;
+    }
+
     protected MqttPayload getPayload() {
         return NONE_PAYLOAD;
     }
@@ -10,12 +10,15 @@
 
 package tech.smartboot.mqtt.common.message;
 
+import tech.smartboot.mqtt.common.ByteArrayMqttWriter;
 import tech.smartboot.mqtt.common.enums.MqttVersion;
+import tech.smartboot.mqtt.common.exception.MqttException;
 import tech.smartboot.mqtt.common.message.payload.MqttPublishPayload;
 import tech.smartboot.mqtt.common.message.variable.MqttPublishVariableHeader;
 import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
-import tech.smartboot.mqtt.common.util.TopicByteTree;
+import tech.smartboot.mqtt.common.util.TopicNameCache;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 
 /**
@@ -25,6 +28,10 @@ import java.nio.ByteBuffer;
 public class MqttPublishMessage extends MqttPacketIdentifierMessage<MqttPublishVariableHeader> {
     private static final MqttPublishPayload EMPTY_BYTES = new MqttPublishPayload(new byte[0]);
     private MqttPublishPayload payload;
+    /**
+     * 预编码的完整报文，同一报文推送给多个订阅者时复用，避免重复编码
+     */
+    private byte[] encodedBytes;
 
     public MqttPublishMessage(MqttFixedHeader mqttFixedHeader) {
         super(mqttFixedHeader);
@@ -38,7 +45,7 @@ public class MqttPublishMessage extends MqttPacketIdentifierMessage<MqttPublishV
 
     @Override
     public void decodeVariableHeader0(ByteBuffer buffer, final MqttVersion version) {
-        final String topic = TopicByteTree.DEFAULT_INSTANCE.search(buffer);
+        final String topic = TopicNameCache.DEFAULT_INSTANCE.intern(buffer);
         int packetId = -1;
         //只有当 QoS 等级是 1 或 2 时，报文标识符（Packet Identifier）字段才能出现在 PUBLISH 报文中。
         if (fixedHeader.getQosLevel().value() > 0) {
@@ -73,4 +80,33 @@ public class MqttPublishMessage extends MqttPacketIdentifierMessage<MqttPublishV
     public MqttPublishPayload getPayload() {
         return payload;
     }
+
+    /**
+     * 将报文预编码为字节数组，此后每次写出直接复制编码结果。
+     * <p>
+     * 适用于无报文标识符、可在多个会话间共享的QoS0报文。
+     * </p>
+     */
+    public MqttPublishMessage encode() {
+        ByteArrayMqttWriter writer = new ByteArrayMqttWriter(payload.getPayload().length + 64);
+        try {
+            write(writer);
+        } catch (IOException e) {
+            throw new MqttException("encode publish message exception", e);
+        }
+        encodedBytes = writer.toByteArray();
+        return this;
+    }
+
+    /**
+     * 是否已预编码，预编码的报文可能被多个会话共享，不可再修改
+     */
+    public boolean isEncoded() {
+        return encodedBytes != null;
+    }
+
+    @Override
+    protected byte[] getEncodedBytes() {
+        return encodedBytes;
+    }
 }
@@ -44,6 +44,13 @@ public class MqttPublishVariableHeader extends MqttPacketIdVariableHeader<Publis
         return topicName;
     }
 
+    /**
+     * 编码后的主题名，仅待发送的报文持有
+     */
+    public byte[] getEncodedTopic() {
+        return encodedTopic;
+    }
+
     @Override
     protected int preEncode0() {
         int length = getPacketId() > 0 ? 2 : 0;
@@ -174,10 +174,9 @@ public class MqttProperties {
                     break;
                 //消息过期间隔
                 case MqttPropertyConstant.MESSAGE_EXPIRY_INTERVAL:
+                    //包含多个消息过期间隔将导致协议错误（Protocol Error）
                     ValidateUtils.isTrue((MqttPropertyConstant.MESSAGE_EXPIRY_INTERVAL_BIT & validBites) > 0, "");
                     validBites &= ~MqttPropertyConstant.MESSAGE_EXPIRY_INTERVAL_BIT;
-                    //包含多个消息过期间隔将导致协议错误（Protocol Error）
-                    ValidateUtils.isTrue(messageExpiryInterval == -1, "");
                     messageExpiryInterval = buffer.getInt();
                     ValidateUtils.isTrue(messageExpiryInterval > 0, "");
                     break;
@@ -447,10 +446,9 @@ public class MqttProperties {
             length += 2;
         }
         if (userProperties.size() > 0 && (MqttPropertyConstant.USER_PROPERTY_BIT & validBites) > 0) {
-            length += 1;
             for (UserProperty userProperty : userProperties) {
                 userProperty.decode();
-                length += userProperty.getKeyBytes().length + userProperty.getValueBytes().length;
+                length += 1 + userProperty.getKeyBytes().length + userProperty.getValueBytes().length;
             }
         }
         if (maximumPacketSize > 0 && (MqttPropertyConstant.MAXIMUM_PACKET_SIZE_BIT & validBites) > 0) {
@@ -559,8 +557,9 @@ public class MqttProperties {
             writer.writeByte(retainAvailable);
         }
         if (userProperties.size() > 0 && (MqttPropertyConstant.USER_PROPERTY_BIT & validBites) > 0) {
-            writer.writeByte(MqttPropertyConstant.USER_PROPERTY);
+            //每个用户属性都需携带属性标识符
             for (UserProperty userProperty : userProperties) {
+                writer.writeByte(MqttPropertyConstant.USER_PROPERTY);
                 writer.write(userProperty.getKeyBytes());
                 writer.write(userProperty.getValueBytes());
             }
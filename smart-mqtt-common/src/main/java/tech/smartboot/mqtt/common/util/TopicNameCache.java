@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.common.util;
+
+import tech.smartboot.mqtt.common.TopicToken;
+import tech.smartboot.mqtt.common.message.MqttCodecUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 主题名称缓存，解码报文时复用相同主题的String对象，避免重复解码及创建对象。
+ * <p>
+ * 缓存分为两级：
+ * <ul>
+ *   <li>线程本地缓存 - 按哈希值直接映射的小数组，命中时无需加锁，IO线程反复解码的热点主题均在此命中</li>
+ *   <li>共享缓存 - 按哈希值分段的LRU表，总容量受maxSize限制，超出后淘汰最久未使用的主题</li>
+ * </ul>
+ * </p>
+ * <p>
+ * 查找时直接以报文中的字节比较，命中缓存不产生新对象；主题按UTF-8解码。
+ * 匹配bypassFilters的主题（如请求/响应模式中每次唯一的主题）不进入缓存，避免挤占热点主题。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public final class TopicNameCache {
+    public static final TopicNameCache DEFAULT_INSTANCE = new TopicNameCache(100000);
+    private static final int SEGMENT_COUNT = 16;
+    private static final int LOCAL_CACHE_SIZE = 256;
+    /**
+     * 单个缓存项除主题字节及字符以外的估算内存开销（字节），含缓存项、String对象及LRU表节点
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+    private static final TopicToken[] EMPTY_FILTERS = new TopicToken[0];
+
+    private volatile Segment[] segments;
+    private volatile TopicToken[] bypassFilters = EMPTY_FILTERS;
+    /**
+     * 配置变更的版本号，线程本地缓存据此失效
+     */
+    private volatile int generation;
+    private final ThreadLocal<LocalCache> localCache = ThreadLocal.withInitial(LocalCache::new);
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder bypassCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final AtomicLong memoryUsage = new AtomicLong();
+
+    public TopicNameCache(int maxSize) {
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * 解码报文中的主题名称，buffer需位于主题长度字段处，返回后位于主题之后
+     *
+     * @throws IllegalStateException 主题名称包含通配符
+     */
+    public String intern(ByteBuffer buffer) {
+        final int length = MqttCodecUtil.decodeMsbLsb(buffer);
+        final int position = buffer.position();
+        if (length > buffer.remaining()) {
+            throw new IllegalStateException("invalid topic length " + length);
+        }
+        final int hash = hash(buffer, position, length);
+        LocalCache local = localCache.get();
+        if (local.generation != generation) {
+            local.reset(generation);
+        }
+        int slot = hash & (LOCAL_CACHE_SIZE - 1);
+        Entry entry = local.entries[slot];
+        if (entry != null && entry.matches(buffer, position, length, hash)) {
+            hitCount.increment();
+        } else {
+            entry = lookup(buffer, position, length, hash, local.probe);
+            if (entry.cached) {
+                local.entries[slot] = entry;
+            }
+        }
+        buffer.position(position + length);
+        return entry.topic;
+    }
+
+    private Entry lookup(ByteBuffer buffer, int position, int length, int hash, Probe probe) {
+        Segment segment = segments[(hash ^ (hash >>> 16)) & (SEGMENT_COUNT - 1)];
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(probe.set(buffer, position, length, hash));
+        }
+        probe.set(null, 0, 0, 0);
+        if (entry != null) {
+            hitCount.increment();
+            return entry;
+        }
+        missCount.increment();
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(position + i);
+        }
+        String topic = new String(bytes, StandardCharsets.UTF_8);
+        //PUBLISH 报文中的主题名不能包含通配符
+        if (MqttUtil.containsTopicWildcards(topic)) {
+            throw new IllegalStateException("invalid publish topic name: " + topic + " (contains wildcards)");
+        }
+        if (segment.capacity == 0 || isBypass(topic)) {
+            bypassCount.increment();
+            return new Entry(bytes, hash, topic, false);
+        }
+        Entry newEntry = new Entry(bytes, hash, topic, true);
+        synchronized (segment) {
+            entry = segment.putIfAbsent(newEntry, newEntry);
+        }
+        if (entry != null) {
+            return entry;
+        }
+        memoryUsage.addAndGet(newEntry.memoryUsage());
+        return newEntry;
+    }
+
+    private boolean isBypass(String topic) {
+        TopicToken[] filters = bypassFilters;
+        if (filters.length == 0) {
+            return false;
+        }
+        TopicToken topicToken = new TopicToken(topic);
+        for (TopicToken filter : filters) {
+            if (MqttUtil.match(topicToken, filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 设置缓存的主题数量上限并清空缓存，为0时不缓存主题
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        ValidateUtils.isTrue(maxSize >= 0, "invalid maxSize: " + maxSize);
+        Segment[] newSegments = new Segment[SEGMENT_COUNT];
+        int capacity = (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            newSegments[i] = new Segment(capacity);
+        }
+        segments = newSegments;
+        memoryUsage.set(0);
+        generation++;
+    }
+
+    /**
+     * 设置不进入缓存的主题过滤器，支持通配符
+     */
+    public synchronized void setBypassFilters(Collection<String> topicFilters) {
+        TopicToken[] filters = new TopicToken[topicFilters.size()];
+        int i = 0;
+        for (String topicFilter : topicFilters) {
+            filters[i++] = new TopicToken(topicFilter);
+        }
+        bypassFilters = filters;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.values().removeIf(entry -> {
+                    if (isBypass(entry.topic)) {
+                        memoryUsage.addAndGet(-entry.memoryUsage());
+                        return true;
+                    }
+                    return false;
+                });
+            }
+        }
+        generation++;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * 未进入缓存的主题解码次数，含匹配bypassFilters及缓存关闭的情况
+     */
+    public long getBypassCount() {
+        return bypassCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 共享缓存占用内存的估算值（字节）
+     */
+    public long getMemoryUsage() {
+        return memoryUsage.get();
+    }
+
+    private static int hash(ByteBuffer buffer, int position, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer.get(position + i);
+        }
+        return hash;
+    }
+
+    private static final class Entry {
+        private final byte[] bytes;
+        private final int hash;
+        private final String topic;
+        /**
+         * 是否已存入共享缓存
+         */
+        private final boolean cached;
+
+        Entry(byte[] bytes, int hash, String topic, boolean cached) {
+            this.bytes = bytes;
+            this.hash = hash;
+            this.topic = topic;
+            this.cached = cached;
+        }
+
+        boolean matches(ByteBuffer buffer, int position, int length, int hash) {
+            if (this.hash != hash || bytes.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != buffer.get(position + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long memoryUsage() {
+            return ENTRY_OVERHEAD + bytes.length + topic.length() * 2L;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj == this || obj instanceof Entry && hash == ((Entry) obj).hash && Arrays.equals(bytes, ((Entry) obj).bytes);
+        }
+    }
+
+    /**
+     * 以报文中的字节查找缓存项，避免查找时复制字节
+     */
+    private static final class Probe {
+        private ByteBuffer buffer;
+        private int position;
+        private int length;
+        private int hash;
+
+        Probe set(ByteBuffer buffer, int position, int length, int hash) {
+            this.buffer = buffer;
+            this.position = position;
+            this.length = length;
+            this.hash = hash;
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Entry && ((Entry) obj).matches(buffer, position, length, hash);
+        }
+    }
+
+    private final class Segment extends LinkedHashMap<Object, Entry> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+            if (size() <= capacity) {
+                return false;
+            }
+            evictionCount.increment();
+            memoryUsage.addAndGet(-eldest.getValue().memoryUsage());
+            return true;
+        }
+    }
+
+    private static final class LocalCache {
+        private final Entry[] entries = new Entry[LOCAL_CACHE_SIZE];
+        private final Probe probe = new Probe();
+        private int generation = -1;
+
+        void reset(int generation) {
+            Arrays.fill(entries, null);
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.common.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 主题名称缓存的LRU淘汰、bypassFilters、通配符校验及UTF-8解码
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public class TopicNameCacheTest {
+
+    @Test
+    public void testInternReusesInstance() {
+        TopicNameCache cache = new TopicNameCache(100);
+        String topic = cache.intern(encode("test/a"));
+        Assert.assertEquals("test/a", topic);
+        //线程本地缓存及共享缓存命中时均返回同一对象
+        Assert.assertSame(topic, cache.intern(encode("test/a")));
+        Assert.assertSame(topic, internInNewThread(cache, "test/a"));
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.size());
+        Assert.assertTrue(cache.getMemoryUsage() > 0);
+    }
+
+    @Test
+    public void testLruEviction() {
+        //每个分段容量为2
+        TopicNameCache cache = new TopicNameCache(32);
+        List<String> topics = sameSegmentTopics(3);
+        String first = cache.intern(encode(topics.get(0)));
+        String second = cache.intern(encode(topics.get(1)));
+        //经共享缓存访问第一个主题，第二个主题成为最久未使用的主题
+        Assert.assertSame(first, internInNewThread(cache, topics.get(0)));
+        cache.intern(encode(topics.get(2)));
+        Assert.assertEquals(1, cache.getEvictionCount());
+        Assert.assertEquals(2, cache.size());
+
+        long missCount = cache.getMissCount();
+        Assert.assertSame(first, internInNewThread(cache, topics.get(0)));
+        Assert.assertEquals(missCount, cache.getMissCount());
+        String reloaded = internInNewThread(cache, topics.get(1));
+        Assert.assertEquals(second, reloaded);
+        Assert.assertNotSame(second, reloaded);
+        Assert.assertEquals(missCount + 1, cache.getMissCount());
+        Assert.assertEquals(2, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testBypassFilters() {
+        TopicNameCache cache = new TopicNameCache(100);
+        String cached = cache.intern(encode("reply/0"));
+        cache.intern(encode("data/0"));
+        Assert.assertEquals(2, cache.size());
+        long memoryUsage = cache.getMemoryUsage();
+
+        //设置过滤器时移除已缓存的匹配主题，线程本地缓存同时失效
+        cache.setBypassFilters(Collections.singletonList("reply/#"));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertTrue(cache.getMemoryUsage() < memoryUsage);
+        String bypass = cache.intern(encode("reply/0"));
+        Assert.assertEquals(cached, bypass);
+        Assert.assertNotSame(cached, bypass);
+        Assert.assertNotSame(bypass, cache.intern(encode("reply/0")));
+        Assert.assertEquals(2, cache.getBypassCount());
+        Assert.assertEquals(1, cache.size());
+
+        //未匹配的主题仍进入缓存
+        String data = cache.intern(encode("data/1"));
+        Assert.assertSame(data, cache.intern(encode("data/1")));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(2, cache.getBypassCount());
+    }
+
+    @Test
+    public void testDisabledCache() {
+        TopicNameCache cache = new TopicNameCache(0);
+        String topic = cache.intern(encode("test/a"));
+        Assert.assertNotSame(topic, cache.intern(encode("test/a")));
+        Assert.assertEquals(2, cache.getBypassCount());
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getMemoryUsage());
+    }
+
+    @Test
+    public void testRejectWildcards() {
+        //缓存路径
+        TopicNameCache cache = new TopicNameCache(100);
+        assertRejected(cache, "test/+");
+        assertRejected(cache, "test/#");
+        Assert.assertEquals(0, cache.size());
+
+        //匹配bypassFilters的路径
+        cache.setBypassFilters(Collections.singletonList("test/#"));
+        assertRejected(cache, "test/+/a");
+        assertRejected(cache, "test/#");
+        Assert.assertEquals(0, cache.getBypassCount());
+
+        //缓存关闭的路径
+        assertRejected(new TopicNameCache(0), "test/+");
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testUtf8Decoding() {
+        TopicNameCache cache = new TopicNameCache(100);
+        for (String topic : Arrays.asList("主题/温度", "capteur/température", "sensor/😀", "")) {
+            ByteBuffer buffer = encode(topic, (byte) 0x7f);
+            String decoded = cache.intern(buffer);
+            Assert.assertEquals(topic, decoded);
+            //解码后位于主题之后
+            Assert.assertEquals(1, buffer.remaining());
+            Assert.assertEquals(0x7f, buffer.get());
+            Assert.assertSame(decoded, cache.intern(encode(topic)));
+        }
+
+        //主题长度超出报文剩余长度
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        buffer.putShort((short) 10).put((byte) 'a').put((byte) 'b').flip();
+        try {
+            cache.intern(buffer);
+            Assert.fail("topic length exceeds remaining bytes");
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    private static void assertRejected(TopicNameCache cache, String topic) {
+        try {
+            cache.intern(encode(topic));
+            Assert.fail("wildcard topic should be rejected: " + topic);
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().contains(topic));
+        }
+    }
+
+    /**
+     * 在新线程中解码，绕过当前线程的本地缓存直接访问共享缓存
+     */
+    private static String internInNewThread(TopicNameCache cache, String topic) {
+        AtomicReference<String> result = new AtomicReference<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.set(cache.intern(encode(topic)));
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        });
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+        return result.get();
+    }
+
+    /**
+     * 选取落在同一分段的主题，分段算法与TopicNameCache保持一致
+     */
+    private static List<String> sameSegmentTopics(int count) {
+        List<String> topics = new ArrayList<>();
+        int segment = -1;
+        for (int i = 0; topics.size() < count; i++) {
+            String topic = "lru/" + i;
+            int hash = Arrays.hashCode(topic.getBytes(StandardCharsets.UTF_8));
+            int index = (hash ^ (hash >>> 16)) & 15;
+            if (segment == -1) {
+                segment = index;
+            }
+            if (index == segment) {
+                topics.add(topic);
+            }
+        }
+        return topics;
+    }
+
+    private static ByteBuffer encode(String topic, byte... tail) {
+        byte[] bytes = topic.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(2 + bytes.length + tail.length);
+        buffer.putShort((short) bytes.length).put(bytes).put(tail);
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.smartboot.mqtt.broker.topic.BrokerTopicImpl;
+import tech.smartboot.mqtt.common.TopicToken;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 主题树及订阅树的匹配耗时
+ * <p>
+ * 主题按 tenant/site/device/metric 四级组织，订阅以通配符为主，覆盖+、#及共享订阅：
+ * <ul>
+ *   <li>BrokerTopicMatcher：新增订阅时以通配符匹配已有主题</li>
+ *   <li>SubscribeRelationMatcher：新建主题时匹配已有订阅</li>
+ * </ul>
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TopicMatchBenchmark {
+    private static final String[] METRICS = {"temperature", "humidity", "voltage", "status"};
+
+    @Param({"1000", "10000"})
+    public int topicCount;
+
+    @Param({"1000"})
+    public int subscriptionCount;
+
+    private final BrokerTopicMatcher topicMatcher = new BrokerTopicMatcher(null);
+    private final SubscribeRelationMatcher<SessionSubscribeRelation> relationMatcher = new SubscribeRelationMatcher<>();
+    private BrokerTopicImpl[] topics;
+    private SessionSubscribeRelation[] filters;
+    private int index;
+    private int matched;
+    private final Consumer<BrokerTopicImpl> topicConsumer = topic -> matched++;
+    private final Consumer<SessionSubscribeRelation> relationConsumer = relation -> matched++;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(1);
+        int tenants = 10;
+        int sites = 10;
+        int devices = Math.max(1, topicCount / (tenants * sites * METRICS.length));
+        List<BrokerTopicImpl> topicList = new ArrayList<>(topicCount);
+        for (int i = 0; i < topicCount; i++) {
+            String topic = "tenant-" + (i % tenants) + "/site-" + (i / tenants % sites) + "/device-" + (i / (tenants * sites) % devices) + "/" + METRICS[i / (tenants * sites * devices) % METRICS.length];
+            BrokerTopicImpl brokerTopic = new BrokerTopicImpl(topic);
+            topicMatcher.add(brokerTopic);
+            topicList.add(brokerTopic);
+        }
+        topics = topicList.toArray(new BrokerTopicImpl[0]);
+
+        filters = new SessionSubscribeRelation[subscriptionCount];
+        for (int i = 0; i < subscriptionCount; i++) {
+            String tenant = "tenant-" + random.nextInt(tenants);
+            String site = "site-" + random.nextInt(sites);
+            String device = "device-" + random.nextInt(devices);
+            String metric = METRICS[random.nextInt(METRICS.length)];
+            String filter;
+            switch (i % 6) {
+                case 0:
+                    filter = tenant + "/" + site + "/" + device + "/" + metric;
+                    break;
+                case 1:
+                    filter = tenant + "/+/" + device + "/#";
+                    break;
+                case 2:
+                    filter = tenant + "/" + site + "/+/" + metric;
+                    break;
+                case 3:
+                    filter = "+/+/+/" + metric;
+                    break;
+                case 4:
+                    filter = tenant + "/#";
+                    break;
+                default:
+                    filter = "$share/group-" + (i % 4) + "/" + tenant + "/+/+/" + metric;
+                    break;
+            }
+            SessionSubscribeRelation relation = new SessionSubscribeRelation.WildcardTopicRelation(null, new TopicToken(filter), MqttQoS.AT_MOST_ONCE);
+            relationMatcher.add(relation);
+            filters[i] = relation;
+        }
+    }
+
+    @Benchmark
+    public int matchTopics() {
+        matched = 0;
+        SessionSubscribeRelation filter = filters[index++ % filters.length];
+        topicMatcher.match(filter, topicConsumer);
+        return matched;
+    }
+
+    @Benchmark
+    public int matchSubscriptions() {
+        matched = 0;
+        BrokerTopicImpl topic = topics[index++ % topics.length];
+        relationMatcher.match(topic, relationConsumer);
+        return matched;
+    }
+}
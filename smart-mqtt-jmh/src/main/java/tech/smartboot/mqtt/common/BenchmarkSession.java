@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.common;
+
+import tech.smartboot.mqtt.common.enums.MqttVersion;
+import tech.smartboot.mqtt.common.message.MqttPublishMessage;
+
+/**
+ * 不依赖网络连接的会话，编码结果写入可复用的内存缓冲区并在flush时丢弃
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+class BenchmarkSession extends AbstractSession {
+
+    BenchmarkSession(MqttVersion mqttVersion) {
+        this.mqttVersion = mqttVersion;
+        this.mqttWriter = new DiscardMqttWriter();
+    }
+
+    @Override
+    protected void accepted(MqttPublishMessage mqttMessage) {
+    }
+
+    @Override
+    public void disconnect() {
+        disconnect = true;
+    }
+
+    static class DiscardMqttWriter implements MqttWriter {
+        private final byte[] buffer = new byte[64 * 1024];
+        private int count;
+        private int size;
+
+        @Override
+        public void reset() {
+            size = 0;
+        }
+
+        @Override
+        public void writeByte(byte b) {
+            ensureCapacity(1);
+            buffer[count++] = b;
+            size++;
+        }
+
+        @Override
+        public void writeShort(short data) {
+            ensureCapacity(2);
+            buffer[count++] = (byte) (data >>> 8);
+            buffer[count++] = (byte) data;
+            size += 2;
+        }
+
+        @Override
+        public void writeInt(int data) {
+            ensureCapacity(4);
+            buffer[count++] = (byte) (data >>> 24);
+            buffer[count++] = (byte) (data >>> 16);
+            buffer[count++] = (byte) (data >>> 8);
+            buffer[count++] = (byte) data;
+            size += 4;
+        }
+
+        @Override
+        public void write(byte[] data) {
+            write(data, 0, data.length);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(data, offset, buffer, count, length);
+            count += length;
+            size += length;
+        }
+
+        @Override
+        public void flush() {
+            count = 0;
+        }
+
+        @Override
+        public int writeSize() {
+            return size;
+        }
+
+        int count() {
+            return count;
+        }
+
+        /**
+         * 未flush的数据超出缓冲区时直接覆盖
+         */
+        private void ensureCapacity(int length) {
+            if (count + length > buffer.length) {
+                count = 0;
+            }
+        }
+    }
+}
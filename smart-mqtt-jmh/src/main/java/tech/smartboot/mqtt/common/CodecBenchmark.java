@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.common;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.smartboot.mqtt.common.enums.MqttMessageType;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.common.enums.MqttVersion;
+import tech.smartboot.mqtt.common.message.MqttCodecUtil;
+import tech.smartboot.mqtt.common.message.MqttConnectMessage;
+import tech.smartboot.mqtt.common.message.MqttFixedHeader;
+import tech.smartboot.mqtt.common.message.MqttMessage;
+import tech.smartboot.mqtt.common.message.MqttMessageBuilders;
+import tech.smartboot.mqtt.common.message.MqttPingReqMessage;
+import tech.smartboot.mqtt.common.message.MqttPubAckMessage;
+import tech.smartboot.mqtt.common.message.MqttPublishMessage;
+import tech.smartboot.mqtt.common.message.payload.MqttConnectPayload;
+import tech.smartboot.mqtt.common.message.variable.MqttConnectVariableHeader;
+import tech.smartboot.mqtt.common.message.variable.MqttPubQosVariableHeader;
+import tech.smartboot.mqtt.common.message.variable.MqttPublishVariableHeader;
+import tech.smartboot.mqtt.common.message.variable.properties.ConnectProperties;
+import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
+import tech.smartboot.mqtt.common.message.variable.properties.ReasonProperties;
+import tech.smartboot.mqtt.common.message.variable.properties.SubscribeProperties;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各类型报文的解码及编码耗时
+ * <p>
+ * 解码经由MqttHeaderDecoder、MqttPayloadDecoder完成，与MqttProtocol读取网络数据时的路径一致；
+ * 编码经由MqttMessage.write写入内存缓冲区，不含网络IO。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+    private static final byte[] TOPIC = MqttCodecUtil.encodeUTF8("sensors/device-0001/temperature");
+
+    @Param({"CONNECT", "PUBLISH_QOS0", "PUBLISH_QOS1", "PUBACK", "SUBSCRIBE", "PINGREQ"})
+    public String packet;
+
+    @Param({"MQTT_3_1_1", "MQTT_5"})
+    public String version;
+
+    @Param({"64"})
+    public int payloadSize;
+
+    private MqttHeaderDecoder decoder;
+    private BenchmarkSession session;
+    private ByteBuffer encoded;
+    private MqttMessage message;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        MqttVersion mqttVersion = MqttVersion.valueOf(version);
+        boolean mqtt5 = mqttVersion == MqttVersion.MQTT_5;
+        message = newMessage(packet, mqtt5, new byte[payloadSize]);
+        decoder = new MqttHeaderDecoder(1024 * 1024);
+        session = new BenchmarkSession(mqttVersion);
+
+        ByteArrayMqttWriter writer = new ByteArrayMqttWriter(256);
+        message.write(writer);
+        encoded = ByteBuffer.wrap(writer.toByteArray());
+    }
+
+    @Benchmark
+    public MqttMessage decode() {
+        encoded.position(0);
+        decoder.decode(encoded, session);
+        MqttMessage decoded = session.mqttMessage;
+        session.mqttMessage = null;
+        return decoded;
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        BenchmarkSession.DiscardMqttWriter writer = (BenchmarkSession.DiscardMqttWriter) session.mqttWriter;
+        message.write(writer);
+        int count = writer.count();
+        writer.flush();
+        return count;
+    }
+
+    static MqttMessage newMessage(String packet, boolean mqtt5, byte[] payload) {
+        switch (packet) {
+            case "CONNECT": {
+                MqttConnectVariableHeader variableHeader = new MqttConnectVariableHeader(mqtt5 ? MqttVersion.MQTT_5 : MqttVersion.MQTT_3_1_1,
+                        false, false, null, true, 60, mqtt5 ? new ConnectProperties() : null);
+                return new MqttConnectMessage(variableHeader, new MqttConnectPayload("jmh-client-0001", null, null, null));
+            }
+            case "PUBLISH_QOS0":
+                return new MqttPublishMessage(MqttFixedHeader.PUB_QOS0_HEADER,
+                        new MqttPublishVariableHeader(-1, TOPIC, mqtt5 ? new PublishProperties() : null), payload);
+            case "PUBLISH_QOS1":
+                return new MqttPublishMessage(MqttFixedHeader.getInstance(MqttMessageType.PUBLISH, false, MqttQoS.AT_LEAST_ONCE.value(), false),
+                        new MqttPublishVariableHeader(1, TOPIC, mqtt5 ? new PublishProperties() : null), payload);
+            case "PUBACK":
+                return new MqttPubAckMessage(new MqttPubQosVariableHeader(1, mqtt5 ? new ReasonProperties() : null));
+            case "SUBSCRIBE":
+                return MqttMessageBuilders.subscribe()
+                        .addSubscription(MqttQoS.AT_LEAST_ONCE, "sensors/+/temperature")
+                        .addSubscription(MqttQoS.AT_MOST_ONCE, "alarms/#")
+                        .subscribeProperties(mqtt5 ? new SubscribeProperties() : null)
+                        .packetId(1)
+                        .build();
+            case "PINGREQ":
+                return new MqttPingReqMessage();
+            default:
+                throw new IllegalArgumentException("unknown packet: " + packet);
+        }
+    }
+}
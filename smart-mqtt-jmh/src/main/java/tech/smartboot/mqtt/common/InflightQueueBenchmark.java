@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.common;
+
+import io.github.smartboot.socket.timer.HashedWheelTimer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.smartboot.mqtt.common.enums.MqttMessageType;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.common.enums.MqttVersion;
+import tech.smartboot.mqtt.common.message.MessageBuilder;
+import tech.smartboot.mqtt.common.message.MqttCodecUtil;
+import tech.smartboot.mqtt.common.message.MqttFixedHeader;
+import tech.smartboot.mqtt.common.message.MqttPubAckMessage;
+import tech.smartboot.mqtt.common.message.MqttPublishMessage;
+import tech.smartboot.mqtt.common.message.variable.MqttPubQosVariableHeader;
+import tech.smartboot.mqtt.common.message.variable.MqttPublishVariableHeader;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QoS1消息经InflightQueue发送及确认的耗时
+ * <p>
+ * 队列中始终保留window条未确认的消息，每次操作发送一条新消息并确认最早的一条，
+ * 模拟持续发送时的稳定状态。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InflightQueueBenchmark {
+    @Param({"16"})
+    public int inflight;
+
+    @Param({"1", "8"})
+    public int window;
+
+    private HashedWheelTimer timer;
+    private InflightQueue queue;
+    private PublishBuilder builder;
+    /**
+     * 按packetId缓存的PUBACK报文
+     */
+    private final MqttPubAckMessage[] acks = new MqttPubAckMessage[65536];
+    private int[] outstanding;
+    private int head;
+    private int tail;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        timer = new HashedWheelTimer(r -> {
+            Thread thread = new Thread(r, "jmh-inflight-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        queue = new InflightQueue(new BenchmarkSession(MqttVersion.MQTT_3_1_1), inflight, timer);
+        builder = new PublishBuilder(new byte[64]);
+        outstanding = new int[window + 1];
+        for (int i = 0; i < window; i++) {
+            offer();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        timer.shutdown();
+    }
+
+    @Benchmark
+    public void offerAndAck() {
+        offer();
+        int packetId = outstanding[head];
+        head = (head + 1) % outstanding.length;
+        MqttPubAckMessage ack = acks[packetId];
+        if (ack == null) {
+            ack = acks[packetId] = new MqttPubAckMessage(new MqttPubQosVariableHeader(packetId, null));
+        }
+        queue.notify(ack);
+    }
+
+    private void offer() {
+        queue.offer(builder);
+        outstanding[tail] = builder.packetId;
+        tail = (tail + 1) % outstanding.length;
+    }
+
+    private static class PublishBuilder implements MessageBuilder<MqttPublishMessage> {
+        private static final byte[] TOPIC = MqttCodecUtil.encodeUTF8("sensors/device-0001/temperature");
+        private static final MqttFixedHeader HEADER = MqttFixedHeader.getInstance(MqttMessageType.PUBLISH, false, MqttQoS.AT_LEAST_ONCE.value(), false);
+        private final byte[] payload;
+        private int packetId;
+
+        PublishBuilder(byte[] payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        public MessageBuilder packetId(int packetId) {
+            this.packetId = packetId;
+            return this;
+        }
+
+        @Override
+        public MqttQoS qos() {
+            return MqttQoS.AT_LEAST_ONCE;
+        }
+
+        @Override
+        public MqttPublishMessage build() {
+            return new MqttPublishMessage(HEADER, new MqttPublishVariableHeader(packetId, TOPIC, null), payload);
+        }
+    }
+}
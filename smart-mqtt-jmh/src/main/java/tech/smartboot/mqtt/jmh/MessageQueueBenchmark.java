@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.smartboot.mqtt.broker.topic.MemoryMessageStoreQueue;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.plugin.spec.Message;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 主题内存消息队列的写入及读取耗时
+ * <p>
+ * 单线程分别测量put、get；concurrent组中两个线程写入、两个线程按最新offset读取，
+ * 对应多个客户端向同一主题发布、多个订阅者并发推送的场景。
+ * </p>
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class MessageQueueBenchmark {
+    @Param({"1024", "65536"})
+    public int capacity;
+
+    private final byte[] payload = new byte[64];
+    private MemoryMessageStoreQueue queue;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        queue = new MemoryMessageStoreQueue(capacity);
+        for (int i = 0; i < capacity; i++) {
+            queue.put(new Message(MqttQoS.AT_MOST_ONCE, payload, false));
+        }
+    }
+
+    @Benchmark
+    public long put() {
+        Message message = new Message(MqttQoS.AT_MOST_ONCE, payload, false);
+        queue.put(message);
+        return message.getOffset();
+    }
+
+    @Benchmark
+    public Message get(Cursor cursor) {
+        long latestOffset = queue.getLatestOffset();
+        return queue.get(latestOffset - (cursor.next++ & (capacity - 1)));
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(2)
+    public long concurrentPut() {
+        return put();
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(2)
+    public Message concurrentGet(Cursor cursor) {
+        return get(cursor);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        long next;
+    }
+}
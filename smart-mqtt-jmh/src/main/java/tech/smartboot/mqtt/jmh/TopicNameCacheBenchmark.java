@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tech.smartboot.mqtt.common.message.MqttCodecUtil;
+import tech.smartboot.mqtt.common.util.TopicNameCache;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解码PUBLISH报文时按字节查找主题名称的耗时，主题均已进入共享缓存，
+ * 主题数超出线程本地缓存的容量时部分查找需经由共享缓存
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TopicNameCacheBenchmark {
+    @Param({"100", "10000"})
+    public int topicCount;
+
+    private TopicNameCache cache;
+    private ByteBuffer[] encodedTopics;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cache = new TopicNameCache(topicCount);
+        encodedTopics = new ByteBuffer[topicCount];
+        for (int i = 0; i < topicCount; i++) {
+            String topic = "tenant-" + (i % 10) + "/site-" + (i / 10 % 10) + "/device-" + (i / 100) + "/temperature";
+            encodedTopics[i] = ByteBuffer.wrap(MqttCodecUtil.encodeUTF8(topic));
+            search(encodedTopics[i]);
+        }
+    }
+
+    @Benchmark
+    public String search() {
+        return search(encodedTopics[index++ % encodedTopics.length]);
+    }
+
+    private String search(ByteBuffer buffer) {
+        buffer.position(0);
+        return cache.intern(buffer);
+    }
+}
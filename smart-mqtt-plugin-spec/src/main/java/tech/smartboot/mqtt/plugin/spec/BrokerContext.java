@@ -16,6 +16,10 @@ import tech.smartboot.mqtt.plugin.spec.bus.EventBus;
 import tech.smartboot.mqtt.plugin.spec.bus.MessageBus;
 import tech.smartboot.mqtt.plugin.spec.provider.Providers;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
 /**
  * @author 三刀
  * @version V1.0 , 2018/4/26
@@ -49,6 +53,14 @@ public interface BrokerContext {
      */
     EventBus getEventBus();
 
+    /**
+     * 遍历当前节点客户端订阅的主题过滤器，共享订阅以"$share/{group}/{filter}"的形式返回，默认不返回任何主题过滤器
+     *
+     * @param consumer 主题过滤器的处理器
+     */
+    default void forEachTopicFilter(Consumer<String> consumer) {
+    }
+
     Timer getTimer();
 
     Providers getProviders();
@@ -62,4 +74,31 @@ public interface BrokerContext {
      */
     BufferPagePool bufferPagePool();
 
+    /**
+     * 获取消息推送线程的运行状态
+     *
+     * @return 各推送分片的运行状态
+     */
+    default List<PushShard> getPushShards() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * 获取CONNECT报文准入控制的运行状态
+     *
+     * @return 连接准入的运行状态
+     */
+    default ConnectAdmission getConnectAdmission() {
+        return ConnectAdmission.DISABLED;
+    }
+
+    /**
+     * 获取所有Topic消息队列中投递完成前即被覆盖的消息总数，用于度量队列溢出造成的消息丢失
+     *
+     * @return 被覆盖的消息总数
+     */
+    default long getOverwrittenMessageCount() {
+        return 0;
+    }
+
 }
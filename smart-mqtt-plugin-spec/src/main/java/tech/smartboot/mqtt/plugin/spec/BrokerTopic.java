@@ -25,4 +25,6 @@ public interface BrokerTopic {
     String getTopic();
 
     TopicToken toTopicToken();
+
+    MessageQueue getMessageQueue();
 }
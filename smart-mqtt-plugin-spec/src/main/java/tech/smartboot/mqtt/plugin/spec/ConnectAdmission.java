@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.plugin.spec;
+
+/**
+ * CONNECT报文准入控制的运行状态
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public interface ConnectAdmission {
+    /**
+     * 未启用准入控制时的运行状态
+     */
+    ConnectAdmission DISABLED = new ConnectAdmission() {
+        @Override
+        public int getConnectingCount() {
+            return 0;
+        }
+
+        @Override
+        public int getQueueDepth() {
+            return 0;
+        }
+
+        @Override
+        public long getRejectedCount() {
+            return 0;
+        }
+    };
+
+    /**
+     * 正在处理（认证及会话恢复）的连接数
+     */
+    int getConnectingCount();
+
+    /**
+     * 排队等待处理的连接数
+     */
+    int getQueueDepth();
+
+    /**
+     * 因服务端繁忙被拒绝的连接数
+     */
+    long getRejectedCount();
+}
@@ -12,7 +12,9 @@ package tech.smartboot.mqtt.plugin.spec;
 
 import tech.smartboot.mqtt.common.enums.MqttQoS;
 import tech.smartboot.mqtt.common.message.MqttPublishMessage;
+import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -32,19 +34,59 @@ public final class Message {
     private long offset;
 
     private final MqttQoS qos;
+    /**
+     * 消息到达Broker的时间
+     */
+    private final long createTime;
+    /**
+     * 消息过期间隔（秒），0表示永不过期
+     */
+    private final int expiryInterval;
+    /**
+     * MQTT 5.0发布报文携带的属性，转发时仅透传载荷格式、内容类型、响应主题、对比数据及用户属性
+     */
+    private final PublishProperties properties;
     /**
      * 本条消息可推送的次数
      */
     private AtomicInteger pushSemaphore;
 
+    /**
+     * 预编码的QoS0报文，下标为报文形态（如协议版本），推送给多个订阅者时共享同一份编码结果
+     */
+    private volatile MqttPublishMessage[] encodedMessages;
+
     public Message(MqttPublishMessage message) {
-        this(message.getFixedHeader().getQosLevel(), message.getPayload().getPayload(), message.getFixedHeader().isRetain());
+        this(message.getFixedHeader().getQosLevel(), message.getPayload().getPayload(), message.getFixedHeader().isRetain(), System.currentTimeMillis(), expiryInterval(message), message.getVariableHeader().getProperties());
     }
 
     public Message(MqttQoS qos, byte[] message, boolean retained) {
+        this(qos, message, retained, System.currentTimeMillis(), 0);
+    }
+
+    /**
+     * @param createTime     消息到达Broker的时间，从存储中恢复时需沿用原值
+     * @param expiryInterval 消息过期间隔（秒），0表示永不过期
+     */
+    public Message(MqttQoS qos, byte[] message, boolean retained, long createTime, int expiryInterval) {
+        this(qos, message, retained, createTime, expiryInterval, null);
+    }
+
+    /**
+     * @param properties MQTT 5.0发布报文携带的属性，可为null
+     */
+    public Message(MqttQoS qos, byte[] message, boolean retained, long createTime, int expiryInterval, PublishProperties properties) {
         this.payload = message;
         this.retained = retained;
         this.qos = qos;
+        this.createTime = createTime;
+        this.expiryInterval = expiryInterval;
+        this.properties = properties;
+    }
+
+    private static int expiryInterval(MqttPublishMessage message) {
+        PublishProperties properties = message.getVariableHeader().getProperties();
+        return properties == null ? 0 : properties.getMessageExpiryInterval();
     }
 
     public byte[] getPayload() {
@@ -63,6 +105,37 @@ public final class Message {
         return qos;
     }
 
+    public long getCreateTime() {
+        return createTime;
+    }
+
+    public int getExpiryInterval() {
+        return expiryInterval;
+    }
+
+    public PublishProperties getProperties() {
+        return properties;
+    }
+
+    /**
+     * 消息是否已超出过期间隔，过期的消息不再投递给订阅者
+     */
+    public boolean isExpired(long now) {
+        return expiryInterval > 0 && now - createTime >= TimeUnit.SECONDS.toMillis(expiryInterval);
+    }
+
+    /**
+     * 剩余的过期间隔（秒），即接收时的过期间隔减去消息在Broker中等待的时间，向上取整。
+     * 未设置过期间隔时返回0。
+     */
+    public int getRemainingExpiryInterval(long now) {
+        if (expiryInterval <= 0) {
+            return 0;
+        }
+        long remaining = TimeUnit.SECONDS.toMillis(expiryInterval) - (now - createTime);
+        return remaining <= 0 ? 0 : (int) ((remaining + 999) / 1000);
+    }
+
     public void setOffset(long offset) {
         this.offset = offset;
     }
@@ -74,4 +147,25 @@ public final class Message {
     public void setPushSemaphore(int pushSemaphore) {
         this.pushSemaphore = new AtomicInteger(pushSemaphore);
     }
+
+    public MqttPublishMessage getEncodedMessage(int shape) {
+        MqttPublishMessage[] messages = encodedMessages;
+        return messages == null || shape >= messages.length ? null : messages[shape];
+    }
+
+    /**
+     * 缓存预编码的报文，并发设置时可能丢失其中一份缓存，仅导致重复编码
+     */
+    public void setEncodedMessage(int shape, MqttPublishMessage message) {
+        MqttPublishMessage[] messages = encodedMessages;
+        if (messages == null || shape >= messages.length) {
+            MqttPublishMessage[] newMessages = new MqttPublishMessage[shape + 1];
+            if (messages != null) {
+                System.arraycopy(messages, 0, newMessages, 0, messages.length);
+            }
+            messages = newMessages;
+        }
+        messages[shape] = message;
+        encodedMessages = messages;
+    }
 }
@@ -10,10 +10,52 @@
 
 package tech.smartboot.mqtt.plugin.spec;
 
+/**
+ * Topic消息队列，按offset顺序存储待推送的消息。
+ * <p>
+ * 每个BrokerTopic持有一个MessageQueue，消息投递者（MessageDeliver）各自维护消费点位，
+ * 通过offset从队列中拉取消息进行推送。
+ * </p>
+ */
 public interface MessageQueue {
 
+    /**
+     * 存储消息，并为其分配offset
+     */
+    void put(Message message);
+
+    /**
+     * 获取指定offset的消息。
+     * <p>
+     * 若指定offset的消息已被淘汰，返回队列中可用的后续消息，调用方需以返回消息的offset为准更新消费点位；
+     * 若队列中不存在更新的消息，返回null。
+     * </p>
+     */
+    Message get(long offset);
+
+    /**
+     * 获取指定offset的消息，并提交一次消费确认
+     */
+    Message getAndCommit(long offset);
+
+    /**
+     * 提交指定offset消息的消费确认
+     */
+    void commit(long offset);
+
     long getLatestOffset();
 
     //消息队列容量
     int capacity();
+
+    /**
+     * 清空队列中的消息
+     */
+    void clear();
+
+    /**
+     * 释放队列占用的资源
+     */
+    default void destroy() {
+    }
 }
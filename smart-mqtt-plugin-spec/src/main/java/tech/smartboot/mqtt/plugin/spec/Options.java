@@ -184,6 +184,15 @@ public class Options {
      * </ul>
      */
     private int pushThreadNum = Runtime.getRuntime().availableProcessors();
+    /**
+     * 是否允许推送线程窃取其他线程的推送任务。
+     * <p>
+     * 每个推送线程持有独立的任务队列，主题按哈希值固定由其中一个线程推送。
+     * 开启后，空闲的推送线程可执行积压较多的线程队列中的任务，缓解热点主题集中于同一线程的问题。
+     * </p>
+     * 默认值：true
+     */
+    private boolean pushWorkStealing = true;
 
     /**
      * 等待客户端CONNECT报文的最大时间（毫秒）。
@@ -225,6 +234,15 @@ public class Options {
      */
     private int maxInflight = 8;
 
+    /**
+     * MQTT 5.0 主题别名最大值。
+     * <p>
+     * 在CONNACK中告知客户端，客户端可使用 1 ~ 该值的别名代替重复发送的主题名；
+     * 推送消息时不超过客户端在CONNECT中声明的最大值，按LRU为订阅的主题分配别名。
+     * 默认值：64，为0时不使用主题别名
+     */
+    private int topicAliasMaximum = 64;
+
     /**
      * 单个客户端的最大消息队列长度。
      * <p>
@@ -245,6 +263,155 @@ public class Options {
      */
     private int maxMessageQueueLength = 1024;
 
+    /**
+     * 持久化消息队列的存储目录。
+     * <p>
+     * 配置后，匹配persistentTopics的Topic将使用基于分段文件的消息队列，
+     * 慢速订阅者的积压消息存储于磁盘，不会因内存环形队列回绕而丢失，且Broker重启后可恢复。
+     * 默认值：null（所有Topic均使用内存队列）
+     */
+    private String messageStorePath;
+
+    /**
+     * 使用持久化消息队列的主题过滤器，多个以逗号分隔，支持通配符。
+     * <p>
+     * 仅在配置了messageStorePath时生效，需显式指定需要持久化的Topic，例如"#"表示所有Topic。
+     * 默认值：""（不启用）
+     */
+    private String persistentTopics = "";
+
+    /**
+     * 单个Topic持久化消息队列允许占用的最大磁盘空间（字节）。
+     * <p>
+     * 超出后将删除最早的分段文件，尚未消费的订阅者会跳至最早可用的消息。
+     * 默认值：1GB
+     */
+    private long maxMessageStoreSize = 1024 * 1024 * 1024L;
+
+    /**
+     * 单个持久会话（CleanSession为0，MQTT 5.0还需会话过期间隔大于0）允许缓存的离线消息数量。
+     * <p>
+     * 客户端离线期间，匹配其订阅的QoS 1/2消息存入离线队列，重连后按序推送；
+     * 超出限制时丢弃新到达的消息。
+     * 默认值：1000，为0时不缓存离线消息
+     */
+    private int maxOfflineMessages = 1000;
+
+    /**
+     * 所有会话的离线消息总数上限，超出后丢弃新到达的离线消息。
+     * 默认值：100000
+     */
+    private int maxTotalOfflineMessages = 100000;
+
+    /**
+     * 离线消息的存储目录，每个会话对应一个文件，Broker重启后可恢复。
+     * 默认值：null（离线消息保存在内存中）
+     */
+    private String offlineMessageStorePath;
+
+    /**
+     * 保留消息的存储目录，保留消息以日志形式写入该目录，Broker重启后可恢复。
+     * 默认值：null（保留消息仅保存在内存中）
+     */
+    private String retainStorePath;
+
+    /**
+     * 解码报文时缓存的主题名称数量上限，超出后淘汰最久未使用的主题。
+     * 默认值：100000，为0时不缓存
+     */
+    private int topicCacheSize = 100000;
+
+    /**
+     * 不进入主题名称缓存的主题过滤器，多个以逗号分隔，支持通配符。
+     * <p>
+     * 适用于每条消息各不相同的主题，如请求/响应模式中携带唯一标识的响应主题。
+     * 默认值：null
+     */
+    private String topicCacheBypass;
+
+    /**
+     * 单个会话写缓冲区中允许积压的字节数，超出后视为慢消费者。
+     * <p>
+     * 消息推送在积压超限时暂停，待积压降至一半以下后恢复，避免推送线程阻塞于慢连接的写缓冲区。
+     * 默认值：0，取写缓冲区容量的一半；小于0时不限制
+     */
+    private long maxOutboundBytes;
+
+    /**
+     * 单个订阅在主题消息队列中允许积压的消息数，超出后视为慢消费者。
+     * 默认值：0，不限制（积压量受主题消息队列的容量限制）
+     */
+    private int maxOutboundMessages;
+
+    /**
+     * 慢消费者的处理策略：
+     * <ul>
+     *   <li>DROP_OLDEST - 丢弃最早积压的消息</li>
+     *   <li>DROP_NEWEST - 保留最早积压的maxOutboundMessages条消息，丢弃超出上限后到达的消息</li>
+     *   <li>DISCONNECT - 断开连接</li>
+     *   <li>SPILL - 积压的消息转存至会话的离线队列，恢复后按序推送</li>
+     * </ul>
+     * 默认值：DROP_OLDEST
+     */
+    private String slowConsumerPolicy = "DROP_OLDEST";
+
+    /**
+     * 按客户端限制发布速率，多条规则以逗号分隔，格式：clientId=每秒消息数[:每秒字节数]，0表示不限制。
+     * <p>
+     * clientId为*时作用于未单独配置的客户端，每个客户端独立计算。
+     * 超出速率时暂停读取该连接的数据，待令牌补足后恢复，不丢弃消息。
+     * 示例：*=1000,gateway-01=5000:10485760
+     * </p>
+     */
+    private String clientPublishRate;
+
+    /**
+     * 按用户名限制发布速率，格式同clientPublishRate，同一用户名的全部连接共享速率配额
+     */
+    private String usernamePublishRate;
+
+    /**
+     * 按主题限制发布速率，格式：topicFilter=每秒消息数[:每秒字节数]，支持通配符，
+     * 匹配同一条规则的全部主题共享速率配额
+     */
+    private String topicPublishRate;
+
+    /**
+     * 同时处理中（已收到CONNECT报文，尚未完成认证及会话恢复）的连接数上限，超出后排队等待。
+     * <p>
+     * 用于平滑Broker重启、负载均衡切换后的集中重连，避免认证、会话恢复同时涌入导致CONNACK超时。
+     * 默认值：0，不限制
+     * </p>
+     */
+    private int maxConnecting;
+
+    /**
+     * 每秒允许开始处理的CONNECT报文数，超出后排队等待。
+     * 默认值：0，不限制
+     */
+    private int connectRate;
+
+    /**
+     * 等待处理的CONNECT报文数上限，队列已满时以服务端繁忙拒绝连接。
+     * 默认值：10000
+     */
+    private int connectQueueSize = 10000;
+
+    /**
+     * CONNECT报文排队的最长时间（毫秒），超时后以服务端繁忙拒绝连接。
+     * <p>
+     * 排队期间仍受noConnectIdleTimeout约束，该值应小于noConnectIdleTimeout。
+     * 默认值：10000
+     * </p>
+     */
+    private int connectQueueTimeout = 10000;
+
+    /**
+     * 以服务端繁忙拒绝MQTT 5.0连接时，CONNACK中携带的服务端保持连接时间（秒），提示客户端放缓重连。
+     * 默认值：60，0表示不携带
+     */
+    private int busyServerKeepAlive = 60;
+
 
     /**
      * 异步通道组，用于管理网络IO操作。
@@ -308,6 +475,14 @@ public class Options {
         this.pushThreadNum = pushThreadNum;
     }
 
+    public boolean isPushWorkStealing() {
+        return pushWorkStealing;
+    }
+
+    public void setPushWorkStealing(boolean pushWorkStealing) {
+        this.pushWorkStealing = pushWorkStealing;
+    }
+
     public String getHost() {
         return host;
     }
@@ -332,6 +507,14 @@ public class Options {
         this.maxInflight = maxInflight;
     }
 
+    public int getTopicAliasMaximum() {
+        return topicAliasMaximum;
+    }
+
+    public void setTopicAliasMaximum(int topicAliasMaximum) {
+        this.topicAliasMaximum = topicAliasMaximum;
+    }
+
     public int getThreadNum() {
         return threadNum;
     }
@@ -382,6 +565,166 @@ public class Options {
     }
 
 
+    public String getMessageStorePath() {
+        return messageStorePath;
+    }
+
+    public void setMessageStorePath(String messageStorePath) {
+        this.messageStorePath = messageStorePath;
+    }
+
+    public String getPersistentTopics() {
+        return persistentTopics;
+    }
+
+    public void setPersistentTopics(String persistentTopics) {
+        this.persistentTopics = persistentTopics;
+    }
+
+    public long getMaxMessageStoreSize() {
+        return maxMessageStoreSize;
+    }
+
+    public void setMaxMessageStoreSize(long maxMessageStoreSize) {
+        this.maxMessageStoreSize = maxMessageStoreSize;
+    }
+
+    public int getMaxOfflineMessages() {
+        return maxOfflineMessages;
+    }
+
+    public void setMaxOfflineMessages(int maxOfflineMessages) {
+        this.maxOfflineMessages = maxOfflineMessages;
+    }
+
+    public int getMaxTotalOfflineMessages() {
+        return maxTotalOfflineMessages;
+    }
+
+    public void setMaxTotalOfflineMessages(int maxTotalOfflineMessages) {
+        this.maxTotalOfflineMessages = maxTotalOfflineMessages;
+    }
+
+    public String getOfflineMessageStorePath() {
+        return offlineMessageStorePath;
+    }
+
+    public void setOfflineMessageStorePath(String offlineMessageStorePath) {
+        this.offlineMessageStorePath = offlineMessageStorePath;
+    }
+
+    public String getRetainStorePath() {
+        return retainStorePath;
+    }
+
+    public void setRetainStorePath(String retainStorePath) {
+        this.retainStorePath = retainStorePath;
+    }
+
+    public int getTopicCacheSize() {
+        return topicCacheSize;
+    }
+
+    public void setTopicCacheSize(int topicCacheSize) {
+        this.topicCacheSize = topicCacheSize;
+    }
+
+    public String getTopicCacheBypass() {
+        return topicCacheBypass;
+    }
+
+    public void setTopicCacheBypass(String topicCacheBypass) {
+        this.topicCacheBypass = topicCacheBypass;
+    }
+
+    public long getMaxOutboundBytes() {
+        return maxOutboundBytes;
+    }
+
+    public void setMaxOutboundBytes(long maxOutboundBytes) {
+        this.maxOutboundBytes = maxOutboundBytes;
+    }
+
+    public int getMaxOutboundMessages() {
+        return maxOutboundMessages;
+    }
+
+    public void setMaxOutboundMessages(int maxOutboundMessages) {
+        this.maxOutboundMessages = maxOutboundMessages;
+    }
+
+    public String getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    public void setSlowConsumerPolicy(String slowConsumerPolicy) {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+    public String getClientPublishRate() {
+        return clientPublishRate;
+    }
+
+    public void setClientPublishRate(String clientPublishRate) {
+        this.clientPublishRate = clientPublishRate;
+    }
+
+    public String getUsernamePublishRate() {
+        return usernamePublishRate;
+    }
+
+    public void setUsernamePublishRate(String usernamePublishRate) {
+        this.usernamePublishRate = usernamePublishRate;
+    }
+
+    public String getTopicPublishRate() {
+        return topicPublishRate;
+    }
+
+    public void setTopicPublishRate(String topicPublishRate) {
+        this.topicPublishRate = topicPublishRate;
+    }
+
+    public int getMaxConnecting() {
+        return maxConnecting;
+    }
+
+    public void setMaxConnecting(int maxConnecting) {
+        this.maxConnecting = maxConnecting;
+    }
+
+    public int getConnectRate() {
+        return connectRate;
+    }
+
+    public void setConnectRate(int connectRate) {
+        this.connectRate = connectRate;
+    }
+
+    public int getConnectQueueSize() {
+        return connectQueueSize;
+    }
+
+    public void setConnectQueueSize(int connectQueueSize) {
+        this.connectQueueSize = connectQueueSize;
+    }
+
+    public int getConnectQueueTimeout() {
+        return connectQueueTimeout;
+    }
+
+    public void setConnectQueueTimeout(int connectQueueTimeout) {
+        this.connectQueueTimeout = connectQueueTimeout;
+    }
+
+    public int getBusyServerKeepAlive() {
+        return busyServerKeepAlive;
+    }
+
+    public void setBusyServerKeepAlive(int busyServerKeepAlive) {
+        this.busyServerKeepAlive = busyServerKeepAlive;
+    }
+
     public boolean isLowMemory() {
         return lowMemory;
     }
@@ -400,7 +743,7 @@ public class Options {
 
     @Override
     public String toString() {
-        return "host='" + host + '\'' + ", port=" + port + ", bufferSize=" + bufferSize + ", topicLimit=" + topicLimit + ", maxPacketSize=" + maxPacketSize + ", threadNum=" + threadNum + ", maxKeepAliveTime=" + maxKeepAliveTime + ", pushThreadNum=" + pushThreadNum + ", noConnectIdleTimeout=" + noConnectIdleTimeout + ", maxInflight=" + maxInflight + ", maxMessageQueueLength=" + maxMessageQueueLength + ", lowMemory=" + lowMemory;
+        return "host='" + host + '\'' + ", port=" + port + ", bufferSize=" + bufferSize + ", topicLimit=" + topicLimit + ", maxPacketSize=" + maxPacketSize + ", threadNum=" + threadNum + ", maxKeepAliveTime=" + maxKeepAliveTime + ", pushThreadNum=" + pushThreadNum + ", pushWorkStealing=" + pushWorkStealing + ", noConnectIdleTimeout=" + noConnectIdleTimeout + ", maxInflight=" + maxInflight + ", maxMessageQueueLength=" + maxMessageQueueLength + ", messageStorePath=" + messageStorePath + ", maxOfflineMessages=" + maxOfflineMessages + ", maxTotalOfflineMessages=" + maxTotalOfflineMessages + ", offlineMessageStorePath=" + offlineMessageStorePath + ", retainStorePath=" + retainStorePath + ", topicCacheSize=" + topicCacheSize + ", topicCacheBypass=" + topicCacheBypass + ", maxOutboundBytes=" + maxOutboundBytes + ", maxOutboundMessages=" + maxOutboundMessages + ", slowConsumerPolicy=" + slowConsumerPolicy + ", clientPublishRate=" + clientPublishRate + ", usernamePublishRate=" + usernamePublishRate + ", topicPublishRate=" + topicPublishRate + ", maxConnecting=" + maxConnecting + ", connectRate=" + connectRate + ", connectQueueSize=" + connectQueueSize + ", connectQueueTimeout=" + connectQueueTimeout + ", busyServerKeepAlive=" + busyServerKeepAlive + ", lowMemory=" + lowMemory;
     }
 
     public MqttMessageProcessor getProcessor() {
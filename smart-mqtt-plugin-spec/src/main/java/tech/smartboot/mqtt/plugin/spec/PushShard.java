@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.plugin.spec;
+
+/**
+ * 消息推送线程的运行状态，每个推送线程对应一个分片
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public interface PushShard {
+    /**
+     * 队列中等待执行的推送任务数
+     */
+    int getQueueDepth();
+
+    /**
+     * 推送线程执行任务的累计耗时（纳秒）
+     */
+    long getBusyNanos();
+
+    /**
+     * 被其他推送线程窃取执行的任务数
+     */
+    long getStolenCount();
+}
@@ -95,6 +95,18 @@ public class EventType<T> {
      * 客户端连接请求
      */
     public static final EventType<AsyncEventObject<MqttConnectMessage>> CONNECT = new EventType<>("connect");
+
+    /**
+     * 客户端消费过慢，写缓冲区或订阅的消息积压超出限制，事件对象为积压的Topic。
+     * 同一客户端每秒至多触发一次
+     */
+    public static final EventType<EventObject<BrokerTopic>> SLOW_CONSUMER = new EventType<>("slowConsumer");
+
+    /**
+     * 客户端发布速率超出限制，暂停读取该连接的数据，事件对象为触发限流的主题名称。
+     * 暂停期间不再重复触发
+     */
+    public static final EventType<EventObject<String>> PUBLISH_RATE_LIMITED = new EventType<>("publishRateLimited");
     private final String name;
 
     /**
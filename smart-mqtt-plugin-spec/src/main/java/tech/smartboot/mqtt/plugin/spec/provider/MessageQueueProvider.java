@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.plugin.spec.provider;
+
+import tech.smartboot.mqtt.plugin.spec.MessageQueue;
+
+public interface MessageQueueProvider {
+    /**
+     * 为新创建的Topic提供消息队列。
+     * <p>
+     * 返回null时，Broker将使用内置的内存环形队列。
+     *
+     * @param topic    主题名称
+     * @param capacity Broker配置的队列容量
+     * @return 消息队列
+     */
+    default MessageQueue createMessageQueue(String topic, int capacity) {
+        return null;
+    }
+}
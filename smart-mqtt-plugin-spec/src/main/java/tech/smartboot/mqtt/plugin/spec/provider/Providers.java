@@ -36,6 +36,9 @@ public class Providers {
     private SubscribeProvider subscribeProvider = new SubscribeProvider() {
     };
 
+    private MessageQueueProvider messageQueueProvider = new MessageQueueProvider() {
+    };
+
     public SessionStateProvider getSessionStateProvider() {
         return sessionStateProvider;
     }
@@ -53,4 +56,12 @@ public class Providers {
         this.subscribeProvider = subscribeProvider;
     }
 
+    public MessageQueueProvider getMessageQueueProvider() {
+        return messageQueueProvider;
+    }
+
+    public void setMessageQueueProvider(MessageQueueProvider messageQueueProvider) {
+        this.messageQueueProvider = messageQueueProvider;
+    }
+
 }
@@ -13,7 +13,15 @@ import tech.smartboot.mqtt.common.enums.MqttVersion;
 import tech.smartboot.mqtt.common.message.MqttConnAckMessage;
 import tech.smartboot.mqtt.plugin.spec.SocketPluginAdapter;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -475,6 +483,84 @@ public class MqttSpecComplianceTest {
     }
 
 
+    @Test
+    public void testTopicAlias_MQTT5() throws Exception {
+        String[] topics = {"tenant/site/gateway/device-1/temperature", "tenant/site/gateway/device-2/temperature"};
+        int numMessages = 10;
+
+        MqttClient publisher = new MqttClient(host, port, options -> options.setMqttVersion(MqttVersion.MQTT_5));
+        CompletableFuture<Void> pubConnectFuture = new CompletableFuture<>();
+        publisher.connect(connAck -> pubConnectFuture.complete(null));
+        pubConnectFuture.get(5, TimeUnit.SECONDS);
+
+        // 订阅者仅接受1个别名，两个主题交替推送时需不断淘汰并重建映射。
+        // 客户端会在回调前还原主题名，因此直接读取原始报文，校验Broker实际发出的主题名及别名
+        try (Socket subscriber = new Socket(host, port)) {
+            subscriber.setSoTimeout(5000);
+            DataInputStream in = new DataInputStream(subscriber.getInputStream());
+            OutputStream out = subscriber.getOutputStream();
+            // CONNECT: MQTT 5.0, Clean Start, Topic Alias Maximum = 1
+            ByteArrayOutputStream connect = new ByteArrayOutputStream();
+            writeString(connect, "MQTT");
+            connect.write(new byte[]{5, 0x02, 0, 60, 3, 0x22, 0, 1});
+            writeString(connect, "alias-subscriber");
+            writePacket(out, 0x10, connect.toByteArray());
+            Assert.assertEquals(0x20, readPacket(in).type);
+            // SUBSCRIBE: packetId = 1, QoS 0
+            ByteArrayOutputStream subscribe = new ByteArrayOutputStream();
+            subscribe.write(new byte[]{0, 1, 0});
+            writeString(subscribe, "tenant/site/gateway/#");
+            subscribe.write(0);
+            writePacket(out, 0x82, subscribe.toByteArray());
+            Assert.assertEquals(0x90, readPacket(in).type);
+
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < numMessages; i++) {
+                String topic = topics[i / 3 % topics.length];
+                expected.add(topic + ":" + i);
+                publisher.publish(topic, MqttQoS.AT_LEAST_ONCE, String.valueOf(i).getBytes());
+            }
+
+            List<String> received = new ArrayList<>();
+            String aliasTopic = null;
+            int aliasedPackets = 0;
+            int rebinds = 0;
+            while (received.size() < numMessages) {
+                RawPacket packet = readPacket(in);
+                Assert.assertEquals("unexpected packet type", 0x30, packet.type & 0xF0);
+                DataInputStream body = new DataInputStream(new ByteArrayInputStream(packet.body));
+                byte[] topicBytes = new byte[body.readUnsignedShort()];
+                body.readFully(topicBytes);
+                String topicName = new String(topicBytes, StandardCharsets.UTF_8);
+                int topicAlias = readTopicAlias(body);
+                Assert.assertEquals("every PUBLISH should carry the only alias", 1, topicAlias);
+                if (topicName.isEmpty()) {
+                    // 别名已映射至当前主题，仅发送别名
+                    Assert.assertNotNull("alias used before it was bound", aliasTopic);
+                    aliasedPackets++;
+                } else {
+                    // 淘汰旧映射时必须重新携带主题名，且映射未变时不应重复发送主题名
+                    Assert.assertNotEquals("topic name resent while alias still bound", aliasTopic, topicName);
+                    if (aliasTopic != null) {
+                        rebinds++;
+                    }
+                    aliasTopic = topicName;
+                }
+                byte[] payload = new byte[body.available()];
+                body.readFully(payload);
+                received.add(aliasTopic + ":" + new String(payload, StandardCharsets.UTF_8));
+            }
+            Assert.assertTrue("topic name should be replaced by the alias", aliasedPackets > 0);
+            Assert.assertTrue("alias should be evicted and rebound to the other topic", rebinds > 0);
+            // 不同主题间的推送顺序不做保证
+            Collections.sort(expected);
+            Collections.sort(received);
+            Assert.assertEquals("Topic names should be restored from aliases", expected, received);
+        }
+
+        publisher.disconnect();
+    }
+
     @Test
     public void testKeepAlive() throws InterruptedException, ExecutionException, TimeoutException {
         int keepAliveSeconds = 2; // Short keep alive for testing
@@ -753,4 +839,94 @@ public class MqttSpecComplianceTest {
         publisher.disconnect();
         subscriber.disconnect();
     }
-}
\ No newline at end of file
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes.length >> 8);
+        out.write(bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writePacket(OutputStream out, int type, byte[] body) throws IOException {
+        ByteArrayOutputStream packet = new ByteArrayOutputStream();
+        packet.write(type);
+        int length = body.length;
+        do {
+            int digit = length & 0x7F;
+            length >>>= 7;
+            packet.write(length > 0 ? digit | 0x80 : digit);
+        } while (length > 0);
+        packet.write(body, 0, body.length);
+        out.write(packet.toByteArray());
+        out.flush();
+    }
+
+    private static RawPacket readPacket(DataInputStream in) throws IOException {
+        int type = in.readUnsignedByte();
+        byte[] body = new byte[readVariableInt(in)];
+        in.readFully(body);
+        return new RawPacket(type, body);
+    }
+
+    private static int readVariableInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int digit;
+        do {
+            digit = in.readUnsignedByte();
+            value |= (digit & 0x7F) << shift;
+            shift += 7;
+        } while ((digit & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * 读取QoS0 PUBLISH报文的属性，返回其中的主题别名，未设置时返回0
+     */
+    private static int readTopicAlias(DataInputStream body) throws IOException {
+        int length = readVariableInt(body);
+        byte[] properties = new byte[length];
+        body.readFully(properties);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(properties));
+        int topicAlias = 0;
+        while (in.available() > 0) {
+            int id = in.readUnsignedByte();
+            switch (id) {
+                case 0x01:
+                    in.readUnsignedByte();
+                    break;
+                case 0x02:
+                    in.readInt();
+                    break;
+                case 0x03:
+                case 0x08:
+                case 0x09:
+                    in.skipBytes(in.readUnsignedShort());
+                    break;
+                case 0x0B:
+                    readVariableInt(in);
+                    break;
+                case 0x23:
+                    topicAlias = in.readUnsignedShort();
+                    break;
+                case 0x26:
+                    in.skipBytes(in.readUnsignedShort());
+                    in.skipBytes(in.readUnsignedShort());
+                    break;
+                default:
+                    Assert.fail("unexpected publish property: " + id);
+            }
+        }
+        return topicAlias;
+    }
+
+    private static class RawPacket {
+        private final int type;
+        private final byte[] body;
+
+        RawPacket(int type, byte[] body) {
+            this.type = type;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package org.smartboot.mqtt.test;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import tech.smartboot.mqtt.broker.BrokerContextImpl;
+import tech.smartboot.mqtt.client.MqttClient;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 慢消费策略为DROP_NEWEST时，保留最早积压的maxOutboundMessages条消息，丢弃超出上限后到达的消息
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public class SlowConsumerDropNewestTest {
+    private static final int MAX_OUTBOUND_MESSAGES = 4;
+    private static final int MESSAGE_COUNT = 100;
+    private BrokerContextImpl brokerContext;
+    private final String host = "127.0.0.1";
+    private final int port = 1883;
+
+    @Before
+    public void init() throws Throwable {
+        brokerContext = new BrokerContextImpl();
+        brokerContext.Options().setSlowConsumerPolicy("DROP_NEWEST");
+        brokerContext.Options().setMaxOutboundMessages(MAX_OUTBOUND_MESSAGES);
+        //飞行窗口仅容纳一条消息，其余消息积压在主题队列中
+        brokerContext.Options().setMaxInflight(1);
+        brokerContext.init();
+    }
+
+    @After
+    public void destroy() {
+        if (brokerContext != null) {
+            brokerContext.destroy();
+        }
+    }
+
+    @Test
+    public void testKeepOldestBacklog() throws Exception {
+        String topic = "test/drop_newest";
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Void> subscribed = new CompletableFuture<>();
+        MqttClient subscriber = new MqttClient(host, port);
+        subscriber.connect(connAck -> subscriber.subscribe(topic, MqttQoS.AT_LEAST_ONCE, (client, msg) -> {
+            received.add(Integer.parseInt(new String(msg.getPayload().getPayload(), StandardCharsets.UTF_8)));
+            //延迟确认，使待推送的消息超出maxOutboundMessages
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, (client, qos) -> subscribed.complete(null)));
+        subscribed.get(5, TimeUnit.SECONDS);
+
+        CompletableFuture<Void> connected = new CompletableFuture<>();
+        MqttClient publisher = new MqttClient(host, port);
+        publisher.connect(connAck -> connected.complete(null));
+        connected.get(5, TimeUnit.SECONDS);
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            publisher.publish(topic, MqttQoS.AT_LEAST_ONCE, String.valueOf(i).getBytes(StandardCharsets.UTF_8), false);
+        }
+
+        //等待推送结束
+        int size;
+        do {
+            size = received.size();
+            Thread.sleep(1000);
+        } while (size != received.size());
+
+        synchronized (received) {
+            Assert.assertTrue("newest messages should be dropped, received: " + received.size(), received.size() < MESSAGE_COUNT);
+            //最早积压的maxOutboundMessages条消息均保留
+            Assert.assertTrue("received: " + received, received.size() >= MAX_OUTBOUND_MESSAGES);
+            for (int i = 0; i < MAX_OUTBOUND_MESSAGES; i++) {
+                Assert.assertEquals("oldest backlog should be kept", Integer.valueOf(i), received.get(i));
+            }
+            for (int i = 1; i < received.size(); i++) {
+                Assert.assertTrue("messages should be delivered in order", received.get(i) > received.get(i - 1));
+            }
+        }
+        publisher.disconnect();
+        subscriber.disconnect();
+    }
+}
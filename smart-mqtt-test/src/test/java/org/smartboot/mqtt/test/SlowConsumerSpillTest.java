@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package org.smartboot.mqtt.test;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import tech.smartboot.mqtt.broker.BrokerContextImpl;
+import tech.smartboot.mqtt.client.MqttClient;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.plugin.spec.bus.EventType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 慢消费策略为SPILL时，超出maxOutboundMessages的消息转存至离线队列后仍按序完整推送
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public class SlowConsumerSpillTest {
+    private static final int MAX_OUTBOUND_MESSAGES = 4;
+    private static final int MESSAGE_COUNT = 200;
+    private BrokerContextImpl brokerContext;
+    private final String host = "127.0.0.1";
+    private final int port = 1883;
+
+    @Before
+    public void init() throws Throwable {
+        brokerContext = new BrokerContextImpl();
+        brokerContext.Options().setSlowConsumerPolicy("SPILL");
+        brokerContext.Options().setMaxOutboundMessages(MAX_OUTBOUND_MESSAGES);
+        brokerContext.init();
+    }
+
+    @After
+    public void destroy() {
+        if (brokerContext != null) {
+            brokerContext.destroy();
+        }
+    }
+
+    @Test
+    public void testSpillKeepsOrder() throws Exception {
+        AtomicInteger slowConsumerEvents = new AtomicInteger();
+        brokerContext.getEventBus().subscribe(EventType.SLOW_CONSUMER, (eventType, object) -> slowConsumerEvents.incrementAndGet());
+
+        String topic = "test/spill";
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(MESSAGE_COUNT);
+        CompletableFuture<Void> subscribed = new CompletableFuture<>();
+        MqttClient subscriber = new MqttClient(host, port);
+        subscriber.connect(connAck -> subscriber.subscribe(topic, MqttQoS.AT_LEAST_ONCE, (client, msg) -> {
+            received.add(new String(msg.getPayload().getPayload(), StandardCharsets.UTF_8));
+            latch.countDown();
+            //延迟确认，使待推送的消息超出maxOutboundMessages
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, (client, qos) -> subscribed.complete(null)));
+        subscribed.get(5, TimeUnit.SECONDS);
+
+        CompletableFuture<Void> connected = new CompletableFuture<>();
+        MqttClient publisher = new MqttClient(host, port);
+        publisher.connect(connAck -> connected.complete(null));
+        connected.get(5, TimeUnit.SECONDS);
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            publisher.publish(topic, MqttQoS.AT_LEAST_ONCE, String.valueOf(i).getBytes(StandardCharsets.UTF_8), false);
+        }
+
+        Assert.assertTrue("all messages should be delivered", latch.await(30, TimeUnit.SECONDS));
+        Assert.assertTrue("slow consumer should be detected", slowConsumerEvents.get() > 0);
+        synchronized (received) {
+            for (int i = 0; i < MESSAGE_COUNT; i++) {
+                Assert.assertEquals("messages should be delivered in order", String.valueOf(i), received.get(i));
+            }
+        }
+        publisher.disconnect();
+        subscriber.disconnect();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
+import tech.smartboot.mqtt.common.message.variable.properties.UserProperty;
+import tech.smartboot.mqtt.plugin.spec.Message;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 离线消息文件队列的存取、重启恢复及关闭时的压缩
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public class FileOfflineMessageQueueTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTripWithProperties() throws IOException {
+        File file = new File(folder.getRoot(), FileOfflineMessageQueue.fileName("client"));
+        PublishProperties properties = new PublishProperties();
+        properties.setPayloadFormatIndicator((byte) 1);
+        properties.setContentType("text/plain");
+        properties.setResponseTopic("test/response");
+        properties.setCorrelationData("correlation".getBytes(StandardCharsets.UTF_8));
+        properties.getUserProperties().add(new UserProperty("key", "value"));
+        long createTime = System.currentTimeMillis();
+
+        FileOfflineMessageQueue queue = new FileOfflineMessageQueue(file);
+        Assert.assertTrue(queue.offer(new OfflineMessage("test/a", MqttQoS.AT_LEAST_ONCE, new Message(MqttQoS.EXACTLY_ONCE, payload(1), false, createTime, 60, properties))));
+        Assert.assertTrue(queue.offer(new OfflineMessage("test/b", MqttQoS.EXACTLY_ONCE, new Message(MqttQoS.EXACTLY_ONCE, payload(2), false))));
+        queue.close();
+
+        //重新打开后按序读取，属性随消息一并恢复
+        queue = new FileOfflineMessageQueue(file);
+        Assert.assertEquals(2, queue.size());
+        OfflineMessage offlineMessage = queue.peek();
+        Assert.assertEquals("test/a", offlineMessage.getTopic());
+        Assert.assertEquals(MqttQoS.AT_LEAST_ONCE, offlineMessage.getQos());
+        Message message = offlineMessage.getMessage();
+        Assert.assertArrayEquals(payload(1), message.getPayload());
+        Assert.assertEquals(createTime, message.getCreateTime());
+        Assert.assertEquals(60, message.getExpiryInterval());
+        PublishProperties restored = message.getProperties();
+        Assert.assertNotNull(restored);
+        Assert.assertEquals(1, restored.getPayloadFormatIndicator());
+        Assert.assertEquals("text/plain", restored.getContentType());
+        Assert.assertEquals("test/response", restored.getResponseTopic());
+        Assert.assertArrayEquals("correlation".getBytes(StandardCharsets.UTF_8), restored.getCorrelationData());
+        Assert.assertEquals(1, restored.getUserProperties().size());
+        Assert.assertEquals("key", restored.getUserProperties().get(0).getKey());
+        Assert.assertEquals("value", restored.getUserProperties().get(0).getValue());
+        queue.poll();
+
+        offlineMessage = queue.peek();
+        Assert.assertEquals("test/b", offlineMessage.getTopic());
+        Assert.assertArrayEquals(payload(2), offlineMessage.getMessage().getPayload());
+        Assert.assertNull(offlineMessage.getMessage().getProperties());
+        queue.poll();
+        Assert.assertNull(queue.peek());
+        //队列清空后截断文件
+        Assert.assertEquals(0, file.length());
+        queue.destroy();
+        Assert.assertFalse(file.exists());
+    }
+
+    @Test
+    public void testRecoverTruncatesTornTail() throws IOException {
+        File file = new File(folder.getRoot(), FileOfflineMessageQueue.fileName("client"));
+        FileOfflineMessageQueue queue = new FileOfflineMessageQueue(file);
+        queue.offer(new OfflineMessage("test/a", MqttQoS.AT_LEAST_ONCE, new Message(MqttQoS.AT_LEAST_ONCE, payload(1), false)));
+        queue.offer(new OfflineMessage("test/a", MqttQoS.AT_LEAST_ONCE, new Message(MqttQoS.AT_LEAST_ONCE, payload(2), false)));
+        queue.close();
+        long length = file.length();
+
+        //模拟写入中途退出：记录头声明的长度超出文件末尾
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(length);
+            randomAccessFile.writeInt(1024);
+            randomAccessFile.write(new byte[]{1, 2, 3});
+        }
+
+        queue = new FileOfflineMessageQueue(file);
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals(length, file.length());
+        Assert.assertArrayEquals(payload(1), queue.peek().getMessage().getPayload());
+        queue.poll();
+        Assert.assertArrayEquals(payload(2), queue.peek().getMessage().getPayload());
+        //截断后继续追加的记录可正常读取
+        queue.offer(new OfflineMessage("test/a", MqttQoS.AT_LEAST_ONCE, new Message(MqttQoS.AT_LEAST_ONCE, payload(3), false)));
+        queue.poll();
+        Assert.assertArrayEquals(payload(3), queue.peek().getMessage().getPayload());
+        queue.destroy();
+    }
+
+    @Test
+    public void testCloseCompactsConsumedRecords() throws IOException {
+        File file = new File(folder.getRoot(), FileOfflineMessageQueue.fileName("client"));
+        FileOfflineMessageQueue queue = new FileOfflineMessageQueue(file);
+        for (int i = 0; i < 3; i++) {
+            queue.offer(new OfflineMessage("test/a", MqttQoS.AT_LEAST_ONCE, new Message(MqttQoS.AT_LEAST_ONCE, payload(i), false)));
+        }
+        long length = file.length();
+        queue.peek();
+        queue.poll();
+        queue.close();
+
+        //已推送的记录在关闭时移除，重启后不会重复投递
+        Assert.assertEquals(length / 3 * 2, file.length());
+        queue = new FileOfflineMessageQueue(file);
+        Assert.assertEquals(2, queue.size());
+        Assert.assertArrayEquals(payload(1), queue.peek().getMessage().getPayload());
+        queue.poll();
+        Assert.assertArrayEquals(payload(2), queue.peek().getMessage().getPayload());
+        queue.destroy();
+    }
+
+    @Test
+    public void testFileName() {
+        String clientId = "客户端/../1";
+        String fileName = FileOfflineMessageQueue.fileName(clientId);
+        Assert.assertTrue(fileName.matches("[0-9a-f]+\\" + FileOfflineMessageQueue.FILE_SUFFIX));
+        Assert.assertEquals(clientId, FileOfflineMessageQueue.clientId(fileName));
+        Assert.assertNull(FileOfflineMessageQueue.clientId("xyz" + FileOfflineMessageQueue.FILE_SUFFIX));
+    }
+
+    private static byte[] payload(int i) {
+        return ("message-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tech.smartboot.mqtt.client.MqttClient;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.common.enums.MqttVersion;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Broker重启后恢复离线会话的订阅，新到达的消息继续存入离线队列
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public class OfflineMessageManagerTest {
+    private static final String CLIENT_ID = "offline_client";
+    private final String host = "127.0.0.1";
+    private final int port = 1883;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private BrokerContextImpl brokerContext;
+
+    @After
+    public void destroy() {
+        if (brokerContext != null) {
+            brokerContext.destroy();
+        }
+    }
+
+    @Test
+    public void testRecoverOfflineSubscription() throws Throwable {
+        File storeDir = folder.getRoot();
+        File queueFile = new File(storeDir, FileOfflineMessageQueue.fileName(CLIENT_ID));
+        File sessionFile = new File(storeDir, queueFile.getName().replace(FileOfflineMessageQueue.FILE_SUFFIX, FileOfflineMessageQueue.SESSION_SUFFIX));
+        brokerContext = startBroker(storeDir);
+
+        //持久会话订阅后断开，离线订阅存入会话文件
+        MqttClient subscriber = new MqttClient(host, port, opt -> {
+            opt.setCleanSession(false);
+            opt.setMqttVersion(MqttVersion.MQTT_3_1_1);
+            opt.setClientId(CLIENT_ID);
+        });
+        CompletableFuture<Void> subscribed = new CompletableFuture<>();
+        subscriber.connect(connAck -> subscriber.subscribe("test/offline/+", MqttQoS.AT_LEAST_ONCE, (client, message) -> {
+        }, (client, qos) -> subscribed.complete(null)));
+        subscribed.get(5, TimeUnit.SECONDS);
+        subscriber.disconnect();
+        waitFor(sessionFile::isFile);
+        Assert.assertEquals(0, queueFile.length());
+
+        //重启后离线订阅仍然生效
+        brokerContext.destroy();
+        brokerContext = startBroker(storeDir);
+        Assert.assertTrue(queueFile.isFile());
+
+        MqttClient publisher = new MqttClient(host, port);
+        CompletableFuture<Void> connected = new CompletableFuture<>();
+        publisher.connect(connAck -> connected.complete(null));
+        connected.get(5, TimeUnit.SECONDS);
+        publisher.publish("test/offline/a", MqttQoS.AT_LEAST_ONCE, "hello".getBytes(StandardCharsets.UTF_8));
+        waitFor(() -> queueFile.length() > 0);
+        publisher.disconnect();
+
+        //以CleanSession为1连接时丢弃离线队列及会话文件
+        MqttClient cleaner = new MqttClient(host, port, opt -> {
+            opt.setCleanSession(true);
+            opt.setMqttVersion(MqttVersion.MQTT_3_1_1);
+            opt.setClientId(CLIENT_ID);
+        });
+        CompletableFuture<Void> cleaned = new CompletableFuture<>();
+        cleaner.connect(connAck -> cleaned.complete(null));
+        cleaned.get(5, TimeUnit.SECONDS);
+        cleaner.disconnect();
+        waitFor(() -> !queueFile.exists() && !sessionFile.exists());
+    }
+
+    private BrokerContextImpl startBroker(File storeDir) throws Throwable {
+        BrokerContextImpl context = new BrokerContextImpl();
+        context.Options().setOfflineMessageStorePath(storeDir.getAbsolutePath());
+        context.init();
+        return context;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("condition not met in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tech.smartboot.mqtt.broker.topic.BrokerTopicImpl;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
+import tech.smartboot.mqtt.common.message.variable.properties.UserProperty;
+import tech.smartboot.mqtt.plugin.spec.Message;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 保留消息日志的回放、末尾不完整记录的恢复及并发更新时的重写
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public class RetainMessageStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReplay() throws IOException {
+        List<BrokerTopicImpl> topics = topics(4);
+        RetainMessageStore store = new RetainMessageStore(topics, folder.getRoot());
+        store.load((topic, message) -> Assert.fail("empty store should not recover " + topic));
+
+        PublishProperties properties = new PublishProperties();
+        properties.setPayloadFormatIndicator((byte) 1);
+        properties.setContentType("text/plain");
+        properties.setResponseTopic("test/response");
+        properties.setCorrelationData("correlation".getBytes(StandardCharsets.UTF_8));
+        properties.getUserProperties().add(new UserProperty("key", "value"));
+        long createTime = System.currentTimeMillis();
+        store.update(topics.get(0), new Message(MqttQoS.AT_LEAST_ONCE, payload("0-old"), true));
+        store.update(topics.get(0), new Message(MqttQoS.EXACTLY_ONCE, payload("0-new"), true, createTime, 3600, properties));
+        store.update(topics.get(1), new Message(MqttQoS.AT_MOST_ONCE, payload("1"), true));
+        store.update(topics.get(1), null);
+        //已过期的保留消息不再恢复
+        store.update(topics.get(2), new Message(MqttQoS.AT_MOST_ONCE, payload("2"), true, createTime - 10000, 1));
+        store.update(topics.get(3), new Message(MqttQoS.AT_MOST_ONCE, payload("3"), true));
+        store.close();
+
+        Map<String, Message> recovered = load(folder.getRoot(), topics(4));
+        Assert.assertEquals(2, recovered.size());
+        Message message = recovered.get(topics.get(0).getTopic());
+        Assert.assertArrayEquals(payload("0-new"), message.getPayload());
+        Assert.assertEquals(MqttQoS.EXACTLY_ONCE, message.getQos());
+        Assert.assertTrue(message.isRetained());
+        Assert.assertEquals(createTime, message.getCreateTime());
+        Assert.assertEquals(3600, message.getExpiryInterval());
+        Assert.assertEquals(1, message.getProperties().getPayloadFormatIndicator());
+        Assert.assertEquals("text/plain", message.getProperties().getContentType());
+        Assert.assertEquals("test/response", message.getProperties().getResponseTopic());
+        Assert.assertArrayEquals("correlation".getBytes(StandardCharsets.UTF_8), message.getProperties().getCorrelationData());
+        Assert.assertEquals("value", message.getProperties().getUserProperties().get(0).getValue());
+        Assert.assertArrayEquals(payload("3"), recovered.get(topics.get(3).getTopic()).getPayload());
+        Assert.assertNull(recovered.get(topics.get(3).getTopic()).getProperties().getContentType());
+    }
+
+    @Test
+    public void testRecoverTruncatedTail() throws IOException {
+        List<BrokerTopicImpl> topics = topics(2);
+        RetainMessageStore store = new RetainMessageStore(topics, folder.getRoot());
+        store.load((topic, message) -> {
+        });
+        store.update(topics.get(0), new Message(MqttQoS.AT_MOST_ONCE, payload("0"), true));
+        store.update(topics.get(1), new Message(MqttQoS.AT_MOST_ONCE, payload("1"), true));
+        store.close();
+
+        //模拟写入中途退出：记录头声明的长度超出文件末尾
+        File file = new File(folder.getRoot(), RetainMessageStore.FILE_NAME);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(randomAccessFile.length());
+            randomAccessFile.writeInt(1024);
+            randomAccessFile.write(new byte[]{1, 0, 0});
+        }
+        List<BrokerTopicImpl> recoveredTopics = topics(2);
+        store = new RetainMessageStore(recoveredTopics, folder.getRoot());
+        Map<String, Message> recovered = new HashMap<>();
+        store.load(recovered::put);
+        Assert.assertEquals(2, recovered.size());
+        Assert.assertArrayEquals(payload("1"), recovered.get(topics.get(1).getTopic()).getPayload());
+
+        //截断后追加的记录可正常回放
+        recoveredTopics.get(0).setRetainMessage(recovered.get(topics.get(0).getTopic()));
+        recoveredTopics.get(1).setRetainMessage(recovered.get(topics.get(1).getTopic()));
+        store.update(recoveredTopics.get(0), null);
+        store.update(recoveredTopics.get(1), new Message(MqttQoS.AT_MOST_ONCE, payload("1-new"), true));
+        store.close();
+        recovered = load(folder.getRoot(), topics(2));
+        Assert.assertEquals(1, recovered.size());
+        Assert.assertArrayEquals(payload("1-new"), recovered.get(topics.get(1).getTopic()).getPayload());
+    }
+
+    @Test
+    public void testCompactWithConcurrentUpdates() throws Exception {
+        List<BrokerTopicImpl> topics = topics(8);
+        RetainMessageStore store = new RetainMessageStore(topics, folder.getRoot());
+        store.load((topic, message) -> {
+        });
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            //每个线程更新两个主题，其中一个交替移除保留消息
+            BrokerTopicImpl topic = topics.get(i * 2);
+            BrokerTopicImpl removable = topics.get(i * 2 + 1);
+            threads.add(new Thread(() -> {
+                try {
+                    for (int seq = 0; seq < 2000; seq++) {
+                        store.update(topic, new Message(MqttQoS.AT_MOST_ONCE, payload(topic.getTopic() + ":" + seq), true));
+                        store.update(removable, seq % 3 == 0 ? null : new Message(MqttQoS.AT_MOST_ONCE, payload(removable.getTopic() + ":" + seq), true));
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            }));
+        }
+        Thread compactor = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    store.compact();
+                }
+            } catch (Throwable e) {
+                error.compareAndSet(null, e);
+            }
+        });
+        compactor.start();
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        running.set(false);
+        compactor.join();
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+        store.close();
+
+        //重写期间追加的记录不丢失，回放结果与内存中的保留消息一致
+        Map<String, Message> recovered = load(folder.getRoot(), topics(8));
+        for (BrokerTopicImpl topic : topics) {
+            Message expected = topic.getRetainMessage();
+            Message actual = recovered.get(topic.getTopic());
+            if (expected == null) {
+                Assert.assertNull(topic.getTopic(), actual);
+            } else {
+                Assert.assertNotNull(topic.getTopic(), actual);
+                Assert.assertArrayEquals(topic.getTopic(), expected.getPayload(), actual.getPayload());
+            }
+        }
+        Assert.assertFalse(new File(folder.getRoot(), RetainMessageStore.FILE_NAME + ".tmp").exists());
+    }
+
+    private static Map<String, Message> load(File dir, List<BrokerTopicImpl> topics) throws IOException {
+        RetainMessageStore store = new RetainMessageStore(topics, dir);
+        Map<String, Message> recovered = new HashMap<>();
+        store.load(recovered::put);
+        store.close();
+        return recovered;
+    }
+
+    private static List<BrokerTopicImpl> topics(int count) {
+        List<BrokerTopicImpl> topics = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            topics.add(new BrokerTopicImpl("test/retain/" + i));
+        }
+        return topics;
+    }
+
+    private static byte[] payload(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker.topic;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.common.message.variable.properties.PublishProperties;
+import tech.smartboot.mqtt.common.message.variable.properties.UserProperty;
+import tech.smartboot.mqtt.plugin.spec.Message;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 分段文件消息队列的重启恢复、分段淘汰及存储目录命名
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public class FileMessageStoreQueueTest {
+    private static final long MB = 1024 * 1024;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecoverAfterRestart() {
+        File baseDir = folder.getRoot();
+        String topic = "test/recover";
+        FileMessageStoreQueue queue = new FileMessageStoreQueue(baseDir, topic, 16, 64 * MB);
+        PublishProperties properties = new PublishProperties();
+        properties.setContentType("text/plain");
+        properties.getUserProperties().add(new UserProperty("key", "value"));
+        long createTime = System.currentTimeMillis();
+        for (int i = 0; i < 200; i++) {
+            queue.put(new Message(MqttQoS.AT_LEAST_ONCE, payload(i), i % 2 == 0, createTime, i % 3 == 0 ? 60 : 0, i % 5 == 0 ? properties : null));
+        }
+        queue.destroy();
+
+        //重启后尾部缓存为空，消息全部从分段文件读取
+        queue = new FileMessageStoreQueue(baseDir, topic, 16, 64 * MB);
+        Assert.assertEquals(199, queue.getLatestOffset());
+        for (int i = 0; i < 200; i++) {
+            Message message = queue.get(i);
+            Assert.assertEquals(i, message.getOffset());
+            Assert.assertArrayEquals(payload(i), message.getPayload());
+            Assert.assertEquals(MqttQoS.AT_LEAST_ONCE, message.getQos());
+            Assert.assertEquals(i % 2 == 0, message.isRetained());
+            if (i % 3 == 0) {
+                Assert.assertEquals(createTime, message.getCreateTime());
+                Assert.assertEquals(60, message.getExpiryInterval());
+            } else {
+                Assert.assertEquals(0, message.getExpiryInterval());
+            }
+            if (i % 5 == 0) {
+                Assert.assertEquals("text/plain", message.getProperties().getContentType());
+                Assert.assertEquals("value", message.getProperties().getUserProperties().get(0).getValue());
+            } else {
+                Assert.assertNull(message.getProperties());
+            }
+        }
+        Assert.assertNull(queue.get(200));
+
+        //恢复后继续追加，offset保持连续
+        queue.put(new Message(MqttQoS.AT_LEAST_ONCE, payload(200), false));
+        Assert.assertEquals(200, queue.getLatestOffset());
+        Assert.assertArrayEquals(payload(200), queue.get(200).getPayload());
+        queue.destroy();
+    }
+
+    @Test
+    public void testEvictOldestSegment() {
+        File baseDir = folder.getRoot();
+        String topic = "test/evict";
+        //磁盘上限2MB时分段大小为1MB，每条消息约100KB
+        FileMessageStoreQueue queue = new FileMessageStoreQueue(baseDir, topic, 1, 2 * MB);
+        byte[] payload = new byte[100 * 1024];
+        for (int i = 0; i < 50; i++) {
+            payload[0] = (byte) i;
+            queue.put(new Message(MqttQoS.AT_LEAST_ONCE, payload.clone(), false));
+        }
+        File dir = new File(baseDir, FileMessageStoreQueue.dirName(topic));
+        File[] segments = dir.listFiles((d, name) -> name.endsWith(".log"));
+        Assert.assertNotNull(segments);
+        Assert.assertTrue("segments: " + segments.length, segments.length <= 2);
+
+        //已淘汰的消息跳至最早可用的消息
+        Message message = queue.get(0);
+        Assert.assertNotNull(message);
+        Assert.assertTrue(message.getOffset() > 0);
+        Assert.assertEquals((byte) message.getOffset(), message.getPayload()[0]);
+        Assert.assertEquals(49, queue.get(49).getOffset());
+        queue.destroy();
+
+        //淘汰后重启，从最早的分段恢复
+        queue = new FileMessageStoreQueue(baseDir, topic, 1, 2 * MB);
+        Assert.assertEquals(49, queue.getLatestOffset());
+        Assert.assertEquals(message.getOffset(), queue.get(0).getOffset());
+        queue.destroy();
+    }
+
+    @Test
+    public void testConcurrentReadDuringEviction() throws InterruptedException {
+        FileMessageStoreQueue queue = new FileMessageStoreQueue(folder.getRoot(), "test/concurrent", 1, 2 * MB);
+        byte[] payload = new byte[10 * 1024];
+        queue.put(new Message(MqttQoS.AT_LEAST_ONCE, payload, false));
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    long latest = queue.getLatestOffset();
+                    for (long offset = Math.max(0, latest - 300); offset <= latest; offset += 7) {
+                        Message message = queue.get(offset);
+                        Assert.assertNotNull(message);
+                        Assert.assertTrue(message.getOffset() >= offset);
+                        Assert.assertEquals(payload.length, message.getPayload().length);
+                    }
+                }
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 2000; i++) {
+            queue.put(new Message(MqttQoS.AT_LEAST_ONCE, payload, false));
+        }
+        running.set(false);
+        reader.join();
+        queue.destroy();
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+    }
+
+    @Test
+    public void testDirName() throws Exception {
+        File baseDir = folder.getRoot();
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'a');
+        String longTopic = new String(chars);
+        for (String topic : Arrays.asList(".", "..", "a/../b", "a/b", "a_b", longTopic, "主题/温度")) {
+            String dirName = FileMessageStoreQueue.dirName(topic);
+            Assert.assertTrue(dirName, dirName.matches("[A-Za-z0-9_-]{1,64}-[0-9a-f]{64}"));
+            FileMessageStoreQueue queue = new FileMessageStoreQueue(baseDir, topic, 1, 64 * MB);
+            queue.put(new Message(MqttQoS.AT_LEAST_ONCE, payload(0), false));
+            queue.destroy();
+            File dir = new File(baseDir, dirName);
+            Assert.assertEquals(baseDir.getCanonicalFile(), dir.getCanonicalFile().getParentFile());
+            Assert.assertEquals(topic, new String(Files.readAllBytes(new File(dir, "topic").toPath()), StandardCharsets.UTF_8));
+        }
+        //转义后相同的Topic使用不同的目录
+        Assert.assertNotEquals(FileMessageStoreQueue.dirName("a/b"), FileMessageStoreQueue.dirName("a_b"));
+    }
+
+    private static byte[] payload(int i) {
+        return ("message-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) [2022] smartboot [zhengjunweimail@163.com]
+ *
+ *  企业用户未经smartboot组织特别许可，需遵循AGPL-3.0开源协议合理合法使用本项目。
+ *
+ *  Enterprise users are required to use this project reasonably
+ *  and legally in accordance with the AGPL-3.0 open source agreement
+ *  without special permission from the smartboot organization.
+ */
+
+package tech.smartboot.mqtt.broker.topic;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import tech.smartboot.mqtt.broker.BrokerContextImpl;
+import tech.smartboot.mqtt.client.MqttClient;
+import tech.smartboot.mqtt.common.enums.MqttQoS;
+import tech.smartboot.mqtt.plugin.spec.Message;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 环形内存消息队列的多生产者写入顺序及溢出计数
+ *
+ * @author 三刀（zhengjunweimail@163.com）
+ * @version V1.0 , 2026/10/18
+ */
+public class MemoryMessageStoreQueueTest {
+    private static final int PRODUCERS = 4;
+    private static final int MESSAGES_PER_PRODUCER = 5000;
+    private BrokerContextImpl brokerContext;
+
+    @After
+    public void destroy() {
+        if (brokerContext != null) {
+            brokerContext.destroy();
+        }
+    }
+
+    @Test
+    public void testConcurrentPutOrdering() throws InterruptedException {
+        int total = PRODUCERS * MESSAGES_PER_PRODUCER;
+        LongAdder overwritten = new LongAdder();
+        MemoryMessageStoreQueue queue = new MemoryMessageStoreQueue(Integer.highestOneBit(total) << 1, overwritten);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int producer = 0; producer < PRODUCERS; producer++) {
+            int id = producer;
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < MESSAGES_PER_PRODUCER; i++) {
+                        Message message = new Message(MqttQoS.AT_MOST_ONCE, ByteBuffer.allocate(8).putInt(id).putInt(i).array(), false);
+                        message.setPushSemaphore(1);
+                        queue.put(message);
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            }));
+        }
+        //消费者只能读到已发布的消息，且已发布的点位不存在空洞
+        Thread consumer = new Thread(() -> {
+            try {
+                start.await();
+                long offset = 0;
+                while (offset < total) {
+                    if (offset > queue.getLatestOffset()) {
+                        Thread.yield();
+                        continue;
+                    }
+                    Message message = queue.get(offset);
+                    Assert.assertNotNull("published offset " + offset, message);
+                    Assert.assertEquals(offset, message.getOffset());
+                    offset++;
+                }
+            } catch (Throwable e) {
+                error.compareAndSet(null, e);
+            }
+        });
+        threads.add(consumer);
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+
+        //每条消息的点位与槽位一致，且各生产者的消息按写入顺序排列
+        Assert.assertEquals(total - 1, queue.getLatestOffset());
+        int[] next = new int[PRODUCERS];
+        for (long offset = 0; offset < total; offset++) {
+            Message message = queue.get(offset);
+            Assert.assertEquals(offset, message.getOffset());
+            ByteBuffer payload = ByteBuffer.wrap(message.getPayload());
+            int producer = payload.getInt();
+            Assert.assertEquals("producer " + producer, next[producer]++, payload.getInt());
+        }
+        for (int count : next) {
+            Assert.assertEquals(MESSAGES_PER_PRODUCER, count);
+        }
+        Assert.assertNull(queue.get(total));
+        Assert.assertEquals(0, overwritten.sum());
+    }
+
+    @Test
+    public void testConcurrentOverwrittenCount() throws InterruptedException {
+        int capacity = 64;
+        LongAdder overwritten = new LongAdder();
+        MemoryMessageStoreQueue queue = new MemoryMessageStoreQueue(capacity, overwritten);
+        //已推送完毕的消息释放槽位，覆盖时不计入溢出
+        for (int i = 0; i < capacity; i++) {
+            put(queue);
+        }
+        for (long offset = 0; offset < capacity; offset++) {
+            queue.commit(offset);
+        }
+        for (int i = 0; i < capacity; i++) {
+            put(queue);
+        }
+        Assert.assertEquals(0, overwritten.sum());
+
+        //尚未推送的消息被覆盖时，每覆盖一条计数一次
+        List<Thread> threads = new ArrayList<>();
+        for (int producer = 0; producer < PRODUCERS; producer++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < MESSAGES_PER_PRODUCER; i++) {
+                    put(queue);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(PRODUCERS * MESSAGES_PER_PRODUCER, overwritten.sum());
+        Assert.assertEquals(2L * capacity + PRODUCERS * MESSAGES_PER_PRODUCER - 1, queue.getLatestOffset());
+    }
+
+    /**
+     * 订阅者断开时仍有积压的消息，断开后这些消息不再等待其推送，继续发布时不计入溢出
+     */
+    @Test
+    public void testReleaseBacklogOnUnsubscribe() throws Throwable {
+        int capacity = 16;
+        brokerContext = new BrokerContextImpl();
+        brokerContext.Options().setMaxMessageQueueLength(capacity);
+        brokerContext.Options().setMaxInflight(1);
+        brokerContext.init();
+        String topic = "test/release";
+
+        AtomicInteger received = new AtomicInteger();
+        CompletableFuture<Void> subscribed = new CompletableFuture<>();
+        MqttClient fastSubscriber = new MqttClient("127.0.0.1", 1883);
+        fastSubscriber.connect(connAck -> fastSubscriber.subscribe(topic, MqttQoS.AT_MOST_ONCE, (client, message) -> received.incrementAndGet(),
+                (client, qos) -> subscribed.complete(null)));
+        subscribed.get(5, TimeUnit.SECONDS);
+
+        //慢订阅者阻塞在首条消息，飞行窗口占满后其余消息积压在主题队列中
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch unblock = new CountDownLatch(1);
+        CompletableFuture<Void> slowSubscribed = new CompletableFuture<>();
+        MqttClient slowSubscriber = new MqttClient("127.0.0.1", 1883);
+        slowSubscriber.connect(connAck -> slowSubscriber.subscribe(topic, MqttQoS.AT_LEAST_ONCE, (client, message) -> {
+            blocked.countDown();
+            try {
+                unblock.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, (client, qos) -> slowSubscribed.complete(null)));
+        slowSubscribed.get(5, TimeUnit.SECONDS);
+
+        CompletableFuture<Void> connected = new CompletableFuture<>();
+        MqttClient publisher = new MqttClient("127.0.0.1", 1883);
+        publisher.connect(connAck -> connected.complete(null));
+        connected.get(5, TimeUnit.SECONDS);
+        try {
+            publish(publisher, topic, capacity / 2);
+            Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+            waitFor(() -> received.get() == capacity / 2);
+            slowSubscriber.disconnect();
+
+            //继续发布数倍于队列容量的消息，慢订阅者遗留的槽位均已释放
+            for (int i = 1; i <= 8; i++) {
+                publish(publisher, topic, capacity / 2);
+                int expected = capacity / 2 * (i + 1);
+                waitFor(() -> received.get() == expected);
+            }
+            Assert.assertEquals(0, brokerContext.getOverwrittenMessageCount());
+        } finally {
+            unblock.countDown();
+            publisher.disconnect();
+            fastSubscriber.disconnect();
+        }
+    }
+
+    private static void put(MemoryMessageStoreQueue queue) {
+        Message message = new Message(MqttQoS.AT_MOST_ONCE, new byte[0], false);
+        message.setPushSemaphore(1);
+        queue.put(message);
+    }
+
+    private static void publish(MqttClient publisher, String topic, int count) {
+        for (int i = 0; i < count; i++) {
+            publisher.publish(topic, MqttQoS.AT_MOST_ONCE, new byte[]{(byte) i}, false);
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("condition not met in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+}